@@ -24,16 +24,15 @@
 package org.encog.app.analyst.analyze;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.encog.Encog;
 import org.encog.app.analyst.script.AnalystClassItem;
 import org.encog.app.analyst.script.AnalystScript;
 import org.encog.app.analyst.script.DataField;
 import org.encog.app.analyst.script.prop.ScriptProperties;
+import org.encog.util.csv.CSVError;
+import org.encog.util.csv.CSVFormat;
 
 /**
  * This class represents a field that the Encog Analyst is in the process of
@@ -41,9 +40,18 @@ import org.encog.app.analyst.script.prop.ScriptProperties;
  * that will help the Encog analyst determine what type of field this is, and
  * how to normalize it.
  * 
+ * The mean and standard deviation are calculated in a single pass, using
+ * Welford's method. Fields that analyzed different parts of a file can be
+ * merged, so a file can be analyzed in parallel.
+ * 
  */
 public class AnalyzedField extends DataField {
 
+	/**
+	 * Integers with up to this many digits can not overflow.
+	 */
+	private static final int MAX_FAST_DIGITS = 9;
+
 	/**
 	 * Tge sum of all values of this field.
 	 */
@@ -55,20 +63,39 @@ public class AnalyzedField extends DataField {
 	private int instances;
 	
 	/**
-	 * The total for standard deviation calculation.
+	 * The number of numeric values seen.
 	 */
-	private double devTotal;
+	private long numericCount;
 	
 	/**
-	 * A mapping between the class names that the class items.
+	 * The running mean of the numeric values.
 	 */
-	private final Map<String, AnalystClassItem> classMap 
-		= new HashMap<String, AnalystClassItem>();
+	private double runningMean;
 	
+	/**
+	 * The running sum of squared differences from the mean.
+	 */
+	private double sumSquares;
+	
+	/**
+	 * A mapping between the class names and their counts.
+	 */
+	private final ClassCountMap classMap;
+	
+	/**
+	 * The class items, created once the analysis is complete.
+	 */
+	private List<AnalystClassItem> classItems;
+
 	/**
 	 * The analyst script that the results are saved to.
 	 */
 	private final AnalystScript script;
+	
+	/**
+	 * The format used to parse numbers.
+	 */
+	private final CSVFormat format;
 
 	/**
 	 * Construct an analyzed field.
@@ -79,18 +106,40 @@ public class AnalyzedField extends DataField {
 		super(name);
 		this.instances = 0;
 		this.script = theScript;
+		this.format = this.script.determineFormat();
+		this.classMap = new ClassCountMap(this.script.getProperties()
+				.getPropertyInt(ScriptProperties.SETUP_CONFIG_MAX_CLASS_COUNT));
 	}
 
 	/**
 	 * Perform a pass one analysis of this field.
-	 * @param str The current value.
+	 * @param v The current value.
 	 */
 	public void analyze1(final String v) {
+		analyze(v, 0, v.length());
+	}
+
+	/**
+	 * Analyze one value of this field. The value is read from a range of
+	 * characters, a string is only created for new class values.
+	 * @param v The characters that hold the value.
+	 * @param start The index of the first character.
+	 * @param end The index after the last character.
+	 */
+	public void analyze(final CharSequence v, final int start, final int end) {
 
 		boolean accountedFor = false;
-		String str = v.trim();
 
-		if (str.trim().length() == 0 || str.equals("?")) {
+		int first = start;
+		int last = end;
+		while (first < last && v.charAt(first) <= ' ') {
+			first++;
+		}
+		while (last > first && v.charAt(last - 1) <= ' ') {
+			last--;
+		}
+
+		if (first == last || (last - first == 1 && v.charAt(first) == '?')) {
 			setComplete(false);
 			return;
 		}
@@ -98,11 +147,12 @@ public class AnalyzedField extends DataField {
 		this.instances++;
 
 		if (isReal()) {
-			if (this.script.determineFormat().isValid(str)) {
-				final double d = this.script.determineFormat().parse(str);
+			final double d = parseReal(v, first, last);
+			if (!Double.isNaN(d)) {
 				setMax(Math.max(d, getMax()));
 				setMin(Math.min(d, getMin()));
 				this.total += d;
+				accumulate(d);
 				accountedFor = true;
 			} else {
 				setReal(false);
@@ -116,11 +166,12 @@ public class AnalyzedField extends DataField {
 
 		if (isInteger()) {
 			try {
-				final int i = Integer.parseInt(str);
+				final int i = parseInteger(v, first, last);
 				setMax(Math.max(i, getMax()));
 				setMin(Math.min(i, getMin()));
 				if (!accountedFor) {
 					this.total += i;
+					accumulate(i);
 				}
 			} catch (final NumberFormatException ex) {
 				setInteger(false);
@@ -133,41 +184,129 @@ public class AnalyzedField extends DataField {
 		}
 
 		if (isClass()) {
-			AnalystClassItem item;
-
-			// is this a new class?
-			if (!this.classMap.containsKey(str)) {
-				item = new AnalystClassItem(str, str, 1);
-				this.classMap.put(str, item);
-
-				// do we have too many different classes?
-				final int max = this.script.getProperties().getPropertyInt(
-						ScriptProperties.SETUP_CONFIG_MAX_CLASS_COUNT);
-				if (this.classMap.size() > max) {
-					setClass(false);
-				}
-			} else {
-				item = this.classMap.get(str);
-				item.increaseCount();
+			this.classItems = null;
+
+			// do we have too many different classes?
+			if (!this.classMap.add(v, first, last, 1)) {
+				setClass(false);
 			}
+		}
+	}
+
+	/**
+	 * Parse a real number, as CSVFormat.isValid and CSVFormat.parse would.
+	 * @param v The characters that hold the value.
+	 * @param start The index of the first character.
+	 * @param end The index after the last character.
+	 * @return The number, or NaN if this is not a valid number.
+	 */
+	private double parseReal(final CharSequence v, final int start,
+			final int end) {
+		if (end - start == 3 && (v.charAt(start) == 'N' || v.charAt(start) == 'n')
+				&& (v.charAt(start + 1) == 'A' || v.charAt(start + 1) == 'a')
+				&& (v.charAt(start + 2) == 'N' || v.charAt(start + 2) == 'n')) {
+			return Double.NaN;
+		}
 
+		try {
+			return this.format.parse(v, start, end);
+		} catch (final CSVError ex) {
+			return Double.NaN;
 		}
 	}
 
 	/**
-	 * Perform a pass two analysis of this field.
+	 * Parse an integer, as Integer.parseInt would. Plain ASCII digits that
+	 * can not overflow are parsed directly.
+	 * @param v The characters that hold the value.
+	 * @param start The index of the first character.
+	 * @param end The index after the last character.
+	 * @return The integer.
+	 */
+	private static int parseInteger(final CharSequence v, final int start,
+			final int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && v.charAt(i) == '-') {
+			negative = true;
+			i++;
+		}
+
+		final int digits = end - i;
+		if (digits > 0 && digits <= AnalyzedField.MAX_FAST_DIGITS) {
+			int result = 0;
+			for (; i < end; i++) {
+				final char ch = v.charAt(i);
+				if (ch < '0' || ch > '9') {
+					return Integer.parseInt(v.subSequence(start, end)
+							.toString());
+				}
+				result = (result * 10) + (ch - '0');
+			}
+			return negative ? -result : result;
+		}
+
+		return Integer.parseInt(v.subSequence(start, end).toString());
+	}
+
+	/**
+	 * Add a value to the running mean and sum of squares.
+	 * @param d The value.
+	 */
+	private void accumulate(final double d) {
+		this.numericCount++;
+		final double delta = d - this.runningMean;
+		this.runningMean += delta / this.numericCount;
+		this.sumSquares += delta * (d - this.runningMean);
+	}
+
+	/**
+	 * Perform a pass two analysis of this field. The standard deviation is
+	 * now calculated during the first pass, so this does nothing.
 	 * @param str The current value.
+	 * @deprecated The analysis only needs one pass.
 	 */
+	@Deprecated
 	public void analyze2(final String str) {
-		if (str.trim().length() == 0) {
-			return;
+	}
+
+	/**
+	 * Merge the analysis of another part of the same file into this field.
+	 * Parts should be merged in file order.
+	 * @param other The analysis of the other part.
+	 */
+	public void merge(final AnalyzedField other) {
+		this.instances += other.instances;
+		this.total += other.total;
+
+		if (other.numericCount > 0) {
+			final long count = this.numericCount + other.numericCount;
+			final double delta = other.runningMean - this.runningMean;
+			this.runningMean += delta * other.numericCount / count;
+			this.sumSquares += other.sumSquares + (delta * delta
+					* this.numericCount * other.numericCount / count);
+			this.numericCount = count;
+		}
+
+		setMax(Math.max(getMax(), other.getMax()));
+		setMin(Math.min(getMin(), other.getMin()));
+		setReal(isReal() && other.isReal());
+		setInteger(isInteger() && other.isInteger());
+		setComplete(isComplete() && other.isComplete());
+
+		if (!isReal() && !isInteger()) {
+			setMax(0);
+			setMin(0);
+			setStandardDeviation(0);
 		}
 
-		if (isReal() || isInteger()) {
-			if (!str.equals("") && !str.equals("?")) {
-				final double d = this.script.determineFormat().parse(str);
-				this.devTotal += Math.pow((d - getMean()), 2);
+		this.classItems = null;
+		if (isClass() && other.isClass()) {
+			if (!this.classMap.addAll(other.classMap)) {
+				setClass(false);
 			}
+		} else {
+			setClass(false);
 		}
 	}
 
@@ -175,9 +314,6 @@ public class AnalyzedField extends DataField {
 	 * Complete pass 1.
 	 */
 	public void completePass1() {
-
-		this.devTotal = 0;
-
 		if (this.instances == 0) {
 			setMean(0);
 		} else {
@@ -189,7 +325,16 @@ public class AnalyzedField extends DataField {
 	 * Complete pass 2.
 	 */
 	public void completePass2() {
-		setStandardDeviation(Math.sqrt(this.devTotal / this.instances));
+		final double sum = (isReal() || isInteger()) ? this.sumSquares : 0;
+		setStandardDeviation(Math.sqrt(sum / this.instances));
+	}
+
+	/**
+	 * Complete the analysis, calculate the mean and standard deviation.
+	 */
+	public void complete() {
+		completePass1();
+		completePass2();
 	}
 
 	/**
@@ -236,14 +381,16 @@ public class AnalyzedField extends DataField {
 	 * @return The class members.
 	 */
 	public List<AnalystClassItem> getAnalyzedClassMembers() {
-		final List<String> sorted = new ArrayList<String>();
-		sorted.addAll(this.classMap.keySet());
-		Collections.sort(sorted);
+		if (this.classItems == null) {
+			this.classItems = new ArrayList<AnalystClassItem>();
+			for (final String str : this.classMap.getSortedKeys()) {
+				this.classItems.add(new AnalystClassItem(str, str,
+						this.classMap.getCount(str)));
+			}
+		}
 
 		final List<AnalystClassItem> result = new ArrayList<AnalystClassItem>();
-		for (final String str : sorted) {
-			result.add(this.classMap.get(str));
-		}
+		result.addAll(this.classItems);
 
 		return result;
 	}
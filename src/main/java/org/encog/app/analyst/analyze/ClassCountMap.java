@@ -0,0 +1,270 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.app.analyst.analyze;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counts the occurrences of each class value found in a field. This is an
+ * open addressing hash map from string to count, that can be looked up from a
+ * range of characters, so that a string is only created the first time that a
+ * class value is seen. The hash is the same as String.hashCode.
+ * 
+ * The map holds at most a fixed number of classes, a field with more classes
+ * than that is not a class field.
+ */
+public class ClassCountMap {
+
+	/**
+	 * The initial table size, must be a power of two.
+	 */
+	public static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The most classes that the map will hold.
+	 */
+	private final int limit;
+
+	/**
+	 * The class values, null for an empty slot.
+	 */
+	private String[] keys;
+
+	/**
+	 * The count for each class value.
+	 */
+	private int[] counts;
+
+	/**
+	 * The number of class values in the map.
+	 */
+	private int size;
+
+	/**
+	 * Construct the map.
+	 * 
+	 * @param theLimit
+	 *            The most classes that the map will hold.
+	 */
+	public ClassCountMap(final int theLimit) {
+		this.limit = theLimit;
+		this.keys = new String[ClassCountMap.INITIAL_CAPACITY];
+		this.counts = new int[ClassCountMap.INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Calculate the hash of a range of characters.
+	 * 
+	 * @param str
+	 *            The characters.
+	 * @param start
+	 *            The index of the first character.
+	 * @param end
+	 *            The index after the last character.
+	 * @return The hash, the same as String.hashCode.
+	 */
+	private static int hash(final CharSequence str, final int start,
+			final int end) {
+		int h = 0;
+		for (int i = start; i < end; i++) {
+			h = (31 * h) + str.charAt(i);
+		}
+		return h;
+	}
+
+	/**
+	 * Spread the bits of a hash, so that the low bits can be used as an
+	 * index.
+	 * 
+	 * @param h
+	 *            The hash.
+	 * @return The spread hash.
+	 */
+	private static int spread(final int h) {
+		final int x = h ^ (h >>> 16);
+		return x * 0x45d9f3b;
+	}
+
+	/**
+	 * Determine if a key matches a range of characters.
+	 * 
+	 * @param key
+	 *            The key.
+	 * @param str
+	 *            The characters.
+	 * @param start
+	 *            The index of the first character.
+	 * @param end
+	 *            The index after the last character.
+	 * @return True if they match.
+	 */
+	private static boolean matches(final String key, final CharSequence str,
+			final int start, final int end) {
+		if (key.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != str.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Add to the count of a class value.
+	 * 
+	 * @param str
+	 *            The characters that hold the class value.
+	 * @param start
+	 *            The index of the first character.
+	 * @param end
+	 *            The index after the last character.
+	 * @param count
+	 *            The amount to add.
+	 * @return False if the value is new, and the map is already full.
+	 */
+	public boolean add(final CharSequence str, final int start,
+			final int end, final int count) {
+		final int mask = this.keys.length - 1;
+		int index = spread(hash(str, start, end)) & mask;
+
+		while (this.keys[index] != null) {
+			if (matches(this.keys[index], str, start, end)) {
+				this.counts[index] += count;
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+
+		if (this.size >= this.limit) {
+			return false;
+		}
+
+		this.keys[index] = str.subSequence(start, end).toString();
+		this.counts[index] = count;
+		this.size++;
+
+		// keep the table at most half full
+		if (this.size * 2 > this.keys.length) {
+			grow();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Add to the count of a class value.
+	 * 
+	 * @param str
+	 *            The class value.
+	 * @param count
+	 *            The amount to add.
+	 * @return False if the value is new, and the map is already full.
+	 */
+	public boolean add(final String str, final int count) {
+		return add(str, 0, str.length(), count);
+	}
+
+	/**
+	 * Add every count from another map to this one.
+	 * 
+	 * @param other
+	 *            The other map.
+	 * @return False if this map ran out of room.
+	 */
+	public boolean addAll(final ClassCountMap other) {
+		boolean result = true;
+		for (int i = 0; i < other.keys.length; i++) {
+			if (other.keys[i] != null) {
+				result &= add(other.keys[i], other.counts[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Double the size of the table.
+	 */
+	private void grow() {
+		final String[] oldKeys = this.keys;
+		final int[] oldCounts = this.counts;
+		this.keys = new String[oldKeys.length * 2];
+		this.counts = new int[oldKeys.length * 2];
+		final int mask = this.keys.length - 1;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int index = spread(oldKeys[i].hashCode()) & mask;
+				while (this.keys[index] != null) {
+					index = (index + 1) & mask;
+				}
+				this.keys[index] = oldKeys[i];
+				this.counts[index] = oldCounts[i];
+			}
+		}
+	}
+
+	/**
+	 * Get the count of a class value.
+	 * 
+	 * @param str
+	 *            The class value.
+	 * @return The count, or zero if the value is not in the map.
+	 */
+	public int getCount(final String str) {
+		final int mask = this.keys.length - 1;
+		int index = spread(str.hashCode()) & mask;
+		while (this.keys[index] != null) {
+			if (this.keys[index].equals(str)) {
+				return this.counts[index];
+			}
+			index = (index + 1) & mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return The class values, sorted.
+	 */
+	public List<String> getSortedKeys() {
+		final List<String> result = new ArrayList<String>(this.size);
+		for (final String key : this.keys) {
+			if (key != null) {
+				result.add(key);
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * @return The number of class values.
+	 */
+	public int size() {
+		return this.size;
+	}
+}
@@ -23,6 +23,8 @@
  */
 package org.encog.app.analyst.analyze;
 
+import java.io.File;
+import java.nio.CharBuffer;
 import java.util.List;
 
 import org.encog.app.analyst.AnalystError;
@@ -34,15 +36,20 @@ import org.encog.app.analyst.script.DataField;
 import org.encog.app.analyst.script.prop.ScriptProperties;
 import org.encog.app.analyst.util.CSVHeaders;
 import org.encog.app.analyst.util.ConvertStringConst;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.EngineTask;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
 import org.encog.util.csv.CSVFormat;
 import org.encog.util.csv.ReadCSV;
+import org.encog.util.csv.SplitCSV;
 
 /**
  * This class is used to perform an analysis of a CSV file. This will help Encog
  * to determine how the fields should be normalized.
  * 
  */
-public class PerformAnalysis {
+public class PerformAnalysis implements MultiThreadable {
 
 	/**
 	 * The file name to analyze.
@@ -69,6 +76,21 @@ public class PerformAnalysis {
 	 */
 	private final AnalystScript script;
 
+	/**
+	 * The CSV format of the file being analyzed.
+	 */
+	private CSVFormat csvFormat;
+
+	/**
+	 * The file being analyzed, split into chunks.
+	 */
+	private SplitCSV split;
+
+	/**
+	 * The number of threads to use, zero for automatic.
+	 */
+	private int threadCount;
+
 	/**
 	 * Construct the analysis object.
 	 * 
@@ -136,52 +158,129 @@ public class PerformAnalysis {
 	}
 
 	/**
-	 * Perform the analysis.
+	 * Analyzes one chunk of the file.
+	 */
+	private class AnalyzeTask implements EngineTask {
+
+		/**
+		 * The chunk to analyze.
+		 */
+		private final int chunk;
+
+		/**
+		 * The analysis of each field in this chunk.
+		 */
+		private final AnalyzedField[] chunkFields;
+
+		/**
+		 * The number of rows in this chunk.
+		 */
+		private int rowCount;
+
+		/**
+		 * Construct the task.
+		 * 
+		 * @param theChunk
+		 *            The chunk to analyze.
+		 */
+		public AnalyzeTask(final int theChunk) {
+			this.chunk = theChunk;
+			this.chunkFields = new AnalyzedField[fields.length];
+			for (int i = 0; i < this.chunkFields.length; i++) {
+				this.chunkFields[i] = new AnalyzedField(script, fields[i]
+						.getName());
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			final ReadCSV csv = split.readChunk(this.chunk, csvFormat);
+			try {
+				while (csv.next()) {
+					final CharBuffer record = CharBuffer.wrap(csv
+							.getRecordBuffer());
+					final int count = Math.min(csv.getColumnCount(),
+							this.chunkFields.length);
+					for (int i = 0; i < count; i++) {
+						this.chunkFields[i].analyze(record, csv
+								.getFieldStart(i), csv.getFieldEnd(i));
+					}
+					this.rowCount++;
+				}
+			} finally {
+				csv.close();
+			}
+		}
+	}
+
+	/**
+	 * Perform the analysis. The file is read once. It is split into chunks
+	 * that are analyzed on several threads, and the results of the chunks
+	 * are then merged in file order.
 	 * @param target The Encog analyst object to analyze.
 	 */
 	public void process(final EncogAnalyst target) {
-		int count = 0;
-		final CSVFormat csvFormat = ConvertStringConst
-				.convertToCSVFormat(this.format);
-		ReadCSV csv = new ReadCSV(this.filename, this.headers, csvFormat);
-		
-		// pass one, calculate the min/max
-		while (csv.next()) {
-			if (this.fields == null) {
-				generateFields(csv);
-			}
+		this.csvFormat = ConvertStringConst.convertToCSVFormat(this.format);
 
-			for (int i = 0; i < csv.getColumnCount(); i++) {
-				this.fields[i].analyze1(csv.get(i));
+		// read the headers and the first line to create the fields
+		final ReadCSV csv = new ReadCSV(this.filename, this.headers,
+				this.csvFormat);
+		try {
+			if (csv.next()) {
+				generateFields(csv);
 			}
-			count++;
+		} finally {
+			csv.close();
 		}
-		
-		if( count==0 ) {
+
+		if (this.fields == null) {
 			throw new AnalystError("Can't analyze file, it is empty.");
 		}
 
+		int count = 0;
+		this.split = new SplitCSV(new File(this.filename), this.headers,
+				this.threadCount);
+		try {
+			final AnalyzeTask[] tasks = new AnalyzeTask[this.split
+					.getChunkCount()];
+			for (int i = 0; i < tasks.length; i++) {
+				tasks[i] = new AnalyzeTask(i);
+			}
 
-		for (final AnalyzedField field : this.fields) {
-			field.completePass1();
-		}
-
-		csv.close();
+			if (tasks.length == 1) {
+				tasks[0].run();
+			} else {
+				final TaskGroup group = EngineConcurrency.getInstance()
+						.createTaskGroup();
+				for (final AnalyzeTask task : tasks) {
+					EngineConcurrency.getInstance().processTask(task, group);
+				}
+				group.waitForComplete();
+				EngineConcurrency.getInstance().checkError();
+			}
 
-		// pass two, standard deviation
-		csv = new ReadCSV(this.filename, this.headers, csvFormat);
-		while (csv.next()) {
-			for (int i = 0; i < csv.getColumnCount(); i++) {
-				this.fields[i].analyze2(csv.get(i));
+			for (final AnalyzeTask task : tasks) {
+				for (int i = 0; i < this.fields.length; i++) {
+					this.fields[i].merge(task.chunkFields[i]);
+				}
+				count += task.rowCount;
 			}
+		} finally {
+			this.split.close();
+			this.split = null;
+		}
+		
+		if( count==0 ) {
+			throw new AnalystError("Can't analyze file, it is empty.");
 		}
 
 		for (final AnalyzedField field : this.fields) {
-			field.completePass2();
+			field.complete();
 		}
 
-		csv.close();
-
 		String str = this.script.getProperties().getPropertyString(
 				ScriptProperties.SETUP_CONFIG_ALLOWED_CLASSES);
 		if (str == null) {
@@ -248,6 +347,22 @@ public class PerformAnalysis {
 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.threadCount = numThreads;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public String toString() {
@@ -23,6 +23,10 @@
  */
 package org.encog.app.analyst.csv.basic;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import org.encog.util.csv.CSVFormat;
 import org.encog.util.csv.ReadCSV;
 
@@ -32,6 +36,12 @@ import org.encog.util.csv.ReadCSV;
  */
 public class LoadedRow {
 
+	/**
+	 * The encoding used for the fields when a row is written to a binary
+	 * temporary file.
+	 */
+	public static final String ENCODING = "UTF-8";
+
 	/**
 	 * The row data.
 	 */
@@ -60,6 +70,16 @@ public class LoadedRow {
 		}
 	}
 	
+	/**
+	 * Construct a loaded row from existing data.
+	 * 
+	 * @param theData
+	 *            The data to use, this array is not copied.
+	 */
+	public LoadedRow(final String[] theData) {
+		this.data = theData;
+	}
+	
 	public LoadedRow(CSVFormat csvFormat, final double[] d, final int extra) {
 		final int count = d.length;
 		this.data = new String[count + extra];
@@ -74,4 +94,41 @@ public class LoadedRow {
 	public String[] getData() {
 		return this.data;
 	}
+
+	/**
+	 * Read a row that was written with {@link #write(DataOutput)}.
+	 * 
+	 * @param in
+	 *            The stream to read from.
+	 * @return The row.
+	 * @throws IOException
+	 *             If the row could not be read.
+	 */
+	public static LoadedRow read(final DataInput in) throws IOException {
+		final String[] d = new String[in.readInt()];
+		for (int i = 0; i < d.length; i++) {
+			final byte[] b = new byte[in.readInt()];
+			in.readFully(b);
+			d[i] = new String(b, LoadedRow.ENCODING);
+		}
+		return new LoadedRow(d);
+	}
+
+	/**
+	 * Write this row to a binary temporary file. The field count is written
+	 * first, then each field as its length and its bytes.
+	 * 
+	 * @param out
+	 *            The stream to write to.
+	 * @throws IOException
+	 *             If the row could not be written.
+	 */
+	public void write(final DataOutput out) throws IOException {
+		out.writeInt(this.data.length);
+		for (final String str : this.data) {
+			final byte[] b = str.getBytes(LoadedRow.ENCODING);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+	}
 }
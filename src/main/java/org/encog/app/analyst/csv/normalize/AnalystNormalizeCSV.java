@@ -59,12 +59,34 @@ public class AnalystNormalizeCSV extends BasicFile {
 	public static final double[] extractFields(final EncogAnalyst analyst,
 			final CSVHeaders headers, final ReadCSV csv,
 			final int outputLength, final boolean skipOutput) {
+		return extractFields(analyst, headers, csv, outputLength, skipOutput,
+				true);
+	}
+
+	/**
+	 * Extract fields from a file into a numeric array for machine learning.
+	 * @param analyst The analyst to use.
+	 * @param headers The headers for the input data.
+	 * @param csv The CSV that holds the input data.
+	 * @param outputLength The length of the returned array.
+	 * @param skipOutput True if the output should be skipped.
+	 * @param initFields True if the fields should be initialized first. Pass
+	 * false when the fields have already been initialized, and rows are
+	 * being extracted on several threads.
+	 * @return The encoded data.
+	 */
+	public static final double[] extractFields(final EncogAnalyst analyst,
+			final CSVHeaders headers, final ReadCSV csv,
+			final int outputLength, final boolean skipOutput,
+			final boolean initFields) {
 		final double[] output = new double[outputLength];
 		int outputIndex = 0;
 		for (final AnalystField stat : analyst.getScript().getNormalize()
 				.getNormalizedFields()) {
 			
-			stat.init();
+			if (initFields) {
+				stat.init();
+			}
 
 			if (stat.getAction() == NormalizationAction.Ignore) {
 				continue;
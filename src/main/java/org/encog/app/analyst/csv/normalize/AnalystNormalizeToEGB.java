@@ -33,6 +33,9 @@ import org.encog.app.analyst.script.normalize.AnalystField;
 import org.encog.app.analyst.util.CSVHeaders;
 import org.encog.ml.data.basic.BasicMLData;
 import org.encog.ml.data.buffer.BufferedMLDataSet;
+import org.encog.ml.data.buffer.CSVRowExtractor;
+import org.encog.ml.data.buffer.CSVToEGBConverter;
+import org.encog.util.concurrency.MultiThreadable;
 import org.encog.util.csv.CSVFormat;
 import org.encog.util.csv.ReadCSV;
 import org.encog.util.logging.EncogLogging;
@@ -40,7 +43,8 @@ import org.encog.util.logging.EncogLogging;
 /**
  * Normalize, or denormalize, a CSV file.
  */
-public class AnalystNormalizeToEGB extends BasicFile {
+public class AnalystNormalizeToEGB extends BasicFile implements
+		MultiThreadable {
 
 	/**
 	 * The analyst to use.
@@ -57,6 +61,11 @@ public class AnalystNormalizeToEGB extends BasicFile {
 	 */
 	private CSVHeaders analystHeaders;
 
+	/**
+	 * The number of threads to use, zero for automatic.
+	 */
+	private int threadCount;
+
 	/**
 	 * Analyze the file.
 	 * @param inputFilename The input file.
@@ -86,7 +95,9 @@ public class AnalystNormalizeToEGB extends BasicFile {
 	}
 
 	/**
-	 * Normalize the input file. Write to the specified file.
+	 * Normalize the input file. Write to the specified file. The file is
+	 * normalized on several threads, unless a time series is being built,
+	 * which needs the rows in order.
 	 * 
 	 * @param file
 	 *            The file to write to.
@@ -96,7 +107,56 @@ public class AnalystNormalizeToEGB extends BasicFile {
 			throw new EncogError(
 					"Can't normalize yet, file has not been analyzed.");
 		}
-		
+
+		if (this.series.getTotalDepth() > 1) {
+			normalizeSeries(file);
+			return;
+		}
+
+		final int inputCount = analyst.getScript().getNormalize()
+				.calculateInputColumns();
+		final int idealCount = analyst.getScript().getNormalize()
+				.calculateOutputColumns();
+		final int outputLength = this.analyst.determineTotalColumns();
+
+		final CSVRowExtractor extractor = new CSVRowExtractor() {
+			@Override
+			public boolean extract(final ReadCSV csv, final double[] input,
+					final double[] ideal) {
+				final double[] output = AnalystNormalizeCSV.extractFields(
+						analyst, analystHeaders, csv, outputLength, false,
+						false);
+				if (output == null) {
+					return false;
+				}
+				System.arraycopy(output, 0, input, 0, input.length);
+				System.arraycopy(output, input.length, ideal, 0,
+						ideal.length);
+				return true;
+			}
+		};
+
+		final CSVToEGBConverter converter = new CSVToEGBConverter(
+				getInputFilename(), file, getFormat(),
+				isExpectInputHeaders(), inputCount, idealCount, extractor);
+		converter.setThreadCount(this.threadCount);
+
+		resetStatus();
+		try {
+			converter.process();
+		} finally {
+			reportDone(false);
+		}
+	}
+
+	/**
+	 * Normalize the input file one row at a time, so that a time series can
+	 * be built.
+	 * 
+	 * @param file
+	 *            The file to write to.
+	 */
+	private void normalizeSeries(final File file) {
 		int inputCount = analyst.getScript().getNormalize().calculateInputColumns(); 
 		int idealCount = analyst.getScript().getNormalize().calculateOutputColumns();
 		
@@ -122,9 +182,13 @@ public class AnalystNormalizeToEGB extends BasicFile {
 						this.analyst, this.analystHeaders, csv, outputLength,
 						false);
 
-				if (this.series.getTotalDepth() > 1) {
+				if (output != null) {
 					output = this.series.process(output);
 				}
+
+				if (output == null) {
+					continue;
+				}
 				
 				// copy the input
 				int idx = 0;
@@ -136,9 +200,7 @@ public class AnalystNormalizeToEGB extends BasicFile {
 					idealData.setData(i, output[idx++]);
 				}
 
-				if (output != null) {
-					buffer.add(inputData,idealData);
-				}
+				buffer.add(inputData,idealData);
 			}
 		} finally {
 			reportDone(false);
@@ -178,5 +240,20 @@ public class AnalystNormalizeToEGB extends BasicFile {
 		setInputFormat(format);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.threadCount = numThreads;
+	}
 
 }
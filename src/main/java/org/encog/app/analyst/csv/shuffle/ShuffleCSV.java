@@ -23,39 +23,86 @@
  */
 package org.encog.app.analyst.csv.shuffle;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import org.encog.app.analyst.csv.basic.BasicFile;
 import org.encog.app.analyst.csv.basic.LoadedRow;
-import org.encog.mathutil.randomize.RangeRandomizer;
+import org.encog.app.analyst.csv.sort.SortCSV;
+import org.encog.app.quant.QuantError;
 import org.encog.util.csv.CSVFormat;
 import org.encog.util.csv.ReadCSV;
 
 /**
  * Randomly shuffle the lines of a CSV file.
+ * 
+ * Every order of the rows is equally likely. Files that fit in the memory
+ * budget are loaded and shuffled in memory. Larger files are shuffled with
+ * two passes: each row is first written to a randomly chosen temporary
+ * bucket file, then each bucket is loaded, shuffled, and written out in
+ * turn. The same seed always produces the same order.
  */
 public class ShuffleCSV extends BasicFile {
-	
+
 	/**
 	 * The default buffer size.
 	 */
 	public static final int DEFAULT_BUFFER_SIZE = 5000;
-	
+
+	/**
+	 * The default memory budget, a quarter of the maximum heap.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime()
+			.maxMemory() / 4;
+
+	/**
+	 * The most bucket files that are written at once. Files so large that
+	 * they would need more buckets use larger buckets than the budget
+	 * allows.
+	 */
+	public static final int MAX_BUCKETS = 1024;
+
+	/**
+	 * The largest buffer used for a bucket file.
+	 */
+	public static final int BUCKET_BUFFER_SIZE = 65536;
+
+	/**
+	 * The smallest buffer used for a bucket file.
+	 */
+	public static final int MIN_BUCKET_BUFFER_SIZE = 4096;
+
 	/**
 	 * The buffer size.
 	 */
 	private int bufferSize;
 
 	/**
-	 * The buffer.
+	 * The memory budget, in bytes.
+	 */
+	private long memoryBudget = ShuffleCSV.DEFAULT_MEMORY_BUDGET;
+
+	/**
+	 * The seed for the shuffle.
 	 */
-	private LoadedRow[] buffer;
+	private long seed = new Random().nextLong();
 
 	/**
-	 * Remaining in the buffer.
+	 * The directory for bucket files, null for the system temporary
+	 * directory.
 	 */
-	private int remaining;
+	private File tempDirectory;
 
 	/**
 	 * Construct the object.
@@ -86,55 +133,53 @@ public class ShuffleCSV extends BasicFile {
 	}
 
 	/**
-	 * @return The buffer size. This is how many rows of data are loaded(and
-	 *         randomized), at a time. The default is 5,000.
+	 * @return The buffer size.
+	 * @deprecated The whole file is now shuffled, use
+	 *             {@link #getMemoryBudget()} to bound the memory used.
 	 */
+	@Deprecated
 	public int getBufferSize() {
 		return this.bufferSize;
 	}
 
 	/**
-	 * Get the next row from the underlying CSV file.
-	 * 
-	 * @param csv
-	 *            The underlying CSV file.
-	 * @return The loaded row.
+	 * @return The memory budget, in bytes.
 	 */
-	private LoadedRow getNextRow(final ReadCSV csv) {
-		if (this.remaining == 0) {
-			loadBuffer(csv);
-		}
-
-		while (this.remaining > 0) {
-			final int index = RangeRandomizer.randomInt(0, this.bufferSize - 1);
-			if (this.buffer[index] != null) {
-				final LoadedRow result = this.buffer[index];
-				this.buffer[index] = null;
-				this.remaining--;
-				return result;
-			}
-		}
-		return null;
+	public long getMemoryBudget() {
+		return this.memoryBudget;
 	}
 
 	/**
-	 * Load the buffer from the underlying file.
-	 * 
-	 * @param csv
-	 *            The CSV file to load from.
+	 * @return The seed for the shuffle. Unless it is set, a new seed is
+	 *         chosen for each object.
 	 */
-	private void loadBuffer(final ReadCSV csv) {
-		for (int i = 0; i < this.buffer.length; i++) {
-			this.buffer[i] = null;
-		}
+	public long getSeed() {
+		return this.seed;
+	}
 
-		int index = 0;
-		while (csv.next() && (index < this.bufferSize) && !shouldStop()) {
-			final LoadedRow row = new LoadedRow(csv);
-			this.buffer[index++] = row;
-		}
+	/**
+	 * @return The directory for bucket files, null for the system temporary
+	 *         directory.
+	 */
+	public File getTempDirectory() {
+		return this.tempDirectory;
+	}
 
-		this.remaining = index;
+	/**
+	 * Determine how many buckets are needed for the input file. The loaded
+	 * size of the file is estimated from its length and counts, and the
+	 * buckets are sized to half the budget, since random buckets are not all
+	 * the same size.
+	 * 
+	 * @return The number of buckets, one if the file fits in memory.
+	 */
+	private int determineBucketCount() {
+		final long estimate = (2L * getInputFilename().length())
+				+ ((long) getRecordCount() * (SortCSV.ROW_OVERHEAD
+						+ ((long) getColumnCount() * SortCSV.FIELD_OVERHEAD)));
+		final long buckets = ((2 * estimate) / Math.max(1, this.memoryBudget))
+				+ 1;
+		return (int) Math.min(buckets, ShuffleCSV.MAX_BUCKETS);
 	}
 
 	/**
@@ -146,20 +191,153 @@ public class ShuffleCSV extends BasicFile {
 	public void process(final File outputFile) {
 		validateAnalyzed();
 
+		final Random random = new Random(this.seed);
+		final int bucketCount = determineBucketCount();
+		final File[] buckets = new File[bucketCount];
+		final long[] counts = new long[bucketCount];
+
+		resetStatus();
+
 		final ReadCSV csv = new ReadCSV(getInputFilename().toString(),
 				isExpectInputHeaders(), getFormat());
-		LoadedRow row;
+		List<LoadedRow> rows = null;
+		PrintWriter tw = null;
 
-		final PrintWriter tw = prepareOutputFile(outputFile);
+		try {
+			if (bucketCount == 1) {
+				rows = new ArrayList<LoadedRow>();
+				while (csv.next() && !shouldStop()) {
+					rows.add(new LoadedRow(csv));
+				}
+			} else {
+				scatter(csv, random, buckets, counts);
+			}
+			csv.close();
 
-		resetStatus();
-		while ((row = getNextRow(csv)) != null) {
+			tw = prepareOutputFile(outputFile);
+
+			if (rows != null) {
+				writeShuffled(tw, rows, random);
+			} else {
+				for (int i = 0; i < bucketCount && !shouldStop(); i++) {
+					rows = readBucket(buckets[i], counts[i]);
+					buckets[i].delete();
+					writeShuffled(tw, rows, random);
+				}
+			}
+		} finally {
+			csv.close();
+			if (tw != null) {
+				tw.close();
+			}
+			for (final File bucket : buckets) {
+				if (bucket != null) {
+					bucket.delete();
+				}
+			}
+		}
+
+		reportDone(false);
+	}
+
+	/**
+	 * Write each row of the input file to a randomly chosen bucket file.
+	 * 
+	 * @param csv
+	 *            The input file.
+	 * @param random
+	 *            The random number generator.
+	 * @param buckets
+	 *            Receives the bucket files.
+	 * @param counts
+	 *            Receives the number of rows in each bucket.
+	 */
+	private void scatter(final ReadCSV csv, final Random random,
+			final File[] buckets, final long[] counts) {
+		final int size = (int) Math.max(ShuffleCSV.MIN_BUCKET_BUFFER_SIZE,
+				Math.min(ShuffleCSV.BUCKET_BUFFER_SIZE, this.memoryBudget
+						/ (4 * buckets.length)));
+		final DataOutputStream[] out = new DataOutputStream[buckets.length];
+
+		try {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = File.createTempFile("encog-shuffle", ".bucket",
+						this.tempDirectory);
+				buckets[i].deleteOnExit();
+				out[i] = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(buckets[i]), size));
+			}
+
+			while (csv.next() && !shouldStop()) {
+				final int index = random.nextInt(buckets.length);
+				new LoadedRow(csv).write(out[index]);
+				counts[index]++;
+			}
+		} catch (final IOException ex) {
+			throw new QuantError(ex);
+		} finally {
+			for (final DataOutputStream stream : out) {
+				if (stream != null) {
+					try {
+						stream.close();
+					} catch (final IOException ex) {
+						throw new QuantError(ex);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the rows of a bucket file.
+	 * 
+	 * @param bucket
+	 *            The bucket file.
+	 * @param count
+	 *            The number of rows in the bucket.
+	 * @return The rows.
+	 */
+	private List<LoadedRow> readBucket(final File bucket, final long count) {
+		final List<LoadedRow> result = new ArrayList<LoadedRow>((int) count);
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(bucket), ShuffleCSV.BUCKET_BUFFER_SIZE));
+			for (long i = 0; i < count; i++) {
+				result.add(LoadedRow.read(in));
+			}
+		} catch (final IOException ex) {
+			throw new QuantError(ex);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (final IOException ex) {
+					throw new QuantError(ex);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Shuffle rows, and write them to the output file.
+	 * 
+	 * @param tw
+	 *            The output file.
+	 * @param rows
+	 *            The rows.
+	 * @param random
+	 *            The random number generator.
+	 */
+	private void writeShuffled(final PrintWriter tw,
+			final List<LoadedRow> rows, final Random random) {
+		Collections.shuffle(rows, random);
+		for (final LoadedRow row : rows) {
 			writeRow(tw, row);
 			updateStatus(false);
 		}
-		reportDone(false);
-		tw.close();
-		csv.close();
+		rows.clear();
 	}
 
 	/**
@@ -167,9 +345,42 @@ public class ShuffleCSV extends BasicFile {
 	 * 
 	 * @param s
 	 *            The new buffer size.
+	 * @deprecated The whole file is now shuffled, use
+	 *             {@link #setMemoryBudget(long)} to bound the memory used.
 	 */
+	@Deprecated
 	public void setBufferSize(final int s) {
 		this.bufferSize = s;
-		this.buffer = new LoadedRow[this.bufferSize];
+	}
+
+	/**
+	 * Set the amount of memory that loaded rows may use. Files larger than
+	 * this are shuffled through temporary bucket files.
+	 * 
+	 * @param theMemoryBudget
+	 *            The memory budget, in bytes.
+	 */
+	public void setMemoryBudget(final long theMemoryBudget) {
+		this.memoryBudget = theMemoryBudget;
+	}
+
+	/**
+	 * Set the seed for the shuffle. Shuffling the same file with the same
+	 * seed and memory budget always produces the same order.
+	 * 
+	 * @param theSeed
+	 *            The seed.
+	 */
+	public void setSeed(final long theSeed) {
+		this.seed = theSeed;
+	}
+
+	/**
+	 * @param theTempDirectory
+	 *            The directory for bucket files, null for the system
+	 *            temporary directory.
+	 */
+	public void setTempDirectory(final File theTempDirectory) {
+		this.tempDirectory = theTempDirectory;
 	}
 }
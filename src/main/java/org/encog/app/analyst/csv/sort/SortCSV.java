@@ -23,33 +23,225 @@
  */
 package org.encog.app.analyst.csv.sort;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Semaphore;
 
 import org.encog.app.analyst.csv.basic.BasicFile;
 import org.encog.app.analyst.csv.basic.LoadedRow;
+import org.encog.app.quant.QuantError;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.EngineTask;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
 import org.encog.util.csv.CSVFormat;
 import org.encog.util.csv.ReadCSV;
 
 /**
  * Used to sort a CSV file by one, or more, fields.
+ * 
+ * Files that fit in the memory budget are sorted in memory. Larger files are
+ * sorted externally: the file is read in chunks that fit the budget, each
+ * chunk is sorted on the thread pool and written to a temporary run file,
+ * and the runs are then merged with a heap. The sort is stable, rows that
+ * compare equal keep their order from the input file.
  */
-public class SortCSV extends BasicFile {
+public class SortCSV extends BasicFile implements MultiThreadable {
 
 	/**
-	 * The loaded rows.
+	 * The default memory budget, a quarter of the maximum heap.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime()
+			.maxMemory() / 4;
+
+	/**
+	 * The most runs that are merged at once. If there are more runs than
+	 * this, consecutive runs are merged into longer runs first.
+	 */
+	public static final int MAX_MERGE_RUNS = 64;
+
+	/**
+	 * The estimated memory used by a row, not counting its fields.
+	 */
+	public static final int ROW_OVERHEAD = 48;
+
+	/**
+	 * The estimated memory used by a field, not counting its characters.
+	 */
+	public static final int FIELD_OVERHEAD = 48;
+
+	/**
+	 * The buffer size used for run files.
+	 */
+	public static final int RUN_BUFFER_SIZE = 65536;
+
+	/**
+	 * Sorts one chunk of rows and writes it to a run file.
+	 */
+	private class SortTask implements EngineTask {
+
+		/**
+		 * The rows to sort.
+		 */
+		private final List<LoadedRow> rows;
+
+		/**
+		 * The run file to write.
+		 */
+		private final File run;
+
+		/**
+		 * Released once the chunk has been written.
+		 */
+		private final Semaphore inFlight;
+
+		/**
+		 * Construct the task.
+		 * 
+		 * @param theRows
+		 *            The rows to sort.
+		 * @param theRun
+		 *            The run file to write.
+		 * @param theInFlight
+		 *            Released once the chunk has been written.
+		 */
+		public SortTask(final List<LoadedRow> theRows, final File theRun,
+				final Semaphore theInFlight) {
+			this.rows = theRows;
+			this.run = theRun;
+			this.inFlight = theInFlight;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			try {
+				Collections.sort(this.rows, new RowComparator(SortCSV.this));
+				writeRun(this.run, this.rows);
+			} finally {
+				this.rows.clear();
+				this.inFlight.release();
+			}
+		}
+	}
+
+	/**
+	 * Reads the rows of a run file, one at a time.
+	 */
+	private static class RunReader {
+
+		/**
+		 * The order of this run, used to keep the sort stable.
+		 */
+		private final int order;
+
+		/**
+		 * The stream to read from.
+		 */
+		private final DataInputStream in;
+
+		/**
+		 * The number of rows left to read.
+		 */
+		private long remaining;
+
+		/**
+		 * The current row.
+		 */
+		private LoadedRow current;
+
+		/**
+		 * Open a run file.
+		 * 
+		 * @param file
+		 *            The run file.
+		 * @param theOrder
+		 *            The order of this run.
+		 * @throws IOException
+		 *             If the file could not be read.
+		 */
+		public RunReader(final File file, final int theOrder)
+				throws IOException {
+			this.order = theOrder;
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file), SortCSV.RUN_BUFFER_SIZE));
+			this.remaining = this.in.readLong();
+		}
+
+		/**
+		 * Read the next row.
+		 * 
+		 * @return False if there are no more rows.
+		 * @throws IOException
+		 *             If the file could not be read.
+		 */
+		public boolean next() throws IOException {
+			if (this.remaining == 0) {
+				this.current = null;
+				return false;
+			}
+			this.remaining--;
+			this.current = LoadedRow.read(this.in);
+			return true;
+		}
+
+		/**
+		 * Close the run file.
+		 */
+		public void close() {
+			try {
+				this.in.close();
+			} catch (final IOException ex) {
+				throw new QuantError(ex);
+			}
+		}
+	}
+
+	/**
+	 * The loaded rows, when the file fits in memory.
 	 */
 	private final List<LoadedRow> data = new ArrayList<LoadedRow>();
 
+	/**
+	 * The run files, when the file does not fit in memory.
+	 */
+	private final List<File> runs = new ArrayList<File>();
+
 	/**
 	 * The sort order.
 	 */
 	private final List<SortedField> sortOrder = new ArrayList<SortedField>();
 
+	/**
+	 * The memory budget, in bytes.
+	 */
+	private long memoryBudget = SortCSV.DEFAULT_MEMORY_BUDGET;
+
+	/**
+	 * The directory for run files, null for the system temporary directory.
+	 */
+	private File tempDirectory;
+
+	/**
+	 * The number of threads to use, zero for automatic.
+	 */
+	private int threadCount;
+
 	/**
 	 * @return Used to specify the sort order.
 	 */
@@ -57,6 +249,42 @@ public class SortCSV extends BasicFile {
 		return this.sortOrder;
 	}
 
+	/**
+	 * @return The memory budget, in bytes.
+	 */
+	public long getMemoryBudget() {
+		return this.memoryBudget;
+	}
+
+	/**
+	 * Set the amount of memory that loaded rows may use. Rows are counted
+	 * with an estimate of their size. Files larger than this are sorted
+	 * externally, using temporary run files.
+	 * 
+	 * @param theMemoryBudget
+	 *            The memory budget, in bytes.
+	 */
+	public void setMemoryBudget(final long theMemoryBudget) {
+		this.memoryBudget = theMemoryBudget;
+	}
+
+	/**
+	 * @return The directory for run files, null for the system temporary
+	 *         directory.
+	 */
+	public File getTempDirectory() {
+		return this.tempDirectory;
+	}
+
+	/**
+	 * @param theTempDirectory
+	 *            The directory for run files, null for the system temporary
+	 *            directory.
+	 */
+	public void setTempDirectory(final File theTempDirectory) {
+		this.tempDirectory = theTempDirectory;
+	}
+
 	/**
 	 * Process, and sort the files.
 	 * 
@@ -75,24 +303,84 @@ public class SortCSV extends BasicFile {
 		setExpectInputHeaders(headers);
 		setInputFormat(format);
 
-		readInputFile();
-		sortData();
-		writeOutputFile(outputFile);
+		try {
+			readInputFile();
+			if (this.runs.isEmpty()) {
+				sortData();
+				writeOutputFile(outputFile, null);
+			} else {
+				mergeRuns(outputFile);
+			}
+		} finally {
+			this.data.clear();
+			for (final File run : this.runs) {
+				run.delete();
+			}
+			this.runs.clear();
+		}
+	}
+
+	/**
+	 * Estimate the memory used by a row.
+	 * 
+	 * @param row
+	 *            The row.
+	 * @return The estimated size, in bytes.
+	 */
+	private static long estimateSize(final LoadedRow row) {
+		long result = SortCSV.ROW_OVERHEAD;
+		for (final String str : row.getData()) {
+			result += SortCSV.FIELD_OVERHEAD + (2L * str.length());
+		}
+		return result;
 	}
 
 	/**
-	 * Read the input file.
+	 * Read the input file. If the file does not fit in the memory budget,
+	 * it is split into sorted runs.
 	 */
 	private void readInputFile() {
 		resetStatus();
 
+		final int workers = this.threadCount == 0 ? Runtime.getRuntime()
+				.availableProcessors() : this.threadCount;
+
+		// the chunk being read, plus the chunks being sorted, must fit
+		final long chunkBudget = this.memoryBudget / (workers + 1);
+		final Semaphore inFlight = new Semaphore(workers);
+		final TaskGroup group = EngineConcurrency.getInstance()
+				.createTaskGroup();
+		long used = 0;
+
 		final ReadCSV csv = new ReadCSV(getInputFilename().toString(),
 				isExpectInputHeaders(), getFormat());
-		while (csv.next() && !shouldStop()) {
-			updateStatus("Reading input file");
-			final LoadedRow row = new LoadedRow(csv);
-			this.data.add(row);
+		try {
+			while (csv.next() && !shouldStop()) {
+				updateStatus("Reading input file");
+				final LoadedRow row = new LoadedRow(csv);
+				used += estimateSize(row);
+
+				// once the whole budget is used, start spilling runs
+				if (used > this.memoryBudget && this.runs.isEmpty()) {
+					used = spillChunks(group, inFlight, chunkBudget);
+				}
+
+				this.data.add(row);
+
+				if (!this.runs.isEmpty() && used > chunkBudget) {
+					spill(group, inFlight);
+					used = 0;
+				}
+			}
+
+			if (!this.runs.isEmpty() && !this.data.isEmpty()) {
+				spill(group, inFlight);
+			}
+		} finally {
+			group.waitForComplete();
+			csv.close();
 		}
+		EngineConcurrency.getInstance().checkError();
 
 		setColumnCount(csv.getColumnCount());
 
@@ -102,8 +390,101 @@ public class SortCSV extends BasicFile {
 				getInputHeadings()[i] = csv.getColumnNames().get(i);
 			}
 		}
+	}
+
+	/**
+	 * Split the rows loaded so far into chunks, and spill them as runs.
+	 * 
+	 * @param group
+	 *            The task group for the sort tasks.
+	 * @param inFlight
+	 *            Limits the chunks being sorted at once.
+	 * @param chunkBudget
+	 *            The memory budget for each chunk.
+	 * @return The estimated size of the rows that are left over.
+	 */
+	private long spillChunks(final TaskGroup group, final Semaphore inFlight,
+			final long chunkBudget) {
+		final List<LoadedRow> loaded = new ArrayList<LoadedRow>(this.data);
+		this.data.clear();
+		long used = 0;
+
+		for (final LoadedRow row : loaded) {
+			this.data.add(row);
+			used += estimateSize(row);
+			if (used > chunkBudget) {
+				spill(group, inFlight);
+				used = 0;
+			}
+		}
+
+		return used;
+	}
+
+	/**
+	 * Sort the loaded rows on the thread pool, and write them to a new run.
+	 * 
+	 * @param group
+	 *            The task group for the sort tasks.
+	 * @param inFlight
+	 *            Limits the chunks being sorted at once.
+	 */
+	private void spill(final TaskGroup group, final Semaphore inFlight) {
+		final File run = createRunFile();
+		this.runs.add(run);
+
+		final List<LoadedRow> rows = new ArrayList<LoadedRow>(this.data);
+		this.data.clear();
+
+		inFlight.acquireUninterruptibly();
+		EngineConcurrency.getInstance().processTask(
+				new SortTask(rows, run, inFlight), group);
+	}
+
+	/**
+	 * Create a temporary run file.
+	 * 
+	 * @return The run file.
+	 */
+	private File createRunFile() {
+		try {
+			final File result = File.createTempFile("encog-sort", ".run",
+					this.tempDirectory);
+			result.deleteOnExit();
+			return result;
+		} catch (final IOException ex) {
+			throw new QuantError(ex);
+		}
+	}
 
-		csv.close();
+	/**
+	 * Write rows to a run file.
+	 * 
+	 * @param run
+	 *            The run file.
+	 * @param rows
+	 *            The rows, already sorted.
+	 */
+	private static void writeRun(final File run, final List<LoadedRow> rows) {
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(run), SortCSV.RUN_BUFFER_SIZE));
+			out.writeLong(rows.size());
+			for (final LoadedRow row : rows) {
+				row.write(out);
+			}
+		} catch (final IOException ex) {
+			throw new QuantError(ex);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (final IOException ex) {
+					throw new QuantError(ex);
+				}
+			}
+		}
 	}
 
 	/**
@@ -114,21 +495,188 @@ public class SortCSV extends BasicFile {
 		Collections.sort(this.data, comp);
 	}
 
+	/**
+	 * Create a heap of run readers, ordered by their current rows. Ties go
+	 * to the earlier run, which keeps the sort stable.
+	 * 
+	 * @param group
+	 *            The runs to merge, in file order.
+	 * @return The heap, holding every run that has a row.
+	 * @throws IOException
+	 *             If a run could not be read.
+	 */
+	private PriorityQueue<RunReader> openRuns(final List<File> group)
+			throws IOException {
+		final RowComparator comp = new RowComparator(this);
+		final PriorityQueue<RunReader> heap = new PriorityQueue<RunReader>(
+				Math.max(1, group.size()), new Comparator<RunReader>() {
+					@Override
+					public int compare(final RunReader x, final RunReader y) {
+						final int c = comp.compare(x.current, y.current);
+						if (c != 0) {
+							return c;
+						}
+						return x.order - y.order;
+					}
+				});
+
+		for (int i = 0; i < group.size(); i++) {
+			final RunReader reader = new RunReader(group.get(i), i);
+			if (reader.next()) {
+				heap.add(reader);
+			} else {
+				reader.close();
+			}
+		}
+
+		return heap;
+	}
+
+	/**
+	 * Take the smallest row from a heap of runs.
+	 * 
+	 * @param heap
+	 *            The heap.
+	 * @return The row.
+	 * @throws IOException
+	 *             If a run could not be read.
+	 */
+	private static LoadedRow take(final PriorityQueue<RunReader> heap)
+			throws IOException {
+		final RunReader reader = heap.poll();
+		final LoadedRow row = reader.current;
+		if (reader.next()) {
+			heap.add(reader);
+		} else {
+			reader.close();
+		}
+		return row;
+	}
+
+	/**
+	 * Close any runs left in a heap.
+	 * 
+	 * @param heap
+	 *            The heap.
+	 */
+	private static void closeRuns(final PriorityQueue<RunReader> heap) {
+		if (heap != null) {
+			for (final RunReader reader : heap) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Merge the runs into the output file. If there are too many runs to
+	 * merge at once, consecutive runs are first merged into longer runs.
+	 * 
+	 * @param outputFile
+	 *            The output file.
+	 */
+	private void mergeRuns(final File outputFile) {
+		try {
+			while (this.runs.size() > SortCSV.MAX_MERGE_RUNS) {
+				final List<File> merged = new ArrayList<File>();
+				for (int i = 0; i < this.runs.size(); 
+						i += SortCSV.MAX_MERGE_RUNS) {
+					final List<File> group = this.runs.subList(i, Math.min(
+							this.runs.size(), i + SortCSV.MAX_MERGE_RUNS));
+					merged.add(mergeToRun(group));
+					for (final File run : group) {
+						run.delete();
+					}
+				}
+				this.runs.clear();
+				this.runs.addAll(merged);
+			}
+
+			PriorityQueue<RunReader> heap = null;
+			try {
+				heap = openRuns(this.runs);
+				writeOutputFile(outputFile, heap);
+			} finally {
+				closeRuns(heap);
+			}
+		} catch (final IOException ex) {
+			throw new QuantError(ex);
+		}
+	}
+
+	/**
+	 * Merge several runs into one new run.
+	 * 
+	 * @param group
+	 *            The runs to merge, in file order.
+	 * @return The new run.
+	 * @throws IOException
+	 *             If a run could not be read or written.
+	 */
+	private File mergeToRun(final List<File> group) throws IOException {
+		final File run = createRunFile();
+		PriorityQueue<RunReader> heap = null;
+		DataOutputStream out = null;
+
+		try {
+			heap = openRuns(group);
+			long count = 0;
+			for (final RunReader reader : heap) {
+				count += reader.remaining + 1;
+			}
+
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(run), SortCSV.RUN_BUFFER_SIZE));
+			out.writeLong(count);
+			while (!heap.isEmpty()) {
+				take(heap).write(out);
+			}
+		} finally {
+			closeRuns(heap);
+			if (out != null) {
+				out.close();
+			}
+		}
+
+		return run;
+	}
+
 	/**
 	 * Write the sorted output file.
 	 * 
 	 * @param outputFile
 	 *            The name of the output file.
+	 * @param heap
+	 *            The runs to merge, or null to write the loaded rows.
 	 */
-	private void writeOutputFile(final File outputFile) {
+	private void writeOutputFile(final File outputFile,
+			final PriorityQueue<RunReader> heap) {
 		final PrintWriter tw = prepareOutputFile(outputFile);
 		final boolean[] nonNumeric = new boolean[getColumnCount()];
 		boolean first = true;
+		final Iterator<LoadedRow> loaded = this.data.iterator();
 
 		resetStatus();
 
 		// write the file
-		for (final LoadedRow row : this.data) {
+		for (;;) {
+			LoadedRow row;
+			if (heap == null) {
+				if (!loaded.hasNext()) {
+					break;
+				}
+				row = loaded.next();
+			} else {
+				if (heap.isEmpty()) {
+					break;
+				}
+				try {
+					row = take(heap);
+				} catch (final IOException ex) {
+					tw.close();
+					throw new QuantError(ex);
+				}
+			}
+
 			updateStatus("Writing output");
 			// for the first row, determine types
 			if (first) {
@@ -171,4 +719,20 @@ public class SortCSV extends BasicFile {
 		tw.close();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.threadCount = numThreads;
+	}
+
 }
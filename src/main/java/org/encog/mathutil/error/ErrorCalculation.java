@@ -139,6 +139,18 @@ public class ErrorCalculation {
 		return err;
 	}
 
+	/**
+	 * Add the error accumulated by another error calculation to this one.
+	 * Used to combine the errors of several threads.
+	 * 
+	 * @param other
+	 *            The other error calculation.
+	 */
+	public final void merge(final ErrorCalculation other) {
+		this.globalError += other.globalError;
+		this.setSize += other.setSize;
+	}
+
 	/**
 	 * Reset the error accumulation to zero.
 	 */
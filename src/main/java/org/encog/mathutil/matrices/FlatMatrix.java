@@ -0,0 +1,366 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.mathutil.matrices;
+
+import java.io.Serializable;
+
+import org.encog.Encog;
+
+/**
+ * A matrix that stores its elements in a single row-major array, rather than
+ * an array of rows as Matrix does. Element (row,col) is found at
+ * row*cols+col. The contiguous storage lets the multiply and the
+ * decompositions stream through memory, and the in-place operations avoid
+ * allocating a new matrix for every result.
+ * 
+ * Use FlatMatrixMath for the larger operations, such as multiplication.
+ */
+public class FlatMatrix implements Cloneable, Serializable {
+
+	/**
+	 * Serial id for this class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of rows.
+	 */
+	private final int rows;
+
+	/**
+	 * The number of columns.
+	 */
+	private final int cols;
+
+	/**
+	 * The matrix data, row-major.
+	 */
+	private final double[] data;
+
+	/**
+	 * Create a blank matrix with the specified number of rows and columns.
+	 * 
+	 * @param theRows
+	 *            How many rows in the matrix.
+	 * @param theCols
+	 *            How many columns in the matrix.
+	 */
+	public FlatMatrix(final int theRows, final int theCols) {
+		this.rows = theRows;
+		this.cols = theCols;
+		this.data = new double[theRows * theCols];
+	}
+
+	/**
+	 * Create a matrix around an existing row-major array. The array is not
+	 * copied.
+	 * 
+	 * @param theRows
+	 *            How many rows in the matrix.
+	 * @param theCols
+	 *            How many columns in the matrix.
+	 * @param theData
+	 *            The row-major data.
+	 */
+	public FlatMatrix(final int theRows, final int theCols,
+			final double[] theData) {
+		if (theData.length != theRows * theCols) {
+			throw new MatrixError("Data length of " + theData.length
+					+ " does not match a " + theRows + "x" + theCols
+					+ " matrix.");
+		}
+		this.rows = theRows;
+		this.cols = theCols;
+		this.data = theData;
+	}
+
+	/**
+	 * Create a matrix from an array of doubles.
+	 * 
+	 * @param sourceMatrix
+	 *            An array of doubles.
+	 */
+	public FlatMatrix(final double[][] sourceMatrix) {
+		this(sourceMatrix.length, sourceMatrix[0].length);
+		for (int r = 0; r < this.rows; r++) {
+			System.arraycopy(sourceMatrix[r], 0, this.data, r * this.cols,
+					this.cols);
+		}
+	}
+
+	/**
+	 * Create a flat copy of a matrix.
+	 * 
+	 * @param sourceMatrix
+	 *            The matrix to copy.
+	 */
+	public FlatMatrix(final Matrix sourceMatrix) {
+		this(sourceMatrix.getData());
+	}
+
+	/**
+	 * Add a value to one cell in the matrix.
+	 * 
+	 * @param row
+	 *            The row to add to.
+	 * @param col
+	 *            The column to add to.
+	 * @param value
+	 *            The value to add to the matrix.
+	 */
+	public void add(final int row, final int col, final double value) {
+		validate(row, col);
+		this.data[row * this.cols + col] += value;
+	}
+
+	/**
+	 * Add the specified matrix to this matrix, in place.
+	 * 
+	 * @param theMatrix
+	 *            The matrix to add.
+	 */
+	public void add(final FlatMatrix theMatrix) {
+		validateSameSize(theMatrix);
+		final double[] source = theMatrix.data;
+		for (int i = 0; i < this.data.length; i++) {
+			this.data[i] += source[i];
+		}
+	}
+
+	/**
+	 * Subtract the specified matrix from this matrix, in place.
+	 * 
+	 * @param theMatrix
+	 *            The matrix to subtract.
+	 */
+	public void subtract(final FlatMatrix theMatrix) {
+		validateSameSize(theMatrix);
+		final double[] source = theMatrix.data;
+		for (int i = 0; i < this.data.length; i++) {
+			this.data[i] -= source[i];
+		}
+	}
+
+	/**
+	 * Multiply every cell in the matrix by the specified value, in place.
+	 * 
+	 * @param value
+	 *            The value to multiply by.
+	 */
+	public void multiply(final double value) {
+		for (int i = 0; i < this.data.length; i++) {
+			this.data[i] *= value;
+		}
+	}
+
+	/**
+	 * Set every cell in the matrix to zero.
+	 */
+	public void clear() {
+		set(0);
+	}
+
+	/**
+	 * Set every value in the matrix to the specified value.
+	 * 
+	 * @param value
+	 *            The value to set the matrix to.
+	 */
+	public void set(final double value) {
+		for (int i = 0; i < this.data.length; i++) {
+			this.data[i] = value;
+		}
+	}
+
+	/**
+	 * Copy the values of another matrix of the same size into this one.
+	 * 
+	 * @param theMatrix
+	 *            The matrix to copy.
+	 */
+	public void set(final FlatMatrix theMatrix) {
+		validateSameSize(theMatrix);
+		System.arraycopy(theMatrix.data, 0, this.data, 0, this.data.length);
+	}
+
+	/**
+	 * Set an individual cell in the matrix to the specified value.
+	 * 
+	 * @param row
+	 *            The row to set.
+	 * @param col
+	 *            The column to set.
+	 * @param value
+	 *            The value to be set.
+	 */
+	public void set(final int row, final int col, final double value) {
+		validate(row, col);
+		this.data[row * this.cols + col] = value;
+	}
+
+	/**
+	 * Read the specified cell in the matrix.
+	 * 
+	 * @param row
+	 *            The row to read.
+	 * @param col
+	 *            The column to read.
+	 * @return The value at the specified row and column.
+	 */
+	public double get(final int row, final int col) {
+		validate(row, col);
+		return this.data[row * this.cols + col];
+	}
+
+	/**
+	 * @return The row-major data array. Changes to this array change the
+	 *         matrix.
+	 */
+	public double[] getData() {
+		return this.data;
+	}
+
+	/**
+	 * @return The number of rows in the matrix.
+	 */
+	public int getRows() {
+		return this.rows;
+	}
+
+	/**
+	 * @return The number of columns in the matrix.
+	 */
+	public int getCols() {
+		return this.cols;
+	}
+
+	/**
+	 * @return True if the matrix is square.
+	 */
+	public boolean isSquare() {
+		return this.rows == this.cols;
+	}
+
+	/**
+	 * @return A copy of the matrix as an array of rows.
+	 */
+	public double[][] getArrayCopy() {
+		final double[][] result = new double[this.rows][this.cols];
+		for (int r = 0; r < this.rows; r++) {
+			System.arraycopy(this.data, r * this.cols, result[r], 0, this.cols);
+		}
+		return result;
+	}
+
+	/**
+	 * @return A copy of this matrix, as a Matrix object.
+	 */
+	public Matrix toMatrix() {
+		final Matrix result = new Matrix(this.rows, this.cols);
+		final double[][] d = result.getData();
+		for (int r = 0; r < this.rows; r++) {
+			System.arraycopy(this.data, r * this.cols, d[r], 0, this.cols);
+		}
+		return result;
+	}
+
+	/**
+	 * Create a copy of the matrix.
+	 * 
+	 * @return A clone of the matrix.
+	 */
+	@Override
+	public FlatMatrix clone() {
+		return new FlatMatrix(this.rows, this.cols, this.data.clone());
+	}
+
+	/**
+	 * Compare to matrixes with the specified level of precision.
+	 * 
+	 * @param theMatrix
+	 *            The other matrix to compare to.
+	 * @param precision
+	 *            How much precision to use.
+	 * @return True if the two matrixes are equal.
+	 */
+	public boolean equals(final FlatMatrix theMatrix, final int precision) {
+
+		if (precision < 0) {
+			throw new MatrixError("Precision can't be a negative number.");
+		}
+
+		if (theMatrix.rows != this.rows || theMatrix.cols != this.cols) {
+			return false;
+		}
+
+		final double actualPrecision = Math.pow(Encog.DEFAULT_PRECISION,
+				precision);
+
+		for (int i = 0; i < this.data.length; i++) {
+			if ((long) (this.data[i] * actualPrecision) 
+					!= (long) (theMatrix.data[i] * actualPrecision)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Validate that the specified row and column are within the required
+	 * ranges. Otherwise throw a MatrixError exception.
+	 * 
+	 * @param row
+	 *            The row, must be at least zero and less than the row count.
+	 * @param col
+	 *            The column, must be at least zero and less than the column
+	 *            count.
+	 */
+	private void validate(final int row, final int col) {
+		if ((row >= this.rows) || (row < 0)) {
+			throw new MatrixError("The row:" + row + " is out of range:"
+					+ this.rows);
+		}
+
+		if ((col >= this.cols) || (col < 0)) {
+			throw new MatrixError("The col:" + col + " is out of range:"
+					+ this.cols);
+		}
+	}
+
+	/**
+	 * Validate that another matrix is the same size as this one.
+	 * 
+	 * @param theMatrix
+	 *            The other matrix.
+	 */
+	private void validateSameSize(final FlatMatrix theMatrix) {
+		if (theMatrix.rows != this.rows || theMatrix.cols != this.cols) {
+			throw new MatrixError("The matrixes must have the same number "
+					+ "of rows and columns.  This matrix is " + this.rows
+					+ "x" + this.cols + ", the other is " + theMatrix.rows
+					+ "x" + theMatrix.cols + ".");
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.mathutil.matrices;
+
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.TaskGroup;
+
+/**
+ * Matrix operations for the FlatMatrix class. Where possible the result is
+ * written into a matrix provided by the caller, so that no new storage is
+ * allocated. Large multiplications are split by row between several
+ * threads.
+ */
+public final class FlatMatrixMath {
+
+	/**
+	 * The number of multiply-adds below which a multiplication is always
+	 * done on the calling thread.
+	 */
+	public static final long MIN_THREADED_WORK = 1L << 20;
+
+	/**
+	 * The minimum number of rows to give to each thread.
+	 */
+	public static final int MIN_ROWS_PER_THREAD = 8;
+
+	/**
+	 * Return the product of the first and second matrix.
+	 * 
+	 * @param a
+	 *            The first matrix.
+	 * @param b
+	 *            The second matrix.
+	 * @return The result of the multiplication.
+	 */
+	public static FlatMatrix multiply(final FlatMatrix a, final FlatMatrix b) {
+		final FlatMatrix result = new FlatMatrix(a.getRows(), b.getCols());
+		multiply(a, b, result, 0);
+		return result;
+	}
+
+	/**
+	 * Multiply two matrixes into a result matrix, a*b=result.
+	 * 
+	 * @param a
+	 *            The first matrix.
+	 * @param b
+	 *            The second matrix.
+	 * @param result
+	 *            The result matrix. Must not be a or b.
+	 * @param threads
+	 *            The number of threads to use, or zero to determine
+	 *            automatically.
+	 */
+	public static void multiply(final FlatMatrix a, final FlatMatrix b,
+			final FlatMatrix result, final int threads) {
+		if (b.getRows() != a.getCols()) {
+			throw new MatrixError(
+					"To use ordinary matrix multiplication the number of "
+				+ "columns on the first matrix must mat the number of "
+							+ "rows on the second.");
+		}
+
+		if (result.getRows() != a.getRows() || result.getCols() != b.getCols()) {
+			throw new MatrixError("The result matrix must be "
+					+ a.getRows() + "x" + b.getCols() + ".");
+		}
+
+		if (result == a || result == b) {
+			throw new MatrixError(
+					"The result matrix can't be one of the matrixes being multiplied.");
+		}
+
+		final int rows = a.getRows();
+		int threadCount = threads;
+
+		if (threadCount == 0) {
+			final long work = (long) rows * a.getCols() * b.getCols();
+			if (work < MIN_THREADED_WORK) {
+				threadCount = 1;
+			} else {
+				threadCount = Runtime.getRuntime().availableProcessors();
+			}
+		}
+
+		threadCount = Math.max(1,
+				Math.min(threadCount, rows / MIN_ROWS_PER_THREAD));
+
+		if (threadCount == 1) {
+			new FlatMatrixMultiplyWorker(a, b, result, 0, rows).run();
+			return;
+		}
+
+		final TaskGroup group = EngineConcurrency.getInstance()
+				.createTaskGroup();
+		final int rowsPerThread = rows / threadCount;
+		for (int i = 0; i < threadCount; i++) {
+			final int low = i * rowsPerThread;
+			final int high = (i == threadCount - 1) ? rows : low
+					+ rowsPerThread;
+			EngineConcurrency.getInstance().processTask(
+					new FlatMatrixMultiplyWorker(a, b, result, low, high),
+					group);
+		}
+		group.waitForComplete();
+		EngineConcurrency.getInstance().checkError();
+	}
+
+	/**
+	 * Multiply a matrix by a vector, a*v=result.
+	 * 
+	 * @param a
+	 *            The matrix.
+	 * @param v
+	 *            The vector, length must match the columns of a.
+	 * @param result
+	 *            The result, length must match the rows of a.
+	 */
+	public static void multiply(final FlatMatrix a, final double[] v,
+			final double[] result) {
+		if (v.length != a.getCols() || result.length != a.getRows()) {
+			throw new MatrixError("Vector lengths do not match the "
+					+ a.getRows() + "x" + a.getCols() + " matrix.");
+		}
+		final double[] d = a.getData();
+		final int cols = a.getCols();
+		int index = 0;
+		for (int r = 0; r < result.length; r++) {
+			double sum = 0;
+			for (int c = 0; c < cols; c++) {
+				sum += d[index++] * v[c];
+			}
+			result[r] = sum;
+		}
+	}
+
+	/**
+	 * Return the transposition of a matrix.
+	 * 
+	 * @param input
+	 *            The matrix to transpose.
+	 * @return The matrix transposed.
+	 */
+	public static FlatMatrix transpose(final FlatMatrix input) {
+		final FlatMatrix result = new FlatMatrix(input.getCols(),
+				input.getRows());
+		transpose(input, result);
+		return result;
+	}
+
+	/**
+	 * Transpose a matrix into a result matrix. The transposition is done a
+	 * block at a time, so that both the reads and the writes stay in the
+	 * processor cache.
+	 * 
+	 * @param input
+	 *            The matrix to transpose.
+	 * @param result
+	 *            The result, must not be input.
+	 */
+	public static void transpose(final FlatMatrix input,
+			final FlatMatrix result) {
+		final int rows = input.getRows();
+		final int cols = input.getCols();
+
+		if (result.getRows() != cols || result.getCols() != rows) {
+			throw new MatrixError("The result matrix must be " + cols + "x"
+					+ rows + ".");
+		}
+
+		if (result == input) {
+			throw new MatrixError(
+					"The result matrix can't be the matrix being transposed.");
+		}
+
+		final double[] d = input.getData();
+		final double[] t = result.getData();
+		final int block = FlatMatrixMultiplyWorker.BLOCK_SIZE;
+
+		for (int rr = 0; rr < rows; rr += block) {
+			final int rEnd = Math.min(rr + block, rows);
+			for (int cc = 0; cc < cols; cc += block) {
+				final int cEnd = Math.min(cc + block, cols);
+				for (int r = rr; r < rEnd; r++) {
+					for (int c = cc; c < cEnd; c++) {
+						t[c * rows + r] = d[r * cols + c];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create an identity matrix, of the specified size. An identity matrix
+	 * always has its diagonal set to 1.
+	 * 
+	 * @param size
+	 *            The number of rows and columns.
+	 * @return An identity matrix.
+	 */
+	public static FlatMatrix identity(final int size) {
+		if (size < 1) {
+			throw new MatrixError("Identity matrix must be at least of "
+					+ "size 1.");
+		}
+
+		final FlatMatrix result = new FlatMatrix(size, size);
+		final double[] d = result.getData();
+		for (int i = 0; i < size; i++) {
+			d[i * size + i] = 1;
+		}
+		return result;
+	}
+
+	/**
+	 * A private constructor.
+	 */
+	private FlatMatrixMath() {
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.mathutil.matrices;
+
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * Multiplies a range of rows of two flat matrixes. The product is computed a
+ * block at a time, so that the block of the second matrix being used stays in
+ * the processor cache while it is applied to every row of the range.
+ * 
+ * Each worker writes only to its own rows of the result, so several workers
+ * can run over the same matrixes at once.
+ */
+public class FlatMatrixMultiplyWorker implements EngineTask {
+
+	/**
+	 * The size of the blocks, in elements, on each side.
+	 */
+	public static final int BLOCK_SIZE = 64;
+
+	/**
+	 * The first matrix.
+	 */
+	private final FlatMatrix a;
+
+	/**
+	 * The second matrix.
+	 */
+	private final FlatMatrix b;
+
+	/**
+	 * The result matrix.
+	 */
+	private final FlatMatrix result;
+
+	/**
+	 * The first row to calculate.
+	 */
+	private final int low;
+
+	/**
+	 * One past the last row to calculate.
+	 */
+	private final int high;
+
+	/**
+	 * Construct the worker.
+	 * 
+	 * @param theA
+	 *            The first matrix.
+	 * @param theB
+	 *            The second matrix.
+	 * @param theResult
+	 *            The result, must not be either of the other matrixes.
+	 * @param theLow
+	 *            The first row to calculate.
+	 * @param theHigh
+	 *            One past the last row to calculate.
+	 */
+	public FlatMatrixMultiplyWorker(final FlatMatrix theA,
+			final FlatMatrix theB, final FlatMatrix theResult,
+			final int theLow, final int theHigh) {
+		this.a = theA;
+		this.b = theB;
+		this.result = theResult;
+		this.low = theLow;
+		this.high = theHigh;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void run() {
+		final double[] aData = this.a.getData();
+		final double[] bData = this.b.getData();
+		final double[] c = this.result.getData();
+		final int inner = this.a.getCols();
+		final int cols = this.b.getCols();
+
+		for (int i = this.low; i < this.high; i++) {
+			final int ci = i * cols;
+			for (int j = 0; j < cols; j++) {
+				c[ci + j] = 0;
+			}
+		}
+
+		for (int kk = 0; kk < inner; kk += BLOCK_SIZE) {
+			final int kEnd = Math.min(kk + BLOCK_SIZE, inner);
+			for (int jj = 0; jj < cols; jj += BLOCK_SIZE) {
+				final int jEnd = Math.min(jj + BLOCK_SIZE, cols);
+				for (int i = this.low; i < this.high; i++) {
+					final int ai = i * inner;
+					final int ci = i * cols;
+					for (int k = kk; k < kEnd; k++) {
+						final double aik = aData[ai + k];
+						final int bk = k * cols;
+						for (int j = jj; j < jEnd; j++) {
+							c[ci + j] += aik * bData[bk + j];
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -297,23 +297,28 @@ public final class MatrixMath {
 							+ "rows on the second.");
 		}
 
+		// large products are done on flat storage, blocked and threaded
+		if ((long) a.getRows() * a.getCols() * b.getCols() >= FlatMatrixMath.MIN_THREADED_WORK) {
+			return FlatMatrixMath.multiply(new FlatMatrix(a), new FlatMatrix(b))
+					.toMatrix();
+		}
+
 		final double[][] aData = a.getData();
 		final double[][] bData = b.getData();
 
 		final Matrix x = new Matrix(a.getRows(), b.getCols());
 		final double[][] c = x.getData();
-		final double[] bcolj = new double[a.getCols()];
-		for (int j = 0; j < b.getCols(); j++) {
+
+		// accumulate whole rows of b, so that the inner loop runs along rows
+		for (int i = 0; i < a.getRows(); i++) {
+			final double[] arowi = aData[i];
+			final double[] crowi = c[i];
 			for (int k = 0; k < a.getCols(); k++) {
-				bcolj[k] = bData[k][j];
-			}
-			for (int i = 0; i < a.getRows(); i++) {
-				final double[] arowi = aData[i];
-				double s = 0;
-				for (int k = 0; k < a.getCols(); k++) {
-					s += arowi[k] * bcolj[k];
+				final double aik = arowi[k];
+				final double[] browk = bData[k];
+				for (int j = 0; j < b.getCols(); j++) {
+					crowi[j] += aik * browk[j];
 				}
-				c[i][j] = s;
 			}
 		}
 		return x;
@@ -369,14 +374,24 @@ public final class MatrixMath {
 	 * @return The matrix transposed.
 	 */
 	public static Matrix transpose(final Matrix input) {
-		final double[][] transposeMatrix = new double[input.getCols()][input
-				.getRows()];
+		final int rows = input.getRows();
+		final int cols = input.getCols();
+		final double[][] transposeMatrix = new double[cols][rows];
 
 		final double[][] d = input.getData();
-
-		for (int r = 0; r < input.getRows(); r++) {
-			for (int c = 0; c < input.getCols(); c++) {
-				transposeMatrix[c][r] = d[r][c];
+		final int block = FlatMatrixMultiplyWorker.BLOCK_SIZE;
+
+		// transpose a block at a time, to stay within the processor cache
+		for (int rr = 0; rr < rows; rr += block) {
+			final int rEnd = Math.min(rr + block, rows);
+			for (int cc = 0; cc < cols; cc += block) {
+				final int cEnd = Math.min(cc + block, cols);
+				for (int r = rr; r < rEnd; r++) {
+					final double[] row = d[r];
+					for (int c = cc; c < cEnd; c++) {
+						transposeMatrix[c][r] = row[c];
+					}
+				}
 			}
 		}
 
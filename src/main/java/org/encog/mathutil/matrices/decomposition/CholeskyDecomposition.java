@@ -25,6 +25,7 @@ package org.encog.mathutil.matrices.decomposition;
 
 import java.io.Serializable;
 
+import org.encog.mathutil.matrices.FlatMatrix;
 import org.encog.mathutil.matrices.Matrix;
 import org.encog.mathutil.matrices.MatrixError;
 
@@ -99,6 +100,17 @@ public class CholeskyDecomposition implements Serializable {
 	}
 
 
+	/**
+	 * Cholesky algorithm for a flat symmetric and positive definite matrix.
+	 * 
+	 * @param matrix
+	 *            Square, symmetric matrix.
+	 */
+	public CholeskyDecomposition(final FlatMatrix matrix) {
+		this(matrix.toMatrix());
+	}
+
+
 	/**
 	 * Is the matrix symmetric and positive definite?
 	 * 
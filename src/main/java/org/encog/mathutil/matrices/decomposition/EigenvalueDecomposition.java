@@ -26,6 +26,7 @@ package org.encog.mathutil.matrices.decomposition;
 import java.util.Arrays;
 
 import org.encog.mathutil.EncogMath;
+import org.encog.mathutil.matrices.FlatMatrix;
 import org.encog.mathutil.matrices.Matrix;
 
 /**
@@ -101,8 +102,30 @@ public class EigenvalueDecomposition {
 	 *            Square matrix
 	 */
 	public EigenvalueDecomposition(final Matrix matrix) {
-		final double[][] a = matrix.getData();
-		this.n = matrix.getCols();
+		this(matrix.getData(), matrix.getCols());
+	}
+
+	/**
+	 * Check for symmetry, then construct the eigenvalue decomposition of a
+	 * flat matrix.
+	 * 
+	 * @param matrix
+	 *            Square matrix, not modified.
+	 */
+	public EigenvalueDecomposition(final FlatMatrix matrix) {
+		this(matrix.getArrayCopy(), matrix.getCols());
+	}
+
+	/**
+	 * Construct the decomposition from an array of rows.
+	 * 
+	 * @param a
+	 *            The square matrix.
+	 * @param size
+	 *            The row and column count.
+	 */
+	private EigenvalueDecomposition(final double[][] a, final int size) {
+		this.n = size;
 		this.v = new double[this.n][this.n];
 		this.d = new double[this.n];
 		this.e = new double[this.n];
@@ -23,6 +23,7 @@
  */
 package org.encog.mathutil.matrices.decomposition;
 
+import org.encog.mathutil.matrices.FlatMatrix;
 import org.encog.mathutil.matrices.Matrix;
 import org.encog.mathutil.matrices.MatrixError;
 
@@ -38,6 +39,9 @@ import org.encog.mathutil.matrices.MatrixError;
  * singular, so the constructor will never fail. The primary use of the LU
  * decomposition is in the solution of square systems of simultaneous linear
  * equations. This will fail if isNonsingular() returns false.
+ * <P>
+ * The decomposition is stored in a single row-major array, element (i,j) is
+ * at i*n+j. It can be constructed from either a Matrix or a FlatMatrix.
  * 
  * This file based on a class from the public domain JAMA package.
  * http://math.nist.gov/javanumerics/jama/
@@ -46,9 +50,9 @@ import org.encog.mathutil.matrices.MatrixError;
 public class LUDecomposition {
 
 	/**
-	 * Array for internal storage of decomposition.
+	 * Array for internal storage of decomposition, row-major.
 	 */
-	private double[][] LU;
+	private double[] LU;
 
 	/**
 	 * Row and column dimensions, and pivot sign.
@@ -69,18 +73,38 @@ public class LUDecomposition {
 	 */
 
 	public LUDecomposition(Matrix A) {
+		this(new FlatMatrix(A).getData(), A.getRows(), A.getCols());
+	}
+
+	/**
+	 * LU Decomposition
+	 * Structure to access L, U and piv.
+	 * @param A
+	 *            Rectangular matrix, not modified.
+	 */
+
+	public LUDecomposition(FlatMatrix A) {
+		this(A.getData().clone(), A.getRows(), A.getCols());
+	}
+
+	/**
+	 * Decompose a row-major array in place.
+	 * @param theLU The matrix to decompose, becomes the decomposition.
+	 * @param rows The row count.
+	 * @param cols The column count.
+	 */
+	private LUDecomposition(double[] theLU, int rows, int cols) {
 
 		// Use a "left-looking", dot-product, Crout/Doolittle algorithm.
 
-		LU = A.getArrayCopy();
-		m = A.getRows();
-		n = A.getCols();
+		LU = theLU;
+		m = rows;
+		n = cols;
 		piv = new int[m];
 		for (int i = 0; i < m; i++) {
 			piv[i] = i;
 		}
 		pivsign = 1;
-		double[] LUrowi;
 		double[] LUcolj = new double[m];
 
 		// Outer loop.
@@ -90,23 +114,23 @@ public class LUDecomposition {
 			// Make a copy of the j-th column to localize references.
 
 			for (int i = 0; i < m; i++) {
-				LUcolj[i] = LU[i][j];
+				LUcolj[i] = LU[i * n + j];
 			}
 
 			// Apply previous transformations.
 
 			for (int i = 0; i < m; i++) {
-				LUrowi = LU[i];
+				final int rowi = i * n;
 
 				// Most of the time is spent in the following dot product.
 
 				int kmax = Math.min(i, j);
 				double s = 0.0;
 				for (int k = 0; k < kmax; k++) {
-					s += LUrowi[k] * LUcolj[k];
+					s += LU[rowi + k] * LUcolj[k];
 				}
 
-				LUrowi[j] = LUcolj[i] -= s;
+				LU[rowi + j] = LUcolj[i] -= s;
 			}
 
 			// Find pivot and exchange if necessary.
@@ -118,10 +142,12 @@ public class LUDecomposition {
 				}
 			}
 			if (p != j) {
+				final int rowp = p * n;
+				final int rowj = j * n;
 				for (int k = 0; k < n; k++) {
-					double t = LU[p][k];
-					LU[p][k] = LU[j][k];
-					LU[j][k] = t;
+					double t = LU[rowp + k];
+					LU[rowp + k] = LU[rowj + k];
+					LU[rowj + k] = t;
 				}
 				int k = piv[p];
 				piv[p] = piv[j];
@@ -131,9 +157,12 @@ public class LUDecomposition {
 
 			// Compute multipliers.
 
-			if (j < m & LU[j][j] != 0.0) {
-				for (int i = j + 1; i < m; i++) {
-					LU[i][j] /= LU[j][j];
+			if (j < m) {
+				final double ljj = LU[j * n + j];
+				if (ljj != 0.0) {
+					for (int i = j + 1; i < m; i++) {
+						LU[i * n + j] /= ljj;
+					}
 				}
 			}
 		}
@@ -147,7 +176,7 @@ public class LUDecomposition {
 
 	public boolean isNonsingular() {
 		for (int j = 0; j < n; j++) {
-			if (LU[j][j] == 0)
+			if (LU[j * n + j] == 0)
 				return false;
 		}
 		return true;
@@ -165,7 +194,7 @@ public class LUDecomposition {
 		for (int i = 0; i < m; i++) {
 			for (int j = 0; j < n; j++) {
 				if (i > j) {
-					L[i][j] = LU[i][j];
+					L[i][j] = LU[i * n + j];
 				} else if (i == j) {
 					L[i][j] = 1.0;
 				} else {
@@ -188,7 +217,7 @@ public class LUDecomposition {
 		for (int i = 0; i < n; i++) {
 			for (int j = 0; j < n; j++) {
 				if (i <= j) {
-					U[i][j] = LU[i][j];
+					U[i][j] = LU[i * n + j];
 				} else {
 					U[i][j] = 0.0;
 				}
@@ -239,7 +268,7 @@ public class LUDecomposition {
 		}
 		double d = (double) pivsign;
 		for (int j = 0; j < n; j++) {
-			d *= LU[j][j];
+			d *= LU[j * n + j];
 		}
 		return d;
 	}
@@ -273,19 +302,77 @@ public class LUDecomposition {
 		// Solve L*Y = B(piv,:)
 		for (int k = 0; k < n; k++) {
 			for (int i = k + 1; i < n; i++) {
+				final double lik = LU[i * n + k];
+				for (int j = 0; j < nx; j++) {
+					X[i][j] -= X[k][j] * lik;
+				}
+			}
+		}
+		// Solve U*X = Y;
+		for (int k = n - 1; k >= 0; k--) {
+			final double ukk = LU[k * n + k];
+			for (int j = 0; j < nx; j++) {
+				X[k][j] /= ukk;
+			}
+			for (int i = 0; i < k; i++) {
+				final double uik = LU[i * n + k];
+				for (int j = 0; j < nx; j++) {
+					X[i][j] -= X[k][j] * uik;
+				}
+			}
+		}
+		return Xmat;
+	}
+
+	/**
+	 * Solve A*X = B, where B and X are flat matrixes.
+	 * 
+	 * @param B
+	 *            A FlatMatrix with as many rows as A and any number of
+	 *            columns.
+	 * @return X so that L*U*X = B(piv,:)
+	 */
+
+	public FlatMatrix solve(FlatMatrix B) {
+		if (B.getRows() != m) {
+			throw new MatrixError("Matrix row dimensions must agree.");
+		}
+		if (!this.isNonsingular()) {
+			throw new MatrixError("Matrix is singular.");
+		}
+
+		// Copy right hand side with pivoting
+		int nx = B.getCols();
+		FlatMatrix Xmat = new FlatMatrix(m, nx);
+		double[] b = B.getData();
+		double[] X = Xmat.getData();
+		for (int i = 0; i < m; i++) {
+			System.arraycopy(b, piv[i] * nx, X, i * nx, nx);
+		}
+
+		// Solve L*Y = B(piv,:)
+		for (int k = 0; k < n; k++) {
+			final int rowk = k * nx;
+			for (int i = k + 1; i < n; i++) {
+				final double lik = LU[i * n + k];
+				final int rowi = i * nx;
 				for (int j = 0; j < nx; j++) {
-					X[i][j] -= X[k][j] * LU[i][k];
+					X[rowi + j] -= X[rowk + j] * lik;
 				}
 			}
 		}
 		// Solve U*X = Y;
 		for (int k = n - 1; k >= 0; k--) {
+			final int rowk = k * nx;
+			final double ukk = LU[k * n + k];
 			for (int j = 0; j < nx; j++) {
-				X[k][j] /= LU[k][k];
+				X[rowk + j] /= ukk;
 			}
 			for (int i = 0; i < k; i++) {
+				final double uik = LU[i * n + k];
+				final int rowi = i * nx;
 				for (int j = 0; j < nx; j++) {
-					X[i][j] -= X[k][j] * LU[i][k];
+					X[rowi + j] -= X[rowk + j] * uik;
 				}
 			}
 		}
@@ -297,7 +384,7 @@ public class LUDecomposition {
 			throw new MatrixError("value");
 		}
 
-		if (value.length != this.LU.length) {
+		if (value.length != this.m) {
 			throw new MatrixError("Invalid matrix dimensions.");
 		}
 
@@ -312,27 +399,29 @@ public class LUDecomposition {
 			b[i] = value[piv[i]];
 		}
 
-		int rows = LU[0].length;
-		int columns = LU[0].length;
-		double[][] lu = LU;
+		int rows = n;
+		int columns = n;
+		double[] lu = LU;
 
 
 		// Solve L*Y = B
 		double[] X = new double[count];
 		for (int i = 0; i < rows; i++) {
+			final int rowi = i * n;
 			X[i] = b[i];
 			for (int j = 0; j < i; j++) {
-				X[i] -= lu[i][j] * X[j];
+				X[i] -= lu[rowi + j] * X[j];
 			}
 		}
 
 		// Solve U*X = Y;
 		for (int i = rows - 1; i >= 0; i--) {
+			final int rowi = i * n;
 			// double sum = 0.0;
 			for (int j = columns - 1; j > i; j--) {
-				X[i] -= lu[i][j] * X[j];
+				X[i] -= lu[rowi + j] * X[j];
 			}
-			X[i] /= lu[i][i];
+			X[i] /= lu[rowi + i];
 		}
 		return X;
 	}
@@ -348,10 +437,10 @@ public class LUDecomposition {
             throw new MatrixError("Matrix is singular");
         }
 
-        int rows = this.LU.length;
-        int columns = LU[0].length;
+        int rows = this.m;
+        int columns = this.n;
         int count = rows;
-        double[][] lu = LU;
+        double[] lu = LU;
 
         double[][] X = new double[rows][columns];
         for (int i = 0; i < rows; i++)
@@ -365,9 +454,10 @@ public class LUDecomposition {
         {
             for (int i = k + 1; i < columns; i++)
             {
+                final double lik = lu[i * columns + k];
                 for (int j = 0; j < count; j++)
                 {
-                    X[i][j] -= X[k][j] * lu[i][k];
+                    X[i][j] -= X[k][j] * lik;
                 }
             }
         }
@@ -375,16 +465,18 @@ public class LUDecomposition {
         // Solve U*X = Y;
         for (int k = columns - 1; k >= 0; k--)
         {
+            final double ukk = lu[k * columns + k];
             for (int j = 0; j < count; j++)
             {
-                X[k][j] /= lu[k][k];
+                X[k][j] /= ukk;
             }
 
             for (int i = 0; i < k; i++)
             {
+                final double uik = lu[i * columns + k];
                 for (int j = 0; j < count; j++)
                 {
-                    X[i][j] -= X[k][j] * lu[i][k];
+                    X[i][j] -= X[k][j] * uik;
                 }
             }
         }
@@ -0,0 +1,212 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.mathutil.matrices.decomposition;
+
+import org.encog.mathutil.matrices.MatrixError;
+
+/**
+ * Cholesky decomposition of a symmetric, positive definite matrix that is
+ * stored as a packed upper triangle. Only the n*(n+1)/2 elements on or above
+ * the diagonal are stored, row by row, so row i begins with element (i,i).
+ * 
+ * The factorization is performed in place, A = R'*R where R is upper
+ * triangular. The buffers are allocated once, so the same object can be
+ * reloaded and factored repeatedly, as the Levenberg Marquardt training does
+ * each time it adjusts lambda.
+ * 
+ * If the matrix is not positive definite the factorization stops, and
+ * isSPD() will return false.
+ */
+public class PackedCholeskyDecomposition {
+
+	/**
+	 * Row and column dimension (square matrix).
+	 */
+	private final int n;
+
+	/**
+	 * The packed upper triangle. Holds A until decompose is called, then R.
+	 */
+	private final double[] packed;
+
+	/**
+	 * The offset of the diagonal element of each row.
+	 */
+	private final int[] rowStart;
+
+	/**
+	 * Symmetric and positive definite flag.
+	 */
+	private boolean isspd;
+
+	/**
+	 * Construct the decomposition buffers for a square matrix.
+	 * 
+	 * @param theSize
+	 *            The row and column dimension.
+	 */
+	public PackedCholeskyDecomposition(final int theSize) {
+		this.n = theSize;
+		this.packed = new double[(int) (((long) n * (n + 1)) / 2)];
+		this.rowStart = new int[n];
+		int index = 0;
+		for (int i = 0; i < n; i++) {
+			this.rowStart[i] = index;
+			index += n - i;
+		}
+	}
+
+	/**
+	 * Load the upper triangle of a full matrix, adding a constant to the
+	 * diagonal.
+	 * 
+	 * @param a
+	 *            The full matrix, only the upper triangle is read.
+	 * @param diagonalShift
+	 *            The value to add to every diagonal element.
+	 */
+	public void load(final double[][] a, final double diagonalShift) {
+		if (a.length != n) {
+			throw new MatrixError("Matrix row dimensions must agree.");
+		}
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(a[i], i, this.packed, this.rowStart[i], n - i);
+			this.packed[this.rowStart[i]] += diagonalShift;
+		}
+		this.isspd = false;
+	}
+
+	/**
+	 * Factor the loaded matrix in place. Each step only streams over
+	 * contiguous rows of the packed triangle.
+	 * 
+	 * @return True if the matrix was positive definite.
+	 */
+	public boolean decompose() {
+		final double[] r = this.packed;
+		this.isspd = true;
+
+		for (int k = 0; k < n; k++) {
+			final int kk = this.rowStart[k];
+			final double d = r[kk];
+			if (!(d > 0.0)) {
+				this.isspd = false;
+				return false;
+			}
+			final double rkk = Math.sqrt(d);
+			r[kk] = rkk;
+
+			// scale row k to the right of the diagonal
+			final int kEnd = kk + (n - k);
+			for (int j = kk + 1; j < kEnd; j++) {
+				r[j] /= rkk;
+			}
+
+			// update the trailing triangle, row by row
+			for (int i = k + 1; i < n; i++) {
+				final double rki = r[kk + (i - k)];
+				if (rki == 0.0) {
+					continue;
+				}
+				int ij = this.rowStart[i];
+				for (int kj = kk + (i - k); kj < kEnd; kj++) {
+					r[ij++] -= rki * r[kj];
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Solve A*x = b using the factored matrix.
+	 * 
+	 * @param b
+	 *            The right hand side.
+	 * @param x
+	 *            The solution is placed here, may be the same array as b.
+	 */
+	public void solve(final double[] b, final double[] x) {
+		if (b.length != n || x.length != n) {
+			throw new MatrixError("Matrix row dimensions must agree.");
+		}
+		if (!this.isspd) {
+			throw new MatrixError("Matrix is not symmetric positive definite.");
+		}
+
+		final double[] r = this.packed;
+
+		if (x != b) {
+			System.arraycopy(b, 0, x, 0, n);
+		}
+
+		// Solve R'*y = b
+		for (int k = 0; k < n; k++) {
+			final int kk = this.rowStart[k];
+			final double yk = x[k] / r[kk];
+			x[k] = yk;
+			if (yk != 0.0) {
+				int kj = kk + 1;
+				for (int j = k + 1; j < n; j++) {
+					x[j] -= r[kj++] * yk;
+				}
+			}
+		}
+
+		// Solve R*x = y
+		for (int i = n - 1; i >= 0; i--) {
+			final int ii = this.rowStart[i];
+			double sum = x[i];
+			int ij = ii + 1;
+			for (int j = i + 1; j < n; j++) {
+				sum -= r[ij++] * x[j];
+			}
+			x[i] = sum / r[ii];
+		}
+	}
+
+	/**
+	 * Is the matrix symmetric and positive definite?
+	 * 
+	 * @return true if A is symmetric and positive definite.
+	 */
+	public boolean isSPD() {
+		return this.isspd;
+	}
+
+	/**
+	 * @return The row and column dimension.
+	 */
+	public int getSize() {
+		return this.n;
+	}
+
+	/**
+	 * @return The packed upper triangle, either A or R depending on whether
+	 *         decompose has been called.
+	 */
+	public double[] getPacked() {
+		return this.packed;
+	}
+}
@@ -24,6 +24,7 @@
 package org.encog.mathutil.matrices.decomposition;
 
 import org.encog.mathutil.EncogMath;
+import org.encog.mathutil.matrices.FlatMatrix;
 import org.encog.mathutil.matrices.Matrix;
 
 /**
@@ -65,10 +66,29 @@ public class QRDecomposition {
 	 *            Rectangular matrix
 	 */
 	public QRDecomposition(Matrix A) {
+		this(A.getArrayCopy(), A.getRows(), A.getCols());
+	}
+
+	/**
+	 * QR Decomposition of a flat matrix, computed by Householder reflections.
+	 * @param A
+	 *            Rectangular matrix, not modified.
+	 */
+	public QRDecomposition(FlatMatrix A) {
+		this(A.getArrayCopy(), A.getRows(), A.getCols());
+	}
+
+	/**
+	 * Decompose a working copy of a matrix in place.
+	 * @param theQR The matrix to decompose, becomes the decomposition.
+	 * @param rows The row count.
+	 * @param cols The column count.
+	 */
+	private QRDecomposition(double[][] theQR, int rows, int cols) {
 		// Initialize.
-		QR = A.getArrayCopy();
-		m = A.getRows();
-		n = A.getCols();
+		QR = theQR;
+		m = rows;
+		n = cols;
 		Rdiag = new double[n];
 
 		// Main loop.
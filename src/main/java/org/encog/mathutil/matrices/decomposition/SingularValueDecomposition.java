@@ -53,6 +53,7 @@ package org.encog.mathutil.matrices.decomposition;
  * http://www.heatonresearch.com/copyright.html
  */
 import org.encog.mathutil.EncogMath;
+import org.encog.mathutil.matrices.FlatMatrix;
 import org.encog.mathutil.matrices.Matrix;
 
 /**
@@ -96,12 +97,30 @@ public class SingularValueDecomposition {
 	 *            Rectangular matrix
 	 */
 	public SingularValueDecomposition(Matrix Arg) {
+		this(Arg.getArrayCopy(), Arg.getRows(), Arg.getCols());
+	}
+
+	/**
+	 * Construct the singular value decomposition of a flat matrix.
+	 * @param Arg
+	 *            Rectangular matrix, not modified.
+	 */
+	public SingularValueDecomposition(FlatMatrix Arg) {
+		this(Arg.getArrayCopy(), Arg.getRows(), Arg.getCols());
+	}
+
+	/**
+	 * Decompose a working copy of a matrix.
+	 * @param A The working copy, it is overwritten.
+	 * @param rows The row count.
+	 * @param cols The column count.
+	 */
+	private SingularValueDecomposition(double[][] A, int rows, int cols) {
 
 		// Derived from LINPACK code.
 		// Initialize.
-		double[][] A = Arg.getArrayCopy();
-		m = Arg.getRows();
-		n = Arg.getCols();
+		m = rows;
+		n = cols;
 
 		/*
 		 * Apparently the failing cases are only a proper subset of (m<n), so
@@ -128,14 +128,20 @@ public abstract class BasicHessian implements ComputeHessian {
 	
 	/**
 	 * Update the Hessian, sum's with what is in the Hessian already.  Call clear to clear out old Hessian.
+	 * Only the upper triangle is calculated, the lower triangle is mirrored from it.
 	 * @param d
 	 */
 	public void updateHessian(double[] d) {
 		// update the hessian
 		int weightCount = this.network.getFlat().getWeights().length;
 		for(int i=0;i<weightCount;i++) {
-			for(int j=0;j<weightCount;j++) {
-				this.hessian[i][j]+=2*d[i]*d[j];
+			final double[] row = this.hessian[i];
+			final double di = 2*d[i];
+			for(int j=i;j<weightCount;j++) {
+				row[j]+=di*d[j];
+			}
+			for(int j=i+1;j<weightCount;j++) {
+				this.hessian[j][i] = row[j];
 			}
 		}
 	}
@@ -24,11 +24,13 @@
 package org.encog.mathutil.matrices.hessian;
 
 import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.mathutil.IntRange;
 import org.encog.ml.data.MLDataPair;
 import org.encog.ml.data.MLDataSet;
 import org.encog.ml.data.basic.BasicMLDataPair;
 import org.encog.neural.flat.FlatNetwork;
 import org.encog.util.EngineArray;
+import org.encog.util.concurrency.BlockWorkload;
 import org.encog.util.concurrency.EngineTask;
 
 /**
@@ -36,6 +38,13 @@ import org.encog.util.concurrency.EngineTask;
  * output of the neural network. These values are ultimatly used to calculate
  * the Hessian.
  * 
+ * Every output neuron is handled in a single pass over the worker's range of
+ * the training data, so the network is only computed once per element.
+ * 
+ * The worker either processes a fixed range of the training data, or claims
+ * blocks of it from a shared BlockWorkload, keeping the sums of each block
+ * apart so that they can be combined in block order.
+ * 
  */
 public class ChainRuleWorker implements EngineTask {
 
@@ -100,14 +109,9 @@ public class ChainRuleWorker implements EngineTask {
 	private MLDataSet training;
 	
 	/**
-	 * The output neuron to calculate for.
+	 * The total first derivatives, for each output neuron.
 	 */
-	private int outputNeuron;
-	
-	/**
-	 * The total first derivatives.
-	 */
-	private double[] totDeriv;
+	private double[][] totDeriv;
 	
 	/**
 	 * The gradients.
@@ -129,6 +133,26 @@ public class ChainRuleWorker implements EngineTask {
 	 */
 	private int high;
 	
+	/**
+	 * The blocks to claim, or null to process the fixed range.
+	 */
+	private final BlockWorkload blocks;
+
+	/**
+	 * The first derivatives of each block, for each output neuron.
+	 */
+	private final double[][][] blockDerivatives;
+
+	/**
+	 * The gradients of each block.
+	 */
+	private final double[][] blockGradients;
+
+	/**
+	 * The error of each block.
+	 */
+	private final double[] blockErrors;
+
 	/**
 	 * The pair to use for training.
 	 */
@@ -142,17 +166,50 @@ public class ChainRuleWorker implements EngineTask {
 	 * @param theHigh The high range.
 	 */
 	public ChainRuleWorker(FlatNetwork theNetwork, MLDataSet theTraining, int theLow, int theHigh) {
+		this(theNetwork, theTraining, theLow, theHigh, null, null, null, null);
+	}
+
+	/**
+	 * Construct a chain rule worker that claims blocks of the training data.
+	 * @param theNetwork The network to calculate a Hessian for.
+	 * @param theTraining The training data.
+	 * @param theBlocks The blocks of the training data, shared by all workers.
+	 * @param theBlockDerivatives The first derivatives of each block, for each
+	 * output neuron.
+	 * @param theBlockGradients The gradients of each block.
+	 * @param theBlockErrors The error of each block.
+	 */
+	public ChainRuleWorker(FlatNetwork theNetwork, MLDataSet theTraining,
+			BlockWorkload theBlocks, double[][][] theBlockDerivatives,
+			double[][] theBlockGradients, double[] theBlockErrors) {
+		this(theNetwork, theTraining, 0, -1, theBlocks, theBlockDerivatives,
+				theBlockGradients, theBlockErrors);
+	}
+
+	/**
+	 * Construct the chain rule worker for either a fixed range or blocks.
+	 */
+	private ChainRuleWorker(FlatNetwork theNetwork, MLDataSet theTraining,
+			int theLow, int theHigh, BlockWorkload theBlocks,
+			double[][][] theBlockDerivatives, double[][] theBlockGradients,
+			double[] theBlockErrors) {
 		
 		int weightCount = theNetwork.getWeights().length;
 		
 		this.training = theTraining;
 		this.flat = theNetwork;
+		this.blocks = theBlocks;
+		this.blockDerivatives = theBlockDerivatives;
+		this.blockGradients = theBlockGradients;
+		this.blockErrors = theBlockErrors;
 		
 		this.layerDelta = new double[flat.getLayerOutput().length];	
 		this.actual = new double[flat.getOutputCount()];
 		this.derivative = new double[weightCount];
-		this.totDeriv = new double[weightCount];
-		this.gradients = new double[weightCount];
+		if (theBlocks == null) {
+			this.totDeriv = new double[flat.getOutputCount()][weightCount];
+			this.gradients = new double[weightCount];
+		}
 
 		this.weights = flat.getWeights();
 		this.layerIndex = flat.getLayerIndex();
@@ -173,37 +230,58 @@ public class ChainRuleWorker implements EngineTask {
 	 */
 	@Override
 	public void run() {
+		if (this.blocks == null) {
+			processRange(this.low, this.high);
+		} else {
+			int index;
+			while ((index = this.blocks.claim()) != -1) {
+				final IntRange block = this.blocks.getBlock(index);
+				this.totDeriv = this.blockDerivatives[index];
+				this.gradients = this.blockGradients[index];
+				processRange(block.getLow(), block.getHigh());
+				this.blockErrors[index] = this.error;
+			}
+		}
+	}
+
+	/**
+	 * Calculate the sums for a range of the training data.
+	 * 
+	 * @param theLow
+	 *            The first element.
+	 * @param theHigh
+	 *            The last element.
+	 */
+	private void processRange(final int theLow, final int theHigh) {
 		this.error = 0;
-		EngineArray.fill(this.totDeriv, 0);
+		for (int i = 0; i < this.totDeriv.length; i++) {
+			EngineArray.fill(this.totDeriv[i], 0);
+		}
 		EngineArray.fill(this.gradients, 0);
-		
-		
+
 		// Loop over every training element
-		for (int i = this.low; i <= this.high; i++) {
+		for (int i = theLow; i <= theHigh; i++) {
 			this.training.getRecord(i, this.pair);
-		
-			EngineArray.fill(this.derivative, 0);
-
-
-
-			process(outputNeuron, pair.getInputArray(), pair.getIdealArray());
-
+			this.flat.compute(this.pair.getInputArray(), this.actual);
 
+			for (int outputNeuron = 0; outputNeuron < this.actual.length; outputNeuron++) {
+				EngineArray.fill(this.derivative, 0);
+				process(outputNeuron, this.pair.getIdealArray());
+			}
 		}
-		
+
 	}
 
 	/**
-	 * Process one training set element.
+	 * Process one training set element for one output neuron. The network
+	 * must already have been computed for the element.
 	 * 
-	 * @param input
-	 *            The network input.
+	 * @param outputNeuron
+	 *            The output neuron to calculate for.
 	 * @param ideal
 	 *            The ideal values.      
 	 */
-	private void process(int outputNeuron, final double[] input, final double[] ideal) {
-				
-		this.flat.compute(input, this.actual);
+	private void process(final int outputNeuron, final double[] ideal) {
 		
 		double e = ideal[outputNeuron] - this.actual[outputNeuron];
 		this.error+=e*e;
@@ -224,9 +302,10 @@ public class ChainRuleWorker implements EngineTask {
 		}
 				
 		// calculate gradients
+		final double[] t = this.totDeriv[outputNeuron];
 		for (int j = 0; j < this.weights.length; j++) {
 			this.gradients[j] += e * this.derivative[j];
-			totDeriv[j] += this.derivative[j];
+			t[j] += this.derivative[j];
 		}
 	}
 
@@ -268,24 +347,13 @@ public class ChainRuleWorker implements EngineTask {
 
 
 	/**
-	 * @return the outputNeuron
-	 */
-	public int getOutputNeuron() {
-		return outputNeuron;
-	}
-
-	/**
-	 * @param outputNeuron the outputNeuron to set
-	 */
-	public void setOutputNeuron(int outputNeuron) {
-		this.outputNeuron = outputNeuron;
-	}
-	
-	/**
-	 * @return The first derivatives, used to calculate the Hessian.
+	 * @param outputNeuron
+	 *            The output neuron.
+	 * @return The first derivatives for the specified output neuron, used to
+	 *         calculate the Hessian.
 	 */
-	public double[] getDerivative() {
-		return this.totDeriv;
+	public double[] getDerivative(final int outputNeuron) {
+		return this.totDeriv[outputNeuron];
 	}
 
 
@@ -24,9 +24,10 @@
 package org.encog.mathutil.matrices.hessian;
 
 import org.encog.mathutil.IntRange;
-import org.encog.mathutil.matrices.Matrix;
 import org.encog.ml.data.MLDataSet;
 import org.encog.neural.networks.BasicNetwork;
+import org.encog.util.EngineArray;
+import org.encog.util.concurrency.BlockWorkload;
 import org.encog.util.concurrency.DetermineWorkload;
 import org.encog.util.concurrency.EngineConcurrency;
 import org.encog.util.concurrency.MultiThreadable;
@@ -35,6 +36,14 @@ import org.encog.util.concurrency.TaskGroup;
 /**
  * Calculate the Hessian matrix using the chain rule method. 
  * 
+ * The training data is split into blocks that several ChainRuleWorker objects
+ * claim as they go, keeping partial sums of the first derivatives and
+ * gradients for every output neuron per block.  Once all workers are done the
+ * partial sums are combined in block order, and the Hessian rows are updated
+ * in parallel by HessianRowWorker objects.  The result does not depend on
+ * which worker ran which block.  Networks with context neurons use a fixed
+ * range of the training data per worker instead.
+ * 
  */
 public class HessianCR extends BasicHessian implements MultiThreadable {
 	
@@ -48,6 +57,37 @@ public class HessianCR extends BasicHessian implements MultiThreadable {
 	 */
 	private ChainRuleWorker[] workers;
 	
+	/**
+	 * The workers that update the rows of the Hessian.
+	 */
+	private HessianRowWorker[] rowWorkers;
+	
+	/**
+	 * The blocks of the training data, or null if each worker has a fixed
+	 * range.
+	 */
+	private BlockWorkload blocks;
+
+	/**
+	 * The first derivatives of each block, for each output neuron.
+	 */
+	private double[][][] blockDerivatives;
+
+	/**
+	 * The gradients of each block.
+	 */
+	private double[][] blockGradients;
+
+	/**
+	 * The error of each block.
+	 */
+	private double[] blockErrors;
+
+	/**
+	 * The combined first derivatives, one array per output neuron.
+	 */
+	private double[][] derivatives;
+	
 	
 	/**
 	 * {@inheritDoc}
@@ -59,9 +99,7 @@ public class HessianCR extends BasicHessian implements MultiThreadable {
 		
 		this.training = theTraining;
 		this.network = theNetwork;
-		
-		this.hessianMatrix = new Matrix(weightCount,weightCount);
-		this.hessian = this.hessianMatrix.getData();
+		this.derivatives = new double[theNetwork.getOutputCount()][weightCount];
 		
 		// create worker(s)
 		final DetermineWorkload determine = new DetermineWorkload(
@@ -69,13 +107,39 @@ public class HessianCR extends BasicHessian implements MultiThreadable {
 
 		this.workers = new ChainRuleWorker[determine.getThreadCount()];
 
-		int index = 0;
+		if (this.flat.getHasContext()) {
+			this.blocks = null;
+			int index = 0;
+
+			// handle CPU
+			for (final IntRange r : determine.calculateWorkers()) {
+				this.workers[index++] = new ChainRuleWorker(this.flat.clone(),
+						this.training.openAdditional(), r.getLow(),
+						r.getHigh());
+			}
+		} else {
+			this.blocks = determine.calculateBlocks();
+			final int blockCount = this.blocks.getBlockCount();
+			this.blockDerivatives = new double[blockCount][theNetwork
+					.getOutputCount()][weightCount];
+			this.blockGradients = new double[blockCount][weightCount];
+			this.blockErrors = new double[blockCount];
 
-		// handle CPU
-		for (final IntRange r : determine.calculateWorkers()) {
-			this.workers[index++] = new ChainRuleWorker(this.flat.clone(),
-					this.training.openAdditional(), r.getLow(),
-					r.getHigh());
+			for (int i = 0; i < this.workers.length; i++) {
+				this.workers[i] = new ChainRuleWorker(this.flat.clone(),
+						this.training.openAdditional(), this.blocks,
+						this.blockDerivatives, this.blockGradients,
+						this.blockErrors);
+			}
+		}
+		
+		// the Hessian rows are split by weight, not by training element
+		final DetermineWorkload determineRows = new DetermineWorkload(
+				this.numThreads, weightCount);
+		this.rowWorkers = new HessianRowWorker[determineRows.getThreadCount()];
+		for (int i = 0; i < this.rowWorkers.length; i++) {
+			this.rowWorkers[i] = new HessianRowWorker(this.hessian,
+					this.derivatives, i, this.rowWorkers.length);
 		}
 		
 	}
@@ -86,45 +150,97 @@ public class HessianCR extends BasicHessian implements MultiThreadable {
 	public void compute() {		
 		clear();
 		double e = 0;
-		int weightCount = this.network.getFlat().getWeights().length;
 		
-		for (int outputNeuron = 0; outputNeuron < this.network.getOutputCount(); outputNeuron++) {
-		
-			// handle context
-			if (this.flat.getHasContext()) {
-				this.workers[0].getNetwork().clearContext();
+		// handle context
+		if (this.flat.getHasContext()) {
+			for (final ChainRuleWorker worker : this.workers) {
+				worker.getNetwork().clearContext();
 			}
+		}
 
-			if (this.workers.length > 1) {
+		if (this.blocks != null) {
+			this.blocks.reset();
+		}
 
-				final TaskGroup group = EngineConcurrency.getInstance()
-						.createTaskGroup();
+		// calculate the first derivatives for every output neuron at once
+		if (this.workers.length > 1) {
 
-				for (final ChainRuleWorker worker : this.workers) {
-					worker.setOutputNeuron(outputNeuron);
-					EngineConcurrency.getInstance().processTask(worker, group);
-				}
+			final TaskGroup group = EngineConcurrency.getInstance()
+					.createTaskGroup();
 
-				group.waitForComplete();
-			} else {
-				this.workers[0].setOutputNeuron(outputNeuron);
-				this.workers[0].run();
+			for (final ChainRuleWorker worker : this.workers) {
+				EngineConcurrency.getInstance().processTask(worker, group);
 			}
-			
-			// aggregate workers
 
+			group.waitForComplete();
+		} else {
+			this.workers[0].run();
+		}
+		
+		// aggregate workers
+		for (int outputNeuron = 0; outputNeuron < this.derivatives.length; outputNeuron++) {
+			EngineArray.fill(this.derivatives[outputNeuron], 0);
+		}
+
+		if (this.blocks != null) {
+			// in block order, so the result does not depend on timing
+			for (int b = 0; b < this.blockErrors.length; b++) {
+				e += aggregate(this.blockErrors[b], this.blockGradients[b],
+						this.blockDerivatives[b]);
+			}
+		} else {
 			for (final ChainRuleWorker worker : this.workers) {
-				e+=worker.getError();
-				for(int i=0;i<weightCount;i++) {
-					this.gradients[i] += worker.getGradients()[i];
+				final double[][] wd = new double[this.derivatives.length][];
+				for (int outputNeuron = 0; outputNeuron < wd.length; outputNeuron++) {
+					wd[outputNeuron] = worker.getDerivative(outputNeuron);
 				}
-				updateHessian(worker.getDerivative());
+				e += aggregate(worker.getError(), worker.getGradients(), wd);
+			}
+		}
+		
+		// update the Hessian
+		if (this.rowWorkers.length > 1) {
+			final TaskGroup group = EngineConcurrency.getInstance()
+					.createTaskGroup();
+
+			for (final HessianRowWorker worker : this.rowWorkers) {
+				EngineConcurrency.getInstance().processTask(worker, group);
 			}
+
+			group.waitForComplete();
+		} else {
+			this.rowWorkers[0].run();
 		}
 		
 		sse= e/2;
 	}
 	
+	/**
+	 * Add one set of partial sums to the gradients and first derivatives.
+	 * 
+	 * @param error
+	 *            The partial error.
+	 * @param g
+	 *            The partial gradients.
+	 * @param deriv
+	 *            The partial first derivatives, for each output neuron.
+	 * @return The partial error.
+	 */
+	private double aggregate(final double error, final double[] g,
+			final double[][] deriv) {
+		for (int i = 0; i < g.length; i++) {
+			this.gradients[i] += g[i];
+		}
+		for (int outputNeuron = 0; outputNeuron < this.derivatives.length; outputNeuron++) {
+			final double[] d = this.derivatives[outputNeuron];
+			final double[] wd = deriv[outputNeuron];
+			for (int i = 0; i < wd.length; i++) {
+				d[i] += wd[i];
+			}
+		}
+		return error;
+	}
+
 	/**
 	 * Set the number of threads. Specify zero to tell Encog to automatically
 	 * determine the best number of threads for the processor. If OpenCL is used
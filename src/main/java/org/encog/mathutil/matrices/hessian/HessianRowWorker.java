@@ -0,0 +1,107 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.mathutil.matrices.hessian;
+
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * A threaded worker that adds the outer products of the first derivatives to
+ * a range of Hessian rows. Only the upper triangle is calculated, the lower
+ * triangle is then mirrored from it.
+ * 
+ * Rows are assigned to workers in an interleaved fashion, row first, then
+ * first+stride and so on. Because the rows of the upper triangle shrink, this
+ * keeps the amount of work for each worker about the same. No two workers
+ * ever write to the same element.
+ */
+public class HessianRowWorker implements EngineTask {
+
+	/**
+	 * The Hessian to update.
+	 */
+	private final double[][] hessian;
+
+	/**
+	 * The summed first derivatives, one array per output neuron.
+	 */
+	private final double[][] derivatives;
+
+	/**
+	 * The first row this worker handles.
+	 */
+	private final int first;
+
+	/**
+	 * The distance between rows this worker handles.
+	 */
+	private final int stride;
+
+	/**
+	 * Construct the worker.
+	 * 
+	 * @param theHessian
+	 *            The Hessian to update.
+	 * @param theDerivatives
+	 *            The first derivatives, one array per output neuron.
+	 * @param theFirst
+	 *            The first row to handle.
+	 * @param theStride
+	 *            The distance between rows, usually the worker count.
+	 */
+	public HessianRowWorker(final double[][] theHessian,
+			final double[][] theDerivatives, final int theFirst,
+			final int theStride) {
+		this.hessian = theHessian;
+		this.derivatives = theDerivatives;
+		this.first = theFirst;
+		this.stride = theStride;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void run() {
+		final int weightCount = this.hessian.length;
+
+		for (int i = this.first; i < weightCount; i += this.stride) {
+			final double[] row = this.hessian[i];
+
+			for (final double[] d : this.derivatives) {
+				final double di = 2 * d[i];
+				if (di == 0) {
+					continue;
+				}
+				for (int j = i; j < weightCount; j++) {
+					row[j] += di * d[j];
+				}
+			}
+
+			// mirror into the lower triangle
+			for (int j = i + 1; j < weightCount; j++) {
+				this.hessian[j][i] = row[j];
+			}
+		}
+	}
+}
@@ -94,6 +94,11 @@ public class BayesianNetwork extends BasicML implements MLClassification, MLRese
 	 */
 	private double[] classificationProbabilities;
 
+	/**
+	 * The compiled form of this network, built when first needed.
+	 */
+	private transient CompiledBayesianNetwork compiled;
+
 	public BayesianNetwork() {
 		this.query = new EnumerationQuery(this);
 	}
@@ -520,6 +525,22 @@ public class BayesianNetwork extends BasicML implements MLClassification, MLRese
 		return isCondIndependent(false, a, b, searched, given);
 	}
 
+	/**
+	 * Obtain the compiled form of this network. The compiled form is cached,
+	 * and only rebuilt if the structure of the network has changed. The
+	 * probabilities are refreshed from the truth tables each time.
+	 * 
+	 * @return The compiled network.
+	 */
+	public CompiledBayesianNetwork getCompiled() {
+		if (this.compiled == null || !this.compiled.isCompiledFrom(this)) {
+			this.compiled = new CompiledBayesianNetwork(this);
+		} else {
+			this.compiled.updateProbabilities();
+		}
+		return this.compiled;
+	}
+
 	public BayesianQuery getQuery() {
 		return query;
 	}
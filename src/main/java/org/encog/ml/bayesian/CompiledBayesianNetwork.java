@@ -0,0 +1,382 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.bayesian;
+
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.encog.ml.bayesian.table.TableLine;
+
+/**
+ * A Bayesian network compiled into flat primitive arrays. Every event is
+ * referred to by its index in BayesianNetwork.getEvents(), and every truth
+ * table is stored as a single array of probabilities.
+ * 
+ * The probability table of an event covers the event and its parents. The
+ * event's own value changes fastest, then the first parent, and so on. So the
+ * probability of value v, given the parent values p0, p1, ... is found at
+ * v + p0*stride[0] + p1*stride[1] + ..., where the parent strides are given by
+ * getParentStrides().
+ * 
+ * The compiled form also holds a topological order of the events and an
+ * elimination order, found with the greedy min-fill heuristic on the moral
+ * graph. The elimination order is used by the variable elimination query.
+ * 
+ * The structure is compiled once. The probabilities are copied from the truth
+ * tables by updateProbabilities, which is cheap, so that changes made by
+ * training are always seen.
+ */
+public class CompiledBayesianNetwork implements Serializable {
+
+	/**
+	 * The serial id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The events that were compiled, in network order.
+	 */
+	private final BayesianEvent[] events;
+
+	/**
+	 * The number of choices for each event.
+	 */
+	private final int[] cardinality;
+
+	/**
+	 * The parent indexes for each event.
+	 */
+	private final int[][] parents;
+
+	/**
+	 * The stride of each parent in the probability table for each event.
+	 */
+	private final int[][] parentStrides;
+
+	/**
+	 * The probability table for each event.
+	 */
+	private final double[][] tables;
+
+	/**
+	 * The events in topological order, parents always before children.
+	 */
+	private final int[] topologicalOrder;
+
+	/**
+	 * The order that hidden events should be eliminated in.
+	 */
+	private final int[] eliminationOrder;
+
+	/**
+	 * Compile the specified network. The network's structure must be
+	 * finalized.
+	 * 
+	 * @param network
+	 *            The network to compile.
+	 */
+	public CompiledBayesianNetwork(final BayesianNetwork network) {
+		final List<BayesianEvent> list = network.getEvents();
+		final int n = list.size();
+		final Map<BayesianEvent, Integer> index = new IdentityHashMap<BayesianEvent, Integer>();
+
+		this.events = new BayesianEvent[n];
+		this.cardinality = new int[n];
+		for (int i = 0; i < n; i++) {
+			this.events[i] = list.get(i);
+			this.cardinality[i] = this.events[i].getChoices().size();
+			index.put(this.events[i], i);
+		}
+
+		this.parents = new int[n][];
+		this.parentStrides = new int[n][];
+		this.tables = new double[n][];
+
+		for (int i = 0; i < n; i++) {
+			final List<BayesianEvent> p = this.events[i].getParents();
+			this.parents[i] = new int[p.size()];
+			this.parentStrides[i] = new int[p.size()];
+			int stride = this.cardinality[i];
+			for (int j = 0; j < p.size(); j++) {
+				final Integer parentIndex = index.get(p.get(j));
+				if (parentIndex == null) {
+					throw new BayesianError("The parent " + p.get(j)
+							+ " of event " + this.events[i]
+							+ " is not part of the network.");
+				}
+				this.parents[i][j] = parentIndex;
+				this.parentStrides[i][j] = stride;
+				stride *= this.cardinality[parentIndex];
+			}
+			this.tables[i] = new double[stride];
+		}
+
+		this.topologicalOrder = determineTopologicalOrder();
+		this.eliminationOrder = determineEliminationOrder();
+		updateProbabilities();
+	}
+
+	/**
+	 * @return The events, in topological order.
+	 */
+	private int[] determineTopologicalOrder() {
+		final int n = this.events.length;
+		final int[] result = new int[n];
+		final int[] remainingParents = new int[n];
+		int head = 0;
+		int tail = 0;
+
+		for (int i = 0; i < n; i++) {
+			remainingParents[i] = this.parents[i].length;
+			if (remainingParents[i] == 0) {
+				result[tail++] = i;
+			}
+		}
+
+		// a child is added once all of its parents have been added
+		while (head < tail) {
+			final int current = result[head++];
+			for (int i = 0; i < n; i++) {
+				for (final int p : this.parents[i]) {
+					if (p == current && --remainingParents[i] == 0) {
+						result[tail++] = i;
+					}
+				}
+			}
+		}
+
+		if (tail != n) {
+			throw new BayesianError(
+					"The Bayesian network contains a cycle, it can't be compiled.");
+		}
+
+		return result;
+	}
+
+	/**
+	 * Determine the elimination order with the greedy min-fill heuristic.
+	 * The event that adds the fewest new edges to the moral graph is removed
+	 * first, ties are broken by the smallest factor that would be created.
+	 * 
+	 * @return The elimination order.
+	 */
+	private int[] determineEliminationOrder() {
+		final int n = this.events.length;
+		final boolean[][] adjacent = new boolean[n][n];
+
+		// moralize: connect each event to its parents, and the parents to each
+		// other
+		for (int i = 0; i < n; i++) {
+			final int[] p = this.parents[i];
+			for (int j = 0; j < p.length; j++) {
+				adjacent[i][p[j]] = adjacent[p[j]][i] = true;
+				for (int k = j + 1; k < p.length; k++) {
+					adjacent[p[j]][p[k]] = adjacent[p[k]][p[j]] = true;
+				}
+			}
+		}
+
+		final boolean[] eliminated = new boolean[n];
+		final int[] result = new int[n];
+
+		for (int step = 0; step < n; step++) {
+			int best = -1;
+			int bestFill = Integer.MAX_VALUE;
+			double bestWeight = Double.POSITIVE_INFINITY;
+
+			for (int v = 0; v < n; v++) {
+				if (eliminated[v]) {
+					continue;
+				}
+				int fill = 0;
+				double weight = this.cardinality[v];
+				for (int a = 0; a < n; a++) {
+					if (eliminated[a] || !adjacent[v][a]) {
+						continue;
+					}
+					weight *= this.cardinality[a];
+					for (int b = a + 1; b < n; b++) {
+						if (!eliminated[b] && adjacent[v][b] && !adjacent[a][b]) {
+							fill++;
+						}
+					}
+				}
+				if (fill < bestFill || (fill == bestFill && weight < bestWeight)) {
+					best = v;
+					bestFill = fill;
+					bestWeight = weight;
+				}
+			}
+
+			// connect the neighbors of the eliminated event
+			for (int a = 0; a < n; a++) {
+				if (eliminated[a] || !adjacent[best][a]) {
+					continue;
+				}
+				for (int b = a + 1; b < n; b++) {
+					if (!eliminated[b] && adjacent[best][b]) {
+						adjacent[a][b] = adjacent[b][a] = true;
+					}
+				}
+			}
+
+			eliminated[best] = true;
+			result[step] = best;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Copy the probabilities from the truth tables of the events.
+	 */
+	public void updateProbabilities() {
+		for (int i = 0; i < this.events.length; i++) {
+			final double[] table = this.tables[i];
+			final int[] strides = this.parentStrides[i];
+			for (final TableLine line : this.events[i].getTable().getLines()) {
+				final int[] args = line.getArguments();
+				int offset = line.getResult();
+				for (int j = 0; j < strides.length; j++) {
+					offset += args[j] * strides[j];
+				}
+				table[offset] = line.getProbability();
+			}
+		}
+	}
+
+	/**
+	 * Determine if this compiled form still matches the structure of a
+	 * network: the same events, with the same parents and the same number of
+	 * choices.
+	 * 
+	 * @param network
+	 *            The network to check.
+	 * @return True if the compiled form can be used for the network.
+	 */
+	public boolean isCompiledFrom(final BayesianNetwork network) {
+		final List<BayesianEvent> list = network.getEvents();
+		if (list.size() != this.events.length) {
+			return false;
+		}
+
+		for (int i = 0; i < this.events.length; i++) {
+			final BayesianEvent event = list.get(i);
+			if (event != this.events[i]
+					|| event.getChoices().size() != this.cardinality[i]
+					|| event.getTable() == null) {
+				return false;
+			}
+			final List<BayesianEvent> p = event.getParents();
+			if (p.size() != this.parents[i].length) {
+				return false;
+			}
+			for (int j = 0; j < p.size(); j++) {
+				if (p.get(j) != this.events[this.parents[i][j]]) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Look up the probability of an event's value, given the values of all
+	 * events.
+	 * 
+	 * @param event
+	 *            The event index.
+	 * @param values
+	 *            The value of every event, by index.
+	 * @return The probability.
+	 */
+	public double getProbability(final int event, final int[] values) {
+		final int[] p = this.parents[event];
+		final int[] strides = this.parentStrides[event];
+		int offset = values[event];
+		for (int j = 0; j < p.length; j++) {
+			offset += values[p[j]] * strides[j];
+		}
+		return this.tables[event][offset];
+	}
+
+	/**
+	 * @return The number of events.
+	 */
+	public int getEventCount() {
+		return this.events.length;
+	}
+
+	/**
+	 * @return The compiled events, in network order.
+	 */
+	public BayesianEvent[] getEvents() {
+		return this.events;
+	}
+
+	/**
+	 * @return The number of choices for each event.
+	 */
+	public int[] getCardinality() {
+		return this.cardinality;
+	}
+
+	/**
+	 * @return The parent indexes for each event.
+	 */
+	public int[][] getParents() {
+		return this.parents;
+	}
+
+	/**
+	 * @return The stride of each parent in the probability tables.
+	 */
+	public int[][] getParentStrides() {
+		return this.parentStrides;
+	}
+
+	/**
+	 * @return The probability table of each event.
+	 */
+	public double[][] getTables() {
+		return this.tables;
+	}
+
+	/**
+	 * @return The events in topological order.
+	 */
+	public int[] getTopologicalOrder() {
+		return this.topologicalOrder;
+	}
+
+	/**
+	 * @return The elimination order.
+	 */
+	public int[] getEliminationOrder() {
+		return this.eliminationOrder;
+	}
+}
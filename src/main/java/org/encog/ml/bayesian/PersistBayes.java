@@ -28,6 +28,7 @@ import java.io.OutputStream;
 import java.util.Map;
 
 import org.encog.ml.bayesian.query.BayesianQuery;
+import org.encog.ml.bayesian.query.elimination.EliminationQuery;
 import org.encog.ml.bayesian.query.enumerate.EnumerationQuery;
 import org.encog.ml.bayesian.query.sample.SamplingQuery;
 import org.encog.ml.bayesian.table.TableLine;
@@ -98,6 +99,8 @@ public class PersistBayes implements EncogPersistor {
 			BayesianQuery query = null;
 			if (queryType.equals("EnumerationQuery")) {
 				query = new EnumerationQuery(result);
+			} else if (queryType.equals("EliminationQuery")) {
+				query = new EliminationQuery(result);
 			} else {
 				query = new SamplingQuery(result);
 			}
@@ -0,0 +1,279 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.bayesian.query.elimination;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.encog.ml.bayesian.BayesianEvent;
+import org.encog.ml.bayesian.BayesianNetwork;
+import org.encog.ml.bayesian.CompiledBayesianNetwork;
+import org.encog.ml.bayesian.EventType;
+import org.encog.ml.bayesian.query.BasicQuery;
+import org.encog.ml.bayesian.query.sample.EventState;
+import org.encog.util.Format;
+
+/**
+ * A variable elimination query allows exact probabilistic queries on a
+ * Bayesian network. It gives the same results as the enumeration query, but
+ * rather than rolling through every combination of the hidden events, the
+ * hidden events are summed out one at a time, in the elimination order of the
+ * compiled network. Events that are not ancestors of the evidence or outcome
+ * have no effect on the result, and are skipped.
+ * 
+ * The cost depends on the largest factor that elimination creates, rather
+ * than on the total number of events. This makes exact queries practical on
+ * networks that are much too large for enumeration.
+ * 
+ * The network is compiled once into flat probability tables, and the compiled
+ * form is cached on the network, so repeated queries with different evidence
+ * do not repeat that work.
+ */
+public class EliminationQuery extends BasicQuery implements Serializable {
+
+	/**
+	 * The serial ID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The calculated probability.
+	 */
+	private double probability;
+
+	/**
+	 * Default constructor.
+	 */
+	public EliminationQuery() {
+
+	}
+
+	/**
+	 * Construct the variable elimination query.
+	 * 
+	 * @param theNetwork
+	 *            The Bayesian network to query.
+	 */
+	public EliminationQuery(final BayesianNetwork theNetwork) {
+		super(theNetwork);
+	}
+
+	/**
+	 * Sum out every event that is not fixed. The result is the probability
+	 * that the fixed events take their fixed values.
+	 * 
+	 * @param compiled
+	 *            The compiled network.
+	 * @param fixed
+	 *            The value of each fixed event, or -1 for events to sum out.
+	 * @return The probability of the fixed values.
+	 */
+	public static double eliminate(final CompiledBayesianNetwork compiled,
+			final int[] fixed) {
+		final int n = compiled.getEventCount();
+		final int[][] parents = compiled.getParents();
+
+		// only the ancestors of the fixed events matter
+		final boolean[] relevant = new boolean[n];
+		final int[] stack = new int[n];
+		int top = 0;
+		for (int i = 0; i < n; i++) {
+			if (fixed[i] != -1) {
+				relevant[i] = true;
+				stack[top++] = i;
+			}
+		}
+		while (top > 0) {
+			final int current = stack[--top];
+			for (final int p : parents[current]) {
+				if (!relevant[p]) {
+					relevant[p] = true;
+					stack[top++] = p;
+				}
+			}
+		}
+
+		final List<Factor> factors = new ArrayList<Factor>();
+		for (int i = 0; i < n; i++) {
+			if (relevant[i]) {
+				factors.add(createFactor(compiled, i, fixed));
+			}
+		}
+
+		for (final int var : compiled.getEliminationOrder()) {
+			if (!relevant[var] || fixed[var] != -1) {
+				continue;
+			}
+
+			Factor combined = null;
+			for (int i = factors.size() - 1; i >= 0; i--) {
+				final Factor factor = factors.get(i);
+				if (factor.indexOf(var) != -1) {
+					combined = (combined == null) ? factor : Factor.product(
+							combined, factor);
+					factors.remove(i);
+				}
+			}
+
+			if (combined != null) {
+				factors.add(combined.sumOut(var));
+			}
+		}
+
+		double result = 1;
+		for (final Factor factor : factors) {
+			result *= factor.getValues()[0];
+		}
+		return result;
+	}
+
+	/**
+	 * Create the factor for one event's probability table, with the fixed
+	 * events already reduced to their values.
+	 * 
+	 * @param compiled
+	 *            The compiled network.
+	 * @param event
+	 *            The event index.
+	 * @param fixed
+	 *            The value of each fixed event, or -1.
+	 * @return The factor, over the event and its parents that are not fixed.
+	 */
+	private static Factor createFactor(final CompiledBayesianNetwork compiled,
+			final int event, final int[] fixed) {
+		final int[] parents = compiled.getParents()[event];
+		final int[] parentStrides = compiled.getParentStrides()[event];
+		final int[] cardinality = compiled.getCardinality();
+		final double[] table = compiled.getTables()[event];
+
+		// the scope is the event, then its parents; the event has stride 1
+		final int scopeSize = parents.length + 1;
+		final int[] scope = new int[scopeSize];
+		final int[] scopeStride = new int[scopeSize];
+		scope[0] = event;
+		scopeStride[0] = 1;
+		for (int j = 0; j < parents.length; j++) {
+			scope[j + 1] = parents[j];
+			scopeStride[j + 1] = parentStrides[j];
+		}
+
+		// the fixed events are folded into the base offset
+		int base = 0;
+		int freeCount = 0;
+		final long[] free = new long[scopeSize];
+		for (int j = 0; j < scopeSize; j++) {
+			if (fixed[scope[j]] != -1) {
+				base += fixed[scope[j]] * scopeStride[j];
+			} else {
+				// sort by event index, carrying the stride along
+				free[freeCount++] = ((long) scope[j] << 32) | scopeStride[j];
+			}
+		}
+		Arrays.sort(free, 0, freeCount);
+
+		final int[] vars = new int[freeCount];
+		final int[] cards = new int[freeCount];
+		final int[] strides = new int[freeCount];
+		for (int j = 0; j < freeCount; j++) {
+			vars[j] = (int) (free[j] >>> 32);
+			strides[j] = (int) free[j];
+			cards[j] = cardinality[vars[j]];
+		}
+
+		final Factor result = new Factor(vars, cards);
+		final double[] values = result.getValues();
+		final int[] assignment = new int[freeCount];
+		int offset = base;
+		for (int r = 0; r < values.length; r++) {
+			values[r] = table[offset];
+			for (int k = 0; k < freeCount; k++) {
+				assignment[k]++;
+				if (assignment[k] == cards[k]) {
+					assignment[k] = 0;
+					offset -= (cards[k] - 1) * strides[k];
+				} else {
+					offset += strides[k];
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void execute() {
+		locateEventTypes();
+		final BayesianNetwork network = getNetwork();
+		final CompiledBayesianNetwork compiled = network.getCompiled();
+		final int[] fixed = new int[compiled.getEventCount()];
+		Arrays.fill(fixed, -1);
+
+		for (final BayesianEvent event : getEvidenceEvents()) {
+			fixed[network.getEventIndex(event)] = getEventState(event)
+					.getCompareValue();
+		}
+
+		final double denominator = eliminate(compiled, fixed);
+
+		for (final BayesianEvent event : getOutcomeEvents()) {
+			final EventState state = getEventState(event);
+			fixed[network.getEventIndex(event)] = state.getCompareValue();
+		}
+
+		final double numerator = eliminate(compiled, fixed);
+		this.probability = numerator / denominator;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getProbability() {
+		return this.probability;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append("[EliminationQuery: ");
+		result.append(getProblem());
+		result.append("=");
+		result.append(Format.formatPercent(getProbability()));
+		result.append("]");
+		return result.toString();
+	}
+
+	/**
+	 * @return A clone of this object.
+	 */
+	public EliminationQuery clone() {
+		return new EliminationQuery(this.getNetwork());
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.bayesian.query.elimination;
+
+/**
+ * A factor over a set of discrete events, used by variable elimination. The
+ * events are held in ascending index order. The first event's value changes
+ * fastest in the value array, then the second and so on.
+ */
+public class Factor {
+
+	/**
+	 * The event indexes this factor covers, ascending.
+	 */
+	private final int[] vars;
+
+	/**
+	 * The number of choices for each event.
+	 */
+	private final int[] cards;
+
+	/**
+	 * The stride of each event in the value array.
+	 */
+	private final int[] strides;
+
+	/**
+	 * The values.
+	 */
+	private final double[] values;
+
+	/**
+	 * Construct a factor, with all values zero.
+	 * 
+	 * @param theVars
+	 *            The event indexes, must be ascending.
+	 * @param theCards
+	 *            The number of choices for each event.
+	 */
+	public Factor(final int[] theVars, final int[] theCards) {
+		this.vars = theVars;
+		this.cards = theCards;
+		this.strides = new int[theVars.length];
+		int size = 1;
+		for (int i = 0; i < theVars.length; i++) {
+			this.strides[i] = size;
+			size *= theCards[i];
+		}
+		this.values = new double[size];
+	}
+
+	/**
+	 * Find the position of an event in this factor.
+	 * 
+	 * @param var
+	 *            The event index.
+	 * @return The position, or -1 if the event is not covered.
+	 */
+	public int indexOf(final int var) {
+		for (int i = 0; i < this.vars.length; i++) {
+			if (this.vars[i] == var) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Multiply two factors.
+	 * 
+	 * @param a
+	 *            The first factor.
+	 * @param b
+	 *            The second factor.
+	 * @return A factor over the union of both factors' events.
+	 */
+	public static Factor product(final Factor a, final Factor b) {
+		// merge the two sorted event lists
+		final int[] mergedVars = new int[a.vars.length + b.vars.length];
+		final int[] mergedCards = new int[mergedVars.length];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.vars.length || j < b.vars.length) {
+			if (j >= b.vars.length
+					|| (i < a.vars.length && a.vars[i] < b.vars[j])) {
+				mergedVars[count] = a.vars[i];
+				mergedCards[count++] = a.cards[i++];
+			} else if (i >= a.vars.length || b.vars[j] < a.vars[i]) {
+				mergedVars[count] = b.vars[j];
+				mergedCards[count++] = b.cards[j++];
+			} else {
+				mergedVars[count] = a.vars[i];
+				mergedCards[count++] = a.cards[i++];
+				j++;
+			}
+		}
+
+		final int[] vars = new int[count];
+		final int[] cards = new int[count];
+		System.arraycopy(mergedVars, 0, vars, 0, count);
+		System.arraycopy(mergedCards, 0, cards, 0, count);
+		final Factor result = new Factor(vars, cards);
+
+		final int[] strideA = new int[count];
+		final int[] strideB = new int[count];
+		for (int k = 0; k < count; k++) {
+			final int ia = a.indexOf(vars[k]);
+			final int ib = b.indexOf(vars[k]);
+			strideA[k] = ia == -1 ? 0 : a.strides[ia];
+			strideB[k] = ib == -1 ? 0 : b.strides[ib];
+		}
+
+		// walk every assignment of the result, tracking the index into each
+		// of the two factors
+		final int[] assignment = new int[count];
+		int indexA = 0;
+		int indexB = 0;
+		for (int r = 0; r < result.values.length; r++) {
+			result.values[r] = a.values[indexA] * b.values[indexB];
+			for (int k = 0; k < count; k++) {
+				assignment[k]++;
+				if (assignment[k] == cards[k]) {
+					assignment[k] = 0;
+					indexA -= (cards[k] - 1) * strideA[k];
+					indexB -= (cards[k] - 1) * strideB[k];
+				} else {
+					indexA += strideA[k];
+					indexB += strideB[k];
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Sum an event out of this factor.
+	 * 
+	 * @param var
+	 *            The event index to sum out.
+	 * @return A new factor that does not cover the event.
+	 */
+	public Factor sumOut(final int var) {
+		final int pos = indexOf(var);
+		if (pos == -1) {
+			return this;
+		}
+
+		final int[] newVars = new int[this.vars.length - 1];
+		final int[] newCards = new int[newVars.length];
+		for (int i = 0, j = 0; i < this.vars.length; i++) {
+			if (i != pos) {
+				newVars[j] = this.vars[i];
+				newCards[j++] = this.cards[i];
+			}
+		}
+
+		final Factor result = new Factor(newVars, newCards);
+		final int stride = this.strides[pos];
+		final int block = stride * this.cards[pos];
+
+		for (int i = 0; i < this.values.length; i++) {
+			result.values[(i % stride) + (i / block) * stride] += this.values[i];
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return The event indexes covered, ascending.
+	 */
+	public int[] getVars() {
+		return this.vars;
+	}
+
+	/**
+	 * @return The number of choices for each event.
+	 */
+	public int[] getCards() {
+		return this.cards;
+	}
+
+	/**
+	 * @return The stride of each event in the values.
+	 */
+	public int[] getStrides() {
+		return this.strides;
+	}
+
+	/**
+	 * @return The values.
+	 */
+	public double[] getValues() {
+		return this.values;
+	}
+}
@@ -24,12 +24,19 @@
 package org.encog.ml.bayesian.query.sample;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
-import org.encog.ml.bayesian.BayesianError;
+import org.encog.Encog;
+import org.encog.mathutil.randomize.factory.RandomFactory;
 import org.encog.ml.bayesian.BayesianEvent;
 import org.encog.ml.bayesian.BayesianNetwork;
+import org.encog.ml.bayesian.CompiledBayesianNetwork;
 import org.encog.ml.bayesian.query.BasicQuery;
 import org.encog.util.Format;
+import org.encog.util.concurrency.DetermineWorkload;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
 
 /**
  * A sampling query allows probabilistic queries on a Bayesian network. Sampling
@@ -41,14 +48,32 @@ import org.encog.util.Format;
  * An enumeration query is more precise than the sampling query. However, the
  * enumeration query will become slow as the size of the Bayesian network grows.
  * Sampling can often be used for a quick estimation of a probability.
+ * 
+ * Evidence events are not sampled. They are held at their evidence value, and
+ * each sample is weighted by the likelihood of the evidence (likelihood
+ * weighting), so no samples are wasted on rejected evidence. The samples are
+ * split across threads, each with its own random number generator. If a target
+ * error is set, sampling stops as soon as the confidence interval is narrow
+ * enough.
  */
-public class SamplingQuery extends BasicQuery implements Serializable {
+public class SamplingQuery extends BasicQuery implements Serializable,
+		MultiThreadable {
 
 	/**
 	 * The default sample size.
 	 */
 	public static final int DEFAULT_SAMPLE_SIZE = 100000;
 
+	/**
+	 * The number of samples drawn between checks of the error target.
+	 */
+	public static final int ROUND_SIZE = 10000;
+
+	/**
+	 * The z-score for the 95% confidence interval used by the error target.
+	 */
+	public static final double CONFIDENCE_Z = 1.96;
+
 	/**
 	 * The sample size.
 	 */
@@ -71,6 +96,38 @@ public class SamplingQuery extends BasicQuery implements Serializable {
 	 */
 	private int totalSamples;
 
+	/**
+	 * The total likelihood weight of the usable samples.
+	 */
+	private double totalWeight;
+
+	/**
+	 * The total likelihood weight of the samples that matched the result the
+	 * query is looking for.
+	 */
+	private double goodWeight;
+
+	/**
+	 * The sum of the squared likelihood weights.
+	 */
+	private double squaredWeight;
+
+	/**
+	 * The target half width of the confidence interval. Sampling stops early
+	 * once the estimate is this precise. Zero to always draw every sample.
+	 */
+	private double targetError;
+
+	/**
+	 * The number of threads to use, zero for automatic.
+	 */
+	private int threadCount;
+
+	/**
+	 * Creates the random number generators, one per worker.
+	 */
+	private RandomFactory randomFactory;
+
 	/**
 	 * Construct a sampling query.
 	 * @param theNetwork The network that will be queried.
@@ -95,54 +152,84 @@ public class SamplingQuery extends BasicQuery implements Serializable {
 	}
 
 	/**
-	 * Obtain the arguments for an event.
-	 * @param event The event.
-	 * @return The arguments for that event, based on the other event values.
+	 * @return The target half width of the 95% confidence interval, zero if
+	 *         every sample is always drawn.
 	 */
-	private int[] obtainArgs(BayesianEvent event) {
-		int[] result = new int[event.getParents().size()];
+	public double getTargetError() {
+		return targetError;
+	}
 
-		int index = 0;
-		for (BayesianEvent parentEvent : event.getParents()) {
-			EventState state = this.getEventState(parentEvent);
-			if (!state.isCalculated())
-				return null;
-			result[index++] = state.getValue();
+	/**
+	 * @param targetError
+	 *            The target half width of the 95% confidence interval.
+	 *            Sampling stops once the estimate is this precise, or the
+	 *            sample size is reached. Zero to always draw every sample.
+	 */
+	public void setTargetError(double targetError) {
+		this.targetError = targetError;
+	}
 
-		}
-		return result;
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getThreadCount() {
+		return threadCount;
 	}
 
 	/**
-	 * Set all events to random values, based on their probabilities.
-	 * @param eventState
+	 * {@inheritDoc}
 	 */
-	private void randomizeEvents(EventState eventState) {
-		// first, has this event already been randomized
-		if (!eventState.isCalculated()) {
-			// next, see if we can randomize the event passed
-			int[] args = obtainArgs(eventState.getEvent());
-			if (args != null) {
-				eventState.randomize(args);
-			}
-		}
+	public void setThreadCount(int numThreads) {
+		this.threadCount = numThreads;
+	}
 
-		// randomize children
-		for (BayesianEvent childEvent : eventState.getEvent().getChildren()) {
-			randomizeEvents(getEventState(childEvent));
-		}
+	/**
+	 * @return The random factory used to create a generator for each worker.
+	 */
+	public RandomFactory getRandomFactory() {
+		return randomFactory;
 	}
 
 	/**
-	 * @return The number of events that are still uncalculated.
+	 * @param randomFactory
+	 *            The random factory used to create a generator for each
+	 *            worker. Set a seeded factory for repeatable results.
 	 */
-	private int countUnCalculated() {
-		int result = 0;
-		for (EventState state : getEvents().values()) {
-			if (!state.isCalculated())
-				result++;
+	public void setRandomFactory(RandomFactory randomFactory) {
+		this.randomFactory = randomFactory;
+	}
+
+	/**
+	 * @return The number of samples with a non-zero weight.
+	 */
+	public int getUsableSamples() {
+		return usableSamples;
+	}
+
+	/**
+	 * @return The total number of samples drawn by the last query.
+	 */
+	public int getTotalSamples() {
+		return totalSamples;
+	}
+
+	/**
+	 * Calculate the half width of the confidence interval of the current
+	 * estimate. The effective sample size accounts for the spread of the
+	 * likelihood weights.
+	 * 
+	 * @return The half width, or infinity if there are no usable samples.
+	 */
+	public double calculateErrorBound() {
+		if (this.totalWeight <= 0) {
+			return Double.POSITIVE_INFINITY;
 		}
-		return result;
+		final double p = this.goodWeight / this.totalWeight;
+		final double effective = (this.totalWeight * this.totalWeight)
+				/ this.squaredWeight;
+		// the 1/n term keeps an estimate of exactly 0 or 1 from stopping early
+		return CONFIDENCE_Z
+				* Math.sqrt((p * (1.0 - p) + 1.0 / effective) / effective);
 	}
 
 	/**
@@ -150,34 +237,86 @@ public class SamplingQuery extends BasicQuery implements Serializable {
 	 */
 	public void execute() {
 		locateEventTypes();
+		final BayesianNetwork network = getNetwork();
+		final CompiledBayesianNetwork compiled = network.getCompiled();
+		final int eventCount = compiled.getEventCount();
+
+		final int[] evidence = new int[eventCount];
+		final int[] outcome = new int[eventCount];
+		Arrays.fill(evidence, -1);
+		Arrays.fill(outcome, -1);
+		for (final BayesianEvent event : getEvidenceEvents()) {
+			evidence[network.getEventIndex(event)] = getEventState(event)
+					.getCompareValue();
+		}
+		for (final BayesianEvent event : getOutcomeEvents()) {
+			outcome[network.getEventIndex(event)] = getEventState(event)
+					.getCompareValue();
+		}
+
+		if (this.randomFactory == null) {
+			this.randomFactory = Encog.getInstance().getRandomFactory()
+					.factorFactory();
+		}
+
+		final DetermineWorkload determine = new DetermineWorkload(
+				this.threadCount, this.sampleSize);
+		final SamplingWorker[] workers = new SamplingWorker[determine
+				.getThreadCount()];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new SamplingWorker(compiled, evidence, outcome,
+					this.randomFactory.factor());
+		}
+
 		this.usableSamples = 0;
 		this.goodSamples = 0;
 		this.totalSamples = 0;
+		this.totalWeight = 0;
+		this.goodWeight = 0;
+		this.squaredWeight = 0;
 
-		for (int i = 0; i < this.sampleSize; i++) {
-			reset();
+		// without an error target, all samples are drawn in a single round
+		final int roundSize = (this.targetError > 0) ? Math.max(
+				workers.length, ROUND_SIZE) : this.sampleSize;
 
-			int lastUncalculated = Integer.MAX_VALUE;
-			int uncalculated;
-			do {
-				for (EventState state : getEvents().values()) {
-					randomizeEvents(state);
-				}
-				uncalculated = countUnCalculated();
-				if (uncalculated == lastUncalculated) {
-					throw new BayesianError(
-							"Unable to calculate all nodes in the graph.");
-				}
-				lastUncalculated = uncalculated;
-			} while (uncalculated > 0);
-
-			// System.out.println("Sample:\n" + this.dumpCurrentState());
-			this.totalSamples++;
-			if (isNeededEvidence()) {
-				this.usableSamples++;
-				if (satisfiesDesiredOutcome()) {
-					this.goodSamples++;
+		while (this.totalSamples < this.sampleSize) {
+			final int count = Math.min(roundSize, this.sampleSize
+					- this.totalSamples);
+			for (int i = 0; i < workers.length; i++) {
+				workers[i].setSampleCount((count / workers.length)
+						+ ((i < count % workers.length) ? 1 : 0));
+			}
+
+			if (workers.length > 1) {
+				final TaskGroup group = EngineConcurrency.getInstance()
+						.createTaskGroup();
+				for (final SamplingWorker worker : workers) {
+					EngineConcurrency.getInstance().processTask(worker, group);
 				}
+				group.waitForComplete();
+				EngineConcurrency.getInstance().checkError();
+			} else {
+				workers[0].run();
+			}
+
+			// combine in worker order, so the result does not depend on timing
+			this.totalSamples += count;
+			this.usableSamples = 0;
+			this.goodSamples = 0;
+			this.totalWeight = 0;
+			this.goodWeight = 0;
+			this.squaredWeight = 0;
+			for (final SamplingWorker worker : workers) {
+				this.usableSamples += worker.getUsableSamples();
+				this.goodSamples += worker.getGoodSamples();
+				this.totalWeight += worker.getTotalWeight();
+				this.goodWeight += worker.getGoodWeight();
+				this.squaredWeight += worker.getSquaredWeight();
+			}
+
+			if (this.targetError > 0
+					&& calculateErrorBound() <= this.targetError) {
+				break;
 			}
 		}
 	}
@@ -186,7 +325,7 @@ public class SamplingQuery extends BasicQuery implements Serializable {
 	 * {@inheritDoc}
 	 */
 	public double getProbability() {
-		return (double) this.goodSamples / (double) this.usableSamples;
+		return this.goodWeight / this.totalWeight;
 	}
 
 	/**
@@ -202,7 +341,11 @@ public class SamplingQuery extends BasicQuery implements Serializable {
 	}
 	
 	public SamplingQuery clone() {
-		return new SamplingQuery(this.getNetwork());
+		SamplingQuery result = new SamplingQuery(this.getNetwork());
+		result.setSampleSize(this.sampleSize);
+		result.setTargetError(this.targetError);
+		result.setThreadCount(this.threadCount);
+		return result;
 	}
 
 	/**
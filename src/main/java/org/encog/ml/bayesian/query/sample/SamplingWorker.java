@@ -0,0 +1,245 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.bayesian.query.sample;
+
+import java.util.Random;
+
+import org.encog.ml.bayesian.CompiledBayesianNetwork;
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * Draws likelihood weighted samples from a compiled Bayesian network. Each
+ * worker has its own random number generator and its own sums, so workers
+ * can run at the same time without sharing any state. The sampling query
+ * combines the sums of its workers after each round.
+ */
+public class SamplingWorker implements EngineTask {
+
+	/**
+	 * The compiled network.
+	 */
+	private final CompiledBayesianNetwork compiled;
+
+	/**
+	 * The evidence value of each event, or -1 for events that are sampled.
+	 */
+	private final int[] evidence;
+
+	/**
+	 * The desired outcome value of each event, or -1 if the event is not an
+	 * outcome.
+	 */
+	private final int[] outcome;
+
+	/**
+	 * The random number generator for this worker.
+	 */
+	private final Random random;
+
+	/**
+	 * The current value of every event.
+	 */
+	private final int[] values;
+
+	/**
+	 * The number of samples to draw on the next run.
+	 */
+	private int sampleCount;
+
+	/**
+	 * The number of samples with a non-zero weight.
+	 */
+	private int usableSamples;
+
+	/**
+	 * The number of usable samples that matched the desired outcome.
+	 */
+	private int goodSamples;
+
+	/**
+	 * The total weight of all samples.
+	 */
+	private double totalWeight;
+
+	/**
+	 * The total weight of the samples that matched the desired outcome.
+	 */
+	private double goodWeight;
+
+	/**
+	 * The sum of the squared weights, used for the effective sample size.
+	 */
+	private double squaredWeight;
+
+	/**
+	 * Construct a sampling worker.
+	 * 
+	 * @param theCompiled
+	 *            The compiled network.
+	 * @param theEvidence
+	 *            The evidence value of each event, or -1.
+	 * @param theOutcome
+	 *            The desired outcome value of each event, or -1.
+	 * @param theRandom
+	 *            The random number generator, not shared with other workers.
+	 */
+	public SamplingWorker(final CompiledBayesianNetwork theCompiled,
+			final int[] theEvidence, final int[] theOutcome,
+			final Random theRandom) {
+		this.compiled = theCompiled;
+		this.evidence = theEvidence;
+		this.outcome = theOutcome;
+		this.random = theRandom;
+		this.values = new int[theCompiled.getEventCount()];
+	}
+
+	/**
+	 * Draw a single sample, in topological order. Evidence events are not
+	 * sampled, they are held at their evidence value and the sample is
+	 * weighted by their probability.
+	 * 
+	 * @return The weight of the sample.
+	 */
+	private double sample() {
+		final int[] order = this.compiled.getTopologicalOrder();
+		final int[][] parents = this.compiled.getParents();
+		final int[][] parentStrides = this.compiled.getParentStrides();
+		final int[] cardinality = this.compiled.getCardinality();
+		final double[][] tables = this.compiled.getTables();
+		double weight = 1;
+
+		for (final int event : order) {
+			final int[] p = parents[event];
+			final int[] strides = parentStrides[event];
+			int offset = 0;
+			for (int j = 0; j < p.length; j++) {
+				offset += this.values[p[j]] * strides[j];
+			}
+
+			final double[] table = tables[event];
+			if (this.evidence[event] != -1) {
+				this.values[event] = this.evidence[event];
+				weight *= table[offset + this.evidence[event]];
+				if (weight == 0) {
+					return 0;
+				}
+			} else {
+				final int card = cardinality[event];
+				final double r = this.random.nextDouble();
+				double sum = 0;
+				int value = card - 1;
+				for (int v = 0; v < card - 1; v++) {
+					sum += table[offset + v];
+					if (r < sum) {
+						value = v;
+						break;
+					}
+				}
+				this.values[event] = value;
+			}
+		}
+
+		return weight;
+	}
+
+	/**
+	 * @return True if the current sample matches the desired outcome.
+	 */
+	private boolean satisfiesDesiredOutcome() {
+		for (int i = 0; i < this.outcome.length; i++) {
+			if (this.outcome[i] != -1 && this.values[i] != this.outcome[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Draw the requested number of samples, adding to this worker's sums.
+	 */
+	public void run() {
+		for (int i = 0; i < this.sampleCount; i++) {
+			final double weight = sample();
+			if (weight > 0) {
+				this.usableSamples++;
+				this.totalWeight += weight;
+				this.squaredWeight += weight * weight;
+				if (satisfiesDesiredOutcome()) {
+					this.goodSamples++;
+					this.goodWeight += weight;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param theSampleCount
+	 *            The number of samples to draw on the next run.
+	 */
+	public void setSampleCount(final int theSampleCount) {
+		this.sampleCount = theSampleCount;
+	}
+
+	/**
+	 * @return The number of samples drawn on each run.
+	 */
+	public int getSampleCount() {
+		return this.sampleCount;
+	}
+
+	/**
+	 * @return The number of samples with a non-zero weight.
+	 */
+	public int getUsableSamples() {
+		return this.usableSamples;
+	}
+
+	/**
+	 * @return The number of usable samples that matched the outcome.
+	 */
+	public int getGoodSamples() {
+		return this.goodSamples;
+	}
+
+	/**
+	 * @return The total weight of all samples.
+	 */
+	public double getTotalWeight() {
+		return this.totalWeight;
+	}
+
+	/**
+	 * @return The total weight of the samples that matched the outcome.
+	 */
+	public double getGoodWeight() {
+		return this.goodWeight;
+	}
+
+	/**
+	 * @return The sum of the squared weights.
+	 */
+	public double getSquaredWeight() {
+		return this.squaredWeight;
+	}
+}
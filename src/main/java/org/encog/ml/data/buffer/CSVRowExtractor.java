@@ -0,0 +1,48 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.data.buffer;
+
+import org.encog.util.csv.ReadCSV;
+
+/**
+ * Extracts the input and ideal values of one training row from a CSV record.
+ * Used by the CSVToEGBConverter. The converter calls the extractor from
+ * several threads at once, each with its own ReadCSV, so an extractor must
+ * not keep any state between calls.
+ */
+public interface CSVRowExtractor {
+
+	/**
+	 * Extract one row.
+	 * 
+	 * @param csv
+	 *            The CSV reader, positioned on the record to extract.
+	 * @param input
+	 *            Receives the input values.
+	 * @param ideal
+	 *            Receives the ideal values.
+	 * @return False if this record should be skipped.
+	 */
+	boolean extract(ReadCSV csv, double[] input, double[] ideal);
+}
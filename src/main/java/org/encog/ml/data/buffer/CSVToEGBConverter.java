@@ -0,0 +1,589 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.data.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.EngineTask;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
+import org.encog.util.csv.CSVFormat;
+import org.encog.util.csv.ReadCSV;
+import org.encog.util.csv.SplitCSV;
+
+/**
+ * Convert a CSV file to an Encog binary training file (EGB) using several
+ * threads.
+ * 
+ * The CSV file is split into chunks of bytes that start and end on line
+ * boundaries, see SplitCSV. The rows in each chunk are counted first, so that every chunk
+ * knows where its rows go in the EGB file. The EGB file is then sized to hold
+ * all of the rows, and each chunk is parsed and written to its own part of
+ * the file with positional writes. The rows end up in the same order as in
+ * the CSV file, no matter how many threads are used.
+ * 
+ * Chunks are split on line feed bytes, so the CSV file must use an encoding
+ * that is ASCII compatible, such as UTF-8 or ISO-8859-1. As with ReadCSV,
+ * blank lines are skipped and quoted fields can not span lines. Every line
+ * should have the same number of columns.
+ */
+public class CSVToEGBConverter implements MultiThreadable {
+
+	/**
+	 * The number of bytes of rows that are gathered before they are written.
+	 */
+	public static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Extracts rows from the first columns of a CSV file.
+	 */
+	private static class ColumnExtractor implements CSVRowExtractor {
+
+		/**
+		 * The CSV columns that hold the input values.
+		 */
+		private final int[] inputColumns;
+
+		/**
+		 * The CSV columns that hold the ideal values.
+		 */
+		private final int[] idealColumns;
+
+		/**
+		 * Construct the extractor.
+		 * 
+		 * @param theInputColumns
+		 *            The CSV columns that hold the input values.
+		 * @param theIdealColumns
+		 *            The CSV columns that hold the ideal values.
+		 */
+		public ColumnExtractor(final int[] theInputColumns,
+				final int[] theIdealColumns) {
+			this.inputColumns = theInputColumns;
+			this.idealColumns = theIdealColumns;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean extract(final ReadCSV csv, final double[] input,
+				final double[] ideal) {
+			for (int i = 0; i < this.inputColumns.length; i++) {
+				input[i] = csv.getDouble(this.inputColumns[i]);
+			}
+			for (int i = 0; i < this.idealColumns.length; i++) {
+				ideal[i] = csv.getDouble(this.idealColumns[i]);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Counts the rows in one chunk of the CSV file.
+	 */
+	private class CountTask implements EngineTask {
+
+		/**
+		 * The chunk to count.
+		 */
+		private final int chunk;
+
+		/**
+		 * Construct the task.
+		 * 
+		 * @param theChunk
+		 *            The chunk to count.
+		 */
+		public CountTask(final int theChunk) {
+			this.chunk = theChunk;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			rowCount[this.chunk] = split.countRows(this.chunk);
+		}
+	}
+
+	/**
+	 * Parses one chunk of the CSV file and writes its rows.
+	 */
+	private class ConvertTask implements EngineTask {
+
+		/**
+		 * The chunk to convert.
+		 */
+		private final int chunk;
+
+		/**
+		 * Construct the task.
+		 * 
+		 * @param theChunk
+		 *            The chunk to convert.
+		 */
+		public ConvertTask(final int theChunk) {
+			this.chunk = theChunk;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			try {
+				rowsWritten[this.chunk] = convertChunk(this.chunk);
+			} catch (final IOException ex) {
+				throw new BufferedDataError(ex);
+			}
+		}
+	}
+
+	/**
+	 * The CSV file to read.
+	 */
+	private final File csvFile;
+
+	/**
+	 * The EGB file to write.
+	 */
+	private final File egbFile;
+
+	/**
+	 * The format of the CSV file.
+	 */
+	private final CSVFormat format;
+
+	/**
+	 * True if the CSV file has a header line.
+	 */
+	private final boolean headers;
+
+	/**
+	 * The number of input values.
+	 */
+	private final int inputCount;
+
+	/**
+	 * The number of ideal values.
+	 */
+	private final int idealCount;
+
+	/**
+	 * Extracts the values of each row.
+	 */
+	private final CSVRowExtractor extractor;
+
+	/**
+	 * The number of threads to use, zero for automatic.
+	 */
+	private int threadCount;
+
+	/**
+	 * The CSV file, split into chunks.
+	 */
+	private SplitCSV split;
+
+	/**
+	 * The channel that the EGB file is written to.
+	 */
+	private FileChannel output;
+
+	/**
+	 * The size of one row in the EGB file.
+	 */
+	private int recordSize;
+
+	/**
+	 * The number of rows counted in each chunk.
+	 */
+	private long[] rowCount;
+
+	/**
+	 * The first row of each chunk in the EGB file.
+	 */
+	private long[] firstRow;
+
+	/**
+	 * The number of rows actually written by each chunk. This is less than
+	 * the count if the extractor skipped rows.
+	 */
+	private long[] rowsWritten;
+
+	/**
+	 * Construct a converter that takes the input values from the first
+	 * columns of the CSV file, followed by the ideal values.
+	 * 
+	 * @param theCSVFile
+	 *            The CSV file to read.
+	 * @param theEGBFile
+	 *            The EGB file to write.
+	 * @param theFormat
+	 *            The format of the CSV file.
+	 * @param theHeaders
+	 *            True if the CSV file has a header line.
+	 * @param theInputCount
+	 *            The number of input values.
+	 * @param theIdealCount
+	 *            The number of ideal values.
+	 */
+	public CSVToEGBConverter(final File theCSVFile, final File theEGBFile,
+			final CSVFormat theFormat, final boolean theHeaders,
+			final int theInputCount, final int theIdealCount) {
+		this(theCSVFile, theEGBFile, theFormat, theHeaders,
+				range(0, theInputCount), range(theInputCount, theIdealCount));
+	}
+
+	/**
+	 * Construct a converter that takes the input and ideal values from the
+	 * specified columns.
+	 * 
+	 * @param theCSVFile
+	 *            The CSV file to read.
+	 * @param theEGBFile
+	 *            The EGB file to write.
+	 * @param theFormat
+	 *            The format of the CSV file.
+	 * @param theHeaders
+	 *            True if the CSV file has a header line.
+	 * @param theInputColumns
+	 *            The CSV columns that hold the input values.
+	 * @param theIdealColumns
+	 *            The CSV columns that hold the ideal values.
+	 */
+	public CSVToEGBConverter(final File theCSVFile, final File theEGBFile,
+			final CSVFormat theFormat, final boolean theHeaders,
+			final int[] theInputColumns, final int[] theIdealColumns) {
+		this(theCSVFile, theEGBFile, theFormat, theHeaders,
+				theInputColumns.length, theIdealColumns.length,
+				new ColumnExtractor(theInputColumns, theIdealColumns));
+	}
+
+	/**
+	 * Construct a converter that uses an extractor to produce each row.
+	 * 
+	 * @param theCSVFile
+	 *            The CSV file to read.
+	 * @param theEGBFile
+	 *            The EGB file to write.
+	 * @param theFormat
+	 *            The format of the CSV file.
+	 * @param theHeaders
+	 *            True if the CSV file has a header line.
+	 * @param theInputCount
+	 *            The number of input values.
+	 * @param theIdealCount
+	 *            The number of ideal values.
+	 * @param theExtractor
+	 *            Extracts the values of each row.
+	 */
+	public CSVToEGBConverter(final File theCSVFile, final File theEGBFile,
+			final CSVFormat theFormat, final boolean theHeaders,
+			final int theInputCount, final int theIdealCount,
+			final CSVRowExtractor theExtractor) {
+		this.csvFile = theCSVFile;
+		this.egbFile = theEGBFile;
+		this.format = theFormat;
+		this.headers = theHeaders;
+		this.inputCount = theInputCount;
+		this.idealCount = theIdealCount;
+		this.extractor = theExtractor;
+	}
+
+	/**
+	 * Create an array of consecutive column numbers.
+	 * 
+	 * @param start
+	 *            The first column.
+	 * @param count
+	 *            The number of columns.
+	 * @return The column numbers.
+	 */
+	private static int[] range(final int start, final int count) {
+		final int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = start + i;
+		}
+		return result;
+	}
+
+	/**
+	 * Perform the conversion.
+	 * 
+	 * @return The number of rows written to the EGB file.
+	 */
+	public long process() {
+		final EncogEGBFile egb = new EncogEGBFile(this.egbFile);
+
+		try {
+			this.split = new SplitCSV(this.csvFile, this.headers,
+					this.threadCount);
+
+			egb.create(this.inputCount, this.idealCount);
+			this.output = egb.getFc();
+			this.recordSize = egb.getRecordSize();
+
+			final int chunks = this.split.getChunkCount();
+			this.rowCount = new long[chunks];
+			this.rowsWritten = new long[chunks];
+			this.firstRow = new long[chunks];
+
+			final EngineTask[] count = new EngineTask[chunks];
+			for (int i = 0; i < chunks; i++) {
+				count[i] = new CountTask(i);
+			}
+			runAll(count);
+
+			long total = 0;
+			for (int i = 0; i < chunks; i++) {
+				this.firstRow[i] = total;
+				total += this.rowCount[i];
+			}
+
+			// reserve a slot for every row
+			egb.getRaf().setLength(
+					EncogEGBFile.HEADER_SIZE + (total * this.recordSize));
+
+			final EngineTask[] convert = new EngineTask[chunks];
+			for (int i = 0; i < chunks; i++) {
+				convert[i] = new ConvertTask(i);
+			}
+			runAll(convert);
+
+			final long written = compact();
+			egb.getRaf().setLength(
+					EncogEGBFile.HEADER_SIZE + (written * this.recordSize));
+			return written;
+		} catch (final IOException ex) {
+			throw new BufferedDataError(ex);
+		} finally {
+			egb.close();
+			if (this.split != null) {
+				this.split.close();
+				this.split = null;
+			}
+			this.output = null;
+		}
+	}
+
+	/**
+	 * Run tasks on the thread pool, or directly if there is only one.
+	 * 
+	 * @param tasks
+	 *            The tasks to run.
+	 */
+	private void runAll(final EngineTask[] tasks) {
+		if (tasks.length == 1) {
+			tasks[0].run();
+			return;
+		}
+
+		final TaskGroup group = EngineConcurrency.getInstance()
+				.createTaskGroup();
+		for (final EngineTask task : tasks) {
+			EngineConcurrency.getInstance().processTask(task, group);
+		}
+		group.waitForComplete();
+		EngineConcurrency.getInstance().checkError();
+	}
+
+	/**
+	 * Parse one chunk and write its rows to their slots in the EGB file.
+	 * 
+	 * @param chunk
+	 *            The chunk to convert.
+	 * @return The number of rows written.
+	 * @throws IOException
+	 *             If a file could not be read or written.
+	 */
+	private long convertChunk(final int chunk) throws IOException {
+		final ReadCSV csv = this.split.readChunk(chunk, this.format);
+		final double[] inputData = new double[this.inputCount];
+		final double[] idealData = new double[this.idealCount];
+		final int batchRows = Math.max(1, CSVToEGBConverter.WRITE_BUFFER_SIZE
+				/ this.recordSize);
+		final ByteBuffer buffer = ByteBuffer.allocate(batchRows
+				* this.recordSize);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		long written = 0;
+		long batchStart = 0;
+		int batchCount = 0;
+
+		try {
+			while (csv.next()) {
+				if (!this.extractor.extract(csv, inputData, idealData)) {
+					continue;
+				}
+
+				if (written >= this.rowCount[chunk]) {
+					throw new BufferedDataError(
+							"More rows were read than were counted in "
+									+ this.csvFile);
+				}
+
+				for (final double d : inputData) {
+					buffer.putDouble(d);
+				}
+				for (final double d : idealData) {
+					buffer.putDouble(d);
+				}
+				buffer.putDouble(1.0);
+				written++;
+				batchCount++;
+
+				if (batchCount == batchRows) {
+					writeBatch(buffer, chunk, batchStart);
+					batchStart = written;
+					batchCount = 0;
+				}
+			}
+
+			if (batchCount > 0) {
+				writeBatch(buffer, chunk, batchStart);
+			}
+		} finally {
+			csv.close();
+		}
+
+		return written;
+	}
+
+	/**
+	 * Write a batch of rows to the EGB file.
+	 * 
+	 * @param buffer
+	 *            The rows to write.
+	 * @param chunk
+	 *            The chunk that the rows belong to.
+	 * @param row
+	 *            The row within the chunk of the first row in the batch.
+	 * @throws IOException
+	 *             If the file could not be written.
+	 */
+	private void writeBatch(final ByteBuffer buffer, final int chunk,
+			final long row) throws IOException {
+		long position = EncogEGBFile.HEADER_SIZE
+				+ ((this.firstRow[chunk] + row) * this.recordSize);
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			position += this.output.write(buffer, position);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Move the rows down to close any gaps left by rows that the extractor
+	 * skipped.
+	 * 
+	 * @return The total number of rows written.
+	 * @throws IOException
+	 *             If the file could not be read or written.
+	 */
+	private long compact() throws IOException {
+		long target = 0;
+		ByteBuffer buffer = null;
+
+		for (int i = 0; i < this.rowsWritten.length; i++) {
+			if (target != this.firstRow[i] && this.rowsWritten[i] > 0) {
+				if (buffer == null) {
+					buffer = ByteBuffer
+							.allocate(CSVToEGBConverter.WRITE_BUFFER_SIZE);
+				}
+				moveRows(buffer, this.firstRow[i], target,
+						this.rowsWritten[i]);
+			}
+			target += this.rowsWritten[i];
+		}
+
+		return target;
+	}
+
+	/**
+	 * Move rows to an earlier position in the EGB file.
+	 * 
+	 * @param buffer
+	 *            The buffer to copy through.
+	 * @param from
+	 *            The first row to move.
+	 * @param to
+	 *            The row to move it to.
+	 * @param count
+	 *            The number of rows to move.
+	 * @throws IOException
+	 *             If the file could not be read or written.
+	 */
+	private void moveRows(final ByteBuffer buffer, final long from,
+			final long to, final long count) throws IOException {
+		long source = EncogEGBFile.HEADER_SIZE + (from * this.recordSize);
+		long target = EncogEGBFile.HEADER_SIZE + (to * this.recordSize);
+		long remaining = count * this.recordSize;
+
+		// the target is always before the source, so copying forward never
+		// overwrites rows that have not been moved yet
+		while (remaining > 0) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), remaining));
+			while (buffer.hasRemaining()) {
+				final int read = this.output.read(buffer,
+						source + buffer.position());
+				if (read < 0) {
+					throw new BufferedDataError("Unexpected end of "
+							+ this.egbFile);
+				}
+			}
+			buffer.flip();
+			final int length = buffer.limit();
+			while (buffer.hasRemaining()) {
+				this.output.write(buffer, target + buffer.position());
+			}
+			source += length;
+			target += length;
+			remaining -= length;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.threadCount = numThreads;
+	}
+}
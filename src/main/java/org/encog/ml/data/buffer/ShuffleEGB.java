@@ -0,0 +1,400 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.data.buffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * Randomly shuffle the records of an Encog binary (EGB) file.
+ * 
+ * Every order of the records is equally likely. Files that fit in the
+ * memory budget are loaded and shuffled in memory. Larger files are shuffled
+ * with two passes: each record is first written to a randomly chosen
+ * temporary bucket file, then each bucket is loaded, shuffled, and written
+ * out in turn. The same seed always produces the same order.
+ * 
+ * The whole input file is read before the output file is created, so the
+ * input and output may be the same file.
+ */
+public class ShuffleEGB {
+
+	/**
+	 * The default memory budget, a quarter of the maximum heap.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime()
+			.maxMemory() / 4;
+
+	/**
+	 * The most bucket files that are written at once. Files so large that
+	 * they would need more buckets use larger buckets than the budget
+	 * allows.
+	 */
+	public static final int MAX_BUCKETS = 1024;
+
+	/**
+	 * The largest bucket, in bytes, that can be loaded into one array.
+	 */
+	public static final long MAX_BUCKET_SIZE = Integer.MAX_VALUE - 8;
+
+	/**
+	 * The size of the buffer used to read the input file.
+	 */
+	public static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * The largest buffer used for a bucket file.
+	 */
+	public static final int BUCKET_BUFFER_SIZE = 65536;
+
+	/**
+	 * The smallest buffer used for a bucket file.
+	 */
+	public static final int MIN_BUCKET_BUFFER_SIZE = 4096;
+
+	/**
+	 * The memory budget, in bytes.
+	 */
+	private long memoryBudget = ShuffleEGB.DEFAULT_MEMORY_BUDGET;
+
+	/**
+	 * The seed for the shuffle.
+	 */
+	private long seed = new Random().nextLong();
+
+	/**
+	 * The directory for bucket files, null for the system temporary
+	 * directory.
+	 */
+	private File tempDirectory;
+
+	/**
+	 * @return The memory budget, in bytes.
+	 */
+	public long getMemoryBudget() {
+		return this.memoryBudget;
+	}
+
+	/**
+	 * Set the amount of memory that loaded records may use. Files larger than
+	 * this are shuffled through temporary bucket files.
+	 * 
+	 * @param theMemoryBudget
+	 *            The memory budget, in bytes.
+	 */
+	public void setMemoryBudget(final long theMemoryBudget) {
+		this.memoryBudget = theMemoryBudget;
+	}
+
+	/**
+	 * @return The seed for the shuffle. Unless it is set, a new seed is
+	 *         chosen for each object.
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Set the seed for the shuffle. Shuffling the same file with the same
+	 * seed and memory budget always produces the same order.
+	 * 
+	 * @param theSeed
+	 *            The seed.
+	 */
+	public void setSeed(final long theSeed) {
+		this.seed = theSeed;
+	}
+
+	/**
+	 * @return The directory for bucket files, null for the system temporary
+	 *         directory.
+	 */
+	public File getTempDirectory() {
+		return this.tempDirectory;
+	}
+
+	/**
+	 * @param theTempDirectory
+	 *            The directory for bucket files, null for the system
+	 *            temporary directory.
+	 */
+	public void setTempDirectory(final File theTempDirectory) {
+		this.tempDirectory = theTempDirectory;
+	}
+
+	/**
+	 * Shuffle an EGB file.
+	 * 
+	 * @param inputFile
+	 *            The file to shuffle.
+	 * @param outputFile
+	 *            The shuffled file, which may be the input file.
+	 */
+	public void process(final File inputFile, final File outputFile) {
+		final Random random = new Random(this.seed);
+		final EncogEGBFile input = new EncogEGBFile(inputFile);
+		input.open();
+
+		final int inputCount = input.getInputCount();
+		final int idealCount = input.getIdealCount();
+		final int recordSize = input.getRecordSize();
+		final long records = input.getNumberOfRecords();
+		final long estimate = records * recordSize;
+
+		// random buckets are not all the same size, so aim for half the
+		// budget, and keep each bucket small enough for one array
+		final long limit = Math.max(1,
+				Math.min(this.memoryBudget, Integer.MAX_VALUE));
+		final int bucketCount = (int) Math.min(ShuffleEGB.MAX_BUCKETS,
+				((2 * estimate) / limit) + 1);
+		if ((2 * estimate) / bucketCount > ShuffleEGB.MAX_BUCKET_SIZE) {
+			input.close();
+			throw new BufferedDataError("The EGB file is too large to shuffle, "
+					+ ShuffleEGB.MAX_BUCKETS
+					+ " buckets would not each fit in one array.");
+		}
+		final File[] buckets = new File[bucketCount];
+		final long[] counts = new long[bucketCount];
+		byte[] data = null;
+
+		try {
+			try {
+				if (bucketCount == 1) {
+					data = new byte[(int) estimate];
+					readFully(input.getFc(), EncogEGBFile.HEADER_SIZE,
+							ByteBuffer.wrap(data));
+				} else {
+					scatter(input, random, buckets, counts);
+				}
+			} finally {
+				input.close();
+			}
+
+			final EncogEGBFile output = new EncogEGBFile(outputFile);
+			output.create(inputCount, idealCount);
+			try {
+				final FileChannel fc = output.getFc();
+				long position = EncogEGBFile.HEADER_SIZE;
+				if (data != null) {
+					shuffle(data, records, recordSize, random);
+					position = writeFully(fc, position, data);
+				} else {
+					for (int i = 0; i < bucketCount; i++) {
+						data = readBucket(buckets[i], counts[i], recordSize);
+						buckets[i].delete();
+						shuffle(data, counts[i], recordSize, random);
+						position = writeFully(fc, position, data);
+						data = null;
+					}
+				}
+			} finally {
+				output.close();
+			}
+		} catch (final IOException ex) {
+			throw new BufferedDataError(ex);
+		} finally {
+			for (final File bucket : buckets) {
+				if (bucket != null) {
+					bucket.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write each record of the input file to a randomly chosen bucket file.
+	 * 
+	 * @param input
+	 *            The input file.
+	 * @param random
+	 *            The random number generator.
+	 * @param buckets
+	 *            Receives the bucket files.
+	 * @param counts
+	 *            Receives the number of records in each bucket.
+	 * @throws IOException
+	 *             If a file could not be read or written.
+	 */
+	private void scatter(final EncogEGBFile input, final Random random,
+			final File[] buckets, final long[] counts) throws IOException {
+		final int recordSize = input.getRecordSize();
+		final int size = (int) Math.max(ShuffleEGB.MIN_BUCKET_BUFFER_SIZE,
+				Math.min(ShuffleEGB.BUCKET_BUFFER_SIZE, this.memoryBudget
+						/ (4 * buckets.length)));
+		final OutputStream[] out = new OutputStream[buckets.length];
+
+		try {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = File.createTempFile("encog-shuffle", ".bucket",
+						this.tempDirectory);
+				buckets[i].deleteOnExit();
+				out[i] = new BufferedOutputStream(new FileOutputStream(
+						buckets[i]), size);
+			}
+
+			final int perRead = Math.max(1, ShuffleEGB.READ_BUFFER_SIZE
+					/ recordSize);
+			final byte[] buffer = new byte[perRead * recordSize];
+			long position = EncogEGBFile.HEADER_SIZE;
+			long remaining = input.getNumberOfRecords();
+
+			while (remaining > 0) {
+				final int count = (int) Math.min(perRead, remaining);
+				final ByteBuffer bb = ByteBuffer.wrap(buffer, 0, count
+						* recordSize);
+				readFully(input.getFc(), position, bb);
+				position += (long) count * recordSize;
+				remaining -= count;
+
+				// count * recordSize fits, it is at most the buffer length
+				for (int i = 0; i < count; i++) {
+					final int index = random.nextInt(buckets.length);
+					out[index].write(buffer, i * recordSize, recordSize);
+					counts[index]++;
+				}
+			}
+		} finally {
+			for (final OutputStream stream : out) {
+				if (stream != null) {
+					stream.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the records of a bucket file.
+	 * 
+	 * @param bucket
+	 *            The bucket file.
+	 * @param count
+	 *            The number of records in the bucket.
+	 * @param recordSize
+	 *            The size of a record, in bytes.
+	 * @return The records.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private static byte[] readBucket(final File bucket, final long count,
+			final int recordSize) throws IOException {
+		final long size = count * recordSize;
+		if (size > ShuffleEGB.MAX_BUCKET_SIZE) {
+			throw new BufferedDataError("A shuffle bucket of " + size
+					+ " bytes does not fit in one array.");
+		}
+		final byte[] result = new byte[(int) size];
+		final DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(bucket),
+						ShuffleEGB.BUCKET_BUFFER_SIZE));
+		try {
+			in.readFully(result);
+		} finally {
+			in.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Shuffle records in place, with the Fisher-Yates shuffle.
+	 * 
+	 * @param data
+	 *            The records.
+	 * @param count
+	 *            The number of records.
+	 * @param recordSize
+	 *            The size of a record, in bytes.
+	 * @param random
+	 *            The random number generator.
+	 */
+	private static void shuffle(final byte[] data, final long count,
+			final int recordSize, final Random random) {
+		final byte[] temp = new byte[recordSize];
+		for (int i = (int) count - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1);
+			if (i != j) {
+				final int from = (int) ((long) i * recordSize);
+				final int to = (int) ((long) j * recordSize);
+				System.arraycopy(data, from, temp, 0, recordSize);
+				System.arraycopy(data, to, data, from, recordSize);
+				System.arraycopy(temp, 0, data, to, recordSize);
+			}
+		}
+	}
+
+	/**
+	 * Fill a buffer from a file channel.
+	 * 
+	 * @param fc
+	 *            The file channel.
+	 * @param position
+	 *            The position to read from.
+	 * @param bb
+	 *            The buffer to fill.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private static void readFully(final FileChannel fc, final long position,
+			final ByteBuffer bb) throws IOException {
+		long pos = position;
+		while (bb.hasRemaining()) {
+			final int n = fc.read(bb, pos);
+			if (n < 0) {
+				throw new BufferedDataError("Unexpected end of EGB file.");
+			}
+			pos += n;
+		}
+	}
+
+	/**
+	 * Write all of a byte array to a file channel.
+	 * 
+	 * @param fc
+	 *            The file channel.
+	 * @param position
+	 *            The position to write to.
+	 * @param data
+	 *            The bytes to write.
+	 * @return The position after the written bytes.
+	 * @throws IOException
+	 *             If the file could not be written.
+	 */
+	private static long writeFully(final FileChannel fc, final long position,
+			final byte[] data) throws IOException {
+		final ByteBuffer bb = ByteBuffer.wrap(data);
+		long pos = position;
+		while (bb.hasRemaining()) {
+			pos += fc.write(bb, pos);
+		}
+		return pos;
+	}
+}
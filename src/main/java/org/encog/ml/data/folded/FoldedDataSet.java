@@ -275,6 +275,20 @@ public class FoldedDataSet implements MLDataSet {
 		return folded;
 	}
 
+	/**
+	 * Open a dataset with the same folds as this one, but with its own
+	 * current fold. Unlike openAdditional, setting the fold of the result
+	 * does not affect this dataset, so each thread can work on its own fold.
+	 * 
+	 * @return The new dataset.
+	 */
+	public FoldedDataSet openIndependent() {
+		final FoldedDataSet result = new FoldedDataSet(
+				this.underlying.openAdditional());
+		result.fold(this.numFolds);
+		return result;
+	}
+
 	/**
 	 * Set the current fold.
 	 * 
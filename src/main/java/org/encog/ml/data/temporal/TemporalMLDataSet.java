@@ -326,7 +326,7 @@ public class TemporalMLDataSet extends BasicNeuralDataSet implements Serializabl
 	 *            The index to format the data at.
 	 * @return The formatted data.
 	 */
-	private double formatData(final TemporalDataDescription desc,
+	double formatData(final TemporalDataDescription desc,
 			final int index) {
 		final double[] result = new double[1];
 
@@ -352,7 +352,9 @@ public class TemporalMLDataSet extends BasicNeuralDataSet implements Serializabl
 	}
 
 	/**
-	 * Generate the training sets.
+	 * Generate the training sets. Every window is stored as its own pair, see
+	 * {@link TemporalWindowMLDataSet} for long series that should compute
+	 * their windows as they are read.
 	 */
 	public void generate() {
 		sortPoints();
@@ -0,0 +1,351 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.data.temporal;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+
+import org.encog.ml.data.MLData;
+import org.encog.ml.data.MLDataError;
+import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataPair;
+
+/**
+ * A temporal data set that computes each sliding window when it is read,
+ * rather than storing a pair for every window.
+ * 
+ * The values of the temporal points are formatted once, and stored point by
+ * point in one array for the input descriptions and one for the predicted
+ * descriptions. A window is then a contiguous slice of each array, so memory
+ * grows with the number of points, not with the number of points times the
+ * window size. The records are the same as those that
+ * {@link TemporalMLDataSet#generate()} would create.
+ * 
+ * The values are captured when this set is constructed; later changes to the
+ * temporal data set are not seen. Additional sets opened for other threads
+ * share the same arrays.
+ */
+public class TemporalWindowMLDataSet implements MLDataSet, Serializable {
+
+	/**
+	 * The serial id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Error message: adds are not supported.
+	 */
+	public static final String ADD_NOT_SUPPORTED 
+		= "Direct adds to the temporal window dataset are not supported.";
+
+	/**
+	 * Iterates over the windows of a temporal window data set.
+	 */
+	public class TemporalWindowIterator implements Iterator<MLDataPair> {
+
+		/**
+		 * The current index.
+		 */
+		private long currentIndex;
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			return this.currentIndex < TemporalWindowMLDataSet.this.recordCount;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public MLDataPair next() {
+			if (!hasNext()) {
+				return null;
+			}
+			final MLDataPair pair = BasicMLDataPair.createPair(
+					getInputSize(), getIdealSize());
+			getRecord(this.currentIndex++, pair);
+			return pair;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() {
+			throw new MLDataError("Remove is not supported.");
+		}
+	}
+
+	/**
+	 * The formatted input values, point by point.
+	 */
+	private final double[] inputValues;
+
+	/**
+	 * The formatted predicted values, point by point.
+	 */
+	private final double[] idealValues;
+
+	/**
+	 * The number of input values at each point.
+	 */
+	private final int inputStride;
+
+	/**
+	 * The number of predicted values at each point.
+	 */
+	private final int idealStride;
+
+	/**
+	 * The number of points in the input window.
+	 */
+	private final int inputWindowSize;
+
+	/**
+	 * The number of points in the prediction window.
+	 */
+	private final int predictWindowSize;
+
+	/**
+	 * The index of the point the first window starts at.
+	 */
+	private final int start;
+
+	/**
+	 * The number of windows.
+	 */
+	private final long recordCount;
+
+	/**
+	 * Construct the data set from the points and descriptions of a temporal
+	 * data set. The points of the temporal data set are sorted.
+	 * 
+	 * @param temporal
+	 *            The temporal data set.
+	 */
+	public TemporalWindowMLDataSet(final TemporalMLDataSet temporal) {
+		temporal.sortPoints();
+		this.inputWindowSize = temporal.getInputWindowSize();
+		this.predictWindowSize = temporal.getPredictWindowSize();
+		this.start = temporal.calculateStartIndex() + 1;
+		final int setSize = temporal.calculateActualSetSize();
+		this.recordCount = Math.max(0, setSize - this.predictWindowSize
+				- this.inputWindowSize);
+
+		final List<TemporalDataDescription> descriptions = temporal
+				.getDescriptions();
+		int inputs = 0;
+		int ideals = 0;
+		for (final TemporalDataDescription desc : descriptions) {
+			if (desc.isInput()) {
+				inputs++;
+			}
+			if (desc.isPredict()) {
+				ideals++;
+			}
+		}
+		this.inputStride = inputs;
+		this.idealStride = ideals;
+
+		// only the points that some window reads are formatted
+		final int end = this.recordCount == 0 ? this.start : this.start
+				+ (int) this.recordCount + this.inputWindowSize
+				+ this.predictWindowSize - 1;
+		this.inputValues = new double[end * inputs];
+		this.idealValues = new double[end * ideals];
+
+		for (int i = this.start; i < end; i++) {
+			int inputIndex = i * inputs;
+			int idealIndex = i * ideals;
+			for (final TemporalDataDescription desc : descriptions) {
+				if (desc.isInput() || desc.isPredict()) {
+					final double d = temporal.formatData(desc, i);
+					if (desc.isInput()) {
+						this.inputValues[inputIndex++] = d;
+					}
+					if (desc.isPredict()) {
+						this.idealValues[idealIndex++] = d;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Construct a data set that shares the values of another.
+	 * 
+	 * @param other
+	 *            The data set to share.
+	 */
+	private TemporalWindowMLDataSet(final TemporalWindowMLDataSet other) {
+		this.inputValues = other.inputValues;
+		this.idealValues = other.idealValues;
+		this.inputStride = other.inputStride;
+		this.idealStride = other.idealStride;
+		this.inputWindowSize = other.inputWindowSize;
+		this.predictWindowSize = other.predictWindowSize;
+		this.start = other.start;
+		this.recordCount = other.recordCount;
+	}
+
+	/**
+	 * Not supported.
+	 * 
+	 * @param data1
+	 *            Not used.
+	 */
+	@Override
+	public void add(final MLData data1) {
+		throw new TemporalError(TemporalWindowMLDataSet.ADD_NOT_SUPPORTED);
+	}
+
+	/**
+	 * Not supported.
+	 * 
+	 * @param inputData
+	 *            Not used.
+	 * @param idealData
+	 *            Not used.
+	 */
+	@Override
+	public void add(final MLData inputData, final MLData idealData) {
+		throw new TemporalError(TemporalWindowMLDataSet.ADD_NOT_SUPPORTED);
+	}
+
+	/**
+	 * Not supported.
+	 * 
+	 * @param inputData
+	 *            Not used.
+	 */
+	@Override
+	public void add(final MLDataPair inputData) {
+		throw new TemporalError(TemporalWindowMLDataSet.ADD_NOT_SUPPORTED);
+	}
+
+	/**
+	 * Nothing to close.
+	 */
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MLDataPair get(final int index) {
+		final MLDataPair result = BasicMLDataPair.createPair(getInputSize(),
+				getIdealSize());
+		getRecord(index, result);
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getIdealSize() {
+		return this.idealStride * this.predictWindowSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getInputSize() {
+		return this.inputStride * this.inputWindowSize;
+	}
+
+	/**
+	 * Copy a window into a pair.
+	 * 
+	 * @param index
+	 *            The index of the window.
+	 * @param pair
+	 *            The pair to fill.
+	 */
+	@Override
+	public void getRecord(final long index, final MLDataPair pair) {
+		if (index < 0 || index >= this.recordCount) {
+			throw new TemporalError("Window " + index + " is out of range.");
+		}
+		final int i = this.start + (int) index;
+		System.arraycopy(this.inputValues, i * this.inputStride,
+				pair.getInputArray(), 0, getInputSize());
+		if (pair.getIdealArray() != null) {
+			System.arraycopy(this.idealValues, (i + this.inputWindowSize)
+					* this.idealStride, pair.getIdealArray(), 0,
+					getIdealSize());
+		}
+		pair.setSignificance(1.0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRecordCount() {
+		return this.recordCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isSupervised() {
+		return getIdealSize() > 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterator<MLDataPair> iterator() {
+		return new TemporalWindowIterator();
+	}
+
+	/**
+	 * Open an additional data set, which shares the values of this one.
+	 * 
+	 * @return The additional data set.
+	 */
+	@Override
+	public MLDataSet openAdditional() {
+		return new TemporalWindowMLDataSet(this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return (int) this.recordCount;
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.hmm.alog;
+
+import java.util.Collection;
+
+import org.encog.mathutil.IntRange;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.hmm.HiddenMarkovModel;
+import org.encog.util.concurrency.DetermineWorkload;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.EngineTask;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
+
+/**
+ * Decodes many sequences with the Viterbi algorithm. The sequences are split
+ * across threads, and each thread reuses a single Viterbi calculator for all
+ * of its sequences.
+ */
+public class BatchViterbiCalculator implements MultiThreadable {
+
+	/**
+	 * Decodes a range of the sequences.
+	 */
+	private class ViterbiTask implements EngineTask {
+
+		/**
+		 * The reusable calculator.
+		 */
+		private final ViterbiCalculator calculator = new ViterbiCalculator();
+
+		/**
+		 * The first sequence.
+		 */
+		private final int low;
+
+		/**
+		 * The last sequence.
+		 */
+		private final int high;
+
+		/**
+		 * Construct the task.
+		 * @param theLow The first sequence.
+		 * @param theHigh The last sequence.
+		 */
+		public ViterbiTask(final int theLow, final int theHigh) {
+			this.low = theLow;
+			this.high = theHigh;
+		}
+
+		/**
+		 * Decode the sequences.
+		 */
+		public void run() {
+			for (int i = this.low; i <= this.high; i++) {
+				this.calculator.compute(sequences[i], hmm);
+				stateSequences[i] = this.calculator.stateSequence();
+				lnProbabilities[i] = this.calculator.lnProbability();
+			}
+		}
+	}
+
+	/**
+	 * The hidden markov model.
+	 */
+	private final HiddenMarkovModel hmm;
+
+	/**
+	 * The number of threads, zero for automatic.
+	 */
+	private int threadCount;
+
+	/**
+	 * The sequences being decoded.
+	 */
+	private MLDataSet[] sequences;
+
+	/**
+	 * The state sequence for each sequence.
+	 */
+	private int[][] stateSequences;
+
+	/**
+	 * The log probability of each state sequence.
+	 */
+	private double[] lnProbabilities;
+
+	/**
+	 * Construct the batch calculator.
+	 * @param theHmm The hidden markov model.
+	 */
+	public BatchViterbiCalculator(final HiddenMarkovModel theHmm) {
+		this.hmm = theHmm;
+	}
+
+	/**
+	 * Decode the sequences.
+	 * @param theSequences The sequences to decode.
+	 */
+	public void compute(final Collection<MLDataSet> theSequences) {
+		this.sequences = theSequences.toArray(new MLDataSet[0]);
+		this.stateSequences = new int[this.sequences.length][];
+		this.lnProbabilities = new double[this.sequences.length];
+
+		if (this.sequences.length == 0) {
+			return;
+		}
+
+		final DetermineWorkload determine = new DetermineWorkload(
+				this.threadCount, this.sequences.length);
+
+		if (determine.getThreadCount() > 1) {
+			final TaskGroup group = EngineConcurrency.getInstance()
+					.createTaskGroup();
+			for (final IntRange r : determine.calculateWorkers()) {
+				EngineConcurrency.getInstance().processTask(
+						new ViterbiTask(r.getLow(), r.getHigh()), group);
+			}
+			group.waitForComplete();
+			EngineConcurrency.getInstance().checkError();
+		} else {
+			new ViterbiTask(0, this.sequences.length - 1).run();
+		}
+	}
+
+	/**
+	 * @return The most likely state sequence, for each sequence.
+	 */
+	public int[][] getStateSequences() {
+		return this.stateSequences;
+	}
+
+	/**
+	 * @return The log probability of each state sequence.
+	 */
+	public double[] getLnProbabilities() {
+		return this.lnProbabilities;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setThreadCount(final int numThreads) {
+		this.threadCount = numThreads;
+	}
+}
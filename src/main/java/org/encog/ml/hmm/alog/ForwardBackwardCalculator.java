@@ -35,7 +35,9 @@ import org.encog.ml.hmm.HiddenMarkovModel;
  * models which computes the posterior marginals of all hidden state variables
  * given a sequence of observations.
  * 
- * 
+ * A calculator can be reused for many sequences by calling compute. The alpha,
+ * beta and emission tables are only reallocated when a longer sequence is
+ * seen, so they may be larger than the current sequence.
  */
 public class ForwardBackwardCalculator {
 	public static enum Computation {
@@ -51,6 +53,11 @@ public class ForwardBackwardCalculator {
 	 * Beta matrix.
 	 */
 	protected double[][] beta = null;
+
+	/**
+	 * The probability of each observation under each state, by time.
+	 */
+	protected double[][] emission = null;
 	
 	/**
 	 * Probability.
@@ -58,9 +65,14 @@ public class ForwardBackwardCalculator {
 	protected double probability;
 
 	/**
-	 * Construct an empty object.
+	 * The length of the current sequence.
+	 */
+	protected int length;
+
+	/**
+	 * Construct an empty object, compute must be called before it is used.
 	 */
-	protected ForwardBackwardCalculator() {
+	public ForwardBackwardCalculator() {
 	};
 
 	/**
@@ -81,10 +93,24 @@ public class ForwardBackwardCalculator {
 	 */
 	public ForwardBackwardCalculator(final MLDataSet oseq,
 			final HiddenMarkovModel hmm, final EnumSet<Computation> flags) {
+		compute(oseq, hmm, flags);
+	}
+
+	/**
+	 * Run the forward/backward algorithm on a sequence, reusing the tables
+	 * from the previous sequence where they are large enough.
+	 * @param oseq The sequence.
+	 * @param hmm The hidden markov model to use.
+	 * @param flags Flags, alpha or beta.
+	 */
+	public void compute(final MLDataSet oseq, final HiddenMarkovModel hmm,
+			final EnumSet<Computation> flags) {
 		if (oseq.size() < 1) {
 			throw new IllegalArgumentException("Empty sequence");
 		}
 
+		computeEmission(hmm, oseq);
+
 		if (flags.contains(Computation.ALPHA)) {
 			computeAlpha(hmm, oseq);
 		}
@@ -96,6 +122,22 @@ public class ForwardBackwardCalculator {
 		computeProbability(oseq, hmm, flags);
 	}
 
+	/**
+	 * Make sure a table has at least the specified size.
+	 * @param table The current table, may be null.
+	 * @param rows The number of rows needed.
+	 * @param cols The number of columns needed.
+	 * @return The table, or a new one if the current table is too small.
+	 */
+	protected static double[][] ensureCapacity(final double[][] table,
+			final int rows, final int cols) {
+		if (table == null || table.length < rows
+				|| (table.length > 0 && table[0].length != cols)) {
+			return new double[rows][cols];
+		}
+		return table;
+	}
+
 	/**
 	 * Alpha element.
 	 * @param t The row.
@@ -126,6 +168,39 @@ public class ForwardBackwardCalculator {
 		return this.beta[t][i];
 	}
 
+	/**
+	 * The probability of an observation, given the state.
+	 * @param t The time of the observation.
+	 * @param i The state.
+	 * @return The probability.
+	 */
+	public double emissionElement(final int t, final int i) {
+		return this.emission[t][i];
+	}
+
+	/**
+	 * Compute the probability of every observation under every state. Each
+	 * is used several times by alpha, beta and Baum-Welch, so they are only
+	 * calculated once.
+	 * @param hmm The hidden markov model.
+	 * @param oseq The sequence.
+	 */
+	protected void computeEmission(final HiddenMarkovModel hmm,
+			final MLDataSet oseq) {
+		this.length = oseq.size();
+		this.emission = ensureCapacity(this.emission, this.length,
+				hmm.getStateCount());
+
+		final Iterator<MLDataPair> seqIterator = oseq.iterator();
+		for (int t = 0; t < this.length; t++) {
+			final MLDataPair observation = seqIterator.next();
+			for (int i = 0; i < hmm.getStateCount(); i++) {
+				this.emission[t][i] = hmm.getStateDistribution(i).probability(
+						observation);
+			}
+		}
+	}
+
 	/**
 	 * Compute alpha.
 	 * @param hmm The hidden markov model.
@@ -133,22 +208,16 @@ public class ForwardBackwardCalculator {
 	 */
 	protected void computeAlpha(final HiddenMarkovModel hmm,
 			final MLDataSet oseq) {
-		this.alpha = new double[oseq.size()][hmm.getStateCount()];
+		this.alpha = ensureCapacity(this.alpha, oseq.size(),
+				hmm.getStateCount());
 
 		for (int i = 0; i < hmm.getStateCount(); i++) {
-			computeAlphaInit(hmm, oseq.get(0), i);
-		}
-
-		final Iterator<MLDataPair> seqIterator = oseq.iterator();
-		if (seqIterator.hasNext()) {
-			seqIterator.next();
+			computeAlphaInit(hmm, i);
 		}
 
 		for (int t = 1; t < oseq.size(); t++) {
-			final MLDataPair observation = seqIterator.next();
-
 			for (int i = 0; i < hmm.getStateCount(); i++) {
-				computeAlphaStep(hmm, observation, t, i);
+				computeAlphaStep(hmm, t, i);
 			}
 		}
 	}
@@ -156,31 +225,27 @@ public class ForwardBackwardCalculator {
 	/**
 	 * Compute the alpha init.
 	 * @param hmm THe hidden markov model.
-	 * @param o The element.
 	 * @param i The state.
 	 */
-	protected void computeAlphaInit(final HiddenMarkovModel hmm,
-			final MLDataPair o, final int i) {
-		this.alpha[0][i] = hmm.getPi(i)
-				* hmm.getStateDistribution(i).probability(o);
+	protected void computeAlphaInit(final HiddenMarkovModel hmm, final int i) {
+		this.alpha[0][i] = hmm.getPi(i) * this.emission[0][i];
 	}
 
 	/**
 	 * Compute the alpha step.
 	 * @param hmm The hidden markov model.
-	 * @param o The sequence element.
 	 * @param t The alpha step.
 	 * @param j Thr column.
 	 */
-	protected void computeAlphaStep(final HiddenMarkovModel hmm,
-			final MLDataPair o, final int t, final int j) {
+	protected void computeAlphaStep(final HiddenMarkovModel hmm, final int t,
+			final int j) {
 		double sum = 0.;
 
 		for (int i = 0; i < hmm.getStateCount(); i++) {
 			sum += this.alpha[t - 1][i] * hmm.getTransitionProbability(i, j);
 		}
 
-		this.alpha[t][j] = sum * hmm.getStateDistribution(j).probability(o);
+		this.alpha[t][j] = sum * this.emission[t][j];
 	}
 
 	/**
@@ -189,7 +254,8 @@ public class ForwardBackwardCalculator {
 	 * @param oseq The sequence.
 	 */
 	protected void computeBeta(final HiddenMarkovModel hmm, final MLDataSet oseq) {
-		this.beta = new double[oseq.size()][hmm.getStateCount()];
+		this.beta = ensureCapacity(this.beta, oseq.size(),
+				hmm.getStateCount());
 
 		for (int i = 0; i < hmm.getStateCount(); i++) {
 			this.beta[oseq.size() - 1][i] = 1.;
@@ -197,7 +263,7 @@ public class ForwardBackwardCalculator {
 
 		for (int t = oseq.size() - 2; t >= 0; t--) {
 			for (int i = 0; i < hmm.getStateCount(); i++) {
-				computeBetaStep(hmm, oseq.get(t + 1), t, i);
+				computeBetaStep(hmm, t, i);
 			}
 		}
 	}
@@ -205,17 +271,16 @@ public class ForwardBackwardCalculator {
 	/**
 	 * Compute the beta step.
 	 * @param hmm The hidden markov model.
-	 * @param o THe data par to compute.
 	 * @param t THe matrix row.
 	 * @param i THe matrix column.
 	 */
-	protected void computeBetaStep(final HiddenMarkovModel hmm,
-			final MLDataPair o, final int t, final int i) {
+	protected void computeBetaStep(final HiddenMarkovModel hmm, final int t,
+			final int i) {
 		double sum = 0.;
 
 		for (int j = 0; j < hmm.getStateCount(); j++) {
 			sum += this.beta[t + 1][j] * hmm.getTransitionProbability(i, j)
-					* hmm.getStateDistribution(j).probability(o);
+					* this.emission[t + 1][j];
 		}
 
 		this.beta[t][i] = sum;
@@ -237,13 +302,19 @@ public class ForwardBackwardCalculator {
 			}
 		} else {
 			for (int i = 0; i < hmm.getStateCount(); i++) {
-				this.probability += hmm.getPi(i)
-						* hmm.getStateDistribution(i).probability(oseq.get(0))
+				this.probability += hmm.getPi(i) * this.emission[0][i]
 						* this.beta[0][i];
 			}
 		}
 	}
 
+	/**
+	 * @return The length of the sequence last computed.
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
 	/**
 	 * @return The probability.
 	 */
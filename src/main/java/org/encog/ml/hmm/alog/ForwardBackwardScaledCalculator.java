@@ -23,11 +23,8 @@
  */
 package org.encog.ml.hmm.alog;
 
-import java.util.Arrays;
 import java.util.EnumSet;
-import java.util.Iterator;
 
-import org.encog.ml.data.MLDataPair;
 import org.encog.ml.data.MLDataSet;
 import org.encog.ml.hmm.HiddenMarkovModel;
 
@@ -39,9 +36,15 @@ import org.encog.ml.hmm.HiddenMarkovModel;
  * 
  */
 public class ForwardBackwardScaledCalculator extends ForwardBackwardCalculator {
-	private final double[] ctFactors;
+	private double[] ctFactors;
 	private double lnProbability;
 
+	/**
+	 * Construct an empty object, compute must be called before it is used.
+	 */
+	public ForwardBackwardScaledCalculator() {
+	}
+
 	public ForwardBackwardScaledCalculator(final MLDataSet oseq,
 			final HiddenMarkovModel hmm) {
 		this(oseq, hmm, EnumSet.of(Computation.ALPHA));
@@ -50,13 +53,24 @@ public class ForwardBackwardScaledCalculator extends ForwardBackwardCalculator {
 	public ForwardBackwardScaledCalculator(
 			final MLDataSet oseq, final HiddenMarkovModel hmm,
 			final EnumSet<Computation> flags) {
+		compute(oseq, hmm, flags);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void compute(final MLDataSet oseq, final HiddenMarkovModel hmm,
+			final EnumSet<Computation> flags) {
 		if (oseq.size() < 1) {
 			throw new IllegalArgumentException();
 		}
 
-		this.ctFactors = new double[oseq.size()];
-		Arrays.fill(this.ctFactors, 0.);
+		if (this.ctFactors == null || this.ctFactors.length < oseq.size()) {
+			this.ctFactors = new double[oseq.size()];
+		}
 
+		computeEmission(hmm, oseq);
 		computeAlpha(hmm, oseq);
 
 		if (flags.contains(Computation.BETA)) {
@@ -69,23 +83,17 @@ public class ForwardBackwardScaledCalculator extends ForwardBackwardCalculator {
 	@Override
 	protected void computeAlpha(final HiddenMarkovModel hmm,
 			final MLDataSet oseq) {
-		this.alpha = new double[oseq.size()][hmm.getStateCount()];
+		this.alpha = ensureCapacity(this.alpha, oseq.size(),
+				hmm.getStateCount());
 
 		for (int i = 0; i < hmm.getStateCount(); i++) {
-			computeAlphaInit(hmm, oseq.get(0), i);
+			computeAlphaInit(hmm, i);
 		}
 		scale(this.ctFactors, this.alpha, 0);
 
-		final Iterator<MLDataPair> seqIterator = oseq.iterator();
-		if (seqIterator.hasNext()) {
-			seqIterator.next();
-		}
-
 		for (int t = 1; t < oseq.size(); t++) {
-			final MLDataPair observation = seqIterator.next();
-
 			for (int i = 0; i < hmm.getStateCount(); i++) {
-				computeAlphaStep(hmm, observation, t, i);
+				computeAlphaStep(hmm, t, i);
 			}
 			scale(this.ctFactors, this.alpha, t);
 		}
@@ -93,7 +101,8 @@ public class ForwardBackwardScaledCalculator extends ForwardBackwardCalculator {
 
 	@Override
 	protected void computeBeta(final HiddenMarkovModel hmm, final MLDataSet oseq) {
-		this.beta = new double[oseq.size()][hmm.getStateCount()];
+		this.beta = ensureCapacity(this.beta, oseq.size(),
+				hmm.getStateCount());
 
 		for (int i = 0; i < hmm.getStateCount(); i++) {
 			this.beta[oseq.size() - 1][i] = 1. / this.ctFactors[oseq.size() - 1];
@@ -101,7 +110,7 @@ public class ForwardBackwardScaledCalculator extends ForwardBackwardCalculator {
 
 		for (int t = oseq.size() - 2; t >= 0; t--) {
 			for (int i = 0; i < hmm.getStateCount(); i++) {
-				computeBetaStep(hmm, oseq.get(t + 1), t, i);
+				computeBetaStep(hmm, t, i);
 				this.beta[t][i] /= this.ctFactors[t];
 			}
 		}
@@ -23,6 +23,7 @@
  */
 package org.encog.ml.hmm.alog;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import org.encog.ml.data.MLDataPair;
@@ -35,43 +36,78 @@ import org.encog.ml.hmm.HiddenMarkovModel;
  * events. Used for the Markov information sources, and more generally, hidden
  * Markov models (HMM).
  * 
+ * A calculator can be reused for many sequences by calling compute. Its
+ * tables are only reallocated when a longer sequence is seen.
+ * 
  * Viterbi AJ (April 1967).
  * "Error bounds for convolutional codes and an asymptotically optimum decoding algorithm"
  * . IEEE Transactions on Information Theory 13 (2): 260-269.
  * doi:10.1109/TIT.1967.1054010.
  */
 public class ViterbiCalculator {
-	private final double[][] delta;
-	private final int[][] psy;
-	private final int[] stateSequence;
+	private double[][] delta;
+	private int[][] psy;
+	private int[] stateSequence;
+	private double[][] lnTransition;
+	private int length;
 	private double lnProbability;
 
+	/**
+	 * Construct an empty calculator, compute must be called before it is used.
+	 */
+	public ViterbiCalculator() {
+	}
+
 	public ViterbiCalculator(final MLDataSet oseq, final HiddenMarkovModel hmm) {
+		compute(oseq, hmm);
+	}
+
+	/**
+	 * Find the most likely state sequence, reusing the tables from the
+	 * previous sequence where they are large enough.
+	 * @param oseq The sequence.
+	 * @param hmm The hidden markov model.
+	 */
+	public void compute(final MLDataSet oseq, final HiddenMarkovModel hmm) {
 		if (oseq.size() < 1) {
 			throw new IllegalArgumentException("Must not have empty sequence");
 		}
 
-		this.delta = new double[oseq.size()][hmm.getStateCount()];
-		this.psy = new int[oseq.size()][hmm.getStateCount()];
-		this.stateSequence = new int[oseq.size()];
+		final int stateCount = hmm.getStateCount();
+		this.length = oseq.size();
 
-		for (int i = 0; i < hmm.getStateCount(); i++) {
-			this.delta[0][i] = -Math.log(hmm.getPi(i))
-					- Math.log(hmm.getStateDistribution(i).probability(
-							oseq.get(0)));
-			this.psy[0][i] = 0;
+		if (this.delta == null || this.delta.length < this.length
+				|| this.delta[0].length != stateCount) {
+			this.delta = new double[this.length][stateCount];
+			this.psy = new int[this.length][stateCount];
+			this.stateSequence = new int[this.length];
+		}
+
+		// the transition logs are the same at every step
+		if (this.lnTransition == null || this.lnTransition.length != stateCount) {
+			this.lnTransition = new double[stateCount][stateCount];
+		}
+		for (int i = 0; i < stateCount; i++) {
+			for (int j = 0; j < stateCount; j++) {
+				this.lnTransition[i][j] = Math.log(hmm
+						.getTransitionProbability(i, j));
+			}
 		}
 
 		final Iterator<MLDataPair> oseqIterator = oseq.iterator();
-		if (oseqIterator.hasNext()) {
-			oseqIterator.next();
+		final MLDataPair first = oseqIterator.next();
+
+		for (int i = 0; i < stateCount; i++) {
+			this.delta[0][i] = -Math.log(hmm.getPi(i))
+					- Math.log(hmm.getStateDistribution(i).probability(first));
+			this.psy[0][i] = 0;
 		}
 
 		int t = 1;
 		while (oseqIterator.hasNext()) {
 			final MLDataPair observation = oseqIterator.next();
 
-			for (int i = 0; i < hmm.getStateCount(); i++) {
+			for (int i = 0; i < stateCount; i++) {
 				computeStep(hmm, observation, t, i);
 			}
 
@@ -79,17 +115,17 @@ public class ViterbiCalculator {
 		}
 
 		this.lnProbability = Double.MAX_VALUE;
-		for (int i = 0; i < hmm.getStateCount(); i++) {
-			final double thisProbability = this.delta[oseq.size() - 1][i];
+		for (int i = 0; i < stateCount; i++) {
+			final double thisProbability = this.delta[this.length - 1][i];
 
 			if (this.lnProbability > thisProbability) {
 				this.lnProbability = thisProbability;
-				this.stateSequence[oseq.size() - 1] = i;
+				this.stateSequence[this.length - 1] = i;
 			}
 		}
 		this.lnProbability = -this.lnProbability;
 
-		for (int t2 = oseq.size() - 2; t2 >= 0; t2--) {
+		for (int t2 = this.length - 2; t2 >= 0; t2--) {
 			this.stateSequence[t2] = this.psy[t2 + 1][this.stateSequence[t2 + 1]];
 		}
 	}
@@ -101,7 +137,7 @@ public class ViterbiCalculator {
 
 		for (int i = 0; i < hmm.getStateCount(); i++) {
 			final double thisDelta = this.delta[t - 1][i]
-					- Math.log(hmm.getTransitionProbability(i, j));
+					- this.lnTransition[i][j];
 
 			if (minDelta > thisDelta) {
 				minDelta = thisDelta;
@@ -119,6 +155,6 @@ public class ViterbiCalculator {
 	}
 
 	public int[] stateSequence() {
-		return this.stateSequence.clone();
+		return Arrays.copyOf(this.stateSequence, this.length);
 	}
 }
@@ -26,16 +26,22 @@ package org.encog.ml.hmm.train.bw;
 import java.util.Arrays;
 import java.util.List;
 
+import org.encog.mathutil.IntRange;
 import org.encog.ml.MLMethod;
 import org.encog.ml.TrainingImplementationType;
 import org.encog.ml.data.MLDataSet;
 import org.encog.ml.data.MLSequenceSet;
 import org.encog.ml.hmm.HiddenMarkovModel;
 import org.encog.ml.hmm.alog.ForwardBackwardCalculator;
+import org.encog.ml.hmm.alog.ForwardBackwardScaledCalculator;
 import org.encog.ml.hmm.distributions.StateDistribution;
 import org.encog.ml.train.MLTrain;
 import org.encog.ml.train.strategy.Strategy;
 import org.encog.neural.networks.training.propagation.TrainingContinuation;
+import org.encog.util.concurrency.DetermineWorkload;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
 
 /**
  * This class provides the base implementation for Baum-Welch learning for
@@ -53,12 +59,44 @@ import org.encog.neural.networks.training.propagation.TrainingContinuation;
  * Hidden Markov Models and the Baum-Welch Algorithm, IEEE Information Theory
  * Society Newsletter, Dec. 2003.
  * 
+ * The expectation step is split across threads by sequence. Each thread
+ * reuses its own forward/backward tables from one iteration to the next.
  */
-public abstract class BaseBaumWelch implements MLTrain {
+public abstract class BaseBaumWelch implements MLTrain, MultiThreadable {
 	private int iterations;
 	private HiddenMarkovModel method;
 	private final MLSequenceSet training;
 
+	/**
+	 * The number of threads to use, zero for automatic.
+	 */
+	private int threadCount;
+
+	/**
+	 * The expectation workers, created on the first iteration.
+	 */
+	private BaumWelchWorker[] workers;
+
+	/**
+	 * The training sequences.
+	 */
+	private MLDataSet[] sequences;
+
+	/**
+	 * The gamma row where each sequence starts.
+	 */
+	private int[] offsets;
+
+	/**
+	 * The state probabilities, one row per observation in the training set.
+	 */
+	private double[][] gamma;
+
+	/**
+	 * The weights for fitting a state distribution.
+	 */
+	private double[] weights;
+
 	public BaseBaumWelch(final HiddenMarkovModel hmm,
 			final MLSequenceSet training) {
 		this.method = hmm;
@@ -75,6 +113,18 @@ public abstract class BaseBaumWelch implements MLTrain {
 		return false;
 	}
 
+	/**
+	 * Estimate the state probabilities of a sequence from its xi table.
+	 * 
+	 * @param xi
+	 *            The xi table of the sequence.
+	 * @param fbc
+	 *            The forward/backward calculator of the sequence.
+	 * @return The state probabilities.
+	 * @deprecated The training loop no longer stores xi, it sums it as it is
+	 *             calculated. This method is not called during training.
+	 */
+	@Deprecated
 	protected double[][] estimateGamma(final double[][][] xi,
 			final ForwardBackwardCalculator fbc) {
 		final double[][] gamma = new double[xi.length + 1][xi[0].length];
@@ -100,8 +150,47 @@ public abstract class BaseBaumWelch implements MLTrain {
 		return gamma;
 	}
 
-	public abstract double[][][] estimateXi(MLDataSet sequence,
-			ForwardBackwardCalculator fbc, HiddenMarkovModel hmm);
+	/**
+	 * Estimate the xi table of a sequence, the probability of each transition
+	 * at each step.
+	 * 
+	 * @param sequence
+	 *            The sequence.
+	 * @param fbc
+	 *            The forward/backward calculator, already run on the
+	 *            sequence.
+	 * @param hmm
+	 *            The model.
+	 * @return The xi table.
+	 * @deprecated The training loop no longer stores xi, it sums it as it is
+	 *             calculated, using xiDivisor. This method is not called
+	 *             during training.
+	 */
+	@Deprecated
+	public double[][][] estimateXi(final MLDataSet sequence,
+			final ForwardBackwardCalculator fbc, final HiddenMarkovModel hmm) {
+		if (sequence.size() <= 1) {
+			throw new IllegalArgumentException(
+					"Must have more than one observation");
+		}
+
+		final double xi[][][] = new double[sequence.size() - 1][hmm
+				.getStateCount()][hmm.getStateCount()];
+		final double divisor = xiDivisor(fbc);
+
+		for (int t = 0; t < (sequence.size() - 1); t++) {
+			for (int i = 0; i < hmm.getStateCount(); i++) {
+				for (int j = 0; j < hmm.getStateCount(); j++) {
+					xi[t][i][j] = (fbc.alphaElement(t, i)
+							* hmm.getTransitionProbability(i, j)
+							* fbc.emissionElement(t + 1, j) * fbc
+								.betaElement(t + 1, j)) / divisor;
+				}
+			}
+		}
+
+		return xi;
+	}
 
 	@Override
 	public void finishTraining() {
@@ -111,6 +200,51 @@ public abstract class BaseBaumWelch implements MLTrain {
 	public abstract ForwardBackwardCalculator generateForwardBackwardCalculator(
 			MLDataSet sequence, HiddenMarkovModel hmm);
 
+	/**
+	 * Create an empty forward/backward calculator, to be reused for many
+	 * sequences by a worker. By default there is none, and the worker calls
+	 * generateForwardBackwardCalculator for each sequence instead.
+	 * 
+	 * @return The calculator, or null.
+	 */
+	public ForwardBackwardCalculator createCalculator() {
+		return null;
+	}
+
+	/**
+	 * The value each xi element is divided by, once the forward/backward
+	 * calculator has been run on a sequence. By default this is the
+	 * probability of the sequence, or one for a scaled calculator, whose
+	 * alpha and beta are already normalized.
+	 * 
+	 * @param fbc
+	 *            The forward/backward calculator.
+	 * @return The divisor.
+	 */
+	public double xiDivisor(final ForwardBackwardCalculator fbc) {
+		if (fbc instanceof ForwardBackwardScaledCalculator) {
+			return 1.0;
+		}
+		return fbc.probability();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.threadCount = numThreads;
+		this.workers = null;
+	}
+
 	@Override
 	public double getError() {
 		return 0;
@@ -146,8 +280,43 @@ public abstract class BaseBaumWelch implements MLTrain {
 		return false;
 	}
 
+	/**
+	 * Create the workers, and the tables they share. This is done on the
+	 * first iteration, and the workers are reused after that.
+	 */
+	private void init() {
+		final int stateCount = this.method.getStateCount();
+		this.sequences = this.training.getSequences().toArray(
+				new MLDataSet[0]);
+		this.offsets = new int[this.sequences.length];
+
+		int total = 0;
+		for (int s = 0; s < this.sequences.length; s++) {
+			this.offsets[s] = total;
+			total += this.sequences[s].size();
+		}
+
+		this.gamma = new double[total][stateCount];
+		this.weights = new double[total];
+
+		final DetermineWorkload determine = new DetermineWorkload(
+				this.threadCount, this.sequences.length);
+		this.workers = new BaumWelchWorker[determine.getThreadCount()];
+
+		int index = 0;
+		for (final IntRange r : determine.calculateWorkers()) {
+			this.workers[index++] = new BaumWelchWorker(this, this.sequences,
+					this.offsets, this.gamma, r.getLow(), r.getHigh(),
+					stateCount);
+		}
+	}
+
 	@Override
 	public void iteration() {
+		if (this.workers == null) {
+			init();
+		}
+
 		HiddenMarkovModel nhmm;
 		try {
 			nhmm = this.method.clone();
@@ -155,32 +324,33 @@ public abstract class BaseBaumWelch implements MLTrain {
 			throw new InternalError();
 		}
 
-		final double allGamma[][][] = new double[this.training
-				.getSequenceCount()][][];
-		final double aijNum[][] = new double[this.method.getStateCount()][this.method
-				.getStateCount()];
-		final double aijDen[] = new double[this.method.getStateCount()];
-
-		Arrays.fill(aijDen, 0.0);
-		for (int i = 0; i < this.method.getStateCount(); i++) {
-			Arrays.fill(aijNum[i], 0.);
+		// expectation, each worker handles a range of the sequences
+		for (final BaumWelchWorker worker : this.workers) {
+			worker.setModel(this.method);
 		}
 
-		int g = 0;
-		for (final MLDataSet obsSeq : this.training.getSequences()) {
-			final ForwardBackwardCalculator fbc = generateForwardBackwardCalculator(
-					obsSeq, this.method);
+		if (this.workers.length > 1) {
+			final TaskGroup group = EngineConcurrency.getInstance()
+					.createTaskGroup();
+			for (final BaumWelchWorker worker : this.workers) {
+				EngineConcurrency.getInstance().processTask(worker, group);
+			}
+			group.waitForComplete();
+			EngineConcurrency.getInstance().checkError();
+		} else {
+			this.workers[0].run();
+		}
 
-			final double xi[][][] = estimateXi(obsSeq, fbc, this.method);
-			final double gamma[][] = allGamma[g++] = estimateGamma(xi, fbc);
+		// combine the sums in worker order
+		final double aijNum[][] = new double[this.method.getStateCount()][this.method
+				.getStateCount()];
+		final double aijDen[] = new double[this.method.getStateCount()];
 
+		for (final BaumWelchWorker worker : this.workers) {
 			for (int i = 0; i < this.method.getStateCount(); i++) {
-				for (int t = 0; t < (obsSeq.size() - 1); t++) {
-					aijDen[i] += gamma[t][i];
-
-					for (int j = 0; j < this.method.getStateCount(); j++) {
-						aijNum[i][j] += xi[t][i][j];
-					}
+				aijDen[i] += worker.getAijDen()[i];
+				for (int j = 0; j < this.method.getStateCount(); j++) {
+					aijNum[i][j] += worker.getAijNum()[i][j];
 				}
 			}
 		}
@@ -204,37 +374,29 @@ public abstract class BaseBaumWelch implements MLTrain {
 			nhmm.setPi(i, 0.);
 		}
 
-		for (int o = 0; o < this.training.getSequenceCount(); o++) {
+		for (int o = 0; o < this.sequences.length; o++) {
 			for (int i = 0; i < this.method.getStateCount(); i++) {
 				nhmm.setPi(
 						i,
 						nhmm.getPi(i)
-								+ (allGamma[o][0][i] / this.training
-										.getSequenceCount()));
+								+ (this.gamma[this.offsets[o]][i] / this.sequences.length));
 			}
 		}
 
 		/* compute pdfs */
 		for (int i = 0; i < this.method.getStateCount(); i++) {
-
-			final double[] weights = new double[this.training.size()];
 			double sum = 0.;
-			int j = 0;
 
-			int o = 0;
-			for (final MLDataSet obsSeq : this.training.getSequences()) {
-				for (int t = 0; t < obsSeq.size(); t++, j++) {
-					sum += weights[j] = allGamma[o][t][i];
-				}
-				o++;
+			for (int j = 0; j < this.weights.length; j++) {
+				sum += this.weights[j] = this.gamma[j][i];
 			}
 
-			for (j--; j >= 0; j--) {
-				weights[j] /= sum;
+			for (int j = this.weights.length - 1; j >= 0; j--) {
+				this.weights[j] /= sum;
 			}
 
 			final StateDistribution opdf = nhmm.getStateDistribution(i);
-			opdf.fit(this.training, weights);
+			opdf.fit(this.training, this.weights);
 		}
 
 		this.method = nhmm;
@@ -0,0 +1,209 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.hmm.train.bw;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.hmm.HiddenMarkovModel;
+import org.encog.ml.hmm.alog.ForwardBackwardCalculator;
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * Runs the expectation step of Baum-Welch over a range of sequences. Each
+ * worker keeps its own forward/backward calculator and transition sums, which
+ * are reused from one iteration to the next. The state probabilities (gamma)
+ * are written straight into a table shared by all workers, each worker only
+ * writes the rows of its own sequences.
+ */
+public class BaumWelchWorker implements EngineTask {
+
+	/**
+	 * Compute both alpha and beta.
+	 */
+	private static final EnumSet<ForwardBackwardCalculator.Computation> ALL = EnumSet
+			.allOf(ForwardBackwardCalculator.Computation.class);
+
+	/**
+	 * The trainer that owns this worker.
+	 */
+	private final BaseBaumWelch owner;
+
+	/**
+	 * All of the training sequences.
+	 */
+	private final MLDataSet[] sequences;
+
+	/**
+	 * The row in the gamma table where each sequence starts.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * The gamma table, one row per observation, shared by all workers.
+	 */
+	private final double[][] gamma;
+
+	/**
+	 * The first sequence to process.
+	 */
+	private final int low;
+
+	/**
+	 * The last sequence to process.
+	 */
+	private final int high;
+
+	/**
+	 * The reusable forward/backward calculator, or null to have the owner
+	 * generate one for each sequence.
+	 */
+	private final ForwardBackwardCalculator calculator;
+
+	/**
+	 * The transition numerator sums.
+	 */
+	private final double[][] aijNum;
+
+	/**
+	 * The transition denominator sums.
+	 */
+	private final double[] aijDen;
+
+	/**
+	 * The model being trained.
+	 */
+	private HiddenMarkovModel hmm;
+
+	/**
+	 * Construct the worker.
+	 * 
+	 * @param theOwner
+	 *            The trainer that owns this worker.
+	 * @param theSequences
+	 *            All of the training sequences.
+	 * @param theOffsets
+	 *            The gamma row where each sequence starts.
+	 * @param theGamma
+	 *            The shared gamma table.
+	 * @param theLow
+	 *            The first sequence to process.
+	 * @param theHigh
+	 *            The last sequence to process.
+	 * @param stateCount
+	 *            The number of states.
+	 */
+	public BaumWelchWorker(final BaseBaumWelch theOwner,
+			final MLDataSet[] theSequences, final int[] theOffsets,
+			final double[][] theGamma, final int theLow, final int theHigh,
+			final int stateCount) {
+		this.owner = theOwner;
+		this.sequences = theSequences;
+		this.offsets = theOffsets;
+		this.gamma = theGamma;
+		this.low = theLow;
+		this.high = theHigh;
+		this.calculator = theOwner.createCalculator();
+		this.aijNum = new double[stateCount][stateCount];
+		this.aijDen = new double[stateCount];
+	}
+
+	/**
+	 * Process the sequences. The transition sums are cleared first.
+	 */
+	public void run() {
+		final int stateCount = this.aijDen.length;
+
+		Arrays.fill(this.aijDen, 0.0);
+		for (int i = 0; i < stateCount; i++) {
+			Arrays.fill(this.aijNum[i], 0.0);
+		}
+
+		for (int s = this.low; s <= this.high; s++) {
+			final MLDataSet sequence = this.sequences[s];
+			if (sequence.size() <= 1) {
+				throw new IllegalArgumentException(
+						"Must have more than one observation");
+			}
+
+			final ForwardBackwardCalculator fbc;
+			if (this.calculator != null) {
+				this.calculator.compute(sequence, this.hmm, ALL);
+				fbc = this.calculator;
+			} else {
+				fbc = this.owner.generateForwardBackwardCalculator(sequence,
+						this.hmm);
+			}
+			final double divisor = this.owner.xiDivisor(fbc);
+			final int last = sequence.size() - 1;
+			final double[] lastGamma = this.gamma[this.offsets[s] + last];
+			Arrays.fill(lastGamma, 0.0);
+
+			for (int t = 0; t < last; t++) {
+				final double[] g = this.gamma[this.offsets[s] + t];
+				Arrays.fill(g, 0.0);
+
+				// xi is used as soon as it is calculated, rather than stored
+				for (int i = 0; i < stateCount; i++) {
+					final double alpha = fbc.alphaElement(t, i);
+					for (int j = 0; j < stateCount; j++) {
+						final double xi = (alpha
+								* this.hmm.getTransitionProbability(i, j)
+								* fbc.emissionElement(t + 1, j) * fbc
+									.betaElement(t + 1, j)) / divisor;
+						g[i] += xi;
+						this.aijNum[i][j] += xi;
+						if (t == last - 1) {
+							lastGamma[j] += xi;
+						}
+					}
+					this.aijDen[i] += g[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param theHmm
+	 *            The model to evaluate on the next run.
+	 */
+	public void setModel(final HiddenMarkovModel theHmm) {
+		this.hmm = theHmm;
+	}
+
+	/**
+	 * @return The transition numerator sums.
+	 */
+	public double[][] getAijNum() {
+		return this.aijNum;
+	}
+
+	/**
+	 * @return The transition denominator sums.
+	 */
+	public double[] getAijDen() {
+		return this.aijDen;
+	}
+}
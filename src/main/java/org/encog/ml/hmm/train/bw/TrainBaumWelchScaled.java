@@ -24,9 +24,7 @@
 package org.encog.ml.hmm.train.bw;
 
 import java.util.EnumSet;
-import java.util.Iterator;
 
-import org.encog.ml.data.MLDataPair;
 import org.encog.ml.data.MLDataSet;
 import org.encog.ml.data.MLSequenceSet;
 import org.encog.ml.hmm.HiddenMarkovModel;
@@ -56,40 +54,21 @@ public class TrainBaumWelchScaled extends BaseBaumWelch {
 		super(hmm, training);
 	}
 
-	@Override
-	public double[][][] estimateXi(final MLDataSet sequence,
-			final ForwardBackwardCalculator fbc, final HiddenMarkovModel hmm) {
-		if (sequence.size() <= 1) {
-			throw new IllegalArgumentException(
-					"Must have more than one observation");
-		}
-
-		final double xi[][][] = new double[sequence.size() - 1][hmm
-				.getStateCount()][hmm.getStateCount()];
-
-		final Iterator<MLDataPair> seqIterator = sequence.iterator();
-		seqIterator.next();
-
-		for (int t = 0; t < (sequence.size() - 1); t++) {
-			final MLDataPair observation = seqIterator.next();
-
-			for (int i = 0; i < hmm.getStateCount(); i++) {
-				for (int j = 0; j < hmm.getStateCount(); j++) {
-					xi[t][i][j] = fbc.alphaElement(t, i)
-							* hmm.getTransitionProbability(i, j)
-							* hmm.getStateDistribution(j).probability(
-									observation) * fbc.betaElement(t + 1, j);
-				}
-			}
-		}
-
-		return xi;
-	}
-
 	@Override
 	public ForwardBackwardCalculator generateForwardBackwardCalculator(
 			final MLDataSet sequence, final HiddenMarkovModel hmm) {
 		return new ForwardBackwardScaledCalculator(sequence, hmm,
 				EnumSet.allOf(ForwardBackwardCalculator.Computation.class));
 	}
+
+	@Override
+	public ForwardBackwardCalculator createCalculator() {
+		return new ForwardBackwardScaledCalculator();
+	}
+
+	@Override
+	public double xiDivisor(final ForwardBackwardCalculator fbc) {
+		// the scaled alpha and beta are already normalized
+		return 1.0;
+	}
 }
@@ -283,6 +283,16 @@ public class FlatNetwork implements Serializable, Cloneable {
 	 * Clear any context neurons.
 	 */
 	public void clearContext() {
+		clearContext(this.layerOutput);
+	}
+
+	/**
+	 * Clear any context neurons in the specified layer outputs.
+	 * 
+	 * @param layerOutput
+	 *            The layer outputs to clear.
+	 */
+	protected void clearContext(final double[] layerOutput) {
 		int index = 0;
 
 		for (int i = 0; i < this.layerIndex.length; i++) {
@@ -290,16 +300,16 @@ public class FlatNetwork implements Serializable, Cloneable {
 			final boolean hasBias = (this.layerContextCount[i] + this.layerFeedCounts[i]) != this.layerCounts[i];
 
 			// fill in regular neurons
-			Arrays.fill(this.layerOutput, index, index+this.layerFeedCounts[i], 0);
+			Arrays.fill(layerOutput, index, index+this.layerFeedCounts[i], 0);
 			index += this.layerFeedCounts[i];
 
 			// fill in the bias
 			if (hasBias) {
-				this.layerOutput[index++] = this.biasActivation[i];
+				layerOutput[index++] = this.biasActivation[i];
 			}
 			
 			// fill in context
-			Arrays.fill(this.layerOutput, index, index+this.layerContextCount[i], 0);
+			Arrays.fill(layerOutput, index, index+this.layerContextCount[i], 0);
 			index += this.layerContextCount[i];
 		}
 	}
@@ -358,23 +368,59 @@ public class FlatNetwork implements Serializable, Cloneable {
 	 *            Output will be placed here.
 	 */
 	public void compute(final double[] input, final double[] output) {
-		final int sourceIndex = this.layerOutput.length
+		compute(input, output, this.layerOutput, this.layerSums);
+	}
+
+	/**
+	 * Calculate the output for the given input, using a context for the
+	 * layer outputs rather than the network's own arrays. The network is not
+	 * changed, so any number of threads can compute at once, as long as each
+	 * uses its own context. Nothing is allocated.
+	 * 
+	 * @param input
+	 *            The input.
+	 * @param output
+	 *            Output will be placed here.
+	 * @param context
+	 *            The context, created by this network's createContext.
+	 */
+	public void compute(final double[] input, final double[] output,
+			final FlatNetworkContext context) {
+		compute(input, output, context.getLayerOutput(),
+				context.getLayerSums());
+	}
+
+	/**
+	 * Calculate the output for the given input.
+	 * 
+	 * @param input
+	 *            The input.
+	 * @param output
+	 *            Output will be placed here.
+	 * @param layerOutput
+	 *            The layer outputs to use.
+	 * @param layerSums
+	 *            The layer sums to use.
+	 */
+	protected void compute(final double[] input, final double[] output,
+			final double[] layerOutput, final double[] layerSums) {
+		final int sourceIndex = layerOutput.length
 				- this.layerCounts[this.layerCounts.length - 1];
 
-		EngineArray.arrayCopy(input, 0, this.layerOutput, sourceIndex,
+		EngineArray.arrayCopy(input, 0, layerOutput, sourceIndex,
 				this.inputCount);
 
 		for (int i = this.layerIndex.length - 1; i > 0; i--) {
-			computeLayer(i);
+			computeLayer(i, layerOutput, layerSums);
 		}
 		
 		// update context values
 		final int offset = this.contextTargetOffset[0];
 
-		EngineArray.arrayCopy(this.layerOutput, 0, layerOutput,
+		EngineArray.arrayCopy(layerOutput, 0, layerOutput,
 				offset, this.contextTargetSize[0]);
 
-		EngineArray.arrayCopy(this.layerOutput, 0, output, 0, this.outputCount);
+		EngineArray.arrayCopy(layerOutput, 0, output, 0, this.outputCount);
 	}
 
 	/**
@@ -384,6 +430,21 @@ public class FlatNetwork implements Serializable, Cloneable {
 	 *            The layer to calculate.
 	 */
 	protected void computeLayer(final int currentLayer) {
+		computeLayer(currentLayer, this.layerOutput, this.layerSums);
+	}
+
+	/**
+	 * Calculate a layer.
+	 * 
+	 * @param currentLayer
+	 *            The layer to calculate.
+	 * @param layerOutput
+	 *            The layer outputs to use.
+	 * @param layerSums
+	 *            The layer sums to use.
+	 */
+	protected void computeLayer(final int currentLayer,
+			final double[] layerOutput, final double[] layerSums) {
 
 		final int inputIndex = this.layerIndex[currentLayer];
 		final int outputIndex = this.layerIndex[currentLayer - 1];
@@ -399,20 +460,31 @@ public class FlatNetwork implements Serializable, Cloneable {
 		for (int x = outputIndex; x < limitX; x++) {
 			double sum = 0;
 			for (int y = inputIndex; y < limitY; y++) {
-				sum += this.weights[index++] * this.layerOutput[y];
+				sum += this.weights[index++] * layerOutput[y];
 			}
-			this.layerSums[x] = sum;
-			this.layerOutput[x] = sum;
+			layerSums[x] = sum;
+			layerOutput[x] = sum;
 		}
 
 		this.activationFunctions[currentLayer - 1].activationFunction(
-				this.layerOutput, outputIndex, outputSize);
+				layerOutput, outputIndex, outputSize);
 
 		// update context values
 		final int offset = this.contextTargetOffset[currentLayer];
 
-		EngineArray.arrayCopy(this.layerOutput, outputIndex,
-				this.layerOutput, offset, this.contextTargetSize[currentLayer]);
+		EngineArray.arrayCopy(layerOutput, outputIndex,
+				layerOutput, offset, this.contextTargetSize[currentLayer]);
+	}
+
+	/**
+	 * Create a context that holds the layer outputs for one caller of
+	 * compute. The context starts out with the network's current layer
+	 * outputs, so bias and context neurons are already set.
+	 * 
+	 * @return The new context.
+	 */
+	public FlatNetworkContext createContext() {
+		return new FlatNetworkContext(this);
 	}
 
 	/**
@@ -581,6 +653,17 @@ public class FlatNetwork implements Serializable, Cloneable {
 		return this.weights;
 	}
 
+	/**
+	 * Get a single weight.
+	 * 
+	 * @param index
+	 *            The index of the weight.
+	 * @return The weight.
+	 */
+	public double getWeight(final int index) {
+		return this.weights[index];
+	}
+
 	/**
 	 * Neural networks with only one type of activation function offer certain
 	 * optimization options. This method determines if only a single activation
@@ -696,6 +779,13 @@ public class FlatNetwork implements Serializable, Cloneable {
 		return this.isLimited;
 	}
 
+	/**
+	 * @return True, if the weights of this network can not be changed.
+	 */
+	public boolean isReadOnly() {
+		return false;
+	}
+
 	/**
 	 * Perform a simple randomization of the weights of the neural network
 	 * between -1 and 1.
@@ -852,6 +942,15 @@ public class FlatNetwork implements Serializable, Cloneable {
 
 	}
 
+	/**
+	 * Set a single weight.
+	 * @param index The index of the weight.
+	 * @param value The weight.
+	 */
+	public void setWeight(final int index, final double value) {
+		this.weights[index] = value;
+	}
+
 	/**
 	 * Set the weights.
 	 * @param weights The weights.
@@ -0,0 +1,96 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.flat;
+
+import org.encog.util.EngineArray;
+
+/**
+ * The per-call state of a flat network: the output and sum of every neuron.
+ * The weights and structure are held by the network, and are only read during
+ * compute, so several threads can share one network as long as each has its
+ * own context. Contexts are small and can be pooled, see
+ * FlatNetworkContextPool.
+ * 
+ * For recurrent networks the context also holds the values of the context
+ * neurons, so each context carries its own recurrent state.
+ */
+public class FlatNetworkContext {
+
+	/**
+	 * The network this context was created for.
+	 */
+	private final FlatNetwork network;
+
+	/**
+	 * The output of each neuron.
+	 */
+	private final double[] layerOutput;
+
+	/**
+	 * The sum of each neuron, before the activation function.
+	 */
+	private final double[] layerSums;
+
+	/**
+	 * Construct a context for a network. The layer outputs are copied from
+	 * the network, so bias neurons are already set.
+	 * 
+	 * @param theNetwork
+	 *            The network.
+	 */
+	public FlatNetworkContext(final FlatNetwork theNetwork) {
+		this.network = theNetwork;
+		this.layerOutput = EngineArray.arrayCopy(theNetwork.getLayerOutput());
+		this.layerSums = new double[this.layerOutput.length];
+	}
+
+	/**
+	 * Clear the context neurons, as FlatNetwork.clearContext does for the
+	 * network's own arrays.
+	 */
+	public void clearContext() {
+		this.network.clearContext(this.layerOutput);
+	}
+
+	/**
+	 * @return The network this context was created for.
+	 */
+	public FlatNetwork getNetwork() {
+		return this.network;
+	}
+
+	/**
+	 * @return The output of each neuron.
+	 */
+	public double[] getLayerOutput() {
+		return this.layerOutput;
+	}
+
+	/**
+	 * @return The sum of each neuron, before the activation function.
+	 */
+	public double[] getLayerSums() {
+		return this.layerSums;
+	}
+}
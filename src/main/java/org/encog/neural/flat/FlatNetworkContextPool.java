@@ -0,0 +1,105 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.flat;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread-safe pool of contexts for a flat network. Request threads take a
+ * context, compute, and give it back, so contexts are only allocated when
+ * more threads than ever before are computing at once.
+ */
+public class FlatNetworkContextPool {
+
+	/**
+	 * The network the contexts are for.
+	 */
+	private final FlatNetwork network;
+
+	/**
+	 * The contexts that are not in use.
+	 */
+	private final ConcurrentLinkedQueue<FlatNetworkContext> available = new ConcurrentLinkedQueue<FlatNetworkContext>();
+
+	/**
+	 * Construct a pool.
+	 * 
+	 * @param theNetwork
+	 *            The network the contexts are for.
+	 */
+	public FlatNetworkContextPool(final FlatNetwork theNetwork) {
+		this.network = theNetwork;
+	}
+
+	/**
+	 * Take a context from the pool, creating one if none are free. It must be
+	 * given back with release when the caller is done with it.
+	 * 
+	 * @return The context.
+	 */
+	public FlatNetworkContext acquire() {
+		final FlatNetworkContext result = this.available.poll();
+		if (result == null) {
+			return this.network.createContext();
+		}
+		return result;
+	}
+
+	/**
+	 * Give a context back to the pool.
+	 * 
+	 * @param context
+	 *            The context, must have been taken from this pool.
+	 */
+	public void release(final FlatNetworkContext context) {
+		this.available.offer(context);
+	}
+
+	/**
+	 * Compute the output for an input, using a pooled context. This can be
+	 * called from any number of threads at once. Context neurons of a
+	 * recurrent network are carried by the pooled contexts, so recurrent
+	 * networks should use their own contexts instead.
+	 * 
+	 * @param input
+	 *            The input.
+	 * @param output
+	 *            Output will be placed here.
+	 */
+	public void compute(final double[] input, final double[] output) {
+		final FlatNetworkContext context = acquire();
+		try {
+			this.network.compute(input, output, context);
+		} finally {
+			release(context);
+		}
+	}
+
+	/**
+	 * @return The network the contexts are for.
+	 */
+	public FlatNetwork getNetwork() {
+		return this.network;
+	}
+}
@@ -96,20 +96,25 @@ public class FlatNetworkRBF extends FlatNetwork implements Serializable, Cloneab
 	 *            The input.
 	 * @param output
 	 *            Output will be placed here.
+	 * @param layerOutput
+	 *            The layer outputs to use.
+	 * @param layerSums
+	 *            The layer sums to use.
 	 */
 	@Override
-	public void compute(final double[] x, final double[] output) {
+	protected void compute(final double[] x, final double[] output,
+			final double[] layerOutput, final double[] layerSums) {
 
 		int outputIndex = this.getLayerIndex()[1];
 
 		for (int i = 0; i < rbf.length; i++) {
 			double o = this.rbf[i].calculate(x);
-			this.getLayerOutput()[outputIndex + i] = o;
+			layerOutput[outputIndex + i] = o;
 		}
 
 		// now compute the output
-		computeLayer(1);
-		EngineArray.arrayCopy(this.getLayerOutput(), 0, output, 0, this
+		computeLayer(1, layerOutput, layerSums);
+		EngineArray.arrayCopy(layerOutput, 0, output, 0, this
 				.getOutputCount());
 	}
 
@@ -0,0 +1,252 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.flat;
+
+import java.nio.DoubleBuffer;
+
+import org.encog.EncogError;
+import org.encog.util.EngineArray;
+
+/**
+ * A read-only flat network that reads its weights from a buffer, usually a
+ * memory mapped binary model file, rather than from a heap array. The
+ * operating system keeps a single copy of a mapped file, so every process
+ * and thread that maps the same model shares one physical copy of the
+ * weights.
+ * 
+ * The layer outputs and sums are still held on the heap. Like any flat
+ * network, a single instance must not be used by several threads at once.
+ * Clone the network for each thread instead, the clones share the mapped
+ * weights.
+ * 
+ * The weights cannot be changed, so this network can not be trained.
+ */
+public class MappedFlatNetwork extends FlatNetwork {
+
+	/**
+	 * The serial id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The read-only weights.
+	 */
+	private transient DoubleBuffer mappedWeights;
+
+	/**
+	 * Construct an empty network, the structure and weights must be set
+	 * before it is used.
+	 */
+	public MappedFlatNetwork() {
+
+	}
+
+	/**
+	 * Clone the network. The clone has its own layer outputs, but shares the
+	 * mapped weights.
+	 * 
+	 * @return A clone of the network.
+	 */
+	@Override
+	public MappedFlatNetwork clone() {
+		final MappedFlatNetwork result = new MappedFlatNetwork();
+		cloneFlatNetwork(result);
+		result.mappedWeights = this.mappedWeights;
+		return result;
+	}
+
+	/**
+	 * Calculate a layer, reading the weights from the mapped buffer.
+	 * 
+	 * @param currentLayer
+	 *            The layer to calculate.
+	 * @param layerOutput
+	 *            The layer outputs to use.
+	 * @param layerSums
+	 *            The layer sums to use.
+	 */
+	@Override
+	protected void computeLayer(final int currentLayer,
+			final double[] layerOutput, final double[] layerSums) {
+		final DoubleBuffer weights = this.mappedWeights;
+
+		final int inputIndex = getLayerIndex()[currentLayer];
+		final int outputIndex = getLayerIndex()[currentLayer - 1];
+		final int inputSize = getLayerCounts()[currentLayer];
+		final int outputSize = getLayerFeedCounts()[currentLayer - 1];
+
+		int index = getWeightIndex()[currentLayer - 1];
+
+		final int limitX = outputIndex + outputSize;
+		final int limitY = inputIndex + inputSize;
+
+		// weight values
+		for (int x = outputIndex; x < limitX; x++) {
+			double sum = 0;
+			for (int y = inputIndex; y < limitY; y++) {
+				sum += weights.get(index++) * layerOutput[y];
+			}
+			layerSums[x] = sum;
+			layerOutput[x] = sum;
+		}
+
+		getActivationFunctions()[currentLayer - 1].activationFunction(
+				layerOutput, outputIndex, outputSize);
+
+		// update context values
+		final int offset = getContextTargetOffset()[currentLayer];
+
+		EngineArray.arrayCopy(layerOutput, outputIndex, layerOutput, offset,
+				getContextTargetSize()[currentLayer]);
+	}
+
+	/**
+	 * The weights of a mapped network can not be changed.
+	 * 
+	 * @param data
+	 *            Not used.
+	 */
+	@Override
+	public void decodeNetwork(final double[] data) {
+		throw new EncogError("The weights of a mapped network are read-only.");
+	}
+
+	/**
+	 * @return A heap copy of the weights.
+	 */
+	@Override
+	public double[] encodeNetwork() {
+		return getWeights();
+	}
+
+	/**
+	 * @return The number of weights.
+	 */
+	@Override
+	public int getEncodeLength() {
+		return this.mappedWeights.limit();
+	}
+
+	/**
+	 * Copy the weights from the mapped buffer. Changes to the returned array
+	 * are not reflected in the network, use getWeight to read a single
+	 * weight.
+	 * 
+	 * @return A heap copy of the weights.
+	 */
+	@Override
+	public double[] getWeights() {
+		final double[] result = new double[this.mappedWeights.limit()];
+		this.mappedWeights.duplicate().get(result);
+		return result;
+	}
+
+	/**
+	 * Read a single weight from the mapped buffer.
+	 * 
+	 * @param index
+	 *            The index of the weight.
+	 * @return The weight.
+	 */
+	@Override
+	public double getWeight(final int index) {
+		return this.mappedWeights.get(index);
+	}
+
+	/**
+	 * @return The read-only weights.
+	 */
+	public DoubleBuffer getMappedWeights() {
+		return this.mappedWeights;
+	}
+
+	/**
+	 * @return True, the weights are read-only.
+	 */
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	/**
+	 * The weights of a mapped network can not be changed.
+	 * 
+	 * @param hi
+	 *            Not used.
+	 * @param lo
+	 *            Not used.
+	 */
+	@Override
+	public void randomize(final double hi, final double lo) {
+		throw new EncogError("The weights of a mapped network are read-only.");
+	}
+
+	/**
+	 * Set the weights buffer.
+	 * 
+	 * @param weights
+	 *            The weights, the buffer's position is ignored and the
+	 *            weights are read from index zero up to its limit.
+	 */
+	public void setMappedWeights(final DoubleBuffer weights) {
+		this.mappedWeights = weights;
+	}
+
+	/**
+	 * The weights of a mapped network can not be changed.
+	 * 
+	 * @param index
+	 *            Not used.
+	 * @param value
+	 *            Not used.
+	 */
+	@Override
+	public void setWeight(final int index, final double value) {
+		throw new EncogError("The weights of a mapped network are read-only.");
+	}
+
+	/**
+	 * The weights of a mapped network can not be changed.
+	 * 
+	 * @param weights
+	 *            Not used.
+	 */
+	@Override
+	public void setWeights(final double[] weights) {
+		throw new EncogError("The weights of a mapped network are read-only.");
+	}
+
+	/**
+	 * A mapped buffer can not be serialized, so a mapped network is
+	 * serialized as a regular flat network with a copy of the weights.
+	 * 
+	 * @return A regular flat network.
+	 */
+	private Object writeReplace() {
+		final FlatNetwork result = new FlatNetwork();
+		cloneFlatNetwork(result);
+		result.setWeights(getWeights());
+		return result;
+	}
+}
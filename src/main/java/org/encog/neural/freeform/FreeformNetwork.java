@@ -66,6 +66,11 @@ import org.encog.util.simple.EncogUtility;
  * Freeform networks allow just about any neuron to be connected to another
  * neuron. You can have neuron layers if you want, but they are not required.
  * 
+ * When the network is made of the basic neuron and summation classes, it is
+ * computed through a FreeformPlan, which flattens the graph into arrays. Code
+ * that changes the structure of the network directly, rather than through
+ * this class, should call invalidatePlan afterwards.
+ * 
  */
 public class FreeformNetwork extends BasicML implements MLContext, Cloneable,
 		MLRegression, MLEncodable, MLResettable, MLClassification, MLError {
@@ -156,6 +161,16 @@ public class FreeformNetwork extends BasicML implements MLContext, Cloneable,
 	 */
 	private FreeformLayer outputLayer;
 
+	/**
+	 * The compiled plan, or null if it has not been compiled.
+	 */
+	private transient FreeformPlan plan;
+
+	/**
+	 * True, if the network can not be compiled into a plan.
+	 */
+	private transient boolean planUnsupported;
+
 	/**
 	 * The connection factory.
 	 */
@@ -300,6 +315,11 @@ public class FreeformNetwork extends BasicML implements MLContext, Cloneable,
 	@Override
 	public MLData compute(final MLData input) {
 
+		final FreeformPlan compiled = getPlan();
+		if (compiled != null) {
+			return compiled.compute(input);
+		}
+
 		// Allocate result
 		final MLData result = new BasicMLData(this.outputLayer.size());
 
@@ -355,6 +375,8 @@ public class FreeformNetwork extends BasicML implements MLContext, Cloneable,
 			final ActivationFunction theActivationFunction,
 			final double biasActivation, final boolean isRecurrent) {
 
+		invalidatePlan();
+
 		// create bias, if requested
 		if (biasActivation > Encog.DEFAULT_DOUBLE_EQUAL) {
 			// does the source already have a bias?
@@ -512,6 +534,7 @@ public class FreeformNetwork extends BasicML implements MLContext, Cloneable,
 			throw new FreeformNetworkError(
 					"Input layer must have at least one neuron.");
 		}
+		invalidatePlan();
 		this.inputLayer = createLayer(neuronCount);
 		return this.inputLayer;
 	}
@@ -551,6 +574,7 @@ public class FreeformNetwork extends BasicML implements MLContext, Cloneable,
 			throw new FreeformNetworkError(
 					"Output layer must have at least one neuron.");
 		}
+		invalidatePlan();
 		this.outputLayer = createLayer(neuronCount);
 		return this.outputLayer;
 	}
@@ -676,6 +700,13 @@ public class FreeformNetwork extends BasicML implements MLContext, Cloneable,
 		return this.outputLayer.sizeNonBias();
 	}
 
+	/**
+	 * @return The input layer.
+	 */
+	public FreeformLayer getInputLayer() {
+		return this.inputLayer;
+	}
+
 	/**
 	 * @return The output layer.
 	 */
@@ -683,6 +714,28 @@ public class FreeformNetwork extends BasicML implements MLContext, Cloneable,
 		return this.outputLayer;
 	}
 
+	/**
+	 * Get the compiled plan for this network, compiling it if needed.
+	 * 
+	 * @return The plan, or null if this network can not be compiled.
+	 */
+	public FreeformPlan getPlan() {
+		if (this.plan == null && !this.planUnsupported) {
+			this.plan = FreeformPlan.compile(this);
+			this.planUnsupported = this.plan == null;
+		}
+		return this.plan;
+	}
+
+	/**
+	 * Discard the compiled plan. Call this after changing the neurons or
+	 * connections of the network directly.
+	 */
+	public void invalidatePlan() {
+		this.plan = null;
+		this.planUnsupported = false;
+	}
+
 	/**
 	 * Perform the specified connection task. This task will be performed over
 	 * all connections.
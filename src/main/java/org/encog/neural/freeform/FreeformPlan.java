@@ -0,0 +1,541 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.freeform;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.ml.data.MLData;
+import org.encog.ml.data.basic.BasicMLData;
+import org.encog.neural.freeform.basic.BasicActivationSummation;
+import org.encog.neural.freeform.basic.BasicFreeformNeuron;
+import org.encog.neural.freeform.task.NeuronTask;
+import org.encog.util.EngineArray;
+
+/**
+ * A compiled form of the graph of a freeform network. The neurons that the
+ * output depends on are numbered in topological order, so that every neuron
+ * comes after the neurons that feed it. The connections into each neuron are
+ * stored together, as primitive arrays of source neurons and weights. The
+ * context neurons are stored as pairs of neuron numbers, so that updating the
+ * context is an array copy.
+ * 
+ * Computing the network is then one pass over the arrays, and each neuron is
+ * calculated once, rather than once for every neuron that it feeds. The
+ * activations, sums and deltas are held in arrays that the caller provides,
+ * so several gradient workers can share one plan.
+ * 
+ * A plan can only be compiled for networks made of BasicFreeformNeuron,
+ * FreeformContextNeuron and BasicActivationSummation objects, since other
+ * implementations may calculate differently. The plan is tied to the
+ * structure it was compiled from; the network discards it when its structure
+ * changes.
+ */
+public class FreeformPlan {
+
+	/**
+	 * The input passed to compute when the input layer is already loaded.
+	 */
+	private static final double[] NO_INPUT = new double[0];
+
+	/**
+	 * The neurons, in topological order.
+	 */
+	private final FreeformNeuron[] neurons;
+
+	/**
+	 * The activation function of each neuron, or null if the neuron has no
+	 * inputs.
+	 */
+	private final ActivationFunction[] activation;
+
+	/**
+	 * The first connection into each neuron. The connections into neuron i
+	 * are connectionStart[i] to connectionStart[i+1].
+	 */
+	private final int[] connectionStart;
+
+	/**
+	 * The connections, grouped by target neuron.
+	 */
+	private final FreeformConnection[] connections;
+
+	/**
+	 * The source neuron of each connection.
+	 */
+	private final int[] source;
+
+	/**
+	 * The weight of each connection, loaded from the connections.
+	 */
+	private final double[] weights;
+
+	/**
+	 * The neurons with no inputs, whose activations are kept by the neuron
+	 * objects. These are input, bias and context neurons.
+	 */
+	private final int[] fixed;
+
+	/**
+	 * The neuron number of each input layer neuron, or -1 if the output does
+	 * not depend on it.
+	 */
+	private final int[] inputIndex;
+
+	/**
+	 * The neuron number of each output layer neuron.
+	 */
+	private final int[] outputIndex;
+
+	/**
+	 * The context neurons, in the order they are updated.
+	 */
+	private final int[] contextTarget;
+
+	/**
+	 * The neuron that each context neuron copies.
+	 */
+	private final int[] contextSource;
+
+	/**
+	 * The input layer.
+	 */
+	private final FreeformLayer inputLayer;
+
+	/**
+	 * Activations, used to compute the network.
+	 */
+	private final double[] layerOutput;
+
+	/**
+	 * Sums, used to compute the network.
+	 */
+	private final double[] layerSums;
+
+	/**
+	 * Construct a plan, only called by compile.
+	 * 
+	 * @param network
+	 *            The network.
+	 * @param order
+	 *            The neurons, in topological order.
+	 * @param index
+	 *            The number of each neuron.
+	 * @param contexts
+	 *            The context neurons, in the order they are updated.
+	 */
+	private FreeformPlan(final FreeformNetwork network,
+			final List<FreeformNeuron> order,
+			final Map<FreeformNeuron, Integer> index,
+			final List<FreeformContextNeuron> contexts) {
+		final int neuronCount = order.size();
+		this.neurons = order.toArray(new FreeformNeuron[neuronCount]);
+		this.activation = new ActivationFunction[neuronCount];
+		this.connectionStart = new int[neuronCount + 1];
+		this.layerOutput = new double[neuronCount];
+		this.layerSums = new double[neuronCount];
+		this.inputLayer = network.getInputLayer();
+
+		final List<FreeformConnection> list = new ArrayList<FreeformConnection>();
+		final List<Integer> fixedList = new ArrayList<Integer>();
+		for (int i = 0; i < neuronCount; i++) {
+			this.connectionStart[i] = list.size();
+			final InputSummation summation = this.neurons[i]
+					.getInputSummation();
+			if (summation == null) {
+				fixedList.add(i);
+			} else {
+				this.activation[i] = summation.getActivationFunction();
+				list.addAll(summation.list());
+			}
+		}
+		this.connectionStart[neuronCount] = list.size();
+
+		this.connections = list.toArray(new FreeformConnection[list.size()]);
+		this.source = new int[this.connections.length];
+		this.weights = new double[this.connections.length];
+		for (int i = 0; i < this.connections.length; i++) {
+			this.source[i] = index.get(this.connections[i].getSource());
+		}
+
+		this.fixed = new int[fixedList.size()];
+		for (int i = 0; i < this.fixed.length; i++) {
+			this.fixed[i] = fixedList.get(i);
+		}
+
+		final List<FreeformNeuron> inputs = this.inputLayer.getNeurons();
+		this.inputIndex = new int[inputs.size()];
+		for (int i = 0; i < this.inputIndex.length; i++) {
+			final Integer n = index.get(inputs.get(i));
+			this.inputIndex[i] = n == null ? -1 : n;
+		}
+
+		final List<FreeformNeuron> outputs = network.getOutputLayer()
+				.getNeurons();
+		this.outputIndex = new int[outputs.size()];
+		for (int i = 0; i < this.outputIndex.length; i++) {
+			this.outputIndex[i] = index.get(outputs.get(i));
+		}
+
+		this.contextTarget = new int[contexts.size()];
+		this.contextSource = new int[contexts.size()];
+		for (int i = 0; i < this.contextTarget.length; i++) {
+			final FreeformContextNeuron context = contexts.get(i);
+			this.contextTarget[i] = index.get(context);
+			this.contextSource[i] = index.get(context.getContextSource());
+		}
+	}
+
+	/**
+	 * Compile the graph of a network.
+	 * 
+	 * @param network
+	 *            The network.
+	 * @return The plan, or null if the network uses neuron or summation
+	 *         classes that the plan can not represent.
+	 */
+	public static FreeformPlan compile(final FreeformNetwork network) {
+		if (network.getInputLayer() == null
+				|| network.getOutputLayer() == null) {
+			return null;
+		}
+
+		// find the neurons that the output depends on, in the order that
+		// the network updates its context
+		final List<FreeformNeuron> reached = new ArrayList<FreeformNeuron>();
+		network.performNeuronTask(new NeuronTask() {
+			@Override
+			public void task(final FreeformNeuron neuron) {
+				reached.add(neuron);
+			}
+		});
+
+		final List<FreeformContextNeuron> contexts = new ArrayList<FreeformContextNeuron>();
+		for (final FreeformNeuron neuron : reached) {
+			if (neuron.getClass() == FreeformContextNeuron.class) {
+				contexts.add((FreeformContextNeuron) neuron);
+			} else if (neuron.getClass() != BasicFreeformNeuron.class) {
+				return null;
+			}
+			if (neuron.getInputSummation() != null
+					&& neuron.getInputSummation().getClass() 
+						!= BasicActivationSummation.class) {
+				return null;
+			}
+		}
+
+		// order the neurons so that each follows the neurons that feed it
+		final Map<FreeformNeuron, Integer> index = new IdentityHashMap<FreeformNeuron, Integer>();
+		final List<FreeformNeuron> order = new ArrayList<FreeformNeuron>();
+		for (final FreeformNeuron output : network.getOutputLayer()
+				.getNeurons()) {
+			visit(output, index, order);
+		}
+
+		// a context neuron must copy a neuron that the plan computes
+		for (final FreeformContextNeuron context : contexts) {
+			if (context.getContextSource() == null
+					|| !index.containsKey(context.getContextSource())) {
+				return null;
+			}
+		}
+
+		return new FreeformPlan(network, order, index, contexts);
+	}
+
+	/**
+	 * Add a neuron, and the neurons that feed it, to the topological order.
+	 * 
+	 * @param start
+	 *            The neuron.
+	 * @param index
+	 *            The number of each neuron added so far.
+	 * @param order
+	 *            The neurons added so far.
+	 */
+	private static void visit(final FreeformNeuron start,
+			final Map<FreeformNeuron, Integer> index,
+			final List<FreeformNeuron> order) {
+		if (index.containsKey(start)) {
+			return;
+		}
+
+		// depth first, without recursion, so deep graphs do not overflow
+		final List<FreeformNeuron> stack = new ArrayList<FreeformNeuron>();
+		final List<Integer> next = new ArrayList<Integer>();
+		final Map<FreeformNeuron, Boolean> onStack = new IdentityHashMap<FreeformNeuron, Boolean>();
+		stack.add(start);
+		next.add(0);
+		onStack.put(start, Boolean.TRUE);
+
+		while (!stack.isEmpty()) {
+			final int top = stack.size() - 1;
+			final FreeformNeuron neuron = stack.get(top);
+			final int i = next.get(top);
+			final InputSummation summation = neuron.getInputSummation();
+
+			if (summation != null && i < summation.list().size()) {
+				next.set(top, i + 1);
+				final FreeformNeuron from = summation.list().get(i)
+						.getSource();
+				if (!index.containsKey(from)) {
+					if (onStack.containsKey(from)) {
+						throw new FreeformNetworkError(
+								"The network has a cycle that does not pass "
+										+ "through a context neuron.");
+					}
+					stack.add(from);
+					next.add(0);
+					onStack.put(from, Boolean.TRUE);
+				}
+			} else {
+				stack.remove(top);
+				next.remove(top);
+				onStack.remove(neuron);
+				index.put(neuron, order.size());
+				order.add(neuron);
+			}
+		}
+	}
+
+	/**
+	 * Create the flat spot constants for each neuron.
+	 * 
+	 * @param fix
+	 *            True, if the flat spot of sigmoid neurons should be fixed.
+	 * @param flatSpot
+	 *            The constant to add to the derivative of sigmoid neurons.
+	 * @return The constant to add to the derivative of each neuron.
+	 */
+	public double[] createFlatSpot(final boolean fix, final double flatSpot) {
+		final double[] result = new double[this.neurons.length];
+		if (fix) {
+			for (int i = 0; i < result.length; i++) {
+				if (this.activation[i] instanceof ActivationSigmoid) {
+					result[i] = flatSpot;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The connections, grouped by target neuron.
+	 */
+	public FreeformConnection[] getConnections() {
+		return this.connections;
+	}
+
+	/**
+	 * @return The number of neurons.
+	 */
+	public int getNeuronCount() {
+		return this.neurons.length;
+	}
+
+	/**
+	 * @return The number of output layer neurons.
+	 */
+	public int getOutputCount() {
+		return this.outputIndex.length;
+	}
+
+	/**
+	 * @return The weights, as last loaded.
+	 */
+	public double[] getWeights() {
+		return this.weights;
+	}
+
+	/**
+	 * @return True, if the network has context neurons.
+	 */
+	public boolean hasContext() {
+		return this.contextTarget.length > 0;
+	}
+
+	/**
+	 * Load the weights from the connections.
+	 */
+	public void loadWeights() {
+		for (int i = 0; i < this.connections.length; i++) {
+			this.weights[i] = this.connections[i].getWeight();
+		}
+	}
+
+	/**
+	 * Load the activations of the neurons with no inputs from the neuron
+	 * objects. This includes the context.
+	 * 
+	 * @param act
+	 *            The activations.
+	 */
+	public void loadActivations(final double[] act) {
+		for (final int n : this.fixed) {
+			act[n] = this.neurons[n].getActivation();
+		}
+	}
+
+	/**
+	 * Save the activations to the neuron objects.
+	 * 
+	 * @param act
+	 *            The activations.
+	 */
+	public void saveActivations(final double[] act) {
+		for (int i = 0; i < this.neurons.length; i++) {
+			this.neurons[i].setActivation(act[i]);
+		}
+	}
+
+	/**
+	 * Compute the network, using the loaded weights.
+	 * 
+	 * @param input
+	 *            The input values.
+	 * @param act
+	 *            The activations, the neurons with no inputs must already be
+	 *            loaded.
+	 * @param sums
+	 *            Receives the sums.
+	 * @param actual
+	 *            Receives the output.
+	 */
+	public void compute(final double[] input, final double[] act,
+			final double[] sums, final double[] actual) {
+		for (int i = 0; i < input.length && i < this.inputIndex.length; i++) {
+			final int n = this.inputIndex[i];
+			if (n != -1) {
+				act[n] = input[i];
+			}
+		}
+
+		for (int n = 0; n < this.neurons.length; n++) {
+			final ActivationFunction af = this.activation[n];
+			if (af != null) {
+				double sum = 0;
+				for (int c = this.connectionStart[n]; c < this.connectionStart[n + 1]; c++) {
+					sum += this.weights[c] * act[this.source[c]];
+				}
+				sums[n] = sum;
+				act[n] = sum;
+				af.activationFunction(act, n, 1);
+			}
+		}
+
+		for (int i = 0; i < actual.length; i++) {
+			actual[i] = act[this.outputIndex[i]];
+		}
+	}
+
+	/**
+	 * Compute the network, through the neuron objects. The weights are
+	 * loaded, the activations are saved and the context is updated, just as
+	 * if the graph had been computed directly. Loading the weights costs the
+	 * same order as the computation itself, and means that changes made
+	 * through the connections are always seen.
+	 * 
+	 * @param input
+	 *            The input.
+	 * @return The output.
+	 */
+	public MLData compute(final MLData input) {
+		for (int i = 0; i < input.size(); i++) {
+			this.inputLayer.setActivation(i, input.getData(i));
+		}
+
+		loadWeights();
+		loadActivations(this.layerOutput);
+
+		final MLData result = new BasicMLData(this.outputIndex.length);
+		compute(FreeformPlan.NO_INPUT, this.layerOutput,
+				this.layerSums, result.getData());
+
+		updateContext(this.layerOutput);
+		saveActivations(this.layerOutput);
+		return result;
+	}
+
+	/**
+	 * Calculate the gradients for one record, after it has been computed.
+	 * 
+	 * @param ideal
+	 *            The ideal output.
+	 * @param actual
+	 *            The actual output.
+	 * @param significance
+	 *            The significance of the record.
+	 * @param act
+	 *            The activations.
+	 * @param sums
+	 *            The sums.
+	 * @param flatSpot
+	 *            The constant to add to the derivative of each neuron.
+	 * @param errors
+	 *            Scratch space, one element for each neuron.
+	 * @param gradients
+	 *            The gradients to add to, one for each connection.
+	 */
+	public void calculateGradients(final double[] ideal,
+			final double[] actual, final double significance,
+			final double[] act, final double[] sums, final double[] flatSpot,
+			final double[] errors, final double[] gradients) {
+		EngineArray.fill(errors, 0);
+		for (int i = 0; i < ideal.length && i < this.outputIndex.length; i++) {
+			errors[this.outputIndex[i]] += (ideal[i] - actual[i])
+					* significance;
+		}
+
+		// each neuron follows the neurons that feed it, so walking backwards
+		// reaches a neuron after all of the neurons that it feeds
+		for (int n = this.neurons.length - 1; n >= 0; n--) {
+			final ActivationFunction af = this.activation[n];
+			if (af != null) {
+				final double delta = errors[n]
+						* (af.derivativeFunction(sums[n], act[n]) + flatSpot[n]);
+				for (int c = this.connectionStart[n]; c < this.connectionStart[n + 1]; c++) {
+					final int from = this.source[c];
+					gradients[c] += act[from] * delta;
+					errors[from] += this.weights[c] * delta;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Update the context neurons from the neurons they copy.
+	 * 
+	 * @param act
+	 *            The activations.
+	 */
+	public void updateContext(final double[] act) {
+		for (int i = 0; i < this.contextTarget.length; i++) {
+			act[this.contextTarget[i]] = act[this.contextSource[i]];
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.freeform.training;
+
+import org.encog.mathutil.IntRange;
+import org.encog.mathutil.error.ErrorCalculation;
+import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataPair;
+import org.encog.neural.freeform.FreeformPlan;
+import org.encog.util.EngineArray;
+import org.encog.util.concurrency.BlockWorkload;
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * Worker class for the multithreaded training of freeform networks. Each
+ * worker calculates the gradients for a range of the training data, through
+ * a compiled plan of the network. The worker keeps its own activations, so
+ * the workers can share the plan.
+ * 
+ * A worker either processes a fixed range of the training data, or claims
+ * blocks of the training data from a shared BlockWorkload until none are
+ * left. In the second case the gradients and error of each block are kept
+ * apart, for the owner to sum in block order.
+ */
+public class FreeformGradientWorker implements EngineTask {
+
+	/**
+	 * The compiled network.
+	 */
+	private final FreeformPlan plan;
+
+	/**
+	 * The training data, opened for this worker.
+	 */
+	private final MLDataSet training;
+
+	/**
+	 * The low end of the training.
+	 */
+	private final int low;
+
+	/**
+	 * The high end of the training.
+	 */
+	private final int high;
+
+	/**
+	 * The constant to add to the derivative of each neuron.
+	 */
+	private final double[] flatSpot;
+
+	/**
+	 * The activation of each neuron.
+	 */
+	private final double[] act;
+
+	/**
+	 * The sum of each neuron.
+	 */
+	private final double[] sums;
+
+	/**
+	 * The back propagated error of each neuron.
+	 */
+	private final double[] errors;
+
+	/**
+	 * The gradient of each connection.
+	 */
+	private double[] gradients;
+
+	/**
+	 * The actual output.
+	 */
+	private final double[] actual;
+
+	/**
+	 * A pair to read the training data into.
+	 */
+	private final MLDataPair pair;
+
+	/**
+	 * The error calculation method.
+	 */
+	private ErrorCalculation errorCalculation = new ErrorCalculation();
+
+	/**
+	 * The blocks to claim, or null to process the fixed range.
+	 */
+	private final BlockWorkload blocks;
+
+	/**
+	 * The gradients of each block.
+	 */
+	private final double[][] blockGradients;
+
+	/**
+	 * The error of each block.
+	 */
+	private final ErrorCalculation[] blockErrors;
+
+	/**
+	 * The index of the last block this worker ran, or -1.
+	 */
+	private int lastBlock;
+
+	/**
+	 * An exception thrown while calculating, or null.
+	 */
+	private Throwable error;
+
+	/**
+	 * Construct a gradient worker.
+	 * 
+	 * @param thePlan
+	 *            The compiled network.
+	 * @param theTraining
+	 *            The training data, opened for this worker.
+	 * @param theLow
+	 *            The low index to use in the training data.
+	 * @param theHigh
+	 *            The high index to use in the training data.
+	 * @param theFlatSpot
+	 *            The constant to add to the derivative of each neuron.
+	 */
+	public FreeformGradientWorker(final FreeformPlan thePlan,
+			final MLDataSet theTraining, final int theLow, final int theHigh,
+			final double[] theFlatSpot) {
+		this(thePlan, theTraining, theLow, theHigh, null, null, null,
+				theFlatSpot);
+	}
+
+	/**
+	 * Construct a gradient worker that claims blocks of the training data.
+	 * 
+	 * @param thePlan
+	 *            The compiled network.
+	 * @param theTraining
+	 *            The training data, opened for this worker.
+	 * @param theBlocks
+	 *            The blocks of the training data, shared by all workers.
+	 * @param theBlockGradients
+	 *            The gradients of each block.
+	 * @param theBlockErrors
+	 *            The error of each block.
+	 * @param theFlatSpot
+	 *            The constant to add to the derivative of each neuron.
+	 */
+	public FreeformGradientWorker(final FreeformPlan thePlan,
+			final MLDataSet theTraining, final BlockWorkload theBlocks,
+			final double[][] theBlockGradients,
+			final ErrorCalculation[] theBlockErrors,
+			final double[] theFlatSpot) {
+		this(thePlan, theTraining, 0, -1, theBlocks, theBlockGradients,
+				theBlockErrors, theFlatSpot);
+	}
+
+	/**
+	 * Construct a gradient worker for either a fixed range or blocks.
+	 */
+	private FreeformGradientWorker(final FreeformPlan thePlan,
+			final MLDataSet theTraining, final int theLow, final int theHigh,
+			final BlockWorkload theBlocks, final double[][] theBlockGradients,
+			final ErrorCalculation[] theBlockErrors,
+			final double[] theFlatSpot) {
+		this.plan = thePlan;
+		this.training = theTraining;
+		this.low = theLow;
+		this.high = theHigh;
+		this.blocks = theBlocks;
+		this.blockGradients = theBlockGradients;
+		this.blockErrors = theBlockErrors;
+		this.flatSpot = theFlatSpot;
+		this.act = new double[thePlan.getNeuronCount()];
+		this.sums = new double[thePlan.getNeuronCount()];
+		this.errors = new double[thePlan.getNeuronCount()];
+		this.gradients = new double[thePlan.getConnections().length];
+		this.actual = new double[thePlan.getOutputCount()];
+		this.pair = BasicMLDataPair.createPair(theTraining.getInputSize(),
+				theTraining.getIdealSize());
+	}
+
+	/**
+	 * @return The activation of each neuron, after the last record.
+	 */
+	public double[] getActivations() {
+		return this.act;
+	}
+
+	/**
+	 * @return An exception thrown while calculating, or null.
+	 */
+	public Throwable getError() {
+		return this.error;
+	}
+
+	/**
+	 * @return The error calculation, for the records of this worker.
+	 */
+	public ErrorCalculation getErrorCalculation() {
+		return this.errorCalculation;
+	}
+
+	/**
+	 * @return The gradient of each connection.
+	 */
+	public double[] getGradients() {
+		return this.gradients;
+	}
+
+	/**
+	 * @return The index of the last block this worker ran, or -1.
+	 */
+	public int getLastBlock() {
+		return this.lastBlock;
+	}
+
+	/**
+	 * Process a range of the training data.
+	 * 
+	 * @param theLow
+	 *            The first record.
+	 * @param theHigh
+	 *            The last record.
+	 */
+	private void processRange(final int theLow, final int theHigh) {
+		for (int i = theLow; i <= theHigh; i++) {
+			this.training.getRecord(i, this.pair);
+			final double[] ideal = this.pair.getIdealArray();
+			final double sig = this.pair.getSignificance();
+			this.plan.compute(this.pair.getInputArray(), this.act,
+					this.sums, this.actual);
+			this.errorCalculation.updateError(this.actual, ideal, sig);
+			this.plan.calculateGradients(ideal, this.actual, sig,
+					this.act, this.sums, this.flatSpot, this.errors,
+					this.gradients);
+			this.plan.updateContext(this.act);
+		}
+	}
+
+	/**
+	 * Calculate the gradients for the range of this worker, or for the
+	 * blocks it claims. The weights of the plan must already be loaded.
+	 */
+	@Override
+	public void run() {
+		try {
+			this.error = null;
+			this.lastBlock = -1;
+			if (this.blocks == null) {
+				this.errorCalculation.reset();
+				EngineArray.fill(this.gradients, 0);
+				this.plan.loadActivations(this.act);
+				processRange(this.low, this.high);
+			} else {
+				int index;
+				while ((index = this.blocks.claim()) != -1) {
+					final IntRange block = this.blocks.getBlock(index);
+					this.gradients = this.blockGradients[index];
+					this.errorCalculation = this.blockErrors[index];
+					this.errorCalculation.reset();
+					EngineArray.fill(this.gradients, 0);
+					this.plan.loadActivations(this.act);
+					processRange(block.getLow(), block.getHigh());
+					this.lastBlock = index;
+				}
+			}
+		} catch (final Throwable ex) {
+			this.error = ex;
+		}
+	}
+}
@@ -27,6 +27,7 @@ import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.encog.EncogError;
 import org.encog.engine.network.activation.ActivationSigmoid;
 import org.encog.mathutil.error.ErrorCalculation;
 import org.encog.ml.MLMethod;
@@ -38,10 +39,27 @@ import org.encog.ml.train.BasicTraining;
 import org.encog.neural.freeform.FreeformConnection;
 import org.encog.neural.freeform.FreeformNetwork;
 import org.encog.neural.freeform.FreeformNeuron;
+import org.encog.neural.freeform.FreeformPlan;
 import org.encog.neural.freeform.task.ConnectionTask;
-
+import org.encog.util.EngineArray;
+import org.encog.util.concurrency.BlockWorkload;
+import org.encog.util.concurrency.DetermineWorkload;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
+
+/**
+ * Base class for the propagation training of freeform networks. If the network
+ * can be compiled into a FreeformPlan, the gradients are calculated from the
+ * plan, by several threads, that claim blocks of the training data as they
+ * finish the previous one. The gradients of each block are summed in block
+ * order, so the result does not depend on which thread ran which block.
+ * Networks with context neurons are trained by a single thread, since each
+ * record depends on the context left by the one before it. Otherwise, the
+ * gradients are calculated by walking the graph of the network.
+ */
 public abstract class FreeformPropagationTraining extends BasicTraining
-		implements Serializable {
+		implements Serializable, MultiThreadable {
 
 	/**
 	 * The serial ID.
@@ -56,6 +74,42 @@ public abstract class FreeformPropagationTraining extends BasicTraining
 	private final Set<FreeformNeuron> visited = new HashSet<FreeformNeuron>();
 	private boolean fixFlatSopt = true;
 
+	/**
+	 * The number of threads to use, zero for automatic.
+	 */
+	private int numThreads;
+
+	/**
+	 * The plan that the workers were created for.
+	 */
+	private transient FreeformPlan plan;
+
+	/**
+	 * The workers.
+	 */
+	private transient FreeformGradientWorker[] workers;
+
+	/**
+	 * The gradients, summed from the workers.
+	 */
+	private transient double[] gradients;
+
+	/**
+	 * The blocks of the training data, or null if a single worker has the
+	 * whole range.
+	 */
+	private transient BlockWorkload blocks;
+
+	/**
+	 * The gradients of each block.
+	 */
+	private transient double[][] blockGradients;
+
+	/**
+	 * The error of each block.
+	 */
+	private transient ErrorCalculation[] blockErrors;
+
 	/**
 	 * Don't use this constructor, it is for serialization only.
 	 */
@@ -73,6 +127,70 @@ public abstract class FreeformPropagationTraining extends BasicTraining
 	}
 
 	private void calculateGradients() {
+		final FreeformPlan compiled = this.network.getPlan();
+		if (compiled == null) {
+			calculateGraphGradients();
+			return;
+		}
+
+		if (this.workers == null || this.plan != compiled) {
+			init(compiled);
+		}
+
+		compiled.loadWeights();
+
+		if (this.blocks != null) {
+			this.blocks.reset();
+		}
+
+		if (this.workers.length > 1) {
+			final TaskGroup group = EngineConcurrency.getInstance()
+					.createTaskGroup();
+			for (final FreeformGradientWorker worker : this.workers) {
+				EngineConcurrency.getInstance().processTask(worker, group);
+			}
+			group.waitForComplete();
+		} else {
+			this.workers[0].run();
+		}
+
+		FreeformGradientWorker last = this.workers[this.workers.length - 1];
+		for (final FreeformGradientWorker worker : this.workers) {
+			if (worker.getError() != null) {
+				throw new EncogError(worker.getError());
+			}
+			if (this.blocks != null
+					&& worker.getLastBlock() == this.blocks.getBlockCount() - 1) {
+				last = worker;
+			}
+		}
+
+		// sum in block order, so the result does not depend on timing
+		final ErrorCalculation errorCalc = new ErrorCalculation();
+		EngineArray.fill(this.gradients, 0);
+		if (this.blocks != null) {
+			for (int b = 0; b < this.blockGradients.length; b++) {
+				final double[] g = this.blockGradients[b];
+				for (int i = 0; i < this.gradients.length; i++) {
+					this.gradients[i] += g[i];
+				}
+				errorCalc.merge(this.blockErrors[b]);
+			}
+		} else {
+			EngineArray.arrayCopy(last.getGradients(), this.gradients);
+			errorCalc.merge(last.getErrorCalculation());
+		}
+
+		// leave the network as the last record left it
+		compiled.saveActivations(last.getActivations());
+
+		setError(errorCalc.calculate());
+	}
+
+	/**
+	 * Calculate the gradients by walking the graph of the network.
+	 */
+	private void calculateGraphGradients() {
 		final ErrorCalculation errorCalc = new ErrorCalculation();
 		this.visited.clear();
 
@@ -164,6 +282,50 @@ public abstract class FreeformPropagationTraining extends BasicTraining
 		neuron.setTempTraining(0, layerDelta);
 	}
 
+	/**
+	 * Create the workers for a plan.
+	 * 
+	 * @param compiled
+	 *            The plan.
+	 */
+	private void init(final FreeformPlan compiled) {
+		final int recordCount = (int) this.training.getRecordCount();
+		final double[] flatSpot = compiled.createFlatSpot(this.fixFlatSopt,
+				FreeformPropagationTraining.FLAT_SPOT_CONST);
+
+		final int connectionCount = compiled.getConnections().length;
+
+		if (compiled.hasContext() || recordCount == 0) {
+			this.blocks = null;
+			this.blockGradients = null;
+			this.blockErrors = null;
+			this.workers = new FreeformGradientWorker[] { 
+					new FreeformGradientWorker(compiled, this.training, 0, 
+							recordCount - 1, flatSpot) };
+		} else {
+			final DetermineWorkload determine = new DetermineWorkload(
+					this.numThreads, recordCount);
+			this.blocks = determine.calculateBlocks();
+			this.blockGradients = new double[this.blocks.getBlockCount()][connectionCount];
+			this.blockErrors = new ErrorCalculation[this.blocks
+					.getBlockCount()];
+			for (int i = 0; i < this.blockErrors.length; i++) {
+				this.blockErrors[i] = new ErrorCalculation();
+			}
+
+			this.workers = new FreeformGradientWorker[determine
+					.getThreadCount()];
+			for (int i = 0; i < this.workers.length; i++) {
+				this.workers[i] = new FreeformGradientWorker(compiled,
+						this.training.openAdditional(), this.blocks,
+						this.blockGradients, this.blockErrors, flatSpot);
+			}
+		}
+
+		this.gradients = new double[connectionCount];
+		this.plan = compiled;
+	}
+
 	@Override
 	public boolean canContinue() {
 		return false;
@@ -213,6 +375,17 @@ public abstract class FreeformPropagationTraining extends BasicTraining
 		this.iterationCount++;
 		calculateGradients();
 
+		if (this.network.getPlan() != null) {
+			final FreeformConnection[] connections = this.plan
+					.getConnections();
+			for (int i = 0; i < connections.length; i++) {
+				connections[i].setTempTraining(0, this.gradients[i]);
+				learnConnection(connections[i]);
+				connections[i].setTempTraining(0, 0);
+			}
+			return;
+		}
+
 		this.network.performConnectionTask(new ConnectionTask() {
 			@Override
 			public void task(final FreeformConnection connection) {
@@ -240,6 +413,24 @@ public abstract class FreeformPropagationTraining extends BasicTraining
 
 	public void setFixFlatSopt(final boolean fixFlatSopt) {
 		this.fixFlatSopt = fixFlatSopt;
+		this.workers = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.numThreads;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.numThreads = numThreads;
+		this.workers = null;
 	}
 
 	@Override
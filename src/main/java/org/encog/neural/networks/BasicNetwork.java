@@ -43,6 +43,7 @@ import org.encog.ml.data.basic.BasicMLData;
 import org.encog.ml.factory.MLMethodFactory;
 import org.encog.neural.NeuralNetworkError;
 import org.encog.neural.flat.FlatNetwork;
+import org.encog.neural.flat.FlatNetworkContext;
 import org.encog.neural.networks.layers.Layer;
 import org.encog.neural.networks.structure.NetworkCODEC;
 import org.encog.neural.networks.structure.NeuralStructure;
@@ -260,6 +261,41 @@ public class BasicNetwork extends BasicML implements ContainsFlat, MLContext,
 		EngineArray.arrayCopy(output2.getData(), output);
 	}
 
+	/**
+	 * Compute the output for this network, keeping the layer outputs in a
+	 * context rather than in the network. The network is only read, so this
+	 * is safe to call from any number of threads at once, as long as each
+	 * thread uses its own context. Nothing is allocated.
+	 * 
+	 * @param input
+	 *            The input.
+	 * @param output
+	 *            The output.
+	 * @param context
+	 *            The context, from createContext or a FlatNetworkContextPool.
+	 */
+	public void compute(final double[] input, final double[] output,
+			final FlatNetworkContext context) {
+		try {
+			this.structure.getFlat().compute(input, output, context);
+		} catch (final ArrayIndexOutOfBoundsException ex) {
+			throw new NeuralNetworkError(
+					"Index exception: there was likely a mismatch between layer sizes, or the size of the input presented to the network.",
+					ex);
+		}
+	}
+
+	/**
+	 * Create a context for the thread-safe compute method. A context holds
+	 * the output of every neuron for one caller.
+	 * 
+	 * @return The new context.
+	 */
+	public FlatNetworkContext createContext() {
+		this.structure.requireFlat();
+		return this.structure.getFlat().createContext();
+	}
+
 	/**
 	 * Compute the output for a given input to the neural network.
 	 * 
@@ -551,7 +587,7 @@ public class BasicNetwork extends BasicML implements ContainsFlat, MLContext,
 		final int weightIndex = weightBaseIndex + fromNeuron
 				+ (toNeuron * count);
 
-		return this.structure.getFlat().getWeights()[weightIndex];
+		return this.structure.getFlat().getWeight(weightIndex);
 	}
 
 	/**
@@ -704,7 +740,7 @@ public class BasicNetwork extends BasicML implements ContainsFlat, MLContext,
 		final int weightIndex = weightBaseIndex + fromNeuron
 				+ (toNeuron * count);
 
-		this.structure.getFlat().getWeights()[weightIndex] = value;
+		this.structure.getFlat().setWeight(weightIndex, value);
 	}
 
 
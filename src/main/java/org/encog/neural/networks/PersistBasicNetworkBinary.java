@@ -0,0 +1,164 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.networks;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.neural.flat.FlatNetwork;
+import org.encog.neural.flat.MappedFlatNetwork;
+import org.encog.persist.EncogBinaryPersistor;
+import org.encog.persist.EncogBinaryReader;
+import org.encog.persist.EncogBinaryWriter;
+import org.encog.persist.PersistError;
+
+/**
+ * Persist a basic network in the binary model format. The same values are
+ * stored as by PersistBasicNetwork, but the weights and other arrays are
+ * stored as raw blocks, so they are not rounded and load without parsing.
+ * 
+ * When read in read-only mode, the network uses a MappedFlatNetwork that
+ * reads its weights straight from the mapped file.
+ */
+public class PersistBasicNetworkBinary implements EncogBinaryPersistor {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getFileVersion() {
+		return 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getPersistClassString() {
+		return "BasicNetwork";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object read(final EncogBinaryReader in) {
+		final BasicNetwork result = new BasicNetwork();
+		// a read-only network keeps its weights in the mapped file
+		final FlatNetwork flat = in.isReadOnly() ? new MappedFlatNetwork()
+				: new FlatNetwork();
+
+		result.getProperties().putAll(in.readProperties());
+
+		flat.setBeginTraining(in.readInt());
+		flat.setConnectionLimit(in.readDouble());
+		flat.setContextTargetOffset(in.readIntArray());
+		flat.setContextTargetSize(in.readIntArray());
+		flat.setEndTraining(in.readInt());
+		flat.setHasContext(in.readBoolean());
+		flat.setInputCount(in.readInt());
+		flat.setLayerCounts(in.readIntArray());
+		flat.setLayerFeedCounts(in.readIntArray());
+		flat.setLayerContextCount(in.readIntArray());
+		flat.setLayerIndex(in.readIntArray());
+		flat.setLayerOutput(in.readDoubleArray());
+		flat.setLayerSums(new double[flat.getLayerOutput().length]);
+		flat.setOutputCount(in.readInt());
+		flat.setWeightIndex(in.readIntArray());
+		if (in.isReadOnly()) {
+			((MappedFlatNetwork) flat).setMappedWeights(in.readDoubleBuffer());
+		} else {
+			flat.setWeights(in.readDoubleArray());
+		}
+		flat.setBiasActivation(in.readDoubleArray());
+
+		final int count = in.readInt();
+		flat.setActivationFunctions(new ActivationFunction[count]);
+		for (int i = 0; i < count; i++) {
+			final String name = "org.encog.engine.network.activation."
+					+ in.readString();
+			ActivationFunction af = null;
+			try {
+				final Class<?> clazz = Class.forName(name);
+				af = (ActivationFunction) clazz.getConstructor().newInstance();
+			} catch (final ClassNotFoundException e) {
+				throw new PersistError(e);
+			} catch (final NoSuchMethodException e) {
+				throw new PersistError(e);
+			} catch (final InstantiationException e) {
+				throw new PersistError(e);
+			} catch (final IllegalAccessException e) {
+				throw new PersistError(e);
+			} catch (final InvocationTargetException e) {
+				throw new PersistError(e);
+			}
+
+			final double[] params = in.readDoubleArray();
+			for (int j = 0; j < params.length; j++) {
+				af.setParam(j, params[j]);
+			}
+			flat.getActivationFunctions()[i] = af;
+		}
+
+		result.getStructure().setFlat(flat);
+
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void save(final EncogBinaryWriter out, final Object obj) {
+		final BasicNetwork net = (BasicNetwork) obj;
+		final FlatNetwork flat = net.getStructure().getFlat();
+
+		out.writeProperties(net.getProperties());
+
+		out.writeInt(flat.getBeginTraining());
+		out.writeDouble(flat.getConnectionLimit());
+		out.writeIntArray(flat.getContextTargetOffset());
+		out.writeIntArray(flat.getContextTargetSize());
+		out.writeInt(flat.getEndTraining());
+		out.writeBoolean(flat.getHasContext());
+		out.writeInt(flat.getInputCount());
+		out.writeIntArray(flat.getLayerCounts());
+		out.writeIntArray(flat.getLayerFeedCounts());
+		out.writeIntArray(flat.getLayerContextCount());
+		out.writeIntArray(flat.getLayerIndex());
+		out.writeDoubleArray(flat.getLayerOutput());
+		out.writeInt(flat.getOutputCount());
+		out.writeIntArray(flat.getWeightIndex());
+		out.writeDoubleArray(flat.getWeights());
+		out.writeDoubleArray(flat.getBiasActivation());
+
+		out.writeInt(flat.getActivationFunctions().length);
+		for (final ActivationFunction af : flat.getActivationFunctions()) {
+			out.writeString(af.getClass().getSimpleName());
+			out.writeDoubleArray(af.getParams());
+		}
+
+		out.flush();
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.networks.training.anneal;
+
+import java.util.Random;
+
+import org.encog.ml.CalculateScore;
+import org.encog.ml.MLEncodable;
+import org.encog.ml.MLMethod;
+import org.encog.neural.networks.structure.NetworkCODEC;
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * One replica of a parallel simulated annealing run. A replica holds its own
+ * copy of the method being trained, its own random number generator and a
+ * fixed temperature, so replicas can be run on separate threads.
+ */
+public class AnnealReplica implements EngineTask {
+
+	/**
+	 * The trainer that owns this replica.
+	 */
+	private final ParallelSimulatedAnnealing owner;
+
+	/**
+	 * The copy of the method that this replica scores.
+	 */
+	private final MLEncodable method;
+
+	/**
+	 * The random number generator.
+	 */
+	private final Random random;
+
+	/**
+	 * The current state.
+	 */
+	private double[] state;
+
+	/**
+	 * The state being tried.
+	 */
+	private double[] trial;
+
+	/**
+	 * The score of the current state.
+	 */
+	private double score;
+
+	/**
+	 * The temperature of this replica.
+	 */
+	private double temperature;
+
+	/**
+	 * An exception thrown while annealing, or null.
+	 */
+	private Throwable error;
+
+	/**
+	 * Construct a replica.
+	 * 
+	 * @param theOwner
+	 *            The trainer.
+	 * @param theMethod
+	 *            The copy of the method for this replica to score.
+	 * @param theRandom
+	 *            The random number generator.
+	 * @param theTemperature
+	 *            The temperature.
+	 */
+	public AnnealReplica(final ParallelSimulatedAnnealing theOwner,
+			final MLEncodable theMethod, final Random theRandom,
+			final double theTemperature) {
+		this.owner = theOwner;
+		this.method = theMethod;
+		this.random = theRandom;
+		this.temperature = theTemperature;
+		this.state = NetworkCODEC.networkToArray((MLMethod) theMethod);
+		this.trial = new double[this.state.length];
+		this.score = calculateScore(this.state);
+	}
+
+	/**
+	 * Score a state.
+	 * 
+	 * @param s
+	 *            The state.
+	 * @return The score.
+	 */
+	private double calculateScore(final double[] s) {
+		this.method.decodeFromArray(s);
+		return this.owner.getCalculateScore().calculateScore(
+				(MLMethod) this.method);
+	}
+
+	/**
+	 * @return An exception thrown while annealing, or null.
+	 */
+	public Throwable getError() {
+		return this.error;
+	}
+
+	/**
+	 * @return The score of the current state.
+	 */
+	public double getScore() {
+		return this.score;
+	}
+
+	/**
+	 * @return The current state.
+	 */
+	public double[] getState() {
+		return this.state;
+	}
+
+	/**
+	 * @return The temperature of this replica.
+	 */
+	public double getTemperature() {
+		return this.temperature;
+	}
+
+	/**
+	 * Run the annealing cycles of one iteration. Each cycle moves every
+	 * element of the state by up to half the temperature, scaled by the
+	 * starting temperature, and keeps the move if it scores better.
+	 */
+	@Override
+	public void run() {
+		try {
+			this.error = null;
+			final CalculateScore calc = this.owner.getCalculateScore();
+			final double scale = this.temperature
+					/ this.owner.getStartTemperature();
+			for (int i = 0; i < this.owner.getCycles(); i++) {
+				for (int j = 0; j < this.state.length; j++) {
+					this.trial[j] = this.state[j]
+							+ (NeuralSimulatedAnnealing.CUT - this.random
+									.nextDouble()) * scale;
+				}
+				final double trialScore = calculateScore(this.trial);
+				if (this.owner.isBetter(trialScore, this.score,
+						calc.shouldMinimize())) {
+					final double[] t = this.state;
+					this.state = this.trial;
+					this.trial = t;
+					this.score = trialScore;
+				}
+			}
+		} catch (final Throwable ex) {
+			this.error = ex;
+		}
+	}
+
+	/**
+	 * Exchange states with another replica. The temperatures stay with the
+	 * replicas.
+	 * 
+	 * @param other
+	 *            The other replica.
+	 */
+	public void swap(final AnnealReplica other) {
+		final double[] s = this.state;
+		this.state = other.state;
+		other.state = s;
+		final double sc = this.score;
+		this.score = other.score;
+		other.score = sc;
+	}
+}
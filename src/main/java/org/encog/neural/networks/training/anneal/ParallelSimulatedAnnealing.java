@@ -0,0 +1,333 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.networks.training.anneal;
+
+import java.io.Serializable;
+import java.util.Random;
+
+import org.encog.EncogError;
+import org.encog.ml.CalculateScore;
+import org.encog.ml.MLEncodable;
+import org.encog.ml.MLRegression;
+import org.encog.ml.TrainingImplementationType;
+import org.encog.ml.train.BasicTraining;
+import org.encog.neural.networks.training.TrainingError;
+import org.encog.neural.networks.training.propagation.TrainingContinuation;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.TaskGroup;
+import org.encog.util.logging.EncogLogging;
+import org.encog.util.obj.ObjectCloner;
+
+/**
+ * Simulated annealing with several replicas run in parallel. This is also
+ * known as parallel tempering, or replica exchange.
+ * 
+ * Each replica anneals its own copy of the method, at a fixed temperature.
+ * The temperatures are spaced geometrically from the starting temperature,
+ * for the first replica, to the stopping temperature, for the last. As in
+ * NeuralSimulatedAnnealing, the temperature sets how far each move goes, and
+ * a move is kept only if it improves the score. So hot replicas search
+ * widely while cold replicas refine.
+ * 
+ * After each iteration, neighbouring replicas exchange states when the
+ * hotter one holds the better state, passing good states down to the
+ * colder replicas. Exchanges can be turned off to run independent chains.
+ * The best state of any replica is copied into the method being trained.
+ * 
+ * The score object is called from several threads at once, so it must be
+ * thread safe. TrainingSetScore is.
+ */
+public class ParallelSimulatedAnnealing extends BasicTraining {
+
+	/**
+	 * The method being trained.
+	 */
+	private final MLEncodable method;
+
+	/**
+	 * Used to calculate the score.
+	 */
+	private final CalculateScore calculateScore;
+
+	/**
+	 * The starting temperature.
+	 */
+	private final double startTemperature;
+
+	/**
+	 * The stopping temperature.
+	 */
+	private final double stopTemperature;
+
+	/**
+	 * The number of cycles each replica runs per iteration.
+	 */
+	private final int cycles;
+
+	/**
+	 * The replicas, from hottest to coldest.
+	 */
+	private final AnnealReplica[] replicas;
+
+	/**
+	 * True, if replicas exchange states.
+	 */
+	private boolean exchange = true;
+
+	/**
+	 * Construct a parallel annealing trainer, with one replica for each
+	 * processor.
+	 * 
+	 * @param theMethod
+	 *            The method to train.
+	 * @param theCalculateScore
+	 *            Used to calculate the score for a method.
+	 * @param startTemp
+	 *            The temperature of the hottest replica.
+	 * @param stopTemp
+	 *            The temperature of the coldest replica.
+	 * @param theCycles
+	 *            The number of cycles each replica runs per iteration.
+	 */
+	public ParallelSimulatedAnnealing(final MLEncodable theMethod,
+			final CalculateScore theCalculateScore, final double startTemp,
+			final double stopTemp, final int theCycles) {
+		this(theMethod, theCalculateScore, startTemp, stopTemp, theCycles,
+				Runtime.getRuntime().availableProcessors(), new Random());
+	}
+
+	/**
+	 * Construct a parallel annealing trainer.
+	 * 
+	 * @param theMethod
+	 *            The method to train, it must also be serializable, so it
+	 *            can be copied for each replica.
+	 * @param theCalculateScore
+	 *            Used to calculate the score for a method.
+	 * @param startTemp
+	 *            The temperature of the hottest replica.
+	 * @param stopTemp
+	 *            The temperature of the coldest replica.
+	 * @param theCycles
+	 *            The number of cycles each replica runs per iteration.
+	 * @param replicaCount
+	 *            The number of replicas.
+	 * @param random
+	 *            Used to seed the random number generator of each replica.
+	 */
+	public ParallelSimulatedAnnealing(final MLEncodable theMethod,
+			final CalculateScore theCalculateScore, final double startTemp,
+			final double stopTemp, final int theCycles,
+			final int replicaCount, final Random random) {
+		super(TrainingImplementationType.Iterative);
+
+		if (!(theMethod instanceof MLRegression)
+				|| !(theMethod instanceof Serializable)) {
+			throw new TrainingError(
+					"Parallel simulated annealing requires the MLMethod to support MLRegression and Serializable.");
+		}
+
+		if (replicaCount < 1) {
+			throw new TrainingError("There must be at least one replica.");
+		}
+
+		this.method = theMethod;
+		this.calculateScore = theCalculateScore;
+		this.startTemperature = startTemp;
+		this.stopTemperature = stopTemp;
+		this.cycles = theCycles;
+
+		this.replicas = new AnnealReplica[replicaCount];
+		final double ratio = replicaCount > 1 ? Math.exp(Math.log(stopTemp
+				/ startTemp)
+				/ (replicaCount - 1)) : 1;
+		double temperature = startTemp;
+		for (int i = 0; i < replicaCount; i++) {
+			final MLEncodable copy = (MLEncodable) ObjectCloner
+					.deepCopy(theMethod);
+			this.replicas[i] = new AnnealReplica(this, copy, new Random(
+					random.nextLong()), temperature);
+			temperature *= ratio;
+		}
+
+		setError(this.replicas[best()].getScore());
+	}
+
+	/**
+	 * @return The index of the replica with the best state.
+	 */
+	private int best() {
+		int result = 0;
+		for (int i = 1; i < this.replicas.length; i++) {
+			if (isBetter(this.replicas[i].getScore(),
+					this.replicas[result].getScore(),
+					this.calculateScore.shouldMinimize())) {
+				result = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean canContinue() {
+		return false;
+	}
+
+	/**
+	 * @return The object used to calculate the score.
+	 */
+	public CalculateScore getCalculateScore() {
+		return this.calculateScore;
+	}
+
+	/**
+	 * @return The number of cycles each replica runs per iteration.
+	 */
+	public int getCycles() {
+		return this.cycles;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public MLEncodable getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * @return The replicas, from hottest to coldest.
+	 */
+	public AnnealReplica[] getReplicas() {
+		return this.replicas;
+	}
+
+	/**
+	 * @return The temperature of the hottest replica.
+	 */
+	public double getStartTemperature() {
+		return this.startTemperature;
+	}
+
+	/**
+	 * @return The temperature of the coldest replica.
+	 */
+	public double getStopTemperature() {
+		return this.stopTemperature;
+	}
+
+	/**
+	 * @return True, if replicas exchange states.
+	 */
+	public boolean isExchange() {
+		return this.exchange;
+	}
+
+	/**
+	 * Compare two scores.
+	 * 
+	 * @param score1
+	 *            A score.
+	 * @param score2
+	 *            Another score.
+	 * @param shouldMinimize
+	 *            True, if lower scores are better.
+	 * @return True, if score1 is better than score2.
+	 */
+	boolean isBetter(final double score1, final double score2,
+			final boolean shouldMinimize) {
+		return shouldMinimize ? score1 < score2 : score1 > score2;
+	}
+
+	/**
+	 * Perform one iteration, running every replica in parallel.
+	 */
+	@Override
+	public void iteration() {
+		EncogLogging.log(EncogLogging.LEVEL_INFO,
+				"Performing Parallel Simulated Annealing iteration.");
+		preIteration();
+
+		if (this.replicas.length > 1) {
+			final TaskGroup group = EngineConcurrency.getInstance()
+					.createTaskGroup();
+			for (final AnnealReplica replica : this.replicas) {
+				EngineConcurrency.getInstance().processTask(replica, group);
+			}
+			group.waitForComplete();
+		} else {
+			this.replicas[0].run();
+		}
+
+		for (final AnnealReplica replica : this.replicas) {
+			if (replica.getError() != null) {
+				throw new EncogError(replica.getError());
+			}
+		}
+
+		if (this.exchange) {
+			for (int i = 0; i < this.replicas.length - 1; i++) {
+				if (isBetter(this.replicas[i].getScore(),
+						this.replicas[i + 1].getScore(),
+						this.calculateScore.shouldMinimize())) {
+					this.replicas[i].swap(this.replicas[i + 1]);
+				}
+			}
+		}
+
+		final AnnealReplica bestReplica = this.replicas[best()];
+		this.method.decodeFromArray(bestReplica.getState());
+		setError(bestReplica.getScore());
+
+		postIteration();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public TrainingContinuation pause() {
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void resume(final TrainingContinuation state) {
+
+	}
+
+	/**
+	 * @param theExchange
+	 *            True, if replicas should exchange states. If false, the
+	 *            replicas run as independent chains.
+	 */
+	public void setExchange(final boolean theExchange) {
+		this.exchange = theExchange;
+	}
+}
@@ -23,11 +23,19 @@
  */
 package org.encog.neural.networks.training.cross;
 
+import org.encog.EncogError;
+import org.encog.mathutil.IntRange;
 import org.encog.ml.data.folded.FoldedDataSet;
+import org.encog.ml.factory.MLTrainFactory;
 import org.encog.ml.train.MLTrain;
 import org.encog.neural.flat.FlatNetwork;
 import org.encog.neural.networks.BasicNetwork;
 import org.encog.neural.networks.training.propagation.TrainingContinuation;
+import org.encog.util.EngineArray;
+import org.encog.util.concurrency.DetermineWorkload;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
 
 /**
  * Train using K-Fold cross validation. Each iteration will train a number of
@@ -43,8 +51,16 @@ import org.encog.neural.networks.training.propagation.TrainingContinuation;
  * must be the FoldedDataSet. The folded dataset can wrap most other training
  * sets.
  * 
+ * If the trainer is given as a type and arguments for MLTrainFactory, each
+ * fold gets its own copy of the network, its own trainer and its own view of
+ * the folded data, and the folds are trained concurrently. The thread count
+ * is split between the folds and the trainers inside them. Each fold is
+ * trained exactly as it would be on its own, so the result does not depend
+ * on how many folds run at once.
+ * 
  */
-public class CrossValidationKFold extends CrossTraining {
+public class CrossValidationKFold extends CrossTraining implements
+		MultiThreadable {
 
 	/**
 	 * The underlying trainer to use. This trainer does the actual training.
@@ -61,6 +77,31 @@ public class CrossValidationKFold extends CrossTraining {
 	 */
 	private final FlatNetwork flatNetwork;
 
+	/**
+	 * The network of each fold, when the folds are trained concurrently.
+	 */
+	private final BasicNetwork[] foldNetworks;
+
+	/**
+	 * The trainer of each fold, when the folds are trained concurrently.
+	 */
+	private final MLTrain[] foldTrainers;
+
+	/**
+	 * The data of each fold, when the folds are trained concurrently.
+	 */
+	private final FoldedDataSet[] foldSets;
+
+	/**
+	 * The validation error of each fold.
+	 */
+	private final double[] foldErrors;
+
+	/**
+	 * The total number of threads to use, zero for automatic.
+	 */
+	private int numThreads;
+
 	/**
 	 * Construct a cross validation trainer.
 	 * 
@@ -81,6 +122,49 @@ public class CrossValidationKFold extends CrossTraining {
 			this.networks[i] = new NetworkFold(flatNetwork);
 		}
 
+		this.foldNetworks = null;
+		this.foldTrainers = null;
+		this.foldSets = null;
+		this.foldErrors = null;
+	}
+
+	/**
+	 * Construct a cross validation trainer that trains the folds
+	 * concurrently.
+	 * 
+	 * @param network
+	 *            The network to train.
+	 * @param training
+	 *            The training data.
+	 * @param k
+	 *            The number of folds.
+	 * @param trainType
+	 *            The type of trainer, as accepted by MLTrainFactory.
+	 * @param trainArgs
+	 *            The arguments of the trainer, as accepted by MLTrainFactory.
+	 */
+	public CrossValidationKFold(final BasicNetwork network,
+			final FoldedDataSet training, final int k, final String trainType,
+			final String trainArgs) {
+		super(network, training);
+		this.train = null;
+		this.networks = null;
+		getFolded().fold(k);
+
+		this.flatNetwork = network.getStructure().getFlat();
+
+		final MLTrainFactory factory = new MLTrainFactory();
+		final int folds = getFolded().getNumFolds();
+		this.foldNetworks = new BasicNetwork[folds];
+		this.foldTrainers = new MLTrain[folds];
+		this.foldSets = new FoldedDataSet[folds];
+		this.foldErrors = new double[folds];
+		for (int i = 0; i < folds; i++) {
+			this.foldNetworks[i] = (BasicNetwork) network.clone();
+			this.foldSets[i] = getFolded().openIndependent();
+			this.foldTrainers[i] = factory.create(this.foldNetworks[i],
+					this.foldSets[i], trainType, trainArgs);
+		}
 	}
 
 	/**
@@ -89,6 +173,11 @@ public class CrossValidationKFold extends CrossTraining {
 	@Override
 	public void iteration() {
 
+		if (this.train == null) {
+			iterationConcurrent();
+			return;
+		}
+
 		double error = 0;
 
 		for (int valFold = 0; valFold < getFolded().getNumFolds(); valFold++) {
@@ -114,6 +203,114 @@ public class CrossValidationKFold extends CrossTraining {
 
 		setError(error / getFolded().getNumFolds());
 	}
+
+	/**
+	 * Perform one iteration, training the folds concurrently.
+	 */
+	private void iterationConcurrent() {
+		final int folds = this.foldTrainers.length;
+		int budget = this.numThreads == 0 ? Runtime.getRuntime()
+				.availableProcessors() : this.numThreads;
+
+		// a fold worker holds a pool thread while its trainer waits on its
+		// own workers, so more threads than the pool has could deadlock
+		final int poolSize = EngineConcurrency.getInstance().getThreadCount();
+		if (poolSize > 0) {
+			budget = Math.min(budget, poolSize);
+		}
+
+		final DetermineWorkload determine = new DetermineWorkload(budget,
+				folds);
+
+		// give the threads not needed by the folds to the trainers
+		final int innerThreads = Math.max(1,
+				budget / determine.getThreadCount());
+		for (final MLTrain foldTrainer : this.foldTrainers) {
+			if (foldTrainer instanceof MultiThreadable) {
+				((MultiThreadable) foldTrainer).setThreadCount(innerThreads);
+			}
+		}
+
+		final CrossValidationWorker[] workers = 
+			new CrossValidationWorker[determine.getThreadCount()];
+		int index = 0;
+		for (final IntRange r : determine.calculateWorkers()) {
+			workers[index++] = new CrossValidationWorker(this, r.getLow(),
+					r.getHigh());
+		}
+
+		if (workers.length > 1) {
+			final TaskGroup group = EngineConcurrency.getInstance()
+					.createTaskGroup();
+			for (final CrossValidationWorker worker : workers) {
+				EngineConcurrency.getInstance().processTask(worker, group);
+			}
+			group.waitForComplete();
+		} else {
+			workers[0].run();
+		}
+
+		for (final CrossValidationWorker worker : workers) {
+			if (worker.getError() != null) {
+				throw new EncogError(worker.getError());
+			}
+		}
+
+		// sum in fold order, so the result does not depend on timing
+		double error = 0;
+		for (int i = 0; i < folds; i++) {
+			error += this.foldErrors[i];
+		}
+
+		// as in sequential training, leave the network with the last fold
+		final FlatNetwork last = this.foldNetworks[folds - 1].getStructure()
+				.getFlat();
+		EngineArray.arrayCopy(last.getWeights(), this.flatNetwork.getWeights());
+		EngineArray.arrayCopy(last.getLayerOutput(),
+				this.flatNetwork.getLayerOutput());
+
+		setError(error / folds);
+	}
+
+	/**
+	 * Train one fold, when the folds are trained concurrently. The fold is
+	 * trained on each of the other folds in turn, then validated.
+	 * 
+	 * @param valFold
+	 *            The validation fold.
+	 */
+	void trainFold(final int valFold) {
+		final FoldedDataSet data = this.foldSets[valFold];
+
+		// train with non-validation folds
+		for (int curFold = 0; curFold < data.getNumFolds(); curFold++) {
+			if (curFold != valFold) {
+				data.setCurrentFold(curFold);
+				this.foldTrainers[valFold].iteration();
+			}
+		}
+
+		// evaluate with the validation fold
+		data.setCurrentFold(valFold);
+		this.foldErrors[valFold] = this.foldNetworks[valFold].getStructure()
+				.getFlat().calculateError(data);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.numThreads;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.numThreads = numThreads;
+	}
 	
 	/**
 	 * {@inheritDoc}
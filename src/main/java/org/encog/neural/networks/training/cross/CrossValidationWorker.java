@@ -0,0 +1,91 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.networks.training.cross;
+
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * Worker class for concurrent k-fold cross validation. Each worker trains a
+ * range of the folds, one after another.
+ */
+public class CrossValidationWorker implements EngineTask {
+
+	/**
+	 * The cross validation trainer.
+	 */
+	private final CrossValidationKFold owner;
+
+	/**
+	 * The first fold to train.
+	 */
+	private final int low;
+
+	/**
+	 * The last fold to train.
+	 */
+	private final int high;
+
+	/**
+	 * An exception thrown while training, or null.
+	 */
+	private Throwable error;
+
+	/**
+	 * Construct a worker.
+	 * 
+	 * @param theOwner
+	 *            The cross validation trainer.
+	 * @param theLow
+	 *            The first fold to train.
+	 * @param theHigh
+	 *            The last fold to train.
+	 */
+	public CrossValidationWorker(final CrossValidationKFold theOwner,
+			final int theLow, final int theHigh) {
+		this.owner = theOwner;
+		this.low = theLow;
+		this.high = theHigh;
+	}
+
+	/**
+	 * @return An exception thrown while training, or null.
+	 */
+	public Throwable getError() {
+		return this.error;
+	}
+
+	/**
+	 * Train the folds of this worker.
+	 */
+	@Override
+	public void run() {
+		try {
+			for (int i = this.low; i <= this.high; i++) {
+				this.owner.trainFold(i);
+			}
+		} catch (final Throwable ex) {
+			this.error = ex;
+		}
+	}
+}
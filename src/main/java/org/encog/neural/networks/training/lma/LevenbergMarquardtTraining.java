@@ -24,7 +24,7 @@
 package org.encog.neural.networks.training.lma;
 
 import org.encog.mathutil.error.ErrorCalculation;
-import org.encog.mathutil.matrices.decomposition.LUDecomposition;
+import org.encog.mathutil.matrices.decomposition.PackedCholeskyDecomposition;
 import org.encog.mathutil.matrices.hessian.ComputeHessian;
 import org.encog.mathutil.matrices.hessian.HessianCR;
 import org.encog.ml.MLMethod;
@@ -61,6 +61,11 @@ import org.encog.util.validate.ValidateNetwork;
  * more primitive gradient descent method
  *
  * LMA finds only a local minimum, not a global minimum.
+ * 
+ * The approximate Hessian is symmetric, and positive definite once lambda is
+ * added to its diagonal, so the weight deltas are found with a Cholesky solve
+ * on the packed upper triangle.  The factorization buffers are allocated once
+ * and reused for every lambda that is tried.
  *  
  * References:
  * http://www.heatonresearch.com/wiki/LMA
@@ -121,14 +126,19 @@ public class LevenbergMarquardtTraining extends BasicTraining implements MultiTh
 	private double lambda;
 
 	/**
-	 * The diagonal of the hessian.
+	 * The amount to change the weights by.
 	 */
-	private final double[] diagonal;
+	private final double[] deltas;
 
 	/**
-	 * The amount to change the weights by.
+	 * The weights being tried for the current lambda.
 	 */
-	private double[] deltas;
+	private final double[] trialWeights;
+
+	/**
+	 * The decomposition used to solve for the deltas, reused each iteration.
+	 */
+	private final PackedCholeskyDecomposition decomposition;
 
 	/**
 	 * The training elements.
@@ -168,7 +178,8 @@ public class LevenbergMarquardtTraining extends BasicTraining implements MultiTh
 		this.weightCount = this.network.getStructure().calculateSize();
 		this.lambda = 0.1;
 		this.deltas = new double[this.weightCount];
-		this.diagonal = new double[this.weightCount];
+		this.trialWeights = new double[this.weightCount];
+		this.decomposition = new PackedCholeskyDecomposition(this.weightCount);
 
 		final BasicMLData input = new BasicMLData(
 				this.indexableTraining.getInputSize());
@@ -182,13 +193,6 @@ public class LevenbergMarquardtTraining extends BasicTraining implements MultiTh
 
 	}
 
-	private void saveDiagonal() {
-		double[][] h = this.hessian.getHessian();
-		for (int i = 0; i < this.weightCount; i++) {
-			this.diagonal[i] = h[i][i];
-		}
-	}
-
 	@Override
 	public boolean canContinue() {
 		return false;
@@ -217,20 +221,12 @@ public class LevenbergMarquardtTraining extends BasicTraining implements MultiTh
 		return result.calculateESS();
 	}
 	
-	private void applyLambda() {
-		double[][] h = this.hessian.getHessian();
-		for (int i = 0; i < this.weightCount; i++) {
-			h[i][i] = this.diagonal[i] + this.lambda;
-		}
-	}
-	
 	/**
 	 * Perform one iteration.
 	 */
 	@Override
 	public void iteration() {
 
-		LUDecomposition decomposition = null;
 		preIteration();
 
 		this.hessian.clear();
@@ -238,25 +234,22 @@ public class LevenbergMarquardtTraining extends BasicTraining implements MultiTh
 		
 		this.hessian.compute();			
 		double currentError = this.hessian.getSSE();
-		saveDiagonal();
 
 		final double startingError = currentError;
 		boolean done = false;
-		boolean singular;
+		boolean solved;
 
 		while (!done) {
-			applyLambda();
-			decomposition = new LUDecomposition(this.hessian.getHessianMatrix());
-			
-			singular = decomposition.isNonsingular();
+			this.decomposition.load(this.hessian.getHessian(), this.lambda);
+			solved = this.decomposition.decompose();
 
-			if (singular) {
-				this.deltas = decomposition.Solve(this.hessian.getGradients());
+			if (solved) {
+				this.decomposition.solve(this.hessian.getGradients(), this.deltas);
 				updateWeights();
 				currentError = calculateError();				
 			}
 			
-			if ( !singular ||  currentError >= startingError) {
+			if ( !solved ||  currentError >= startingError) {
 				this.lambda *= LevenbergMarquardtTraining.SCALE_LAMBDA;
 				if( this.lambda> LevenbergMarquardtTraining.LAMBDA_MAX ) {
 					this.lambda = LevenbergMarquardtTraining.LAMBDA_MAX;
@@ -295,10 +288,10 @@ public class LevenbergMarquardtTraining extends BasicTraining implements MultiTh
 	 * Update the weights in the neural network.
 	 */
 	public void updateWeights() {
-		final double[] w = this.weights.clone();
+		final double[] w = this.trialWeights;
 
 		for (int i = 0; i < w.length; i++) {
-			w[i] += this.deltas[i];
+			w[i] = this.weights[i] + this.deltas[i];
 		}
 
 		NetworkCODEC.arrayToNetwork(w, this.network);
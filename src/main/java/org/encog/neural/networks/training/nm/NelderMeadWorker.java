@@ -0,0 +1,139 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.networks.training.nm;
+
+import org.encog.ml.data.MLDataSet;
+import org.encog.neural.networks.BasicNetwork;
+import org.encog.util.EngineArray;
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * Worker class for the multithreaded Nelder-Mead trainer. Each worker has its
+ * own copy of the network and its own handle on the training data, and
+ * evaluates a range of the points that the trainer asks for.
+ */
+public class NelderMeadWorker implements EngineTask {
+
+	/**
+	 * The network copy used by this worker.
+	 */
+	private final BasicNetwork network;
+
+	/**
+	 * The training data, opened for this worker.
+	 */
+	private final MLDataSet training;
+
+	/**
+	 * The points to evaluate, one row per point.
+	 */
+	private double[] points;
+
+	/**
+	 * The length of each point.
+	 */
+	private int length;
+
+	/**
+	 * The first point to evaluate.
+	 */
+	private int low;
+
+	/**
+	 * The last point to evaluate.
+	 */
+	private int high;
+
+	/**
+	 * Receives the error of each point.
+	 */
+	private double[] results;
+
+	/**
+	 * An exception thrown while evaluating, or null.
+	 */
+	private Throwable error;
+
+	/**
+	 * Construct a worker.
+	 * 
+	 * @param theNetwork
+	 *            The network copy used by this worker.
+	 * @param theTraining
+	 *            The training data, opened for this worker.
+	 */
+	public NelderMeadWorker(final BasicNetwork theNetwork,
+			final MLDataSet theTraining) {
+		this.network = theNetwork;
+		this.training = theTraining;
+	}
+
+	/**
+	 * @return An exception thrown while evaluating, or null.
+	 */
+	public Throwable getError() {
+		return this.error;
+	}
+
+	/**
+	 * Evaluate the points of this worker.
+	 */
+	@Override
+	public void run() {
+		try {
+			this.error = null;
+			final double[] weights = this.network.getFlat().getWeights();
+			for (int i = this.low; i <= this.high; i++) {
+				EngineArray.arrayCopy(this.points, i * this.length, weights,
+						0, this.length);
+				this.results[i] = this.network.calculateError(this.training);
+			}
+		} catch (final Throwable ex) {
+			this.error = ex;
+		}
+	}
+
+	/**
+	 * Set the points for the next run.
+	 * 
+	 * @param thePoints
+	 *            The points, one row per point.
+	 * @param theLength
+	 *            The length of each point.
+	 * @param theLow
+	 *            The first point to evaluate.
+	 * @param theHigh
+	 *            The last point to evaluate.
+	 * @param theResults
+	 *            Receives the error of each point.
+	 */
+	public void setPoints(final double[] thePoints, final int theLength,
+			final int theLow, final int theHigh, final double[] theResults) {
+		this.points = thePoints;
+		this.length = theLength;
+		this.low = theLow;
+		this.high = theHigh;
+		this.results = theResults;
+	}
+}
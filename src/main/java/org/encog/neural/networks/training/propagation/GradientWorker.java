@@ -24,6 +24,7 @@
 package org.encog.neural.networks.training.propagation;
 
 import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.mathutil.IntRange;
 import org.encog.mathutil.error.ErrorCalculation;
 import org.encog.ml.data.MLDataPair;
 import org.encog.ml.data.MLDataSet;
@@ -31,10 +32,16 @@ import org.encog.ml.data.basic.BasicMLDataPair;
 import org.encog.neural.error.ErrorFunction;
 import org.encog.neural.flat.FlatNetwork;
 import org.encog.util.EngineArray;
+import org.encog.util.concurrency.BlockWorkload;
 import org.encog.util.concurrency.EngineTask;
 
 /**
  * Worker class for the mulithreaded training of flat networks.
+ * 
+ * A worker either processes a fixed range of the training data, and reports
+ * its gradients to the owner, or claims blocks of the training data from a
+ * shared BlockWorkload until none are left. In the second case the gradients
+ * and error of each block are kept apart, for the owner to sum in block order.
  */
 public class GradientWorker implements EngineTask {
 
@@ -46,7 +53,7 @@ public class GradientWorker implements EngineTask {
 	/**
 	 * The error calculation method.
 	 */
-	private final ErrorCalculation errorCalculation = new ErrorCalculation();
+	private ErrorCalculation errorCalculation = new ErrorCalculation();
 
 	/**
 	 * The actual values from the neural network.
@@ -91,7 +98,7 @@ public class GradientWorker implements EngineTask {
 	/**
 	 * The gradients.
 	 */
-	private final double[] gradients;
+	private double[] gradients;
 
 	/**
 	 * The weights and thresholds.
@@ -118,6 +125,21 @@ public class GradientWorker implements EngineTask {
 	 */
 	private final int high;
 
+	/**
+	 * The blocks to claim, or null to process the fixed range.
+	 */
+	private final BlockWorkload blocks;
+
+	/**
+	 * The gradients of each block.
+	 */
+	private final double[][] blockGradients;
+
+	/**
+	 * The error of each block.
+	 */
+	private final ErrorCalculation[] blockErrors;
+
 	/**
 	 * The owner.
 	 */
@@ -152,10 +174,51 @@ public class GradientWorker implements EngineTask {
 			final MLDataSet theTraining, final int theLow, 
 			final int theHigh, final double[] flatSpot, 
 			ErrorFunction ef) {
+		this(theNetwork, theOwner, theTraining, theLow, theHigh, null, null,
+				null, flatSpot, ef);
+	}
+
+	/**
+	 * Construct a gradient worker that claims blocks of the training data.
+	 * 
+	 * @param theNetwork
+	 *            The network to train.
+	 * @param theOwner
+	 *            The owner that is doing the training.
+	 * @param theTraining
+	 *            The training data.
+	 * @param theBlocks
+	 *            The blocks of the training data, shared by all workers.
+	 * @param theBlockGradients
+	 *            The gradients of each block.
+	 * @param theBlockErrors
+	 *            The error of each block.
+	 */
+	public GradientWorker(final FlatNetwork theNetwork,
+			final Propagation theOwner, final MLDataSet theTraining,
+			final BlockWorkload theBlocks, final double[][] theBlockGradients,
+			final ErrorCalculation[] theBlockErrors, final double[] flatSpot,
+			final ErrorFunction ef) {
+		this(theNetwork, theOwner, theTraining, 0, -1, theBlocks,
+				theBlockGradients, theBlockErrors, flatSpot, ef);
+	}
+
+	/**
+	 * Construct a gradient worker for either a fixed range or blocks.
+	 */
+	private GradientWorker(final FlatNetwork theNetwork,
+			final Propagation theOwner, final MLDataSet theTraining,
+			final int theLow, final int theHigh, final BlockWorkload theBlocks,
+			final double[][] theBlockGradients,
+			final ErrorCalculation[] theBlockErrors, final double[] flatSpot,
+			final ErrorFunction ef) {
 		this.network = theNetwork;
 		this.training = theTraining;
 		this.low = theLow;
 		this.high = theHigh;
+		this.blocks = theBlocks;
+		this.blockGradients = theBlockGradients;
+		this.blockErrors = theBlockErrors;
 		this.owner = theOwner;
 		this.flatSpot = flatSpot;
 		this.errorFunction = ef;
@@ -256,18 +319,43 @@ public class GradientWorker implements EngineTask {
 	}
 
 	/**
-	 * Perform the gradient calculation for the specified index range.
+	 * Process a range of the training data.
+	 * 
+	 * @param theLow
+	 *            The first element.
+	 * @param theHigh
+	 *            The last element.
+	 */
+	private void processRange(final int theLow, final int theHigh) {
+		for (int i = theLow; i <= theHigh; i++) {
+			this.training.getRecord(i, this.pair);
+			process(this.pair.getInputArray(), this.pair.getIdealArray(),pair.getSignificance());
+		}
+	}
+
+	/**
+	 * Perform the gradient calculation for the specified index range, or for
+	 * the blocks this worker claims.
 	 */
 	public final void run() {
 		try {
-			this.errorCalculation.reset();
-			for (int i = this.low; i <= this.high; i++) {
-				this.training.getRecord(i, this.pair);
-				process(this.pair.getInputArray(), this.pair.getIdealArray(),pair.getSignificance());
+			if (this.blocks == null) {
+				this.errorCalculation.reset();
+				processRange(this.low, this.high);
+				final double error = this.errorCalculation.calculate();
+				this.owner.report(this.gradients, error, null);
+				EngineArray.fill(this.gradients, 0);
+			} else {
+				int index;
+				while ((index = this.blocks.claim()) != -1) {
+					final IntRange block = this.blocks.getBlock(index);
+					this.gradients = this.blockGradients[index];
+					this.errorCalculation = this.blockErrors[index];
+					EngineArray.fill(this.gradients, 0);
+					this.errorCalculation.reset();
+					processRange(block.getLow(), block.getHigh());
+				}
 			}
-			final double error = this.errorCalculation.calculate();
-			this.owner.report(this.gradients, error, null);
-			EngineArray.fill(this.gradients, 0);
 		} catch (final Throwable ex) {
 			this.owner.report(null, 0, ex);
 		}
@@ -27,6 +27,7 @@ import org.encog.EncogError;
 import org.encog.engine.network.activation.ActivationFunction;
 import org.encog.engine.network.activation.ActivationSigmoid;
 import org.encog.mathutil.IntRange;
+import org.encog.mathutil.error.ErrorCalculation;
 import org.encog.ml.MLMethod;
 import org.encog.ml.TrainingImplementationType;
 import org.encog.ml.data.MLDataSet;
@@ -36,8 +37,10 @@ import org.encog.neural.error.LinearErrorFunction;
 import org.encog.neural.flat.FlatNetwork;
 import org.encog.neural.networks.ContainsFlat;
 import org.encog.neural.networks.training.Train;
+import org.encog.neural.networks.training.TrainingError;
 import org.encog.util.EncogValidate;
 import org.encog.util.EngineArray;
+import org.encog.util.concurrency.BlockWorkload;
 import org.encog.util.concurrency.DetermineWorkload;
 import org.encog.util.concurrency.EngineConcurrency;
 import org.encog.util.concurrency.MultiThreadable;
@@ -49,6 +52,13 @@ import org.encog.util.logging.EncogLogging;
  * methods. The specifics of each of the propagation methods is implemented
  * inside of the PropagationMethod interface implementors.
  * 
+ * Unless the network has context neurons, the training data is split into
+ * blocks that the workers claim as they finish the previous one, so a slow
+ * thread does not hold up the whole iteration. The gradients of each block
+ * are summed in block order, so the result does not depend on which worker
+ * ran which block. Networks with context neurons need the training data in
+ * order, and use a fixed range per worker.
+ * 
  * @author jheaton
  * 
  */
@@ -90,6 +100,22 @@ public abstract class Propagation extends BasicTraining implements Train,
 	 */
 	private GradientWorker[] workers;
 
+	/**
+	 * The blocks of the training data, or null if each worker has a fixed
+	 * range.
+	 */
+	private BlockWorkload blocks;
+
+	/**
+	 * The gradients of each block.
+	 */
+	private double[][] blockGradients;
+
+	/**
+	 * The error of each block.
+	 */
+	private ErrorCalculation[] blockErrors;
+
 	/**
 	 * The total error. Used to take the average of.
 	 */
@@ -135,6 +161,10 @@ public abstract class Propagation extends BasicTraining implements Train,
 	 */
 	public Propagation(final ContainsFlat network, final MLDataSet training) {
 		super(TrainingImplementationType.Iterative);
+		if (network.getFlat().isReadOnly()) {
+			throw new TrainingError(
+					"The weights of a read-only network can not be trained.");
+		}
 		this.network = network;
 		this.currentFlatNetwork = network.getFlat();
 		setTraining(training);
@@ -288,6 +318,10 @@ public abstract class Propagation extends BasicTraining implements Train,
 
 		this.totalError = 0;
 
+		if (this.blocks != null) {
+			this.blocks.reset();
+		}
+
 		if (this.workers.length > 1) {
 
 			final TaskGroup group = EngineConcurrency.getInstance()
@@ -302,7 +336,20 @@ public abstract class Propagation extends BasicTraining implements Train,
 			this.workers[0].run();
 		}
 
-		this.setError(this.totalError / this.workers.length);
+		if (this.blocks != null) {
+			// sum in block order, so the result does not depend on timing
+			final ErrorCalculation errorCalc = new ErrorCalculation();
+			for (int b = 0; b < this.blockGradients.length; b++) {
+				final double[] g = this.blockGradients[b];
+				for (int i = 0; i < g.length; i++) {
+					this.gradients[i] += g[i];
+				}
+				errorCalc.merge(this.blockErrors[b]);
+			}
+			this.setError(errorCalc.calculate());
+		} else {
+			this.setError(this.totalError / this.workers.length);
+		}
 
 	}
 
@@ -356,14 +403,32 @@ public abstract class Propagation extends BasicTraining implements Train,
 
 		this.workers = new GradientWorker[determine.getThreadCount()];
 
-		int index = 0;
+		if (this.currentFlatNetwork.getHasContext()) {
+			int index = 0;
+
+			// handle CPU
+			for (final IntRange r : determine.calculateWorkers()) {
+				this.workers[index++] = new GradientWorker(
+						this.currentFlatNetwork.clone(), this,
+						this.indexable.openAdditional(), r.getLow(),
+						r.getHigh(), this.flatSpot, this.ef);
+			}
+		} else {
+			this.blocks = determine.calculateBlocks();
+			this.blockGradients = new double[this.blocks.getBlockCount()][this.gradients.length];
+			this.blockErrors = new ErrorCalculation[this.blocks
+					.getBlockCount()];
+			for (int i = 0; i < this.blockErrors.length; i++) {
+				this.blockErrors[i] = new ErrorCalculation();
+			}
 
-		// handle CPU
-		for (final IntRange r : determine.calculateWorkers()) {
-			this.workers[index++] = new GradientWorker(
-					this.currentFlatNetwork.clone(), this,
-					this.indexable.openAdditional(), r.getLow(), r.getHigh(),
-					this.flatSpot, this.ef);
+			for (int i = 0; i < this.workers.length; i++) {
+				this.workers[i] = new GradientWorker(
+						this.currentFlatNetwork.clone(), this,
+						this.indexable.openAdditional(), this.blocks,
+						this.blockGradients, this.blockErrors, this.flatSpot,
+						this.ef);
+			}
 		}
 
 		initOthers();
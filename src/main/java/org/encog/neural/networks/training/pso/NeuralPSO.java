@@ -23,7 +23,9 @@
  */
 package org.encog.neural.networks.training.pso;
 
-import org.encog.mathutil.VectorAlgebra;
+import java.util.Random;
+
+import org.encog.mathutil.IntRange;
 import org.encog.mathutil.randomize.NguyenWidrowRandomizer;
 import org.encog.mathutil.randomize.Randomizer;
 import org.encog.ml.CalculateScore;
@@ -35,13 +37,22 @@ import org.encog.neural.networks.BasicNetwork;
 import org.encog.neural.networks.structure.NetworkCODEC;
 import org.encog.neural.networks.training.TrainingSetScore;
 import org.encog.neural.networks.training.propagation.TrainingContinuation;
+import org.encog.util.EngineArray;
+import org.encog.util.concurrency.DetermineWorkload;
 import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.MultiThreadable;
 import org.encog.util.concurrency.TaskGroup;
 
 /**
  * Iteratively trains a population of neural networks by applying   
  * particle swarm optimisation (PSO).
  * 
+ * The positions, velocities and personal best positions of the swarm are 
+ * each held in one array, a row of m_dimensionality values per particle. 
+ * The particles are split between a fixed set of workers, each with its 
+ * own scratch network and random number generator, so no networks are 
+ * created after the first iteration.
+ * 
  * Contributed by:
  * Geoffroy Noel
  * https://github.com/goffer-looney 
@@ -53,22 +64,32 @@ import org.encog.util.concurrency.TaskGroup;
  * 
  * @author Geoffroy Noel
  */
-public class NeuralPSO extends BasicTraining {
+public class NeuralPSO extends BasicTraining implements MultiThreadable {
 
     protected boolean m_multiThreaded = true;
-    protected VectorAlgebra m_va;
     protected CalculateScore m_calculateScore;
     protected Randomizer m_randomizer;
 
-    // Swarm state and memories.
-    protected BasicNetwork[] m_networks;
-    protected double[][] m_velocities;
-    protected double[][] m_bestVectors;
+    // The number of threads to use, zero for automatic.
+    private int m_threadCount;
+
+    // Swarm state and memories, one row of m_dimensionality 
+    // values per particle.
+    protected int m_dimensionality;
+    protected double[] m_positions;
+    protected double[] m_velocities;
+    protected double[] m_bestVectors;
     protected double[] m_bestErrors;
     protected int m_bestVectorIndex;
 
-    // Although this is redundant with m_bestVectors[m_bestVectorIndex],
-    // m_bestVectors[m_bestVectorIndex] is not thread safe.
+    // Networks to start the swarm from, or null.
+    protected BasicNetwork[] m_networks;
+
+    // The workers, each updating a range of the particles.
+    private NeuralPSOWorker[] m_workers;
+
+    // Although this is redundant with the row m_bestVectorIndex of 
+    // m_bestVectors, that row is not thread safe.
     private double[] m_bestVector;
     BasicNetwork m_bestNetwork = null;
 
@@ -135,17 +156,11 @@ public class NeuralPSO extends BasicTraining {
         m_randomizer = randomizer;
         m_calculateScore = calculateScore;
         m_bestNetwork = network;
-
-        m_networks = new BasicNetwork[m_populationSize];
-        m_velocities = null; 
-        m_bestVectors = new double[m_populationSize][];
-        m_bestErrors = new double[m_populationSize];
         m_bestVectorIndex = -1;
 
         // get a vector from the network.
         m_bestVector = NetworkCODEC.networkToArray(m_bestNetwork);
-
-        m_va = new VectorAlgebra();
+        m_dimensionality = m_bestVector.length;
     }
     
     /**
@@ -168,13 +183,56 @@ public class NeuralPSO extends BasicTraining {
      */
     void initPopulation() {
         if (m_velocities == null) {
-            int dimensionality = m_bestVector.length;
-            m_velocities = new double[m_populationSize][dimensionality];
+            final int size = m_populationSize * m_dimensionality;
+            m_positions = new double[size];
+            m_velocities = new double[size];
+            m_bestVectors = new double[size];
+            m_bestErrors = new double[m_populationSize];
+
+            // Create the particle positions. The first particle has the 
+            // same values as the network passed to the algorithm, unless
+            // an initial population was given. The randomizer is not 
+            // thread safe, so this is done here, one network at a time.
+            final BasicNetwork scratch = (BasicNetwork) m_bestNetwork.clone();
+            for (int i = 0; i < m_populationSize; i++) {
+                double[] state;
+                if (m_networks != null && i < m_networks.length 
+                        && m_networks[i] != null) {
+                    state = NetworkCODEC.networkToArray(m_networks[i]);
+                } else if (i == 0) {
+                    state = m_bestVector;
+                } else {
+                    m_randomizer.randomize(scratch);
+                    state = scratch.getFlat().getWeights();
+                }
+                EngineArray.arrayCopy(state, 0, m_positions, 
+                        i * m_dimensionality, m_dimensionality);
+            }
+            m_networks = null;
+
+            createWorkers();
+
             // run an initialisation iteration
             iterationPSO(true);
         }
     }
 
+    /**
+     * Create the workers, splitting the swarm between them.
+     */
+    private void createWorkers() {
+        final DetermineWorkload determine = new DetermineWorkload(
+                m_multiThreaded ? m_threadCount : 1, m_populationSize);
+        final Random seeds = new Random();
+        m_workers = new NeuralPSOWorker[determine.getThreadCount()];
+        int index = 0;
+        for (final IntRange r : determine.calculateWorkers()) {
+            m_workers[index++] = new NeuralPSOWorker(this, r.getLow(), 
+                    r.getHigh(), (BasicNetwork) m_bestNetwork.clone(), 
+                    new Random(seeds.nextLong()));
+        }
+    }
+
     /**
      * Runs one PSO iteration over the whole population of networks.
      */
@@ -193,18 +251,17 @@ public class NeuralPSO extends BasicTraining {
      * @param init  true if this is an initialisation iteration.
      */
     protected void iterationPSO(boolean init) {
-        final TaskGroup group = EngineConcurrency.getInstance().createTaskGroup();
-
-        for (int i = 0; i < m_populationSize; i++) {
-            NeuralPSOWorker worker = new NeuralPSOWorker(this, i, init);
-            if (!init && this.isMultiThreaded()) {
+        if (m_workers.length > 1) {
+            final TaskGroup group = EngineConcurrency.getInstance()
+                    .createTaskGroup();
+            for (final NeuralPSOWorker worker : m_workers) {
+                worker.setInit(init);
                 EngineConcurrency.getInstance().processTask(worker, group);
-            } else {
-                worker.run();
             }
-        }
-        if (this.isMultiThreaded()) {
             group.waitForComplete();
+        } else {
+            m_workers[0].setInit(init);
+            m_workers[0].run();
         }
         updateGlobalBestPosition();
     }
@@ -214,71 +271,79 @@ public class NeuralPSO extends BasicTraining {
      * best position of a particle 
      * 
      * @param particleIndex     index of the particle in the swarm
-     * @param init              if true, the position and velocity
-     *                          will be initialised. 
+     * @param init              if true, the velocity will be initialised. 
+     * @param network           a scratch network to score the particle with
+     * @param random            the random number generator to use
      */
-    protected void updateParticle(int particleIndex, boolean init) {
-        int i = particleIndex;
-        double[] particlePosition = null;
+    protected void updateParticle(int particleIndex, boolean init, 
+            BasicNetwork network, Random random) {
+        final int offset = particleIndex * m_dimensionality;
+        final int end = offset + m_dimensionality;
         if (init) {
-            // Create a new particle with random values.
-            // Except the first particle which has the same values 
-            // as the network passed to the algorithm.
-            if (m_networks[i] == null) {
-                m_networks[i] = (BasicNetwork) m_bestNetwork.clone();
-                if (i > 0) m_randomizer.randomize(m_networks[i]);
-            }
-            particlePosition = getNetworkState(i);
-            m_bestVectors[i] = particlePosition;
-
             // randomise the velocity
-            m_va.randomise(m_velocities[i], m_maxVelocity);
+            for (int j = offset; j < end; j++) {
+                m_velocities[j] = (2 * random.nextDouble() - 1) * m_maxVelocity;
+            }
         } else {
-            particlePosition = getNetworkState(i);
-            updateVelocity(i, particlePosition);
-
-            // velocity clamping
-            m_va.clampComponents(m_velocities[i], m_maxVelocity);
+            updateVelocity(particleIndex, random);
 
-            // new position (Xt = Xt-1 + Vt)
-            m_va.add(particlePosition, m_velocities[i]);
+            for (int j = offset; j < end; j++) {
+                // velocity clamping
+                m_velocities[j] = clamp(m_velocities[j], m_maxVelocity);
 
-            // pin the particle against the boundary of the search space.
-            // (only for the components exceeding maxPosition)
-            m_va.clampComponents(particlePosition, m_maxPosition);
+                // new position (Xt = Xt-1 + Vt), pinned against the 
+                // boundary of the search space.
+                m_positions[j] = clamp(m_positions[j] + m_velocities[j], 
+                        m_maxPosition);
+            }
+        }
+        updatePersonalBestPosition(particleIndex, init, network);
+    }
 
-            setNetworkState(i, particlePosition);
+    /**
+     * Clamp a value to [-maxValue, maxValue].
+     * 
+     * @param value     the value
+     * @param maxValue  the bound, -1 for no bound
+     * @return the clamped value
+     */
+    private static double clamp(double value, double maxValue) {
+        if (maxValue == -1) {
+            return value;
         }
-        updatePersonalBestPosition(i, particlePosition);
+        return Math.max(-maxValue, Math.min(maxValue, value));
     }
 
     /**
      * Update the velocity of a particle 
      * 
      * @param particleIndex     index of the particle in the swarm
-     * @param particlePosition  the particle current position vector
+     * @param random            the random number generator to use
      */
-    protected void updateVelocity(int particleIndex, double[] particlePosition) {
-        int i = particleIndex;
-        double[] vtmp = new double[particlePosition.length];
+    protected void updateVelocity(int particleIndex, Random random) {
+        final int offset = particleIndex * m_dimensionality;
+        final boolean social = particleIndex != m_bestVectorIndex;
+        final int bestOffset = m_bestVectorIndex * m_dimensionality;
 
         // Standard PSO formula
+        for (int j = 0; j < m_dimensionality; j++) {
+            final double position = m_positions[offset + j];
 
-        // inertia weight
-        m_va.mul(m_velocities[i], m_inertiaWeight);
-
-        // cognitive term
-        m_va.copy(vtmp, m_bestVectors[i]);
-        m_va.sub(vtmp, particlePosition);
-        m_va.mulRand(vtmp, m_c1);
-        m_va.add(m_velocities[i], vtmp);
-
-        // social term
-        if (i != m_bestVectorIndex) {
-            m_va.copy(vtmp, m_pseudoAsynchronousUpdate ? m_bestVectors[m_bestVectorIndex] : m_bestVector);
-            m_va.sub(vtmp, particlePosition);
-            m_va.mulRand(vtmp, m_c2);
-            m_va.add(m_velocities[i], vtmp);
+            // inertia weight
+            double v = m_velocities[offset + j] * m_inertiaWeight;
+
+            // cognitive term
+            v += (m_bestVectors[offset + j] - position) 
+                    * m_c1 * random.nextDouble();
+
+            // social term
+            if (social) {
+                final double best = m_pseudoAsynchronousUpdate 
+                        ? m_bestVectors[bestOffset + j] : m_bestVector[j];
+                v += (best - position) * m_c2 * random.nextDouble();
+            }
+
+            m_velocities[offset + j] = v;
         }
     }
 
@@ -286,16 +351,23 @@ public class NeuralPSO extends BasicTraining {
      * Update the personal best position of a particle.
      * 
      * @param particleIndex     index of the particle in the swarm
-     * @param particlePosition  the particle current position vector
+     * @param init              true if this is the first score of the particle
+     * @param network           a scratch network to score the particle with
      */
-    protected void updatePersonalBestPosition(int particleIndex, double[] particlePosition) {
-        // set the network weights and biases from the vector
-        double score = m_calculateScore.calculateScore(m_networks[particleIndex]);
+    protected void updatePersonalBestPosition(int particleIndex, boolean init,
+            BasicNetwork network) {
+        final int offset = particleIndex * m_dimensionality;
+
+        // set the network weights and biases from the position
+        EngineArray.arrayCopy(m_positions, offset, 
+                network.getFlat().getWeights(), 0, m_dimensionality);
+        double score = m_calculateScore.calculateScore(network);
 
         // update the best vectors (g and i)
-        if ((m_bestErrors[particleIndex] == 0) || isScoreBetter(score, m_bestErrors[particleIndex])) {
+        if (init || isScoreBetter(score, m_bestErrors[particleIndex])) {
             m_bestErrors[particleIndex] = score;
-            m_va.copy(m_bestVectors[particleIndex], particlePosition);
+            EngineArray.arrayCopy(m_positions, offset, m_bestVectors, 
+                    offset, m_dimensionality);
         }
     }
 
@@ -311,7 +383,9 @@ public class NeuralPSO extends BasicTraining {
             }
         }
         if (bestUpdated) {
-            m_va.copy(m_bestVector, m_bestVectors[m_bestVectorIndex]);
+            EngineArray.arrayCopy(m_bestVectors, 
+                    m_bestVectorIndex * m_dimensionality, m_bestVector, 0, 
+                    m_dimensionality);
             m_bestNetwork.decodeFromArray(m_bestVector);
             setError(m_bestErrors[m_bestVectorIndex]);
         }
@@ -343,23 +417,27 @@ public class NeuralPSO extends BasicTraining {
     }
 
     /**
-     * Returns the state of a network in the swarm 
+     * Returns the state of a particle in the swarm 
      * 
-     * @param particleIndex     index of the network in the swarm
-     * @return  an array of weights and biases for the given network
+     * @param particleIndex     index of the particle in the swarm
+     * @return  a copy of the weights and biases of the given particle
      */
     protected double[] getNetworkState(int particleIndex) { 
-        return NetworkCODEC.networkToArray(m_networks[particleIndex]);
+        final double[] result = new double[m_dimensionality];
+        EngineArray.arrayCopy(m_positions, particleIndex * m_dimensionality,
+                result, 0, m_dimensionality);
+        return result;
     }
 
     /**
-     * Sets the state of the networks in the swarm
+     * Sets the state of a particle in the swarm
      * 
-     * @param particleIndex     index of the network in the swarm
+     * @param particleIndex     index of the particle in the swarm
      * @param state             an array of weights and biases
      */
     protected void setNetworkState(int particleIndex, double[] state) { 
-        NetworkCODEC.arrayToNetwork(state, m_networks[particleIndex]);
+        EngineArray.arrayCopy(state, 0, m_positions, 
+                particleIndex * m_dimensionality, m_dimensionality);
     }
 
     /**
@@ -492,7 +570,8 @@ public class NeuralPSO extends BasicTraining {
 
     /**
      * Keep a reference to the passed population of networks.
-     * This population is not copied, it will evolve during training.  
+     * The weights of these networks are used as the starting positions
+     * of the swarm; the networks themselves do not change.
      * 
      * @param initialPopulation
      */
@@ -509,4 +588,23 @@ public class NeuralPSO extends BasicTraining {
         return m_multiThreaded;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getThreadCount() {
+        return m_threadCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setThreadCount(int numThreads) {
+        m_threadCount = numThreads;
+        if (m_velocities != null) {
+            createWorkers();
+        }
+    }
+
 }
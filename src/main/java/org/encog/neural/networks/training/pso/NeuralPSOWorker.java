@@ -23,12 +23,16 @@
  */
 package org.encog.neural.networks.training.pso;
 
+import java.util.Random;
+
+import org.encog.neural.networks.BasicNetwork;
 import org.encog.util.concurrency.EngineTask;
 
 /**
  * PSO multi-treaded worker.
- * It allows PSO to offload all of the individual 
- * particle calculations to a separate thread.
+ * It allows PSO to offload the calculations for a range of 
+ * particles to a separate thread. A worker is reused for every 
+ * iteration, and scores its particles with its own scratch network.
  * 
  * Contributed by:
  * Geoffroy Noel
@@ -39,28 +43,46 @@ import org.encog.util.concurrency.EngineTask;
 public class NeuralPSOWorker implements EngineTask {
 
     private NeuralPSO m_neuralPSO;
-    private int m_particleIndex;
+    private int m_low;
+    private int m_high;
+    private BasicNetwork m_network;
+    private Random m_random;
     private boolean m_init = false;
 
     /**
      * Constructor.
      * 
      * @param neuralPSO     the training algorithm
-     * @param particleIndex the index of the particle in the swarm
-     * @param init          true for an initialisation iteration 
-     * 
+     * @param low           the index of the first particle
+     * @param high          the index of the last particle
+     * @param network       a scratch network, with the topology of the swarm
+     * @param random        the random number generator for this worker
      */
-    public NeuralPSOWorker(NeuralPSO neuralPSO, int particleIndex, boolean init) {
+    public NeuralPSOWorker(NeuralPSO neuralPSO, int low, int high, 
+            BasicNetwork network, Random random) {
         m_neuralPSO = neuralPSO;
-        m_particleIndex = particleIndex;
+        m_low = low;
+        m_high = high;
+        m_network = network;
+        m_random = random;
+    }
+
+    /**
+     * Set whether the next run is an initialisation iteration.
+     * 
+     * @param init          true for an initialisation iteration 
+     */
+    public void setInit(boolean init) {
         m_init = init;
     }
 
     /**
-     * Update the particle velocity, position and personal best.
+     * Update the particle velocities, positions and personal bests.
      */
     public final void run() {
-        m_neuralPSO.updateParticle(m_particleIndex, m_init);
+        for (int i = m_low; i <= m_high; i++) {
+            m_neuralPSO.updateParticle(i, m_init, m_network, m_random);
+        }
     }
 
 }
@@ -0,0 +1,264 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.prune;
+
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.buffer.BufferedMLDataSet;
+import org.encog.ml.train.strategy.StopTrainingStrategy;
+import org.encog.neural.networks.BasicNetwork;
+import org.encog.neural.networks.training.propagation.TrainingContinuation;
+import org.encog.neural.networks.training.propagation.resilient.ResilientPropagation;
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * One hidden layer configuration being evaluated by PruneIncremental with
+ * successive halving. The first run trains each try with random weights, one
+ * at a time, and keeps only the network of the best try, along with the state
+ * of its trainer. Later runs resume training that network, up to a larger
+ * number of iterations. The trainer and any buffer are released at the end of
+ * every run, so a candidate between rounds holds a single network.
+ */
+public class PruneCandidate implements EngineTask {
+
+	/**
+	 * The owner.
+	 */
+	private final PruneIncremental owner;
+
+	/**
+	 * The training data.
+	 */
+	private final MLDataSet training;
+
+	/**
+	 * The number of tries with random weights.
+	 */
+	private final int weightTries;
+
+	/**
+	 * The network with the hidden layer configuration, until the first run.
+	 * After that, the network of the best try.
+	 */
+	private BasicNetwork network;
+
+	/**
+	 * The state of the trainer of the best try, or null before the first run.
+	 */
+	private TrainingContinuation continuation;
+
+	/**
+	 * The number of iterations done by the best try.
+	 */
+	private int iterations;
+
+	/**
+	 * True, if the best try has stopped improving.
+	 */
+	private boolean stopped;
+
+	/**
+	 * The number of iterations to train each try to.
+	 */
+	private int targetIterations;
+
+	/**
+	 * The error of the network of the best try, as last measured.
+	 */
+	private double error = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Construct a candidate.
+	 * 
+	 * @param theOwner
+	 *            The owner.
+	 * @param theNetwork
+	 *            The network, with the hidden layer configuration to
+	 *            evaluate.
+	 * @param theTraining
+	 *            The training data.
+	 * @param theWeightTries
+	 *            The number of tries with random weights.
+	 */
+	public PruneCandidate(final PruneIncremental theOwner,
+			final BasicNetwork theNetwork, final MLDataSet theTraining,
+			final int theWeightTries) {
+		this.owner = theOwner;
+		this.network = theNetwork;
+		this.training = theTraining;
+		this.weightTries = theWeightTries;
+	}
+
+	/**
+	 * Release the network and the trainer state. The network returned by
+	 * getNetwork before the call stays reachable only through the caller.
+	 */
+	public void close() {
+		this.network = null;
+		this.continuation = null;
+	}
+
+	/**
+	 * @return The error of the network of the best try, measured on the
+	 *         training data after the last iteration.
+	 */
+	public double getError() {
+		return this.error;
+	}
+
+	/**
+	 * @return The network of the best try.
+	 */
+	public BasicNetwork getNetwork() {
+		return this.network;
+	}
+
+	/**
+	 * Train a network up to the target number of iterations, or until it
+	 * stops improving.
+	 * 
+	 * @param train
+	 *            The trainer.
+	 * @param strategy
+	 *            The stop strategy of the trainer.
+	 * @param start
+	 *            The number of iterations already done.
+	 * @return The number of iterations done.
+	 */
+	private int train(final ResilientPropagation train,
+			final StopTrainingStrategy strategy, final int start) {
+		int done = start;
+		while ((done < this.targetIterations) && !this.owner.getShouldStop()
+				&& !strategy.shouldStop()) {
+			train.iteration();
+			done++;
+		}
+		return done;
+	}
+
+	/**
+	 * Create a trainer for a network.
+	 * 
+	 * @param theNetwork
+	 *            The network.
+	 * @param data
+	 *            The training data.
+	 * @param strategy
+	 *            The stop strategy.
+	 * @return The trainer.
+	 */
+	private ResilientPropagation createTrainer(final BasicNetwork theNetwork,
+			final MLDataSet data, final StopTrainingStrategy strategy) {
+		final ResilientPropagation result = new ResilientPropagation(
+				theNetwork, data);
+		result.addStrategy(strategy);
+		result.setThreadCount(1); // candidates run in parallel
+		return result;
+	}
+
+	/**
+	 * Train the network of each try in the first run, or resume training the
+	 * network of the best try in later runs.
+	 */
+	@Override
+	public void run() {
+		MLDataSet data = this.training;
+		BufferedMLDataSet buffer = null;
+		if (this.training instanceof BufferedMLDataSet) {
+			buffer = (BufferedMLDataSet) this.training.openAdditional();
+			data = buffer;
+		}
+
+		try {
+			if (this.continuation == null) {
+				runTries(data);
+			} else {
+				resume(data);
+			}
+		} finally {
+			if (buffer != null) {
+				buffer.close();
+			}
+		}
+	}
+
+	/**
+	 * Train each try with random weights, and keep the best.
+	 * 
+	 * @param data
+	 *            The training data.
+	 */
+	private void runTries(final MLDataSet data) {
+		final BasicNetwork template = this.network;
+		for (int i = 0; i < this.weightTries; i++) {
+			final BasicNetwork tryNetwork = (BasicNetwork) template.clone();
+			tryNetwork.reset();
+			final StopTrainingStrategy strategy = new StopTrainingStrategy(
+					0.001, 5);
+			final ResilientPropagation train = createTrainer(tryNetwork, data,
+					strategy);
+			final int done = train(train, strategy, 0);
+			final double tryError = tryNetwork.calculateError(data);
+
+			if (this.continuation == null || tryError < this.error) {
+				this.network = tryNetwork;
+				this.continuation = train.pause();
+				this.iterations = done;
+				this.stopped = strategy.shouldStop();
+				this.error = tryError;
+			}
+			train.finishTraining();
+		}
+	}
+
+	/**
+	 * Resume training the network of the best try.
+	 * 
+	 * @param data
+	 *            The training data.
+	 */
+	private void resume(final MLDataSet data) {
+		if (this.stopped) {
+			return;
+		}
+
+		final StopTrainingStrategy strategy = new StopTrainingStrategy(0.001,
+				5);
+		final ResilientPropagation train = createTrainer(this.network, data,
+				strategy);
+		train.resume(this.continuation);
+		this.iterations = train(train, strategy, this.iterations);
+		this.continuation = train.pause();
+		this.stopped = strategy.shouldStop();
+		this.error = this.network.calculateError(data);
+		train.finishTraining();
+	}
+
+	/**
+	 * @param theTargetIterations
+	 *            The number of iterations to train each try to.
+	 */
+	public void setTargetIterations(final int theTargetIterations) {
+		this.targetIterations = theTargetIterations;
+	}
+}
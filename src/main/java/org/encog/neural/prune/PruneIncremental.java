@@ -24,6 +24,8 @@
 package org.encog.neural.prune;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import org.encog.EncogError;
@@ -35,6 +37,8 @@ import org.encog.neural.networks.BasicNetwork;
 import org.encog.neural.networks.training.propagation.Propagation;
 import org.encog.neural.networks.training.propagation.resilient.ResilientPropagation;
 import org.encog.neural.pattern.NeuralNetworkPattern;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.TaskGroup;
 import org.encog.util.concurrency.job.ConcurrentJob;
 import org.encog.util.concurrency.job.JobUnitContext;
 import org.encog.util.logging.EncogLogging;
@@ -56,6 +60,14 @@ import org.encog.util.logging.EncogLogging;
  * make, with different weights. All random weights are created using the
  * default Nguyen-Widrow method normally used by Encog.
  * 
+ * Training every configuration fully can take a long time. If a halving rate
+ * is set, successive halving is used instead. All configurations are trained
+ * for a few iterations, then only the best 1/rate of them continue, with
+ * rate times as many iterations, until only the number of top networks
+ * remain. These are trained for the full number of iterations. Each round
+ * trains its configurations in parallel. The results grid holds the partial
+ * error of the configurations that were dropped.
+ * 
  */
 public class PruneIncremental extends ConcurrentJob {
 
@@ -138,9 +150,14 @@ public class PruneIncremental extends ConcurrentJob {
 	/**
 	 * The object that status should be reported to.
 	 */
-	@SuppressWarnings("unused")
 	private final StatusReportable report;
 
+	/**
+	 * The rate for successive halving, or 0 to train every configuration
+	 * fully.
+	 */
+	private int halvingRate;
+
 	/**
 	 * Keeps track of how many neurons in each hidden layer as training the
 	 * evaluation progresses.
@@ -251,6 +268,14 @@ public class PruneIncremental extends ConcurrentJob {
 		return this.bestNetwork;
 	}
 
+	/**
+	 * @return The number of networks that have been fully trained. With
+	 *         successive halving, only the networks of the last round count.
+	 */
+	public int getCurrentTry() {
+		return this.currentTry;
+	}
+
 	/**
 	 * @return The hidden layer max and min.
 	 */
@@ -406,6 +431,29 @@ public class PruneIncremental extends ConcurrentJob {
 		return result;
 	}
 
+	/**
+	 * @return The rate for successive halving, or 0 if every configuration is
+	 *         trained fully.
+	 */
+	public int getHalvingRate() {
+		return this.halvingRate;
+	}
+
+	/**
+	 * Set the rate for successive halving. After each round, only the best
+	 * 1/rate of the configurations are trained further.
+	 * 
+	 * @param theHalvingRate
+	 *            The rate, at least 2, or 0 to train every configuration
+	 *            fully.
+	 */
+	public void setHalvingRate(final int theHalvingRate) {
+		if (theHalvingRate == 1 || theHalvingRate < 0) {
+			throw new EncogError("The halving rate must be 0, or at least 2.");
+		}
+		this.halvingRate = theHalvingRate;
+	}
+
 	/**
 	 * Perform an individual job unit, which is a single network to train and
 	 * evaluate.
@@ -456,33 +504,7 @@ public class PruneIncremental extends ConcurrentJob {
 			this.high = Math.max(this.high, error);
 			this.low = Math.min(this.low, error);
 
-			if (this.hidden1Size > 0) {
-				int networkHidden1Count;
-				int networkHidden2Count;
-
-				if (network.getLayerCount() > 3) {
-					networkHidden2Count = network.getLayerNeuronCount(2);
-					networkHidden1Count = network.getLayerNeuronCount(1);
-				} else {
-					networkHidden2Count = 0;
-					networkHidden1Count = network.getLayerNeuronCount(1);
-				}
-
-				int row, col;
-
-				if (this.hidden2Size == 0) {
-					row = networkHidden1Count - this.hidden.get(0).getMin();
-					col = 0;
-				} else {
-					row = networkHidden1Count - this.hidden.get(0).getMin();
-					col = networkHidden2Count - this.hidden.get(1).getMin();
-				}
-
-				if ((row < 0) || (col < 0)) {
-					System.out.println("STOP");
-				}
-				this.results[row][col] = error;
-			}
+			storeResult(network, error);
 
 			// report status
 			this.currentTry++;
@@ -499,6 +521,44 @@ public class PruneIncremental extends ConcurrentJob {
 
 	}
 
+	/**
+	 * Store the error of a network in the results grid.
+	 * @param network
+	 *            The network.
+	 * @param error
+	 *            The error of the network.
+	 */
+	private void storeResult(final BasicNetwork network, final double error) {
+		if (this.hidden1Size > 0) {
+			int networkHidden1Count;
+			int networkHidden2Count;
+
+			if (network.getLayerCount() > 3) {
+				networkHidden2Count = network.getLayerNeuronCount(2);
+				networkHidden1Count = network.getLayerNeuronCount(1);
+			} else {
+				networkHidden2Count = 0;
+				networkHidden1Count = network.getLayerNeuronCount(1);
+			}
+
+			int row, col;
+
+			if (this.hidden2Size == 0) {
+				row = networkHidden1Count - this.hidden.get(0).getMin();
+				col = 0;
+			} else {
+				row = networkHidden1Count - this.hidden.get(0).getMin();
+				col = networkHidden2Count - this.hidden.get(1).getMin();
+			}
+
+			if ((row < 0) || (col < 0)) {
+				throw new EncogError("Network " + networkToString(network)
+						+ " is outside of the hidden layer ranges.");
+			}
+			this.results[row][col] = error;
+		}
+	}
+
 	/**
 	 * Begin the prune process.
 	 */
@@ -529,7 +589,106 @@ public class PruneIncremental extends ConcurrentJob {
 							+ "one neuron must be the minimum for the first hidden layer.");
 		}
 
-		super.process();
+		if (this.halvingRate > 1) {
+			processHalving();
+		} else {
+			super.process();
+		}
+	}
+
+	/**
+	 * Create a candidate for each hidden layer configuration.
+	 * 
+	 * @return The candidates.
+	 */
+	private PruneCandidate[] createCandidates() {
+		final List<PruneCandidate> list = new ArrayList<PruneCandidate>();
+		Object task;
+		while ((task = requestNextTask()) != null) {
+			list.add(new PruneCandidate(this, (BasicNetwork) task,
+					this.training, this.weightTries));
+		}
+		return list.toArray(new PruneCandidate[list.size()]);
+	}
+
+	/**
+	 * Search the configurations with successive halving.
+	 */
+	private void processHalving() {
+		EngineConcurrency.getInstance().setThreadCount(getThreadCount());
+
+		final int total = loadWorkload();
+		PruneCandidate[] alive = createCandidates();
+
+		// the number of rounds needed to get down to the top networks
+		int rounds = 0;
+		for (int n = alive.length; n > this.topNetworks.length;) {
+			n = Math.max(this.topNetworks.length,
+					(n + this.halvingRate - 1) / this.halvingRate);
+			rounds++;
+		}
+
+		int current = 1;
+		for (int round = 0; round <= rounds && !getShouldStop(); round++) {
+			// each round has rate times the iterations of the one before
+			int target = this.iterations;
+			for (int i = round; i < rounds; i++) {
+				target /= this.halvingRate;
+			}
+			target = Math.max(1, target);
+
+			final TaskGroup group = EngineConcurrency.getInstance()
+					.createTaskGroup();
+			for (final PruneCandidate candidate : alive) {
+				candidate.setTargetIterations(target);
+				EngineConcurrency.getInstance().processTask(candidate, group);
+			}
+			group.waitForComplete();
+			EngineConcurrency.getInstance().checkError();
+
+			// sort by error, the sort is stable so ties keep their order
+			Arrays.sort(alive, new Comparator<PruneCandidate>() {
+				@Override
+				public int compare(final PruneCandidate a,
+						final PruneCandidate b) {
+					return Double.compare(a.getError(), b.getError());
+				}
+			});
+
+			final int keep = round < rounds ? Math.max(
+					this.topNetworks.length,
+					(alive.length + this.halvingRate - 1) / this.halvingRate)
+					: 0;
+
+			for (int i = keep; i < alive.length; i++) {
+				final PruneCandidate candidate = alive[i];
+				final BasicNetwork network = candidate.getNetwork();
+				final double error = candidate.getError();
+				this.high = Math.max(this.high, error);
+				this.low = Math.min(this.low, error);
+				storeResult(network, error);
+				candidate.close();
+
+				// only fully trained networks can be a top network
+				if (keep == 0 && !getShouldStop()) {
+					this.currentTry++;
+					updateBest(network, error);
+				}
+
+				if (this.report != null) {
+					this.report.report(total, current++, "Current: "
+							+ PruneIncremental.networkToString(network)
+							+ "; Best: "
+							+ PruneIncremental
+									.networkToString(this.bestNetwork));
+				}
+			}
+			alive = Arrays.copyOf(alive, keep);
+		}
+
+		for (final PruneCandidate candidate : alive) {
+			candidate.close();
+		}
 	}
 
 	/**
@@ -40,6 +40,7 @@ import org.encog.neural.NeuralNetworkError;
 import org.encog.neural.flat.FlatNetwork;
 import org.encog.neural.flat.FlatNetworkRBF;
 import org.encog.neural.networks.ContainsFlat;
+import org.encog.neural.rbf.training.RBFCenterKMeans;
 import org.encog.util.Format;
 import org.encog.util.simple.EncogUtility;
 
@@ -218,6 +219,23 @@ public class RBFNetwork extends BasicML implements MLError, MLRegression,
 		}
 	}
 
+	/**
+	 * Place the hidden neurons with k-means clustering of the training inputs.
+	 * The width of each neuron is the distance to the nearest other center.
+	 * 
+	 * @param training
+	 *            The training data, only the input is used.
+	 * @param t
+	 *            The RBF Function to use for this layer.
+	 */
+	public void setRBFCentersAndWidthsKMeans(final MLDataSet training,
+			final RBFEnum t) {
+		final RBFCenterKMeans kmeans = new RBFCenterKMeans(
+				this.flat.getRBF().length, training);
+		kmeans.process();
+		setRBFCentersAndWidths(kmeans.getCenters(), kmeans.getWidths(), t);
+	}
+
 	/**
 	 * Equally spaces all hidden neurons within the n dimensional variable
 	 * space.
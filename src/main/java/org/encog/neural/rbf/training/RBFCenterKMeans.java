@@ -0,0 +1,277 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.rbf.training;
+
+import java.util.Arrays;
+
+import org.encog.mathutil.IntRange;
+import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataPair;
+import org.encog.util.concurrency.DetermineWorkload;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
+
+/**
+ * Place the centers of RBF functions with k-means clustering of the training
+ * inputs, so that the RBFs follow the data rather than an evenly spaced grid.
+ * 
+ * The centers start at evenly spaced elements of the training data, so the
+ * result is repeatable. Each iteration the elements are assigned to their
+ * nearest center by several RBFCenterKMeansWorker objects, and each center
+ * moves to the mean of its elements. This stops when no element changes
+ * center, or after the maximum number of iterations. The width of each RBF is
+ * the distance to the nearest other center, so that neighboring RBFs overlap.
+ * With a single center, the root mean square distance of the elements from
+ * the center is used instead.
+ */
+public class RBFCenterKMeans implements MultiThreadable {
+
+	/**
+	 * The default maximum number of iterations.
+	 */
+	public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+	/**
+	 * The training data.
+	 */
+	private final MLDataSet training;
+
+	/**
+	 * The centers.
+	 */
+	private final double[][] centers;
+
+	/**
+	 * The widths.
+	 */
+	private final double[] widths;
+
+	/**
+	 * The maximum number of iterations.
+	 */
+	private int maxIterations = DEFAULT_MAX_ITERATIONS;
+
+	/**
+	 * The number of iterations performed.
+	 */
+	private int iterations;
+
+	/**
+	 * The number of threads to use.
+	 */
+	private int numThreads;
+
+	/**
+	 * Construct the k-means placement.
+	 * 
+	 * @param k
+	 *            The number of centers.
+	 * @param theTraining
+	 *            The training data, only the input is used.
+	 */
+	public RBFCenterKMeans(final int k, final MLDataSet theTraining) {
+		this.training = theTraining;
+		this.centers = new double[k][theTraining.getInputSize()];
+		this.widths = new double[k];
+	}
+
+	/**
+	 * Place the centers.
+	 */
+	public void process() {
+		final int rows = (int) this.training.getRecordCount();
+
+		// start with evenly spaced elements
+		final MLDataPair pair = BasicMLDataPair.createPair(
+				this.training.getInputSize(), this.training.getIdealSize());
+		for (int j = 0; j < this.centers.length; j++) {
+			this.training.getRecord(((long) j * rows) / this.centers.length,
+					pair);
+			System.arraycopy(pair.getInputArray(), 0, this.centers[j], 0,
+					this.centers[j].length);
+		}
+
+		final int[] assignment = new int[rows];
+		Arrays.fill(assignment, -1);
+
+		final DetermineWorkload determine = new DetermineWorkload(
+				this.numThreads, rows);
+		final RBFCenterKMeansWorker[] workers = new RBFCenterKMeansWorker[determine
+				.getThreadCount()];
+		int index = 0;
+		for (final IntRange r : determine.calculateWorkers()) {
+			workers[index++] = new RBFCenterKMeansWorker(
+					this.training.openAdditional(), r.getLow(), r.getHigh(),
+					this.centers, assignment);
+		}
+
+		final double[][] sums = new double[this.centers.length][this.training
+				.getInputSize()];
+		final int[] counts = new int[this.centers.length];
+		final double[] distances = new double[this.centers.length];
+
+		this.iterations = 0;
+		int changed;
+		do {
+			if (workers.length > 1) {
+				final TaskGroup group = EngineConcurrency.getInstance()
+						.createTaskGroup();
+				for (final RBFCenterKMeansWorker worker : workers) {
+					EngineConcurrency.getInstance().processTask(worker, group);
+				}
+				group.waitForComplete();
+			} else {
+				workers[0].run();
+			}
+			this.iterations++;
+
+			// sum in worker order, so the result does not depend on timing
+			changed = 0;
+			for (int j = 0; j < this.centers.length; j++) {
+				Arrays.fill(sums[j], 0);
+			}
+			Arrays.fill(counts, 0);
+			Arrays.fill(distances, 0);
+			for (final RBFCenterKMeansWorker worker : workers) {
+				changed += worker.getChanged();
+				for (int j = 0; j < this.centers.length; j++) {
+					final double[] ws = worker.getSums()[j];
+					for (int d = 0; d < ws.length; d++) {
+						sums[j][d] += ws[d];
+					}
+					counts[j] += worker.getCounts()[j];
+					distances[j] += worker.getDistances()[j];
+				}
+			}
+
+			// move each center to the mean of its elements, a center with no
+			// elements stays where it is
+			for (int j = 0; j < this.centers.length; j++) {
+				if (counts[j] > 0) {
+					for (int d = 0; d < sums[j].length; d++) {
+						this.centers[j][d] = sums[j][d] / counts[j];
+					}
+				}
+			}
+		} while (changed > 0 && this.iterations < this.maxIterations);
+
+		calculateWidths(counts, distances);
+	}
+
+	/**
+	 * Calculate the width of each RBF.
+	 * 
+	 * @param counts
+	 *            The number of elements of each center.
+	 * @param distances
+	 *            The sum of the squared distances to each center.
+	 */
+	private void calculateWidths(final int[] counts, final double[] distances) {
+		for (int j = 0; j < this.centers.length; j++) {
+			double nearest = Double.MAX_VALUE;
+			for (int other = 0; other < this.centers.length; other++) {
+				double sum = 0;
+				for (int d = 0; d < this.centers[j].length; d++) {
+					final double delta = this.centers[j][d]
+							- this.centers[other][d];
+					sum += delta * delta;
+				}
+				if (sum > 0) {
+					nearest = Math.min(nearest, sum);
+				}
+			}
+
+			double width;
+			if (nearest != Double.MAX_VALUE) {
+				width = Math.sqrt(nearest);
+			} else if (counts[j] > 0 && distances[j] > 0) {
+				width = Math.sqrt(distances[j] / counts[j]);
+			} else {
+				width = 1.0;
+			}
+
+			this.widths[j] = width;
+		}
+	}
+
+	/**
+	 * @return The centers, one row per RBF.
+	 */
+	public double[][] getCenters() {
+		return this.centers;
+	}
+
+	/**
+	 * @return The number of iterations performed.
+	 */
+	public int getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * @return The maximum number of iterations.
+	 */
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+
+	/**
+	 * @return The widths, one per RBF.
+	 */
+	public double[] getWidths() {
+		return this.widths;
+	}
+
+	/**
+	 * Set the maximum number of iterations.
+	 * 
+	 * @param theMaxIterations
+	 *            The maximum number of iterations.
+	 */
+	public void setMaxIterations(final int theMaxIterations) {
+		this.maxIterations = theMaxIterations;
+	}
+
+	/**
+	 * Set the number of threads. Specify zero to tell Encog to automatically
+	 * determine the best number of threads for the processor.
+	 * 
+	 * @param numThreads
+	 *            The number of threads.
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * @return The thread count.
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.numThreads;
+	}
+}
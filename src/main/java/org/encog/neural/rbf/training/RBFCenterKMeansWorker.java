@@ -0,0 +1,191 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.rbf.training;
+
+import java.util.Arrays;
+
+import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataPair;
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * A worker that assigns a range of the training data to the nearest center,
+ * and sums the elements assigned to each center, for RBFCenterKMeans.
+ */
+public class RBFCenterKMeansWorker implements EngineTask {
+
+	/**
+	 * The training data.
+	 */
+	private final MLDataSet training;
+
+	/**
+	 * The first element.
+	 */
+	private final int low;
+
+	/**
+	 * The last element.
+	 */
+	private final int high;
+
+	/**
+	 * The center each element is assigned to, shared by all workers.
+	 */
+	private final int[] assignment;
+
+	/**
+	 * The current centers, shared by all workers.
+	 */
+	private final double[][] centers;
+
+	/**
+	 * The sum of the elements assigned to each center.
+	 */
+	private final double[][] sums;
+
+	/**
+	 * The number of elements assigned to each center.
+	 */
+	private final int[] counts;
+
+	/**
+	 * The sum of the squared distances to each center.
+	 */
+	private final double[] distances;
+
+	/**
+	 * The pair to read the training data into.
+	 */
+	private final MLDataPair pair;
+
+	/**
+	 * The number of elements that changed center.
+	 */
+	private int changed;
+
+	/**
+	 * Construct the worker.
+	 * 
+	 * @param theTraining
+	 *            The training data.
+	 * @param theLow
+	 *            The first element.
+	 * @param theHigh
+	 *            The last element.
+	 * @param theCenters
+	 *            The current centers, shared by all workers.
+	 * @param theAssignment
+	 *            The center each element is assigned to, shared by all
+	 *            workers.
+	 */
+	public RBFCenterKMeansWorker(final MLDataSet theTraining,
+			final int theLow, final int theHigh, final double[][] theCenters,
+			final int[] theAssignment) {
+		this.training = theTraining;
+		this.low = theLow;
+		this.high = theHigh;
+		this.centers = theCenters;
+		this.assignment = theAssignment;
+		this.sums = new double[theCenters.length][theTraining.getInputSize()];
+		this.counts = new int[theCenters.length];
+		this.distances = new double[theCenters.length];
+		this.pair = BasicMLDataPair.createPair(theTraining.getInputSize(),
+				theTraining.getIdealSize());
+	}
+
+	/**
+	 * @return The number of elements that changed center.
+	 */
+	public int getChanged() {
+		return this.changed;
+	}
+
+	/**
+	 * @return The number of elements assigned to each center.
+	 */
+	public int[] getCounts() {
+		return this.counts;
+	}
+
+	/**
+	 * @return The sum of the squared distances to each center.
+	 */
+	public double[] getDistances() {
+		return this.distances;
+	}
+
+	/**
+	 * @return The sum of the elements assigned to each center.
+	 */
+	public double[][] getSums() {
+		return this.sums;
+	}
+
+	/**
+	 * Assign each element to the nearest center.
+	 */
+	@Override
+	public void run() {
+		this.changed = 0;
+		for (int i = 0; i < this.sums.length; i++) {
+			Arrays.fill(this.sums[i], 0);
+		}
+		Arrays.fill(this.counts, 0);
+		Arrays.fill(this.distances, 0);
+
+		for (int row = this.low; row <= this.high; row++) {
+			this.training.getRecord(row, this.pair);
+			final double[] x = this.pair.getInputArray();
+
+			int best = 0;
+			double bestDistance = Double.MAX_VALUE;
+			for (int j = 0; j < this.centers.length; j++) {
+				final double[] c = this.centers[j];
+				double sum = 0;
+				for (int d = 0; d < c.length && sum < bestDistance; d++) {
+					final double delta = x[d] - c[d];
+					sum += delta * delta;
+				}
+				if (sum < bestDistance) {
+					bestDistance = sum;
+					best = j;
+				}
+			}
+
+			if (this.assignment[row] != best) {
+				this.assignment[row] = best;
+				this.changed++;
+			}
+
+			final double[] s = this.sums[best];
+			for (int d = 0; d < s.length; d++) {
+				s[d] += x[d];
+			}
+			this.counts[best]++;
+			this.distances[best] += bestDistance;
+		}
+	}
+}
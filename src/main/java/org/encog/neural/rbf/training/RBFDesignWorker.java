@@ -0,0 +1,379 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.rbf.training;
+
+import java.util.Arrays;
+
+import org.encog.mathutil.rbf.GaussianFunction;
+import org.encog.mathutil.rbf.RadialBasisFunction;
+import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataPair;
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * A worker that computes rows of the design matrix, the activation of every
+ * RBF for every training element, for a range of the training data. The rows
+ * are never all held at once, unless the SVD needs them. Instead the worker
+ * either adds them into its own copy of the normal equations, writes them
+ * into the design matrix, or sums the squared residuals of a fit.
+ * 
+ * Gaussian functions, the usual choice, are evaluated from primitive arrays
+ * of centers and widths rather than through the RadialBasisFunction
+ * interface.
+ */
+public class RBFDesignWorker implements EngineTask {
+
+	/**
+	 * What the worker does with each row.
+	 */
+	public enum Mode {
+		/**
+		 * Add the rows to the normal equations.
+		 */
+		NormalEquations,
+		/**
+		 * Write the rows to the design matrix.
+		 */
+		DesignMatrix,
+		/**
+		 * Sum the squared residuals of the coefficients.
+		 */
+		Residuals
+	}
+
+	/**
+	 * The number of rows gathered before they are added to the normal
+	 * equations. Each element of the normal equations is then read and
+	 * written once per batch, rather than once per row.
+	 */
+	public static final int BATCH_ROWS = 32;
+
+	/**
+	 * The RBF functions.
+	 */
+	private final RadialBasisFunction[] funcs;
+
+	/**
+	 * True for each function that is Gaussian.
+	 */
+	private final boolean[] gaussian;
+
+	/**
+	 * The center of each function.
+	 */
+	private final double[][] centers;
+
+	/**
+	 * The peak of each function.
+	 */
+	private final double[] peaks;
+
+	/**
+	 * 1/(2*width^2) for each function.
+	 */
+	private final double[] scales;
+
+	/**
+	 * The training data.
+	 */
+	private final MLDataSet training;
+
+	/**
+	 * The first element.
+	 */
+	private final int low;
+
+	/**
+	 * The last element.
+	 */
+	private final int high;
+
+	/**
+	 * The pair to read the training data into.
+	 */
+	private final MLDataPair pair;
+
+	/**
+	 * The current row.
+	 */
+	private final double[] phi;
+
+	/**
+	 * The batch of rows, transposed, one array per function.
+	 */
+	private final double[][] batch;
+
+	/**
+	 * The ideal values of the batch, one array per output.
+	 */
+	private final double[][] batchIdeal;
+
+	/**
+	 * The upper triangle of A'A for this worker's rows.
+	 */
+	private double[][] ata;
+
+	/**
+	 * A'y for this worker's rows, one column per output.
+	 */
+	private double[][] aty;
+
+	/**
+	 * The design matrix, for all rows.
+	 */
+	private double[][] design;
+
+	/**
+	 * The ideal values, for all rows.
+	 */
+	private double[][] ideal;
+
+	/**
+	 * The coefficients to calculate the residuals for.
+	 */
+	private double[][] coefficients;
+
+	/**
+	 * The sum of the squared residuals.
+	 */
+	private double residuals;
+
+	/**
+	 * What to do with each row.
+	 */
+	private Mode mode = Mode.NormalEquations;
+
+	/**
+	 * Construct the worker.
+	 * 
+	 * @param theFuncs
+	 *            The RBF functions.
+	 * @param theTraining
+	 *            The training data.
+	 * @param theLow
+	 *            The first element.
+	 * @param theHigh
+	 *            The last element.
+	 */
+	public RBFDesignWorker(final RadialBasisFunction[] theFuncs,
+			final MLDataSet theTraining, final int theLow, final int theHigh) {
+		this.funcs = theFuncs;
+		this.training = theTraining;
+		this.low = theLow;
+		this.high = theHigh;
+
+		final int n = theFuncs.length;
+		this.gaussian = new boolean[n];
+		this.centers = new double[n][];
+		this.peaks = new double[n];
+		this.scales = new double[n];
+		for (int i = 0; i < n; i++) {
+			final RadialBasisFunction f = theFuncs[i];
+			this.gaussian[i] = f instanceof GaussianFunction;
+			this.centers[i] = f.getCenters();
+			this.peaks[i] = f.getPeak();
+			this.scales[i] = 1.0 / (2.0 * f.getWidth() * f.getWidth());
+		}
+
+		final int outputCount = theTraining.getIdealSize();
+		this.pair = BasicMLDataPair.createPair(theTraining.getInputSize(),
+				outputCount);
+		this.phi = new double[n];
+		this.batch = new double[n][BATCH_ROWS];
+		this.batchIdeal = new double[outputCount][BATCH_ROWS];
+	}
+
+	/**
+	 * Calculate one row of the design matrix.
+	 * 
+	 * @param x
+	 *            The input.
+	 * @param row
+	 *            The activation of each function.
+	 */
+	private void calculateRow(final double[] x, final double[] row) {
+		for (int j = 0; j < row.length; j++) {
+			if (this.gaussian[j]) {
+				final double[] c = this.centers[j];
+				double sum = 0;
+				for (int d = 0; d < c.length; d++) {
+					final double delta = x[d] - c[d];
+					sum += delta * delta;
+				}
+				row[j] = this.peaks[j] * Math.exp(-sum * this.scales[j]);
+			} else {
+				row[j] = this.funcs[j].calculate(x);
+			}
+		}
+	}
+
+	/**
+	 * Add the gathered batch of rows to the normal equations.
+	 * 
+	 * @param count
+	 *            The number of rows in the batch.
+	 */
+	private void flush(final int count) {
+		final int n = this.batch.length;
+		for (int i = 0; i < n; i++) {
+			final double[] bi = this.batch[i];
+			final double[] ai = this.ata[i];
+			for (int j = i; j < n; j++) {
+				final double[] bj = this.batch[j];
+				double sum = 0;
+				for (int r = 0; r < count; r++) {
+					sum += bi[r] * bj[r];
+				}
+				ai[j] += sum;
+			}
+			final double[] yi = this.aty[i];
+			for (int k = 0; k < yi.length; k++) {
+				final double[] y = this.batchIdeal[k];
+				double sum = 0;
+				for (int r = 0; r < count; r++) {
+					sum += bi[r] * y[r];
+				}
+				yi[k] += sum;
+			}
+		}
+	}
+
+	/**
+	 * @return The upper triangle of A'A for this worker's rows.
+	 */
+	public double[][] getATA() {
+		return this.ata;
+	}
+
+	/**
+	 * @return A'y for this worker's rows, one column per output.
+	 */
+	public double[][] getATY() {
+		return this.aty;
+	}
+
+	/**
+	 * @return The sum of the squared residuals of this worker's rows.
+	 */
+	public double getResiduals() {
+		return this.residuals;
+	}
+
+	/**
+	 * Calculate the rows, and handle them according to the mode.
+	 */
+	@Override
+	public void run() {
+		final int n = this.phi.length;
+		int count = 0;
+
+		if (this.mode == Mode.NormalEquations) {
+			if (this.ata == null) {
+				this.ata = new double[n][n];
+				this.aty = new double[n][this.batchIdeal.length];
+			} else {
+				for (int i = 0; i < n; i++) {
+					Arrays.fill(this.ata[i], 0);
+					Arrays.fill(this.aty[i], 0);
+				}
+			}
+		}
+		this.residuals = 0;
+
+		for (int row = this.low; row <= this.high; row++) {
+			this.training.getRecord(row, this.pair);
+			final double[] y = this.pair.getIdealArray();
+
+			switch (this.mode) {
+			case NormalEquations:
+				calculateRow(this.pair.getInputArray(), this.phi);
+				for (int i = 0; i < n; i++) {
+					this.batch[i][count] = this.phi[i];
+				}
+				for (int k = 0; k < y.length; k++) {
+					this.batchIdeal[k][count] = y[k];
+				}
+				count++;
+				if (count == BATCH_ROWS) {
+					flush(count);
+					count = 0;
+				}
+				break;
+			case DesignMatrix:
+				calculateRow(this.pair.getInputArray(), this.design[row]);
+				System.arraycopy(y, 0, this.ideal[row], 0, y.length);
+				break;
+			case Residuals:
+				calculateRow(this.pair.getInputArray(), this.phi);
+				for (int k = 0; k < y.length; k++) {
+					double sum = 0;
+					for (int j = 0; j < n; j++) {
+						sum += this.coefficients[j][k] * this.phi[j];
+					}
+					final double delta = y[k] - sum;
+					this.residuals += delta * delta;
+				}
+				break;
+			}
+		}
+
+		if (count > 0) {
+			flush(count);
+		}
+	}
+
+	/**
+	 * Write the rows into a design matrix.
+	 * 
+	 * @param theDesign
+	 *            The design matrix, one row per training element.
+	 * @param theIdeal
+	 *            The ideal values, one row per training element.
+	 */
+	public void setDesignMatrix(final double[][] theDesign,
+			final double[][] theIdeal) {
+		this.mode = Mode.DesignMatrix;
+		this.design = theDesign;
+		this.ideal = theIdeal;
+	}
+
+	/**
+	 * Add the rows to the normal equations.
+	 */
+	public void setNormalEquations() {
+		this.mode = Mode.NormalEquations;
+	}
+
+	/**
+	 * Sum the squared residuals of a fit.
+	 * 
+	 * @param theCoefficients
+	 *            The weight of each function, one column per output.
+	 */
+	public void setResiduals(final double[][] theCoefficients) {
+		this.mode = Mode.Residuals;
+		this.coefficients = theCoefficients;
+	}
+}
@@ -35,12 +35,10 @@ public class SVD {
     public static double svdfit(double[][] x, double[][] y, double[][] a, RadialBasisFunction[] funcs)
     {
         int i, j, k;
-        double wmax, tmp, thresh, sum, TOL = 1e-13;
+        double tmp, sum;
 
         //Allocated memory for svd matrices
         double[][] u = new double[x.length][funcs.length];
-        double[][] v = new double[funcs.length][funcs.length];
-        double[] w = new double[funcs.length];
 
         //Fill input matrix with values based on fitting functions and input coordinates 
         for (i = 0; i < x.length; i++)
@@ -49,21 +47,7 @@ public class SVD {
                 u[i][j] = funcs[j].calculate(x[i]);
         }
 
-        //Perform decomposition
-        svdcmp(u, w, v);
-
-        //Check for w values that are close to zero and replace them with zeros such that they are ignored in backsub
-        wmax = 0;
-        for (j = 0; j < funcs.length; j++)
-            if (w[j] > wmax) wmax = w[j];
-
-        thresh = TOL * wmax;
-
-        for (j = 0; j < funcs.length; j++)
-            if (w[j] < thresh) w[j] = 0;
-
-        //Perform back substitution to get result
-        svdbksb(u, w, v, y, a);
+        svdsolve(u, y, a);
 
         //Calculate chi squared for the fit
         double chisq = 0;
@@ -81,6 +65,39 @@ public class SVD {
         return Math.sqrt(chisq / (y.length * y[0].length)); 
     }
 
+    /// <summary>
+    /// Solve the least squares problem u.a = y, ignoring singular values
+    /// that are close to zero.  The design matrix u is destroyed.
+    /// </summary>
+    /// <param name="u">The design matrix, one row per sample.</param>
+    /// <param name="y">The values to fit, one row per sample.</param>
+    /// <param name="a">The coefficients are placed here.</param>
+    public static void svdsolve(double[][] u, double[][] y, double[][] a)
+    {
+        int j;
+        double wmax, thresh, TOL = 1e-13;
+        int n = u[0].length;
+
+        double[][] v = new double[n][n];
+        double[] w = new double[n];
+
+        //Perform decomposition
+        svdcmp(u, w, v);
+
+        //Check for w values that are close to zero and replace them with zeros such that they are ignored in backsub
+        wmax = 0;
+        for (j = 0; j < n; j++)
+            if (w[j] > wmax) wmax = w[j];
+
+        thresh = TOL * wmax;
+
+        for (j = 0; j < n; j++)
+            if (w[j] < thresh) w[j] = 0;
+
+        //Perform back substitution to get result
+        svdbksb(u, w, v, y, a);
+    }
+
     public static void svdbksb(double[][] u, double[] w, double[][] v, double[][] b, double[][] x)
     {
         int jj, j, i, m, n, k;
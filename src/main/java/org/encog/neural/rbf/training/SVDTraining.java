@@ -23,6 +23,10 @@
  */
 package org.encog.neural.rbf.training;
 
+import java.util.Arrays;
+
+import org.encog.mathutil.IntRange;
+import org.encog.mathutil.matrices.decomposition.PackedCholeskyDecomposition;
 import org.encog.mathutil.rbf.RadialBasisFunction;
 import org.encog.ml.TrainingImplementationType;
 import org.encog.ml.data.MLDataSet;
@@ -30,8 +34,10 @@ import org.encog.ml.train.BasicTraining;
 import org.encog.neural.networks.training.TrainingError;
 import org.encog.neural.networks.training.propagation.TrainingContinuation;
 import org.encog.neural.rbf.RBFNetwork;
-import org.encog.util.ObjectPair;
-import org.encog.util.simple.TrainingSetUtil;
+import org.encog.util.concurrency.DetermineWorkload;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
 
 /**
  * Train a RBF neural network using a SVD.
@@ -39,14 +45,49 @@ import org.encog.util.simple.TrainingSetUtil;
  * Contributed to Encog By M.Fletcher and M.Dean University of Cambridge, Dept.
  * of Physics, UK
  * 
+ * The output weights are first found from the normal equations, A'A x = A'y,
+ * where A is the design matrix of RBF activations. A'A is only as large as
+ * the number of RBFs squared, so the design matrix is never held in memory,
+ * and it is solved with a Cholesky decomposition. If A'A is not positive
+ * definite, or is too badly conditioned for the normal equations to be
+ * accurate, the full design matrix is built and solved with the SVD instead.
+ * Building and summing the rows is split between several RBFDesignWorker
+ * objects.
+ * 
  */
-public class SVDTraining extends BasicTraining {
+public class SVDTraining extends BasicTraining implements MultiThreadable {
+
+	/**
+	 * The largest estimated condition number of A'A that the normal
+	 * equations will be used for.
+	 */
+	public static final double MAX_CONDITION = 1e10;
+
+	/**
+	 * The number of iterations used to estimate the condition number.
+	 */
+	public static final int CONDITION_ITERATIONS = 30;
 
 	/**
 	 * The network that is to be trained.
 	 */
 	private final RBFNetwork network;
 
+	/**
+	 * The number of threads to use.
+	 */
+	private int numThreads;
+
+	/**
+	 * True, if the normal equations should be tried before the SVD.
+	 */
+	private boolean useNormalEquations = true;
+
+	/**
+	 * True, if the last iteration was solved with the normal equations.
+	 */
+	private boolean normalEquations;
+
 	/**
 	 * Construct the training object.
 	 * 
@@ -98,32 +139,232 @@ public class SVDTraining extends BasicTraining {
 	 */
 	@Override
 	public void iteration() {
-		final int length = this.network.getRBF().length;
+		final RadialBasisFunction[] funcs = this.network.getRBF();
+		final int length = funcs.length;
+		final int outputCount = this.network.getOutputCount();
+		final int rows = (int) getTraining().getRecordCount();
 
-		final RadialBasisFunction[] funcs = new RadialBasisFunction[length];
+		final DetermineWorkload determine = new DetermineWorkload(
+				this.numThreads, rows);
+		final RBFDesignWorker[] workers = new RBFDesignWorker[determine
+				.getThreadCount()];
+		int index = 0;
+		for (final IntRange r : determine.calculateWorkers()) {
+			workers[index++] = new RBFDesignWorker(funcs, getTraining()
+					.openAdditional(), r.getLow(), r.getHigh());
+		}
 
-		// Iteration over neurons and determine the necessaries
-		for (int i = 0; i < length; i++) {
-			final RadialBasisFunction basisFunc = this.network.getRBF()[i];
+		final double[][] matrix = new double[length][outputCount];
 
-			funcs[i] = basisFunc;
+		this.normalEquations = this.useNormalEquations
+				&& solveNormalEquations(workers, matrix);
 
-			// This is the value that is changed using other training methods.
-			// weights[i] =
-			// network.Structure.Synapses[0].WeightMatrix.Data[i][j];
+		if (!this.normalEquations) {
+			final double[][] design = new double[rows][length];
+			final double[][] ideal = new double[rows][outputCount];
+			for (final RBFDesignWorker worker : workers) {
+				worker.setDesignMatrix(design, ideal);
+			}
+			run(workers);
+			SVD.svdsolve(design, ideal, matrix);
 		}
 
-		final ObjectPair<double[][], double[][]> data = TrainingSetUtil
-				.trainingToArray(getTraining());
-
-		final double[][] matrix = new double[length][this.network
-				.getOutputCount()];
+		// calculate the error of the fit
+		for (final RBFDesignWorker worker : workers) {
+			worker.setResiduals(matrix);
+		}
+		run(workers);
+		double chisq = 0;
+		for (final RBFDesignWorker worker : workers) {
+			chisq += worker.getResiduals();
+		}
+		setError(Math.sqrt(chisq / ((double) rows * outputCount)));
 
-		flatToMatrix(this.network.getFlat().getWeights(), 0, matrix);
-		setError(SVD.svdfit(data.getA(), data.getB(), matrix, funcs));
 		matrixToFlat(matrix, this.network.getFlat().getWeights(), 0);
 	}
 
+	/**
+	 * Run the workers, and wait for them to finish.
+	 * 
+	 * @param workers
+	 *            The workers.
+	 */
+	private void run(final RBFDesignWorker[] workers) {
+		if (workers.length > 1) {
+			final TaskGroup group = EngineConcurrency.getInstance()
+					.createTaskGroup();
+			for (final RBFDesignWorker worker : workers) {
+				EngineConcurrency.getInstance().processTask(worker, group);
+			}
+			group.waitForComplete();
+		} else {
+			workers[0].run();
+		}
+	}
+
+	/**
+	 * Solve for the output weights with the normal equations.
+	 * 
+	 * @param workers
+	 *            The workers.
+	 * @param matrix
+	 *            The output weights are placed here, one column per output.
+	 * @return False if A'A is not positive definite or is badly conditioned,
+	 *         in which case the SVD should be used.
+	 */
+	private boolean solveNormalEquations(final RBFDesignWorker[] workers,
+			final double[][] matrix) {
+		final int n = matrix.length;
+		final int outputCount = matrix[0].length;
+
+		for (final RBFDesignWorker worker : workers) {
+			worker.setNormalEquations();
+		}
+		run(workers);
+
+		// sum in worker order, so the result does not depend on timing
+		final double[][] ata = new double[n][n];
+		final double[][] aty = new double[n][outputCount];
+		for (final RBFDesignWorker worker : workers) {
+			final double[][] wa = worker.getATA();
+			final double[][] wy = worker.getATY();
+			for (int i = 0; i < n; i++) {
+				for (int j = i; j < n; j++) {
+					ata[i][j] += wa[i][j];
+				}
+				for (int k = 0; k < outputCount; k++) {
+					aty[i][k] += wy[i][k];
+				}
+			}
+		}
+
+		final PackedCholeskyDecomposition chol = new PackedCholeskyDecomposition(
+				n);
+		chol.load(ata, 0);
+		if (!chol.decompose()) {
+			return false;
+		}
+
+		if (estimateCondition(ata, chol) > MAX_CONDITION) {
+			return false;
+		}
+
+		final double[] b = new double[n];
+		for (int k = 0; k < outputCount; k++) {
+			for (int i = 0; i < n; i++) {
+				b[i] = aty[i][k];
+			}
+			chol.solve(b, b);
+			for (int i = 0; i < n; i++) {
+				matrix[i][k] = b[i];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Estimate the condition number of A'A, the ratio of its largest and
+	 * smallest eigenvalues. The largest is found by power iteration, and the
+	 * smallest by inverse iteration with the Cholesky factor.
+	 * 
+	 * @param ata
+	 *            The upper triangle of A'A.
+	 * @param chol
+	 *            The Cholesky decomposition of A'A.
+	 * @return The estimated condition number.
+	 */
+	private double estimateCondition(final double[][] ata,
+			final PackedCholeskyDecomposition chol) {
+		final int n = ata.length;
+		final double[] v = new double[n];
+		final double[] w = new double[n];
+
+		// largest eigenvalue
+		double largest = 0;
+		Arrays.fill(v, 1.0 / Math.sqrt(n));
+		for (int iteration = 0; iteration < CONDITION_ITERATIONS; iteration++) {
+			Arrays.fill(w, 0);
+			for (int i = 0; i < n; i++) {
+				w[i] += ata[i][i] * v[i];
+				for (int j = i + 1; j < n; j++) {
+					w[i] += ata[i][j] * v[j];
+					w[j] += ata[i][j] * v[i];
+				}
+			}
+			largest = normalize(w, v);
+		}
+
+		// smallest eigenvalue
+		double inverse = 0;
+		Arrays.fill(v, 1.0 / Math.sqrt(n));
+		for (int iteration = 0; iteration < CONDITION_ITERATIONS; iteration++) {
+			chol.solve(v, w);
+			inverse = normalize(w, v);
+		}
+
+		return largest * inverse;
+	}
+
+	/**
+	 * Normalize a vector.
+	 * 
+	 * @param w
+	 *            The vector.
+	 * @param v
+	 *            The normalized vector is placed here.
+	 * @return The length of the vector.
+	 */
+	private static double normalize(final double[] w, final double[] v) {
+		double length = 0;
+		for (int i = 0; i < w.length; i++) {
+			length += w[i] * w[i];
+		}
+		length = Math.sqrt(length);
+		for (int i = 0; i < w.length; i++) {
+			v[i] = w[i] / length;
+		}
+		return length;
+	}
+
+	/**
+	 * @return True, if the last iteration was solved with the normal
+	 *         equations, false if the SVD was used.
+	 */
+	public boolean isNormalEquations() {
+		return this.normalEquations;
+	}
+
+	/**
+	 * Set whether the normal equations should be tried before the SVD. The
+	 * default is true.
+	 * 
+	 * @param use
+	 *            False to always use the SVD.
+	 */
+	public void setUseNormalEquations(final boolean use) {
+		this.useNormalEquations = use;
+	}
+
+	/**
+	 * Set the number of threads. Specify zero to tell Encog to automatically
+	 * determine the best number of threads for the processor.
+	 * 
+	 * @param numThreads
+	 *            The number of threads.
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * @return The thread count.
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.numThreads;
+	}
+
 	/**
 	 * Convert the matrix to flat.
 	 * @param matrix The matrix.
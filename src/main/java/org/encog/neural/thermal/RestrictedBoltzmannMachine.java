@@ -0,0 +1,372 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.thermal;
+
+import java.util.Random;
+
+import org.encog.mathutil.BoundMath;
+import org.encog.ml.data.MLData;
+import org.encog.ml.data.basic.BasicMLData;
+import org.encog.neural.NeuralNetworkError;
+import org.encog.util.EngineArray;
+
+/**
+ * Implements a restricted Boltzmann machine. The neurons are split into a
+ * visible layer followed by a hidden layer, and the only connections are
+ * between the two layers. So all the hidden neurons are independent given
+ * the visible neurons, and the other way round, and block Gibbs sampling can
+ * update a whole layer in one pass.
+ * 
+ * The connections are kept in the weight matrix of the thermal network, in
+ * both directions. So the row of weights into a hidden neuron, and the row
+ * into a visible neuron, are each contiguous.
+ * 
+ * Use ContrastiveDivergence to train the machine. The free energy of a
+ * pattern can be used to score how unlikely it is.
+ */
+public class RestrictedBoltzmannMachine extends ThermalNetwork {
+
+	/**
+	 * Serial id.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The standard deviation of the initial weights.
+	 */
+	public static final double INITIAL_WEIGHT_DEVIATION = 0.01;
+
+	/**
+	 * The number of visible neurons.
+	 */
+	private int visibleCount;
+
+	/**
+	 * The number of hidden neurons.
+	 */
+	private int hiddenCount;
+
+	/**
+	 * The bias of each visible neuron.
+	 */
+	private double[] visibleBias;
+
+	/**
+	 * The bias of each hidden neuron.
+	 */
+	private double[] hiddenBias;
+
+	/**
+	 * Default constructor.
+	 */
+	public RestrictedBoltzmannMachine() {
+
+	}
+
+	/**
+	 * Construct a restricted Boltzmann machine, with random weights.
+	 * 
+	 * @param theVisibleCount
+	 *            The number of visible neurons.
+	 * @param theHiddenCount
+	 *            The number of hidden neurons.
+	 */
+	public RestrictedBoltzmannMachine(final int theVisibleCount,
+			final int theHiddenCount) {
+		super(theVisibleCount + theHiddenCount);
+		this.visibleCount = theVisibleCount;
+		this.hiddenCount = theHiddenCount;
+		this.visibleBias = new double[theVisibleCount];
+		this.hiddenBias = new double[theHiddenCount];
+		reset();
+	}
+
+	/**
+	 * Add to the weight of a connection, in both directions.
+	 * 
+	 * @param visible
+	 *            The visible neuron.
+	 * @param hidden
+	 *            The hidden neuron.
+	 * @param value
+	 *            The value to add.
+	 */
+	public void addConnection(final int visible, final int hidden,
+			final double value) {
+		final int n = getNeuronCount();
+		final double[] weights = getWeights();
+		weights[(this.visibleCount + hidden) * n + visible] += value;
+		weights[visible * n + this.visibleCount + hidden] += value;
+	}
+
+	/**
+	 * Calculate the free energy of a visible pattern. The lower the free
+	 * energy, the more likely the machine considers the pattern.
+	 * 
+	 * @param visible
+	 *            The visible pattern.
+	 * @return The free energy.
+	 */
+	public double calculateFreeEnergy(final double[] visible) {
+		final int n = getNeuronCount();
+		final double[] weights = getWeights();
+
+		double result = -EngineArray.vectorProduct(this.visibleBias, visible);
+		for (int h = 0; h < this.hiddenCount; h++) {
+			final int row = (this.visibleCount + h) * n;
+			double sum = this.hiddenBias[h];
+			for (int v = 0; v < this.visibleCount; v++) {
+				sum += weights[row + v] * visible[v];
+			}
+			// log(1+e^x), without overflow for large x
+			if (sum > 0) {
+				result -= sum + Math.log1p(Math.exp(-sum));
+			} else {
+				result -= Math.log1p(Math.exp(sum));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compute the reconstruction of a visible pattern, the visible
+	 * probabilities after one pass up to the hidden neurons and back.
+	 * 
+	 * @param input
+	 *            The visible pattern.
+	 * @return The reconstruction.
+	 */
+	@Override
+	public MLData compute(final MLData input) {
+		if (input.size() != this.visibleCount) {
+			throw new NeuralNetworkError("Network with "
+					+ this.visibleCount
+					+ " visible neurons, cannot compute a pattern of size "
+					+ input.size());
+		}
+		final double[] hidden = new double[this.hiddenCount];
+		final BasicMLData result = new BasicMLData(this.visibleCount);
+		hiddenProbabilities(input.getData(), hidden);
+		visibleProbabilities(hidden, result.getData());
+		return result;
+	}
+
+	/**
+	 * Run block Gibbs sampling from the current state. Each step samples
+	 * every hidden neuron from the visible neurons, then every visible neuron
+	 * from the hidden neurons.
+	 * 
+	 * @param steps
+	 *            The number of steps.
+	 * @param random
+	 *            The random number generator to sample with.
+	 */
+	public void gibbs(final int steps, final Random random) {
+		final double[] state = getCurrentState().getData();
+		final double[] visible = new double[this.visibleCount];
+		final double[] hidden = new double[this.hiddenCount];
+		final double[] probability = new double[Math.max(this.visibleCount,
+				this.hiddenCount)];
+
+		for (int v = 0; v < this.visibleCount; v++) {
+			visible[v] = state[v] > 0 ? 1 : 0;
+		}
+
+		for (int step = 0; step < steps; step++) {
+			hiddenProbabilities(visible, probability);
+			sample(probability, hidden, random);
+			visibleProbabilities(hidden, probability);
+			sample(probability, visible, random);
+		}
+
+		for (int v = 0; v < this.visibleCount; v++) {
+			getCurrentState().setData(v, visible[v] > 0);
+		}
+		for (int h = 0; h < this.hiddenCount; h++) {
+			getCurrentState().setData(this.visibleCount + h, hidden[h] > 0);
+		}
+	}
+
+	/**
+	 * @param visible
+	 *            The visible neuron.
+	 * @param hidden
+	 *            The hidden neuron.
+	 * @return The weight of the connection.
+	 */
+	public double getConnection(final int visible, final int hidden) {
+		return getWeight(visible, this.visibleCount + hidden);
+	}
+
+	/**
+	 * @return The bias of each hidden neuron.
+	 */
+	public double[] getHiddenBias() {
+		return this.hiddenBias;
+	}
+
+	/**
+	 * @return The number of hidden neurons.
+	 */
+	public int getHiddenCount() {
+		return this.hiddenCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getInputCount() {
+		return this.visibleCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getOutputCount() {
+		return this.visibleCount;
+	}
+
+	/**
+	 * @return The bias of each visible neuron.
+	 */
+	public double[] getVisibleBias() {
+		return this.visibleBias;
+	}
+
+	/**
+	 * @return The number of visible neurons.
+	 */
+	public int getVisibleCount() {
+		return this.visibleCount;
+	}
+
+	/**
+	 * Calculate the probability of each hidden neuron being on, given the
+	 * visible neurons.
+	 * 
+	 * @param visible
+	 *            The visible neurons.
+	 * @param result
+	 *            The probabilities are placed here.
+	 */
+	public void hiddenProbabilities(final double[] visible,
+			final double[] result) {
+		final int n = getNeuronCount();
+		final double[] weights = getWeights();
+		for (int h = 0; h < this.hiddenCount; h++) {
+			final int row = (this.visibleCount + h) * n;
+			double sum = this.hiddenBias[h];
+			for (int v = 0; v < this.visibleCount; v++) {
+				sum += weights[row + v] * visible[v];
+			}
+			result[h] = 1.0 / (1.0 + BoundMath.exp(-sum));
+		}
+	}
+
+	/**
+	 * Randomize the weights, and clear the biases and the current state.
+	 * 
+	 * @param seed
+	 *            The seed for the random weights.
+	 */
+	@Override
+	public void reset(final int seed) {
+		super.reset(seed);
+		EngineArray.fill(this.visibleBias, 0);
+		EngineArray.fill(this.hiddenBias, 0);
+		final Random random = new Random(seed);
+		for (int v = 0; v < this.visibleCount; v++) {
+			for (int h = 0; h < this.hiddenCount; h++) {
+				addConnection(v, h, random.nextGaussian()
+						* INITIAL_WEIGHT_DEVIATION);
+			}
+		}
+	}
+
+	/**
+	 * Set each neuron on with the specified probability.
+	 * 
+	 * @param probability
+	 *            The probabilities.
+	 * @param result
+	 *            The states, 0 or 1, are placed here.
+	 * @param random
+	 *            The random number generator.
+	 */
+	public static void sample(final double[] probability,
+			final double[] result, final Random random) {
+		for (int i = 0; i < result.length; i++) {
+			result[i] = random.nextDouble() < probability[i] ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Set the weight of a connection, in both directions.
+	 * 
+	 * @param visible
+	 *            The visible neuron.
+	 * @param hidden
+	 *            The hidden neuron.
+	 * @param value
+	 *            The weight.
+	 */
+	public void setConnection(final int visible, final int hidden,
+			final double value) {
+		setWeight(visible, this.visibleCount + hidden, value);
+		setWeight(this.visibleCount + hidden, visible, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void updateProperties() {
+		// nothing needed here
+	}
+
+	/**
+	 * Calculate the probability of each visible neuron being on, given the
+	 * hidden neurons.
+	 * 
+	 * @param hidden
+	 *            The hidden neurons.
+	 * @param result
+	 *            The probabilities are placed here.
+	 */
+	public void visibleProbabilities(final double[] hidden,
+			final double[] result) {
+		final int n = getNeuronCount();
+		final double[] weights = getWeights();
+		for (int v = 0; v < this.visibleCount; v++) {
+			final int row = v * n + this.visibleCount;
+			double sum = this.visibleBias[v];
+			for (int h = 0; h < this.hiddenCount; h++) {
+				sum += weights[row + h] * hidden[h];
+			}
+			result[v] = 1.0 / (1.0 + BoundMath.exp(-sum));
+		}
+	}
+}
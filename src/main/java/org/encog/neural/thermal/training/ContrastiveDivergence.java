@@ -0,0 +1,374 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.thermal.training;
+
+import java.util.Random;
+
+import org.encog.ml.TrainingImplementationType;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.train.BasicTraining;
+import org.encog.neural.networks.training.TrainingError;
+import org.encog.neural.networks.training.propagation.TrainingContinuation;
+import org.encog.neural.thermal.RestrictedBoltzmannMachine;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
+
+/**
+ * Train a restricted Boltzmann machine with mini batch contrastive
+ * divergence (CD-k). Each iteration is one pass over the training data, in
+ * mini batches. For each row the hidden probabilities are calculated from the
+ * data, then k steps of block Gibbs sampling give a reconstruction, and the
+ * weights move toward the correlations of the data and away from those of the
+ * reconstruction.
+ * 
+ * The rows of each mini batch are split between several
+ * ContrastiveDivergenceWorker objects. Their sums are combined in worker
+ * order, and each worker is seeded from a single random number generator, so
+ * training is repeatable for a given seed and thread count. When the thread
+ * count is picked automatically, it depends on the processor count. The
+ * error is the mean squared reconstruction error.
+ */
+public class ContrastiveDivergence extends BasicTraining implements
+		MultiThreadable {
+
+	/**
+	 * The default learning rate.
+	 */
+	public static final double DEFAULT_LEARNING_RATE = 0.1;
+
+	/**
+	 * The default mini batch size.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 10;
+
+	/**
+	 * The number of multiply-adds per mini batch below which the batch is
+	 * always done by a single worker.
+	 */
+	public static final long MIN_THREADED_WORK = 1L << 16;
+
+	/**
+	 * The machine being trained.
+	 */
+	private final RestrictedBoltzmannMachine network;
+
+	/**
+	 * The number of Gibbs steps per row.
+	 */
+	private final int steps;
+
+	/**
+	 * The learning rate.
+	 */
+	private double learningRate = DEFAULT_LEARNING_RATE;
+
+	/**
+	 * The mini batch size.
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * The number of threads to use.
+	 */
+	private int numThreads;
+
+	/**
+	 * The random number generator the workers are seeded from.
+	 */
+	private final Random random = new Random(0);
+
+	/**
+	 * The workers.
+	 */
+	private ContrastiveDivergenceWorker[] workers;
+
+	/**
+	 * Construct a CD-1 trainer.
+	 * 
+	 * @param theNetwork
+	 *            The machine to train.
+	 * @param theTraining
+	 *            The training data, only the input is used.
+	 */
+	public ContrastiveDivergence(final RestrictedBoltzmannMachine theNetwork,
+			final MLDataSet theTraining) {
+		this(theNetwork, theTraining, 1);
+	}
+
+	/**
+	 * Construct a CD-k trainer.
+	 * 
+	 * @param theNetwork
+	 *            The machine to train.
+	 * @param theTraining
+	 *            The training data, only the input is used.
+	 * @param theSteps
+	 *            The number of Gibbs steps per row.
+	 */
+	public ContrastiveDivergence(final RestrictedBoltzmannMachine theNetwork,
+			final MLDataSet theTraining, final int theSteps) {
+		super(TrainingImplementationType.Iterative);
+		if (theTraining.getInputSize() != theNetwork.getVisibleCount()) {
+			throw new TrainingError("Training data with "
+					+ theTraining.getInputSize()
+					+ " inputs, cannot train a machine with "
+					+ theNetwork.getVisibleCount() + " visible neurons.");
+		}
+		if (theSteps < 1) {
+			throw new TrainingError("At least one Gibbs step is needed.");
+		}
+		setTraining(theTraining);
+		this.network = theNetwork;
+		this.steps = theSteps;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean canContinue() {
+		return false;
+	}
+
+	/**
+	 * @return The mini batch size.
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * @return The learning rate.
+	 */
+	public double getLearningRate() {
+		return this.learningRate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RestrictedBoltzmannMachine getMethod() {
+		return this.network;
+	}
+
+	/**
+	 * @return The number of Gibbs steps per row.
+	 */
+	public int getSteps() {
+		return this.steps;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.numThreads;
+	}
+
+	/**
+	 * Create the workers. A mini batch is small, but each row costs a pass
+	 * over every weight for each Gibbs step, so when the thread count is
+	 * picked automatically it is based on the work in a batch, rather than
+	 * on the number of rows.
+	 */
+	private void init() {
+		final int rows = Math.min(this.batchSize, (int) getTraining()
+				.getRecordCount());
+		int threads = this.numThreads;
+		if (threads == 0) {
+			final long work = (long) rows * this.network.getVisibleCount()
+					* this.network.getHiddenCount() * (2 * this.steps + 1);
+			if (work < MIN_THREADED_WORK) {
+				threads = 1;
+			} else {
+				threads = Runtime.getRuntime().availableProcessors();
+			}
+		}
+
+		this.workers = new ContrastiveDivergenceWorker[Math.max(1,
+				Math.min(threads, rows))];
+		for (int i = 0; i < this.workers.length; i++) {
+			this.workers[i] = new ContrastiveDivergenceWorker(this.network,
+					getTraining().openAdditional(), this.steps);
+		}
+	}
+
+	/**
+	 * Perform one pass over the training data.
+	 */
+	@Override
+	public void iteration() {
+		preIteration();
+
+		if (this.workers == null) {
+			init();
+		}
+
+		final int rows = (int) getTraining().getRecordCount();
+		double error = 0;
+
+		for (int start = 0; start < rows; start += this.batchSize) {
+			final int size = Math.min(this.batchSize, rows - start);
+
+			// split the batch evenly, a worker may get no rows
+			for (int i = 0; i < this.workers.length; i++) {
+				final int low = start + (i * size) / this.workers.length;
+				final int high = start + ((i + 1) * size)
+						/ this.workers.length - 1;
+				this.workers[i].setRows(low, high, this.random.nextLong());
+			}
+
+			if (this.workers.length > 1) {
+				final TaskGroup group = EngineConcurrency.getInstance()
+						.createTaskGroup();
+				for (final ContrastiveDivergenceWorker worker : this.workers) {
+					EngineConcurrency.getInstance().processTask(worker, group);
+				}
+				group.waitForComplete();
+			} else {
+				this.workers[0].run();
+			}
+
+			error += learn(size);
+		}
+
+		setError(error / ((double) rows * this.network.getVisibleCount()));
+		postIteration();
+	}
+
+	/**
+	 * Apply the gradients of the workers, summed in worker order so the
+	 * result does not depend on timing.
+	 * 
+	 * @param size
+	 *            The number of rows in the batch.
+	 * @return The sum of the squared reconstruction errors of the batch.
+	 */
+	private double learn(final int size) {
+		final int visibleCount = this.network.getVisibleCount();
+		final int hiddenCount = this.network.getHiddenCount();
+		final int n = this.network.getNeuronCount();
+		final double[] weights = this.network.getWeights();
+		final double rate = this.learningRate / size;
+
+		double error = 0;
+		for (final ContrastiveDivergenceWorker worker : this.workers) {
+			final double[] wg = worker.getWeightGradients();
+			for (int h = 0; h < hiddenCount; h++) {
+				final int row = (visibleCount + h) * n;
+				final int index = h * visibleCount;
+				for (int v = 0; v < visibleCount; v++) {
+					weights[row + v] += rate * wg[index + v];
+				}
+			}
+
+			final double[] vg = worker.getVisibleGradients();
+			final double[] visibleBias = this.network.getVisibleBias();
+			for (int v = 0; v < visibleCount; v++) {
+				visibleBias[v] += rate * vg[v];
+			}
+
+			final double[] hg = worker.getHiddenGradients();
+			final double[] hiddenBias = this.network.getHiddenBias();
+			for (int h = 0; h < hiddenCount; h++) {
+				hiddenBias[h] += rate * hg[h];
+			}
+
+			error += worker.getError();
+		}
+
+		// mirror the weights into the rows of the visible neurons
+		for (int v = 0; v < visibleCount; v++) {
+			final int row = v * n + visibleCount;
+			for (int h = 0; h < hiddenCount; h++) {
+				weights[row + h] = weights[(visibleCount + h) * n + v];
+			}
+		}
+
+		return error;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public TrainingContinuation pause() {
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void resume(final TrainingContinuation state) {
+
+	}
+
+	/**
+	 * Set the mini batch size.
+	 * 
+	 * @param theBatchSize
+	 *            The number of rows per weight update.
+	 */
+	public void setBatchSize(final int theBatchSize) {
+		this.batchSize = theBatchSize;
+		this.workers = null;
+	}
+
+	/**
+	 * Set the learning rate.
+	 * 
+	 * @param theLearningRate
+	 *            The learning rate.
+	 */
+	public void setLearningRate(final double theLearningRate) {
+		this.learningRate = theLearningRate;
+	}
+
+	/**
+	 * Set the seed the sampling is done with.
+	 * 
+	 * @param seed
+	 *            The seed.
+	 */
+	public void setSeed(final long seed) {
+		this.random.setSeed(seed);
+	}
+
+	/**
+	 * Set the number of threads. Specify zero to tell Encog to automatically
+	 * determine the best number of threads for the processor.
+	 * 
+	 * @param theNumThreads
+	 *            The number of threads.
+	 */
+	@Override
+	public void setThreadCount(final int theNumThreads) {
+		this.numThreads = theNumThreads;
+		this.workers = null;
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.thermal.training;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataPair;
+import org.encog.neural.thermal.RestrictedBoltzmannMachine;
+import org.encog.util.concurrency.EngineTask;
+
+/**
+ * A worker that runs contrastive divergence for some of the rows of a mini
+ * batch, and sums the change each row suggests to the weights and biases.
+ */
+public class ContrastiveDivergenceWorker implements EngineTask {
+
+	/**
+	 * The machine being trained.
+	 */
+	private final RestrictedBoltzmannMachine network;
+
+	/**
+	 * The training data.
+	 */
+	private final MLDataSet training;
+
+	/**
+	 * The number of Gibbs steps.
+	 */
+	private final int steps;
+
+	/**
+	 * The random number generator to sample with.
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * The pair to read the training data into.
+	 */
+	private final MLDataPair pair;
+
+	/**
+	 * The sum of the weight gradients, one row per hidden neuron.
+	 */
+	private final double[] weightGradients;
+
+	/**
+	 * The sum of the visible bias gradients.
+	 */
+	private final double[] visibleGradients;
+
+	/**
+	 * The sum of the hidden bias gradients.
+	 */
+	private final double[] hiddenGradients;
+
+	/**
+	 * The hidden probabilities for the data.
+	 */
+	private final double[] hiddenData;
+
+	/**
+	 * The sampled hidden states.
+	 */
+	private final double[] hiddenSample;
+
+	/**
+	 * The reconstructed visible probabilities.
+	 */
+	private final double[] visibleModel;
+
+	/**
+	 * The hidden probabilities for the reconstruction.
+	 */
+	private final double[] hiddenModel;
+
+	/**
+	 * The first row.
+	 */
+	private int low;
+
+	/**
+	 * The last row.
+	 */
+	private int high;
+
+	/**
+	 * The sum of the squared reconstruction errors.
+	 */
+	private double error;
+
+	/**
+	 * Construct the worker.
+	 * 
+	 * @param theNetwork
+	 *            The machine being trained.
+	 * @param theTraining
+	 *            The training data.
+	 * @param theSteps
+	 *            The number of Gibbs steps.
+	 */
+	public ContrastiveDivergenceWorker(
+			final RestrictedBoltzmannMachine theNetwork,
+			final MLDataSet theTraining, final int theSteps) {
+		this.network = theNetwork;
+		this.training = theTraining;
+		this.steps = theSteps;
+
+		final int visibleCount = theNetwork.getVisibleCount();
+		final int hiddenCount = theNetwork.getHiddenCount();
+		this.pair = BasicMLDataPair.createPair(theTraining.getInputSize(),
+				theTraining.getIdealSize());
+		this.weightGradients = new double[visibleCount * hiddenCount];
+		this.visibleGradients = new double[visibleCount];
+		this.hiddenGradients = new double[hiddenCount];
+		this.hiddenData = new double[hiddenCount];
+		this.hiddenSample = new double[hiddenCount];
+		this.visibleModel = new double[visibleCount];
+		this.hiddenModel = new double[hiddenCount];
+	}
+
+	/**
+	 * @return The sum of the squared reconstruction errors.
+	 */
+	public double getError() {
+		return this.error;
+	}
+
+	/**
+	 * @return The sum of the hidden bias gradients.
+	 */
+	public double[] getHiddenGradients() {
+		return this.hiddenGradients;
+	}
+
+	/**
+	 * @return The sum of the visible bias gradients.
+	 */
+	public double[] getVisibleGradients() {
+		return this.visibleGradients;
+	}
+
+	/**
+	 * @return The sum of the weight gradients, one row of visible neurons
+	 *         per hidden neuron.
+	 */
+	public double[] getWeightGradients() {
+		return this.weightGradients;
+	}
+
+	/**
+	 * Run contrastive divergence for each row.
+	 */
+	@Override
+	public void run() {
+		Arrays.fill(this.weightGradients, 0);
+		Arrays.fill(this.visibleGradients, 0);
+		Arrays.fill(this.hiddenGradients, 0);
+		this.error = 0;
+
+		final int visibleCount = this.visibleGradients.length;
+		final int hiddenCount = this.hiddenGradients.length;
+
+		for (int row = this.low; row <= this.high; row++) {
+			this.training.getRecord(row, this.pair);
+			final double[] visibleData = this.pair.getInputArray();
+
+			// positive phase
+			this.network.hiddenProbabilities(visibleData, this.hiddenData);
+
+			// negative phase, block Gibbs sampling from the data
+			double[] hidden = this.hiddenData;
+			for (int step = 0; step < this.steps; step++) {
+				RestrictedBoltzmannMachine.sample(hidden, this.hiddenSample,
+						this.random);
+				this.network.visibleProbabilities(this.hiddenSample,
+						this.visibleModel);
+				this.network.hiddenProbabilities(this.visibleModel,
+						this.hiddenModel);
+				hidden = this.hiddenModel;
+			}
+
+			for (int h = 0; h < hiddenCount; h++) {
+				final double data = this.hiddenData[h];
+				final double model = this.hiddenModel[h];
+				final int index = h * visibleCount;
+				for (int v = 0; v < visibleCount; v++) {
+					this.weightGradients[index + v] += data * visibleData[v]
+							- model * this.visibleModel[v];
+				}
+				this.hiddenGradients[h] += data - model;
+			}
+
+			for (int v = 0; v < visibleCount; v++) {
+				final double delta = visibleData[v] - this.visibleModel[v];
+				this.visibleGradients[v] += delta;
+				this.error += delta * delta;
+			}
+		}
+	}
+
+	/**
+	 * Set the rows of the mini batch this worker handles.
+	 * 
+	 * @param theLow
+	 *            The first row.
+	 * @param theHigh
+	 *            The last row, less than the first for none.
+	 * @param seed
+	 *            The seed to sample with.
+	 */
+	public void setRows(final int theLow, final int theHigh, final long seed) {
+		this.low = theLow;
+		this.high = theHigh;
+		this.random.setSeed(seed);
+	}
+}
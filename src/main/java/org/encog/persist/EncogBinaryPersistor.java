@@ -0,0 +1,56 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.persist;
+
+/**
+ * This interface defines an Encog binary persistor. A binary persistor writes
+ * an Encog object to the binary model format, where numeric arrays are stored
+ * as raw blocks rather than text.
+ */
+public interface EncogBinaryPersistor {
+
+	/**
+	 * @return Get the class string for the object.
+	 */
+	String getPersistClassString();
+
+	/**
+	 * Read the object.
+	 * @param in The binary reader, positioned after the file header.
+	 * @return The object.
+	 */
+	Object read(EncogBinaryReader in);
+
+	/**
+	 * Save the object.
+	 * @param out The binary writer, positioned after the file header.
+	 * @param obj The object to save.
+	 */
+	void save(EncogBinaryWriter out, Object obj);
+
+	/**
+	 * @return Get the file version used by this persistor.
+	 */
+	int getFileVersion();
+}
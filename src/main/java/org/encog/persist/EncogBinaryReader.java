@@ -0,0 +1,337 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.persist;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Used to read the Encog binary model format. The reader works on a byte
+ * buffer, which is usually a memory mapped file, so arrays are copied out
+ * with bulk reads rather than parsed.
+ */
+public class EncogBinaryReader {
+
+	/**
+	 * The buffer being read.
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * True if persistors should keep views of the buffer, rather than copy
+	 * arrays onto the heap. The object that is read is then read-only.
+	 */
+	private final boolean readOnly;
+
+	/**
+	 * The class name from the header.
+	 */
+	private String className;
+
+	/**
+	 * The platform from the header.
+	 */
+	private String platform;
+
+	/**
+	 * The Encog version from the header.
+	 */
+	private String encogVersion;
+
+	/**
+	 * The persistor version from the header.
+	 */
+	private int fileVersion;
+
+	/**
+	 * The save time from the header.
+	 */
+	private long time;
+
+	/**
+	 * Construct the reader. The buffer is read from its current position,
+	 * which must be the start of the file.
+	 * @param theBuffer The buffer to read.
+	 */
+	public EncogBinaryReader(final ByteBuffer theBuffer) {
+		this(theBuffer, false);
+	}
+
+	/**
+	 * Construct the reader. The buffer is read from its current position,
+	 * which must be the start of the file.
+	 * @param theBuffer The buffer to read.
+	 * @param theReadOnly True if persistors should keep views of the buffer
+	 * for large arrays, rather than copying them. The object read is then
+	 * read-only, and the buffer must stay valid while it is used.
+	 */
+	public EncogBinaryReader(final ByteBuffer theBuffer,
+			final boolean theReadOnly) {
+		this.buffer = theBuffer.slice();
+		this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.readOnly = theReadOnly;
+	}
+
+	/**
+	 * Determine if the bytes at the current position of a buffer are the
+	 * start of a binary model file. The position is not changed.
+	 * @param b The buffer.
+	 * @return True if this is a binary model file.
+	 */
+	public static boolean isBinary(final ByteBuffer b) {
+		final byte[] magic = EncogBinaryWriter.MAGIC;
+		if (b.remaining() < magic.length) {
+			return false;
+		}
+		for (int i = 0; i < magic.length; i++) {
+			if (b.get(b.position() + i) != magic[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Determine if some bytes are the start of a binary model file.
+	 * @param b The bytes.
+	 * @param length The number of valid bytes.
+	 * @return True if this is a binary model file.
+	 */
+	public static boolean isBinary(final byte[] b, final int length) {
+		return isBinary(ByteBuffer.wrap(b, 0, length));
+	}
+
+	/**
+	 * Skip to the next 8 byte boundary.
+	 */
+	private void align() {
+		final int pos = this.buffer.position();
+		final int aligned = (pos + 7) & ~7;
+		this.buffer.position(aligned);
+	}
+
+	/**
+	 * Read and check the file header.
+	 */
+	public void readHeader() {
+		if (!isBinary(this.buffer)) {
+			throw new PersistError("Not a valid Encog binary file.");
+		}
+		this.buffer.position(this.buffer.position()
+				+ EncogBinaryWriter.MAGIC.length);
+		final int format = readInt();
+		if (format > EncogBinaryWriter.FORMAT_VERSION) {
+			throw new PersistError(
+					"The file you are trying to read is from a later version of Encog.  Please upgrade Encog to read this file.");
+		}
+		this.className = readString();
+		this.platform = readString();
+		this.encogVersion = readString();
+		this.fileVersion = readInt();
+		this.time = readLong();
+	}
+
+	/**
+	 * @return The next byte.
+	 */
+	public byte readByte() {
+		try {
+			return this.buffer.get();
+		} catch (final BufferUnderflowException ex) {
+			throw new PersistError("Unexpected end of binary file.", ex);
+		}
+	}
+
+	/**
+	 * @return The next boolean.
+	 */
+	public boolean readBoolean() {
+		return readByte() != 0;
+	}
+
+	/**
+	 * @return The next int.
+	 */
+	public int readInt() {
+		try {
+			return this.buffer.getInt();
+		} catch (final BufferUnderflowException ex) {
+			throw new PersistError("Unexpected end of binary file.", ex);
+		}
+	}
+
+	/**
+	 * @return The next long.
+	 */
+	public long readLong() {
+		try {
+			return this.buffer.getLong();
+		} catch (final BufferUnderflowException ex) {
+			throw new PersistError("Unexpected end of binary file.", ex);
+		}
+	}
+
+	/**
+	 * @return The next double.
+	 */
+	public double readDouble() {
+		try {
+			return this.buffer.getDouble();
+		} catch (final BufferUnderflowException ex) {
+			throw new PersistError("Unexpected end of binary file.", ex);
+		}
+	}
+
+	/**
+	 * @return The next string, or null.
+	 */
+	public String readString() {
+		final int length = readInt();
+		if (length == -1) {
+			return null;
+		}
+		checkRemaining(length);
+		final byte[] b = new byte[length];
+		this.buffer.get(b);
+		return new String(b, EncogBinaryWriter.CHARSET);
+	}
+
+	/**
+	 * Make sure the buffer holds at least the specified number of bytes.
+	 * @param size The number of bytes.
+	 */
+	private void checkRemaining(final long size) {
+		if (size < 0 || size > this.buffer.remaining()) {
+			throw new PersistError("Unexpected end of binary file.");
+		}
+	}
+
+	/**
+	 * @return The next int array, or null.
+	 */
+	public int[] readIntArray() {
+		final int length = readInt();
+		if (length == -1) {
+			return null;
+		}
+		align();
+		checkRemaining(length * 4L);
+		final int[] result = new int[length];
+		this.buffer.asIntBuffer().get(result);
+		this.buffer.position(this.buffer.position() + length * 4);
+		return result;
+	}
+
+	/**
+	 * @return The next double array, or null.
+	 */
+	public double[] readDoubleArray() {
+		final DoubleBuffer view = readDoubleBuffer();
+		if (view == null) {
+			return null;
+		}
+		final double[] result = new double[view.remaining()];
+		view.get(result);
+		return result;
+	}
+
+	/**
+	 * Read the next double array as a read-only view of the underlying
+	 * buffer, without copying it.
+	 * @return The view, or null if a null array was saved.
+	 */
+	public DoubleBuffer readDoubleBuffer() {
+		final int length = readInt();
+		if (length == -1) {
+			return null;
+		}
+		align();
+		checkRemaining(length * 8L);
+		final DoubleBuffer result = this.buffer.asDoubleBuffer()
+				.asReadOnlyBuffer();
+		result.limit(length);
+		this.buffer.position(this.buffer.position() + length * 8);
+		return result;
+	}
+
+	/**
+	 * @return The next map of properties.
+	 */
+	public Map<String, String> readProperties() {
+		final int count = readInt();
+		final Map<String, String> result = new HashMap<String, String>();
+		for (int i = 0; i < count; i++) {
+			final String key = readString();
+			result.put(key, readString());
+		}
+		return result;
+	}
+
+	/**
+	 * @return True if persistors should keep views of the buffer, rather
+	 * than copy large arrays.
+	 */
+	public boolean isReadOnly() {
+		return this.readOnly;
+	}
+
+	/**
+	 * @return The class name from the header.
+	 */
+	public String getClassName() {
+		return this.className;
+	}
+
+	/**
+	 * @return The platform from the header.
+	 */
+	public String getPlatform() {
+		return this.platform;
+	}
+
+	/**
+	 * @return The Encog version from the header.
+	 */
+	public String getEncogVersion() {
+		return this.encogVersion;
+	}
+
+	/**
+	 * @return The persistor version from the header.
+	 */
+	public int getFileVersion() {
+		return this.fileVersion;
+	}
+
+	/**
+	 * @return The save time from the header.
+	 */
+	public long getTime() {
+		return this.time;
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.persist;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Used to write the Encog binary model format. All values are little-endian.
+ * Arrays are written as a length followed by a raw block, and each block
+ * starts on an 8 byte boundary, so that a memory mapped file can be viewed
+ * directly as a double buffer.
+ */
+public class EncogBinaryWriter {
+
+	/**
+	 * The magic bytes that begin every binary model file.
+	 */
+	public static final byte[] MAGIC = { 'E', 'N', 'C', 'O', 'G', 'B', 'I',
+			'N' };
+
+	/**
+	 * The version of the binary container format.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	/**
+	 * The character set used for strings.
+	 */
+	public static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * The size of the staging buffer.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The stream to write to.
+	 */
+	private final OutputStream out;
+
+	/**
+	 * Stages values before they are written to the stream.
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * The number of bytes written so far, including those still staged.
+	 */
+	private long position;
+
+	/**
+	 * Construct the writer.
+	 * @param theOut The stream to write to.
+	 */
+	public EncogBinaryWriter(final OutputStream theOut) {
+		this.out = theOut;
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Make sure there is room in the staging buffer.
+	 * @param size The number of bytes needed.
+	 */
+	private void require(final int size) {
+		if (this.buffer.remaining() < size) {
+			flushBuffer();
+		}
+	}
+
+	/**
+	 * Write the staged bytes to the stream.
+	 */
+	private void flushBuffer() {
+		try {
+			this.out.write(this.buffer.array(), 0, this.buffer.position());
+			this.buffer.clear();
+		} catch (final IOException ex) {
+			throw new PersistError(ex);
+		}
+	}
+
+	/**
+	 * Pad with zeros to the next 8 byte boundary.
+	 */
+	private void align() {
+		while ((this.position % 8) != 0) {
+			writeByte((byte) 0);
+		}
+	}
+
+	/**
+	 * Write a byte.
+	 * @param b The byte.
+	 */
+	public void writeByte(final byte b) {
+		require(1);
+		this.buffer.put(b);
+		this.position++;
+	}
+
+	/**
+	 * Write raw bytes, with no length.
+	 * @param b The bytes.
+	 */
+	public void writeBytes(final byte[] b) {
+		for (final byte element : b) {
+			writeByte(element);
+		}
+	}
+
+	/**
+	 * Write a boolean, as a single byte.
+	 * @param b The boolean.
+	 */
+	public void writeBoolean(final boolean b) {
+		writeByte(b ? (byte) 1 : (byte) 0);
+	}
+
+	/**
+	 * Write an int.
+	 * @param i The int.
+	 */
+	public void writeInt(final int i) {
+		require(4);
+		this.buffer.putInt(i);
+		this.position += 4;
+	}
+
+	/**
+	 * Write a long.
+	 * @param l The long.
+	 */
+	public void writeLong(final long l) {
+		require(8);
+		this.buffer.putLong(l);
+		this.position += 8;
+	}
+
+	/**
+	 * Write a double.
+	 * @param d The double.
+	 */
+	public void writeDouble(final double d) {
+		require(8);
+		this.buffer.putDouble(d);
+		this.position += 8;
+	}
+
+	/**
+	 * Write a string, as its length in bytes followed by UTF-8. A null string
+	 * is written with a length of -1.
+	 * @param str The string.
+	 */
+	public void writeString(final String str) {
+		if (str == null) {
+			writeInt(-1);
+			return;
+		}
+		final byte[] b = str.getBytes(CHARSET);
+		writeInt(b.length);
+		writeBytes(b);
+	}
+
+	/**
+	 * Write an int array. A null array is written with a length of -1.
+	 * @param a The array.
+	 */
+	public void writeIntArray(final int[] a) {
+		if (a == null) {
+			writeInt(-1);
+			return;
+		}
+		writeInt(a.length);
+		align();
+		int index = 0;
+		while (index < a.length) {
+			require(4);
+			final int count = Math.min(a.length - index,
+					this.buffer.remaining() / 4);
+			this.buffer.asIntBuffer().put(a, index, count);
+			this.buffer.position(this.buffer.position() + count * 4);
+			this.position += count * 4L;
+			index += count;
+		}
+	}
+
+	/**
+	 * Write a double array. A null array is written with a length of -1.
+	 * @param a The array.
+	 */
+	public void writeDoubleArray(final double[] a) {
+		if (a == null) {
+			writeInt(-1);
+			return;
+		}
+		writeInt(a.length);
+		align();
+		int index = 0;
+		while (index < a.length) {
+			require(8);
+			final int count = Math.min(a.length - index,
+					this.buffer.remaining() / 8);
+			this.buffer.asDoubleBuffer().put(a, index, count);
+			this.buffer.position(this.buffer.position() + count * 8);
+			this.position += count * 8L;
+			index += count;
+		}
+	}
+
+	/**
+	 * Write a map of properties, as a count followed by key/value strings.
+	 * @param properties The properties.
+	 */
+	public void writeProperties(final Map<String, String> properties) {
+		writeInt(properties.size());
+		for (final Map.Entry<String, String> entry : properties.entrySet()) {
+			writeString(entry.getKey());
+			writeString(entry.getValue());
+		}
+	}
+
+	/**
+	 * Write the file header.
+	 * @param className The class being saved.
+	 * @param platform The platform that saved it.
+	 * @param encogVersion The Encog version.
+	 * @param fileVersion The version of the persistor.
+	 * @param time The time of the save.
+	 */
+	public void writeHeader(final String className, final String platform,
+			final String encogVersion, final int fileVersion, final long time) {
+		writeBytes(MAGIC);
+		writeInt(FORMAT_VERSION);
+		writeString(className);
+		writeString(platform);
+		writeString(encogVersion);
+		writeInt(fileVersion);
+		writeLong(time);
+	}
+
+	/**
+	 * Write any staged bytes and flush the stream.
+	 */
+	public void flush() {
+		flushBuffer();
+		try {
+			this.out.flush();
+		} catch (final IOException ex) {
+			throw new PersistError(ex);
+		}
+	}
+
+	/**
+	 * @return The number of bytes written so far.
+	 */
+	public long getPosition() {
+		return this.position;
+	}
+}
@@ -23,7 +23,10 @@
  */
 package org.encog.persist;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -32,6 +35,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Date;
 
 import org.encog.Encog;
@@ -42,6 +47,9 @@ import org.encog.util.logging.EncogLogging;
  * Handles Encog persistence for a directory. This is the usual mode where each
  * resource is stored in a separate EG file.
  * 
+ * Objects can be saved as text, or in the binary format for objects that have
+ * a binary persistor. Loading detects the format from the start of the file.
+ * 
  */
 public class EncogDirectoryPersistence {
 
@@ -67,7 +75,8 @@ public class EncogDirectoryPersistence {
 	}
 	
 	/**
-	 * Load the specified object.
+	 * Load the specified object. Binary files are memory mapped, text files
+	 * are read as a stream.
 	 * @param file The file to load.
 	 * @return The loaded object.
 	 */
@@ -76,7 +85,19 @@ public class EncogDirectoryPersistence {
 
 		try {
 			fis = new FileInputStream(file);
-			final Object result = EncogDirectoryPersistence.loadObject(fis);
+			final FileChannel channel = fis.getChannel();
+			final ByteBuffer magic = ByteBuffer
+					.allocate(EncogBinaryWriter.MAGIC.length);
+			channel.read(magic, 0);
+			magic.flip();
+
+			final Object result;
+			if (EncogBinaryReader.isBinary(magic)) {
+				result = EncogDirectoryPersistence.loadObject(channel.map(
+						FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			} else {
+				result = EncogDirectoryPersistence.loadObject(fis);
+			}
 
 			return result;
 		} catch (final IOException ex) {
@@ -92,12 +113,88 @@ public class EncogDirectoryPersistence {
 		}
 	}
 
+	/**
+	 * Load a binary model file in read-only mode. The file is memory mapped,
+	 * and objects that support it read their large arrays, such as the
+	 * weights of a BasicNetwork, straight from the mapping rather than
+	 * copying them to the heap. Every process that maps the same file shares
+	 * one physical copy of these arrays. The object that is loaded can be
+	 * used for inference, but not trained.
+	 * @param file The binary file to load.
+	 * @return The loaded object.
+	 */
+	public static Object loadObjectReadOnly(final File file) {
+		FileInputStream fis = null;
+
+		try {
+			fis = new FileInputStream(file);
+			final FileChannel channel = fis.getChannel();
+			return EncogDirectoryPersistence.loadObject(
+					channel.map(FileChannel.MapMode.READ_ONLY, 0,
+							channel.size()), true);
+		} catch (final IOException ex) {
+			throw new PersistError(ex);
+		} finally {
+			if (fis != null) {
+				try {
+					fis.close();
+				} catch (final IOException e) {
+					EncogLogging.log(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Load an object from a buffer holding a binary model file.
+	 * @param buffer The buffer, positioned at the start of the file.
+	 * @return The loaded object.
+	 */
+	public static Object loadObject(final ByteBuffer buffer) {
+		return loadObject(buffer, false);
+	}
+
+	/**
+	 * Load an object from a buffer holding a binary model file.
+	 * @param buffer The buffer, positioned at the start of the file.
+	 * @param readOnly True if the object may keep views of the buffer rather
+	 * than copying its arrays, the buffer must then stay valid while the
+	 * object is used.
+	 * @return The loaded object.
+	 */
+	public static Object loadObject(final ByteBuffer buffer,
+			final boolean readOnly) {
+		final EncogBinaryReader in = new EncogBinaryReader(buffer, readOnly);
+		in.readHeader();
+
+		final EncogBinaryPersistor p = PersistorRegistry.getInstance()
+				.getBinaryPersistor(in.getClassName());
+
+		if (p == null) {
+			throw new PersistError("Do not know how to read the object: "
+					+ in.getClassName());
+		}
+
+		if (p.getFileVersion() < in.getFileVersion()) {
+			throw new PersistError(
+					"The file you are trying to read is from a later version of Encog.  Please upgrade Encog to read this file.");
+		}
+
+		return p.read(in);
+	}
+
 	/**
 	 * Load an object from an input stream.
 	 * @param is The input stream to read from.
 	 * @return The loaded object.
 	 */
-	public static Object loadObject(final InputStream is) {
+	public static Object loadObject(final InputStream stream) {
+		final InputStream is = stream.markSupported() ? stream
+				: new BufferedInputStream(stream);
+
+		if (isBinary(is)) {
+			return loadObject(ByteBuffer.wrap(readFully(is)));
+		}
 
 		final String header = EncogDirectoryPersistence.readLine(is);
 		final String[] params = header.split(",");
@@ -125,6 +222,48 @@ public class EncogDirectoryPersistence {
 
 	}
 
+	/**
+	 * Determine if a stream holds a binary model file, without consuming
+	 * anything from it.
+	 * @param is The input stream, must support mark.
+	 * @return True if the stream holds a binary model file.
+	 */
+	private static boolean isBinary(final InputStream is) {
+		try {
+			final byte[] magic = new byte[EncogBinaryWriter.MAGIC.length];
+			is.mark(magic.length);
+			int count = 0;
+			int read;
+			while (count < magic.length
+					&& (read = is.read(magic, count, magic.length - count)) != -1) {
+				count += read;
+			}
+			is.reset();
+			return EncogBinaryReader.isBinary(magic, count);
+		} catch (final IOException ex) {
+			throw new PersistError(ex);
+		}
+	}
+
+	/**
+	 * Read the rest of a stream.
+	 * @param is The input stream.
+	 * @return The bytes read.
+	 */
+	private static byte[] readFully(final InputStream is) {
+		try {
+			final ByteArrayOutputStream result = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[64 * 1024];
+			int count;
+			while ((count = is.read(buffer)) != -1) {
+				result.write(buffer, 0, count);
+			}
+			return result.toByteArray();
+		} catch (final IOException ex) {
+			throw new PersistError(ex);
+		}
+	}
+
 	/**
 	 * Read a line from the input stream.
 	 * @param is The input stream.
@@ -163,11 +302,25 @@ public class EncogDirectoryPersistence {
 	 */
 	public static void saveObject(final File filename, 
 			final Object obj) {
+		saveObject(filename, obj, PersistFormat.TEXT);
+	}
+
+	/**
+	 * Save the specified object.
+	 * @param filename The filename to save to.
+	 * @param obj The Object to save.
+	 * @param format The file format to save in.
+	 */
+	public static void saveObject(final File filename, final Object obj,
+			final PersistFormat format) {
 		FileOutputStream fos = null;
 
 		try {
 			fos = new FileOutputStream(filename);
-			EncogDirectoryPersistence.saveObject(fos, obj);
+			final OutputStream os = (format == PersistFormat.BINARY) ? new BufferedOutputStream(
+					fos) : fos;
+			EncogDirectoryPersistence.saveObject(os, obj, format);
+			os.flush();
 		} catch (final IOException ex) {
 			throw new PersistError(ex);
 		} finally {
@@ -187,6 +340,22 @@ public class EncogDirectoryPersistence {
 	 * @param obj The object to save.
 	 */
 	public static void saveObject(final OutputStream os, final Object obj) {
+		saveObject(os, obj, PersistFormat.TEXT);
+	}
+
+	/**
+	 * Save the specified object.
+	 * @param os The output stream to write to.
+	 * @param obj The object to save.
+	 * @param format The file format to save in.
+	 */
+	public static void saveObject(final OutputStream os, final Object obj,
+			final PersistFormat format) {
+		if (format == PersistFormat.BINARY) {
+			saveObjectBinary(os, obj);
+			return;
+		}
+
 		try {
 			final EncogPersistor p = PersistorRegistry.getInstance()
 					.getPersistor(obj.getClass());
@@ -209,6 +378,28 @@ public class EncogDirectoryPersistence {
 		}
 	}
 
+	/**
+	 * Save the specified object in the binary format.
+	 * @param os The output stream to write to.
+	 * @param obj The object to save.
+	 */
+	private static void saveObjectBinary(final OutputStream os,
+			final Object obj) {
+		final EncogBinaryPersistor p = PersistorRegistry.getInstance()
+				.getBinaryPersistor(obj.getClass());
+
+		if (p == null) {
+			throw new PersistError("Do not know how to persist object "
+					+ obj.getClass().getSimpleName() + " in binary format");
+		}
+
+		final EncogBinaryWriter out = new EncogBinaryWriter(os);
+		out.writeHeader(obj.getClass().getSimpleName(), "java",
+				Encog.VERSION, p.getFileVersion(), new Date().getTime());
+		p.save(out, obj);
+		out.flush();
+	}
+
 	/**
 	 * The directory that holds the EG files.
 	 */
@@ -233,6 +424,10 @@ public class EncogDirectoryPersistence {
 		
 		try {
 			final File path = new File(this.parent, name);
+			final String binaryType = getBinaryType(path);
+			if (binaryType != null) {
+				return binaryType;
+			}
 			br = new BufferedReader(new FileReader(path));
 			final String header = br.readLine();
 			if( header==null ) {
@@ -254,6 +449,37 @@ public class EncogDirectoryPersistence {
 		}
 	}
 
+	/**
+	 * Get the type of an object in a binary model file.
+	 * @param path The file to read.
+	 * @return The type, or null if this is not a binary file.
+	 */
+	private String getBinaryType(final File path) {
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(path);
+			final ByteBuffer header = ByteBuffer.allocate(1024);
+			fis.getChannel().read(header, 0);
+			header.flip();
+			if (!EncogBinaryReader.isBinary(header)) {
+				return null;
+			}
+			final EncogBinaryReader in = new EncogBinaryReader(header);
+			in.readHeader();
+			return in.getClassName();
+		} catch (final IOException ex) {
+			throw new PersistError(ex);
+		} finally {
+			if (fis != null) {
+				try {
+					fis.close();
+				} catch (final IOException e) {
+					EncogLogging.log(e);
+				}
+			}
+		}
+	}
+
 	/**
 	 * @return The directory.
 	 */
@@ -280,4 +506,16 @@ public class EncogDirectoryPersistence {
 		EncogDirectoryPersistence.saveObject(path, obj);
 	}
 
+	/**
+	 * Save a file to the directory that this object refers to.
+	 * @param name The name to load.
+	 * @param obj The object to save.
+	 * @param format The file format to save in.
+	 */
+	public final void saveToDirectory(final String name, final Object obj,
+			final PersistFormat format) {
+		final File path = new File(this.parent, name);
+		EncogDirectoryPersistence.saveObject(path, obj, format);
+	}
+
 }
@@ -0,0 +1,41 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.persist;
+
+/**
+ * The file formats that Encog objects can be saved in.
+ */
+public enum PersistFormat {
+	/**
+	 * The text EG format, readable and portable between Encog platforms.
+	 */
+	TEXT,
+
+	/**
+	 * The binary format. Numeric arrays are stored as raw little-endian
+	 * blocks, so files are smaller and much faster to load. Only objects
+	 * with a binary persistor can be saved this way.
+	 */
+	BINARY
+}
@@ -36,6 +36,7 @@ import org.encog.neural.bam.PersistBAM;
 import org.encog.neural.cpn.PersistCPN;
 import org.encog.neural.neat.PersistNEATPopulation;
 import org.encog.neural.networks.PersistBasicNetwork;
+import org.encog.neural.networks.PersistBasicNetworkBinary;
 import org.encog.neural.networks.training.propagation.PersistTrainingContinuation;
 import org.encog.neural.pnn.PersistBasicPNN;
 import org.encog.neural.rbf.PersistRBFNetwork;
@@ -69,6 +70,11 @@ public final class PersistorRegistry {
 	 */
 	private final Map<String, EncogPersistor> map = new HashMap<String, EncogPersistor>();
 
+	/**
+	 * The mapping between name and binary persistor.
+	 */
+	private final Map<String, EncogBinaryPersistor> binaryMap = new HashMap<String, EncogBinaryPersistor>();
+
 	/**
 	 * Construct the object.
 	 */
@@ -89,6 +95,8 @@ public final class PersistorRegistry {
 		add(new PersistHMM());
 		add(new PersistBasicUniverse());
 		add(new PersistPrgPopulation());
+		
+		add(new PersistBasicNetworkBinary());
 	}
 
 	/**
@@ -99,6 +107,14 @@ public final class PersistorRegistry {
 		this.map.put(persistor.getPersistClassString(), persistor);
 	}
 
+	/**
+	 * Add a binary persistor.
+	 * @param persistor The persistor to add.
+	 */
+	public void add(final EncogBinaryPersistor persistor) {
+		this.binaryMap.put(persistor.getPersistClassString(), persistor);
+	}
+
 	/**
 	 * Get a persistor.
 	 * @param clazz The class to get the persistor for.
@@ -116,4 +132,23 @@ public final class PersistorRegistry {
 	public EncogPersistor getPersistor(final String name) {
 		return this.map.get(name);
 	}
+
+	/**
+	 * Get a binary persistor.
+	 * @param clazz The class to get the persistor for.
+	 * @return Return the persistor, or null if the class can only be saved
+	 * as text.
+	 */
+	public EncogBinaryPersistor getBinaryPersistor(final Class<?> clazz) {
+		return getBinaryPersistor(clazz.getSimpleName());
+	}
+
+	/**
+	 * Get the binary persistor by name.
+	 * @param name The name of the persistor.
+	 * @return The persistor, or null if there is none.
+	 */
+	public EncogBinaryPersistor getBinaryPersistor(final String name) {
+		return this.binaryMap.get(name);
+	}
 }
@@ -0,0 +1,110 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.util.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.encog.mathutil.IntRange;
+
+/**
+ * A workload split into a fixed number of small blocks, that workers claim
+ * from a shared cursor as they finish the previous one. A worker slowed by
+ * other load, or by slow reads from the data set, simply claims fewer blocks,
+ * rather than the others waiting on its static share of the workload.
+ * 
+ * The blocks themselves do not depend on timing. So if every block keeps its
+ * own partial result, and these are combined in block order, the result is
+ * the same no matter which worker ran which block.
+ */
+public class BlockWorkload {
+
+	/**
+	 * The blocks.
+	 */
+	private final IntRange[] blocks;
+
+	/**
+	 * The index of the next block to claim.
+	 */
+	private final AtomicInteger cursor = new AtomicInteger();
+
+	/**
+	 * Split a workload into blocks.
+	 * 
+	 * @param workloadSize
+	 *            The total workload size.
+	 * @param blockCount
+	 *            The number of blocks, at most the workload size.
+	 */
+	public BlockWorkload(final int workloadSize, final int blockCount) {
+		final int count = Math.max(1, Math.min(blockCount, workloadSize));
+		this.blocks = new IntRange[count];
+
+		final int sizePerBlock = workloadSize / count;
+		final int extra = workloadSize % count;
+		int low = 0;
+		for (int i = 0; i < count; i++) {
+			final int size = sizePerBlock + (i < extra ? 1 : 0);
+			this.blocks[i] = new IntRange(low + size - 1, low);
+			low += size;
+		}
+	}
+
+	/**
+	 * Claim the next block.
+	 * 
+	 * @return The index of the block, or -1 if every block has been claimed.
+	 */
+	public int claim() {
+		final int result = this.cursor.getAndIncrement();
+		if (result >= this.blocks.length) {
+			return -1;
+		}
+		return result;
+	}
+
+	/**
+	 * @param index
+	 *            The index of the block.
+	 * @return The range of the workload covered by the block.
+	 */
+	public IntRange getBlock(final int index) {
+		return this.blocks[index];
+	}
+
+	/**
+	 * @return The number of blocks.
+	 */
+	public int getBlockCount() {
+		return this.blocks.length;
+	}
+
+	/**
+	 * Make every block available to claim again, before the next pass over
+	 * the workload.
+	 */
+	public void reset() {
+		this.cursor.set(0);
+	}
+}
@@ -44,6 +44,12 @@ public class DetermineWorkload {
 	 */
 	public static final int MIN_WORTHWHILE = 100;
 
+	/**
+	 * How many blocks to create per thread, when the workload is claimed in
+	 * blocks.
+	 */
+	public static final int BLOCKS_PER_THREAD = 4;
+
 	/**
 	 * How many threads to use.
 	 */
@@ -123,6 +129,20 @@ public class DetermineWorkload {
 		return result;
 	}
 
+	/**
+	 * Split the workload into blocks, that the workers claim as they go. A
+	 * single thread gets a single block.
+	 * 
+	 * @return The blocks.
+	 */
+	public BlockWorkload calculateBlocks() {
+		if (this.threadCount == 1) {
+			return new BlockWorkload(this.workloadSize, 1);
+		}
+		return new BlockWorkload(this.workloadSize, this.threadCount
+				* BLOCKS_PER_THREAD);
+	}
+
 	/**
 	 * @return The thread count.
 	 */
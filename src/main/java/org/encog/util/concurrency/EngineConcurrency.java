@@ -34,6 +34,13 @@ import org.encog.EncogError;
  * concurrency. It is used by other classes inside of Encog to allow tasks to be
  * executed efficiently on multicore machines.
  * 
+ * Tasks submitted with a TaskGroup are queued in the group, and the thread
+ * that waits for the group helps to run them. So parallel code can be nested,
+ * for example a multithreaded trainer inside concurrent cross validation,
+ * without deadlocking the pool. Errors thrown by the tasks of a group are
+ * thrown by waitForComplete. Tasks submitted without a group report their
+ * errors through registerError and checkError.
+ * 
  * @author jheaton
  * 
  */
@@ -82,6 +89,7 @@ public class EngineConcurrency implements MultiThreadable {
         if( threads>1 )
         	threads++;
 		this.executor = Executors.newFixedThreadPool(threads);
+		this.threadCount = threads;
 	}
 	
 	/**
@@ -89,7 +97,9 @@ public class EngineConcurrency implements MultiThreadable {
 	 */
 	@Override
 	public void setThreadCount(int t) {
-		this.executor.shutdown();
+		if (this.executor != null) {
+			this.executor.shutdown();
+		}
 		int threads = t;
 		
 		if( threads==0 )
@@ -119,10 +129,20 @@ public class EngineConcurrency implements MultiThreadable {
 	 * @return The new task group.
 	 */
 	public TaskGroup createTaskGroup() {
+		return createTaskGroup(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create a new task group, that will use at most the specified number of
+	 * pool threads at once.
+	 * @param parallelism The most pool threads the group may use.
+	 * @return The new task group.
+	 */
+	public TaskGroup createTaskGroup(final int parallelism) {
 		TaskGroup result = null;
 		synchronized (this) {
 			this.currentTaskGroup++;
-			result = new TaskGroup(this.currentTaskGroup);
+			result = new TaskGroup(this.currentTaskGroup, parallelism);
 
 		}
 		return result;
@@ -154,11 +174,13 @@ public class EngineConcurrency implements MultiThreadable {
 				throw new EncogError(t);
 			}
 
-			final PoolItem item = new PoolItem(task, group);
 			if (group != null) {
-				group.taskStarting();
+				if (group.addTask(task)) {
+					this.executor.execute(new PoolItem(group));
+				}
+			} else {
+				this.executor.execute(new PoolItem(task, null));
 			}
-			this.executor.execute(item);
 		}
 	}
 
@@ -24,7 +24,9 @@
 package org.encog.util.concurrency;
 
 /**
- * An Encog task being executed by the Java thread pool.
+ * An Encog task being executed by the Java thread pool. A pool item either
+ * runs a single task, or is a runner for a task group, which runs the queued
+ * tasks of the group until there are none left.
  */
 public class PoolItem implements Runnable {
 
@@ -51,10 +53,25 @@ public class PoolItem implements Runnable {
 		this.group = group;
 	}
 
+	/**
+	 * Create a runner for a task group.
+	 * 
+	 * @param group
+	 *            The group to run the tasks of.
+	 */
+	public PoolItem(final TaskGroup group) {
+		this(null, group);
+	}
+
 	/**
 	 * Run the task.
 	 */
 	public void run() {
+		if (this.task == null) {
+			this.group.runTasks();
+			return;
+		}
+
 		try {
 			this.task.run();
 		} catch (final Throwable t) {
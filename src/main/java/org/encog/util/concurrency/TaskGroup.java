@@ -23,6 +23,7 @@
  */
 package org.encog.util.concurrency;
 
+import java.util.LinkedList;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -32,6 +33,16 @@ import org.encog.EncogError;
 /**
  * A task group is a group of tasks that you would like to execute at once. You
  * can wait for all tasks in a task group to exit before your program continues.
+ * 
+ * The tasks of a group are queued in the group itself. The thread pool runs
+ * them through runners, at most one runner per thread the group may use, so
+ * the parallelism of each group can be bounded. A thread that waits for the
+ * group runs the queued tasks itself, rather than blocking. So a task running
+ * on the pool can create a group of its own and wait for it, without tying
+ * up a pool thread or deadlocking when every pool thread is waiting.
+ * 
+ * If a task throws, the tasks that have not started are cancelled, and the
+ * error is thrown by waitForComplete.
  */
 public class TaskGroup {
 
@@ -40,6 +51,21 @@ public class TaskGroup {
 	 */
 	private final int id;
 
+	/**
+	 * The most runners this group may have on the pool at once.
+	 */
+	private final int parallelism;
+
+	/**
+	 * The tasks that have not started yet.
+	 */
+	private final LinkedList<EngineTask> pending = new LinkedList<EngineTask>();
+
+	/**
+	 * The number of runners on the pool.
+	 */
+	private int runners;
+
 	/**
 	 * The total number of tasks in this group.
 	 */
@@ -50,6 +76,16 @@ public class TaskGroup {
 	 */
 	private int completedTasks;
 
+	/**
+	 * The first error thrown by a task, or null.
+	 */
+	private Throwable error;
+
+	/**
+	 * True, if the group has been cancelled.
+	 */
+	private boolean cancelled;
+
 	/**
 	 * The event used to sync waiting for tasks to stop.
 	 */
@@ -68,10 +104,87 @@ public class TaskGroup {
 	 *            The ID of the task group.
 	 */
 	public TaskGroup(final int id) {
+		this(id, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create a task group with the specified id and parallelism.
+	 * 
+	 * @param id
+	 *            The ID of the task group.
+	 * @param theParallelism
+	 *            The most pool threads that may run tasks of this group at
+	 *            once.
+	 */
+	public TaskGroup(final int id, final int theParallelism) {
 		this.id = id;
+		this.parallelism = Math.max(1, theParallelism);
 		this.totalTasks = 0;
 	}
 
+	/**
+	 * Queue a task to this group.
+	 * 
+	 * @param task
+	 *            The task.
+	 * @return True, if a new runner should be started on the pool.
+	 */
+	boolean addTask(final EngineTask task) {
+		this.accessLock.lock();
+		try {
+			if (this.cancelled) {
+				return false;
+			}
+			this.pending.add(task);
+			this.totalTasks++;
+			this.mightBeDone.signalAll();
+			if (this.runners < this.parallelism) {
+				this.runners++;
+				return true;
+			}
+			return false;
+		} finally {
+			this.accessLock.unlock();
+		}
+	}
+
+	/**
+	 * Cancel the tasks of this group that have not started. Tasks that are
+	 * running finish normally, and can check isCancelled to stop early.
+	 */
+	public void cancel() {
+		this.accessLock.lock();
+		try {
+			this.cancelled = true;
+			this.completedTasks += this.pending.size();
+			this.pending.clear();
+			this.mightBeDone.signalAll();
+		} finally {
+			this.accessLock.unlock();
+		}
+	}
+
+	/**
+	 * Take the next task that has not started.
+	 * 
+	 * @param runner
+	 *            True, if called by a runner, which stops when there are no
+	 *            more tasks.
+	 * @return The task, or null if there are none.
+	 */
+	private EngineTask claim(final boolean runner) {
+		this.accessLock.lock();
+		try {
+			final EngineTask result = this.pending.poll();
+			if (result == null && runner) {
+				this.runners--;
+			}
+			return result;
+		} finally {
+			this.accessLock.unlock();
+		}
+	}
+
 	/**
 	 * @return The ID of the task group.
 	 */
@@ -91,6 +204,61 @@ public class TaskGroup {
 		}
 	}
 
+	/**
+	 * @return The most pool threads that may run tasks of this group at once.
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/**
+	 * @return True, if the group has been cancelled, either directly or
+	 *         because a task failed.
+	 */
+	public boolean isCancelled() {
+		this.accessLock.lock();
+		try {
+			return this.cancelled;
+		} finally {
+			this.accessLock.unlock();
+		}
+	}
+
+	/**
+	 * Run one task, recording any error.
+	 * 
+	 * @param task
+	 *            The task.
+	 */
+	private void runTask(final EngineTask task) {
+		try {
+			task.run();
+		} catch (final Throwable t) {
+			this.accessLock.lock();
+			try {
+				if (this.error == null) {
+					this.error = t;
+				}
+			} finally {
+				this.accessLock.unlock();
+			}
+			cancel();
+		} finally {
+			taskStopping();
+		}
+	}
+
+	/**
+	 * Run queued tasks until there are none left. Called by the runners on
+	 * the pool.
+	 */
+	void runTasks() {
+		EngineTask task;
+		while ((task = claim(true)) != null) {
+			runTask(task);
+		}
+	}
+
 	/**
 	 * Notify that a task is starting.
 	 */
@@ -111,7 +279,7 @@ public class TaskGroup {
 		try {
 			this.completedTasks++;
 			if (this.completedTasks >= this.totalTasks) {
-				this.mightBeDone.signal();
+				this.mightBeDone.signalAll();
 			}
 		} finally {
 			this.accessLock.unlock();
@@ -119,19 +287,31 @@ public class TaskGroup {
 	}
 
 	/**
-	 * Wait for all tasks to complete in this group.
+	 * Wait for all tasks to complete in this group. While waiting, the
+	 * calling thread runs tasks of this group that have not started. If a
+	 * task threw, the error is thrown here.
 	 */
 	public void waitForComplete() {
-		while (!getNoTasks()) {
+		for (;;) {
+			final EngineTask task = claim(false);
+			if (task != null) {
+				runTask(task);
+				continue;
+			}
+
 			this.accessLock.lock();
 			try {
-				try {
-					if (!getNoTasks()) {
-						this.mightBeDone.await();
+				if (this.totalTasks == this.completedTasks) {
+					if (this.error != null) {
+						throw new EncogError(this.error);
 					}
-				} catch (InterruptedException e) {
-					throw new EncogError(e);
+					return;
+				}
+				if (this.pending.isEmpty()) {
+					this.mightBeDone.await();
 				}
+			} catch (InterruptedException e) {
+				throw new EncogError(e);
 			} finally {
 				this.accessLock.unlock();
 			}
@@ -76,6 +76,33 @@ public class CSVFormat implements Serializable {
 	 */
 	private final char separator;
 
+	/**
+	 * The most mantissa digits that are accumulated into a long.
+	 */
+	private static final int MAX_MANTISSA_DIGITS = 18;
+
+	/**
+	 * The most mantissa digits that a double holds exactly.
+	 */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	/**
+	 * The largest power of ten that a double holds exactly.
+	 */
+	private static final int MAX_EXACT_POWER = 22;
+
+	/**
+	 * Exponents are clamped here, well past the range of a double.
+	 */
+	private static final int MAX_EXPONENT = 100000;
+
+	/**
+	 * The powers of ten that are exact as doubles.
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
 	/**
 	 * The number formatter to use for this format.
 	 */
@@ -178,7 +205,173 @@ public class CSVFormat implements Serializable {
 	 *            The string to parse.
 	 * @return The parsed number.
 	 */
-	public synchronized double parse(final String str) {
+	public double parse(final String str) {
+		return parse(str, 0, str.length());
+	}
+
+	/**
+	 * Parse a double from a range of characters. Plain decimal numbers, with
+	 * an optional sign and exponent, are parsed directly without taking a
+	 * lock. Anything else is handed to the number formatter, so the result
+	 * is the same as parsing the equivalent string.
+	 * 
+	 * @param str
+	 *            The characters to parse from.
+	 * @param start
+	 *            The index of the first character.
+	 * @param end
+	 *            The index after the last character.
+	 * @return The parsed number.
+	 */
+	public double parse(final CharSequence str, final int start, final int end) {
+		final int len = end - start;
+
+		if (len == 1 && str.charAt(start) == '?') {
+			return Double.NaN;
+		}
+
+		if (len == 3 && (str.charAt(start) == 'N' || str.charAt(start) == 'n')
+				&& (str.charAt(start + 1) == 'A' || str.charAt(start + 1) == 'a')
+				&& (str.charAt(start + 2) == 'N' || str.charAt(start + 2) == 'n')) {
+			return Double.NaN;
+		}
+
+		int first = start;
+		int last = end;
+		while (first < last && str.charAt(first) <= ' ') {
+			first++;
+		}
+		while (last > first && str.charAt(last - 1) <= ' ') {
+			last--;
+		}
+
+		int i = first;
+		boolean negative = false;
+		if (i < last && str.charAt(i) == '-') {
+			negative = true;
+			i++;
+		}
+
+		long mantissa = 0;
+		int significant = 0;
+		int exponent = 0;
+		boolean sawDigit = false;
+		boolean inexact = false;
+
+		// whole part
+		while (i < last) {
+			final char ch = str.charAt(i);
+			if (ch < '0' || ch > '9') {
+				break;
+			}
+			sawDigit = true;
+			if (significant < CSVFormat.MAX_MANTISSA_DIGITS) {
+				mantissa = (mantissa * 10) + (ch - '0');
+				if (mantissa != 0) {
+					significant++;
+				}
+			} else {
+				exponent++;
+				inexact = true;
+			}
+			i++;
+		}
+
+		// fraction
+		if (i < last && str.charAt(i) == this.decimal) {
+			i++;
+			while (i < last) {
+				final char ch = str.charAt(i);
+				if (ch < '0' || ch > '9') {
+					break;
+				}
+				sawDigit = true;
+				if (significant < CSVFormat.MAX_MANTISSA_DIGITS) {
+					mantissa = (mantissa * 10) + (ch - '0');
+					exponent--;
+					if (mantissa != 0) {
+						significant++;
+					}
+				} else {
+					inexact = true;
+				}
+				i++;
+			}
+		}
+
+		if (!sawDigit) {
+			return parseFormatted(str.subSequence(start, end).toString());
+		}
+
+		// exponent, the number formatter only understands an upper case E
+		// and no explicit plus sign
+		if (i < last && str.charAt(i) == 'E') {
+			i++;
+			boolean negativeExponent = false;
+			if (i < last && str.charAt(i) == '-') {
+				negativeExponent = true;
+				i++;
+			}
+			final int exponentStart = i;
+			int e = 0;
+			while (i < last) {
+				final char ch = str.charAt(i);
+				if (ch < '0' || ch > '9') {
+					break;
+				}
+				if (e < CSVFormat.MAX_EXPONENT) {
+					e = (e * 10) + (ch - '0');
+				}
+				i++;
+			}
+			if (i == exponentStart) {
+				return parseFormatted(str.subSequence(start, end).toString());
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+
+		// anything left over (grouping, other locales, text) is not a plain
+		// number
+		if (i != last) {
+			return parseFormatted(str.subSequence(start, end).toString());
+		}
+
+		if (mantissa == 0) {
+			return negative ? -0.0 : 0.0;
+		}
+
+		double result;
+		if (!inexact && significant <= CSVFormat.MAX_EXACT_DIGITS
+				&& exponent >= -CSVFormat.MAX_EXACT_POWER
+				&& exponent <= CSVFormat.MAX_EXACT_POWER) {
+			// both the mantissa and the power of ten are exact doubles, so a
+			// single multiply or divide is correctly rounded
+			if (exponent >= 0) {
+				result = mantissa * CSVFormat.POWERS_OF_TEN[exponent];
+			} else {
+				result = mantissa / CSVFormat.POWERS_OF_TEN[-exponent];
+			}
+		} else {
+			final StringBuilder builder = new StringBuilder(last - first);
+			for (int j = first; j < last; j++) {
+				final char ch = str.charAt(j);
+				builder.append(ch == this.decimal ? '.' : ch);
+			}
+			result = Math.abs(Double.parseDouble(builder.toString()));
+		}
+
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Parse a string with the number formatter. The number formatter is not
+	 * thread safe, so this is synchronized.
+	 * 
+	 * @param str
+	 *            The string to parse.
+	 * @return The parsed number.
+	 */
+	private synchronized double parseFormatted(final String str) {
 		try {
 			if( str.equals("?")) { 
 				return Double.NaN;
@@ -23,15 +23,17 @@
  */
 package org.encog.util.csv;
 
-import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -41,9 +43,25 @@ import org.encog.EncogError;
 
 /**
  * Read and parse CSV format files.
+ * 
+ * The file is scanned from a character buffer, one record at a time. Each
+ * field is kept as an offset into the record buffer, and a String is only
+ * created when one is asked for. Numbers are parsed straight from the buffer
+ * by the CSV format, so reading numeric columns with getDouble does not
+ * create any objects.
  */
 public class ReadCSV {
 
+	/**
+	 * The number of characters to read from the file at a time.
+	 */
+	public static final int BUFFER_SIZE = 65536;
+
+	/**
+	 * The initial size of the record buffers.
+	 */
+	public static final int INITIAL_RECORD_SIZE = 1024;
+
 	/**
 	 * Format a date.
 	 * 
@@ -83,9 +101,77 @@ public class ReadCSV {
 	private CSVFormat format;
 
 	/**
-	 * The buffered reader to read the file.
+	 * The reader to read the file.
+	 */
+	private final Reader reader;
+
+	/**
+	 * The characters read from the file, but not yet processed.
+	 */
+	private final char[] buffer = new char[ReadCSV.BUFFER_SIZE];
+
+	/**
+	 * The position of the next character to process in the buffer.
+	 */
+	private int bufferPosition;
+
+	/**
+	 * The number of valid characters in the buffer.
+	 */
+	private int bufferLimit;
+
+	/**
+	 * True if the last line ended with a carriage return, so that a line feed
+	 * that follows it should be skipped.
+	 */
+	private boolean skipLineFeed;
+
+	/**
+	 * The fields of the current record. Quotes are removed, and unquoted
+	 * fields trimmed.
+	 */
+	private char[] record = new char[ReadCSV.INITIAL_RECORD_SIZE];
+
+	/**
+	 * The record buffer viewed as characters, for number parsing.
+	 */
+	private CharBuffer recordView = CharBuffer.wrap(this.record);
+
+	/**
+	 * The buffer that the next line is read into. It is swapped with the
+	 * record once the line has been parsed.
+	 */
+	private char[] scratch = new char[ReadCSV.INITIAL_RECORD_SIZE];
+
+	/**
+	 * The scratch buffer viewed as characters.
+	 */
+	private CharBuffer scratchView = CharBuffer.wrap(this.scratch);
+
+	/**
+	 * The number of characters in the scratch buffer.
+	 */
+	private int scratchLength;
+
+	/**
+	 * The start offset of each field in the record.
+	 */
+	private int[] fieldStart;
+
+	/**
+	 * The end offset of each field in the record.
+	 */
+	private int[] fieldEnd;
+
+	/**
+	 * The start offset of each field of the line being parsed.
+	 */
+	private int[] nextStart;
+
+	/**
+	 * The end offset of each field of the line being parsed.
 	 */
-	private final BufferedReader reader;
+	private int[] nextEnd;
 
 	/**
 	 * The names of the columns.
@@ -93,7 +179,8 @@ public class ReadCSV {
 	private final Map<String, Integer> columns = new HashMap<String, Integer>();
 
 	/**
-	 * The data.
+	 * The fields of the current record as strings. These are created as
+	 * they are requested.
 	 */
 	private String[] data;
 	
@@ -123,7 +210,7 @@ public class ReadCSV {
 		final CSVFormat format = new CSVFormat(CSVFormat.getDecimalCharacter(),
 				delim);
 		this.parseLine = new ParseCSVLine(format);
-		this.reader = new BufferedReader(new InputStreamReader(is));
+		this.reader = new InputStreamReader(is);
 		begin(headers, format);
 	}
 
@@ -140,7 +227,7 @@ public class ReadCSV {
 	 */
 	public ReadCSV(final InputStream is, final boolean headers,
 			final CSVFormat format) {
-		this.reader = new BufferedReader(new InputStreamReader(is));
+		this.reader = new InputStreamReader(is);
 		begin(headers, format);
 	}
 
@@ -161,7 +248,7 @@ public class ReadCSV {
 			final CSVFormat format = new CSVFormat(CSVFormat
 					.getDecimalCharacter(), delim);
 			this.parseLine = new ParseCSVLine(format);
-			this.reader = new BufferedReader(new FileReader(filename));
+			this.reader = new FileReader(filename);
 			begin(headers, format);
 		} catch (final IOException e) {
 			throw new EncogError(e);
@@ -182,7 +269,7 @@ public class ReadCSV {
 	public ReadCSV(final String filename, final boolean headers,
 			final CSVFormat format) {
 		try {
-			this.reader = new BufferedReader(new FileReader(filename));
+			this.reader = new FileReader(filename);
 			this.parseLine = new ParseCSVLine(format);
 			begin(headers, format);
 		} catch (final IOException e) {
@@ -203,14 +290,14 @@ public class ReadCSV {
 			this.format = format;
 			// read the column heads
 			if (headers) {
-				final String line = this.reader.readLine();
-				
 				// Are we trying to parse an empty file?
-				if( line==null ) {
+				if( !readLine() ) {
 					this.columnNames.clear();
 					return;
 				}
 				
+				final String line = new String(this.scratch, 0,
+						this.scratchLength);
 				final List<String> tok = this.parseLine.parse(line);
 
 				int i = 0;
@@ -250,6 +337,10 @@ public class ReadCSV {
 		if( i>=this.data.length ) {
 			throw new EncogError("Can't access column " + i + " in a file that has only " + data.length + " columns.");
 		}
+		if (this.data[i] == null) {
+			this.data[i] = new String(this.record, this.fieldStart[i],
+					this.fieldEnd[i] - this.fieldStart[i]);
+		}
 		return this.data[i];
 	}
 
@@ -266,7 +357,7 @@ public class ReadCSV {
 		if (i == null) {
 			return null;
 		}
-		return this.data[i.intValue()];
+		return get(i.intValue());
 	}
 
 	/**
@@ -308,8 +399,11 @@ public class ReadCSV {
 	 * @return The data at the specified column.
 	 */
 	public double getDouble(final int index) {
-		final String str = get(index);
-		return this.format.parse(str);
+		if( index>=this.data.length ) {
+			throw new EncogError("Can't access column " + index + " in a file that has only " + data.length + " columns.");
+		}
+		return this.format.parse(this.recordView, this.fieldStart[index],
+				this.fieldEnd[index]);
 	}
 
 	/**
@@ -320,8 +414,11 @@ public class ReadCSV {
 	 * @return The column data as a double.
 	 */
 	public double getDouble(final String column) {
-		final String str = get(column);
-		return this.format.parse(str);
+		final Integer i = this.columns.get(column.toLowerCase());
+		if (i == null) {
+			return this.format.parse(get(column));
+		}
+		return getDouble(i.intValue());
 	}
 
 	/**
@@ -341,15 +438,266 @@ public class ReadCSV {
 	}
 
 	/**
-	 * Count the columns and create a an array to hold them.
+	 * Create the arrays that hold the columns. The column count is taken
+	 * from the first line.
+	 * 
+	 * @param count
+	 *            The number of fields on the first line.
+	 */
+	private void initData(final int count) {
+		this.data = new String[count];
+		this.fieldStart = new int[count];
+		this.fieldEnd = new int[count];
+		this.nextStart = new int[count];
+		this.nextEnd = new int[count];
+	}
+
+	/**
+	 * Make the parsed scratch buffer the current record. The old record
+	 * becomes the scratch buffer for the next line.
+	 */
+	private void swapRecord() {
+		final char[] line = this.record;
+		this.record = this.scratch;
+		this.scratch = line;
+
+		final int[] start = this.fieldStart;
+		this.fieldStart = this.nextStart;
+		this.nextStart = start;
+
+		final int[] end = this.fieldEnd;
+		this.fieldEnd = this.nextEnd;
+		this.nextEnd = end;
+
+		final CharBuffer view = this.recordView;
+		this.recordView = this.scratchView;
+		this.scratchView = view;
+
+		// the scratch buffer is replaced when it grows
+		if (this.recordView.array() != this.record) {
+			this.recordView = CharBuffer.wrap(this.record);
+		}
+
+		Arrays.fill(this.data, null);
+	}
+
+	/**
+	 * Fill the character buffer from the reader.
 	 * 
-	 * @param line
-	 *            One line from the file
+	 * @return False if the end of the file has been reached.
+	 * @throws IOException
+	 *             If the file could not be read.
 	 */
-	private void initData(final String line) {
-		final List<String> tok = this.parseLine.parse(line);
-		this.data = new String[tok.size()];
+	private boolean fill() throws IOException {
+		int count;
+		do {
+			count = this.reader.read(this.buffer, 0, this.buffer.length);
+		} while (count == 0);
+
+		if (count < 0) {
+			return false;
+		}
+
+		this.bufferPosition = 0;
+		this.bufferLimit = count;
+		return true;
+	}
 
+	/**
+	 * Make sure the scratch buffer can hold the specified number of
+	 * characters.
+	 * 
+	 * @param size
+	 *            The number of characters needed.
+	 */
+	private void ensureScratch(final int size) {
+		if (size > this.scratch.length) {
+			final char[] grown = new char[Math.max(size,
+					this.scratch.length * 2)];
+			System.arraycopy(this.scratch, 0, grown, 0, this.scratchLength);
+			this.scratch = grown;
+		}
+	}
+
+	/**
+	 * Read one line into the scratch buffer. Lines end with a line feed, a
+	 * carriage return or both, the same as BufferedReader.readLine.
+	 * 
+	 * @return False if the end of the file has been reached.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private boolean readLine() throws IOException {
+		this.scratchLength = 0;
+		boolean any = false;
+
+		for (;;) {
+			if (this.bufferPosition >= this.bufferLimit && !fill()) {
+				return any;
+			}
+
+			if (this.skipLineFeed) {
+				this.skipLineFeed = false;
+				if (this.buffer[this.bufferPosition] == '\n') {
+					this.bufferPosition++;
+					continue;
+				}
+			}
+
+			any = true;
+			int i = this.bufferPosition;
+			while (i < this.bufferLimit) {
+				final char ch = this.buffer[i];
+				if (ch == '\n' || ch == '\r') {
+					break;
+				}
+				i++;
+			}
+
+			final int count = i - this.bufferPosition;
+			ensureScratch(this.scratchLength + count);
+			System.arraycopy(this.buffer, this.bufferPosition, this.scratch,
+					this.scratchLength, count);
+			this.scratchLength += count;
+			this.bufferPosition = i;
+
+			if (i < this.bufferLimit) {
+				this.skipLineFeed = (this.buffer[i] == '\r');
+				this.bufferPosition++;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Determine if the scratch buffer holds only white space.
+	 * 
+	 * @return True if the line is blank.
+	 */
+	private boolean isBlankLine() {
+		for (int i = 0; i < this.scratchLength; i++) {
+			if (this.scratch[i] > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parse the line in the scratch buffer into fields. The fields are
+	 * written back over the line, since removing quotes only ever makes it
+	 * shorter.
+	 * 
+	 * @param start
+	 *            Receives the start offset of each field.
+	 * @param end
+	 *            Receives the end offset of each field.
+	 * @return The number of fields on the line, which may be more than the
+	 *         arrays hold.
+	 */
+	private int parseScratch(final int[] start, final int[] end) {
+		if (this.format.getSeparator() == ' ') {
+			return parseScratchSpaceSep(start, end);
+		}
+
+		final char separator = this.format.getSeparator();
+		final char[] line = this.scratch;
+		final int length = this.scratchLength;
+		int count = 0;
+		int write = 0;
+		int itemStart = 0;
+		boolean quoted = false;
+		boolean hadQuotes = false;
+
+		for (int i = 0; i < length; i++) {
+			final char ch = line[i];
+			if ((ch == separator) && !quoted) {
+				addField(start, end, count++, itemStart, write, hadQuotes);
+				itemStart = write;
+				quoted = false;
+				hadQuotes = false;
+			} else if ((ch == '\"') && quoted) {
+				if ((i + 1) < length && line[i + 1] == '\"') {
+					i++;
+					line[write++] = '\"';
+				} else {
+					quoted = false;
+				}
+			} else if ((ch == '\"') && (write == itemStart)) {
+				hadQuotes = true;
+				quoted = true;
+			} else {
+				line[write++] = ch;
+			}
+		}
+
+		if (write > itemStart) {
+			addField(start, end, count++, itemStart, write, hadQuotes);
+		}
+
+		this.scratchLength = write;
+		return count;
+	}
+
+	/**
+	 * Parse a space separated line in the scratch buffer into fields.
+	 * 
+	 * @param start
+	 *            Receives the start offset of each field.
+	 * @param end
+	 *            Receives the end offset of each field.
+	 * @return The number of fields on the line.
+	 */
+	private int parseScratchSpaceSep(final int[] start, final int[] end) {
+		final List<String> tok = this.parseLine.parse(new String(
+				this.scratch, 0, this.scratchLength));
+		int write = 0;
+		int count = 0;
+		for (final String str : tok) {
+			str.getChars(0, str.length(), this.scratch, write);
+			addField(start, end, count++, write, write + str.length(), true);
+			write += str.length();
+		}
+		this.scratchLength = write;
+		return count;
+	}
+
+	/**
+	 * Record the offsets of one field, trimming it if it was not quoted.
+	 * Fields beyond the column count are ignored.
+	 * 
+	 * @param start
+	 *            The start offsets.
+	 * @param end
+	 *            The end offsets.
+	 * @param index
+	 *            The field index.
+	 * @param from
+	 *            The offset of the first character of the field.
+	 * @param to
+	 *            The offset after the last character of the field.
+	 * @param hadQuotes
+	 *            True if the field was quoted.
+	 */
+	private void addField(final int[] start, final int[] end,
+			final int index, final int from, final int to,
+			final boolean hadQuotes) {
+		if (index >= start.length) {
+			return;
+		}
+
+		int first = from;
+		int last = to;
+		if (!hadQuotes) {
+			while (first < last && this.scratch[first] <= ' ') {
+				first++;
+			}
+			while (last > first && this.scratch[last - 1] <= ' ') {
+				last--;
+			}
+		}
+		start[index] = first;
+		end[index] = last;
 	}
 
 	/**
@@ -360,28 +708,38 @@ public class ReadCSV {
 	public boolean next() {
 
 		try {
-			String line = null;
 			do {
-				line = this.reader.readLine();
-			} while( (line!=null) && line.trim().length()==0 );
-			
-			if (line == null) {
-				return false;
-			}
+				if (!readLine()) {
+					return false;
+				}
+			} while (isBlankLine());
 
 			if (this.data == null) {
-				initData(line);
+				// a line can not have more fields than characters
+				final int[] start = new int[this.scratchLength + 1];
+				final int[] end = new int[this.scratchLength + 1];
+				final int count = parseScratch(start, end);
+				initData(count);
+				System.arraycopy(start, 0, this.nextStart, 0, count);
+				System.arraycopy(end, 0, this.nextEnd, 0, count);
+				swapRecord();
+				return true;
 			}
 
-			final List<String> tok = this.parseLine.parse(line);
-
-			int i = 0;
-			for (final String str : tok) {
-				if (i < this.data.length) {
-					this.data[i++] = str;
-				}
+			final int count = parseScratch(this.nextStart, this.nextEnd);
+
+			// columns missing from a short line keep their last value
+			for (int i = count; i < this.data.length; i++) {
+				final int length = this.fieldEnd[i] - this.fieldStart[i];
+				ensureScratch(this.scratchLength + length);
+				System.arraycopy(this.record, this.fieldStart[i],
+						this.scratch, this.scratchLength, length);
+				this.nextStart[i] = this.scratchLength;
+				this.nextEnd[i] = this.scratchLength + length;
+				this.scratchLength += length;
 			}
 
+			swapRecord();
 			return true;
 		} catch (final IOException e) {
 			throw new EncogError(e);
@@ -399,12 +757,65 @@ public class ReadCSV {
 
 	public boolean hasMissing() {
 		for(int i=0;i<this.data.length;i++ ) {
-			String s = this.data[i].trim();
-			if( s.length()==0 || s.equals("?") ) {
+			if( isMissing(i) ) {
 				return true;
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * Determine if the specified column is missing, that is empty or a
+	 * question mark.
+	 * 
+	 * @param index
+	 *            The column index, starting at zero.
+	 * @return True if the column is missing.
+	 */
+	public boolean isMissing(final int index) {
+		int first = this.fieldStart[index];
+		int last = this.fieldEnd[index];
+		while (first < last && this.record[first] <= ' ') {
+			first++;
+		}
+		while (last > first && this.record[last - 1] <= ' ') {
+			last--;
+		}
+		final int length = last - first;
+		return length == 0 || (length == 1 && this.record[first] == '?');
+	}
+
+	/**
+	 * Get the buffer that holds the fields of the current record. The
+	 * buffer is only valid until the next call to next, and should not be
+	 * modified. Use getFieldStart and getFieldEnd to locate a field.
+	 * 
+	 * @return The record buffer.
+	 */
+	public char[] getRecordBuffer() {
+		return this.record;
+	}
+
+	/**
+	 * Get the offset in the record buffer where a column starts.
+	 * 
+	 * @param index
+	 *            The column index, starting at zero.
+	 * @return The offset of the first character.
+	 */
+	public int getFieldStart(final int index) {
+		return this.fieldStart[index];
+	}
+
+	/**
+	 * Get the offset in the record buffer where a column ends.
+	 * 
+	 * @param index
+	 *            The column index, starting at zero.
+	 * @return The offset after the last character.
+	 */
+	public int getFieldEnd(final int index) {
+		return this.fieldEnd[index];
+	}
+
 }
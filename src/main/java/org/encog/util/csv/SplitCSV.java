@@ -0,0 +1,371 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.util.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.encog.EncogError;
+import org.encog.util.concurrency.DetermineWorkload;
+
+/**
+ * Split a CSV file into chunks of bytes that start and end on line
+ * boundaries, so that each chunk can be read by its own ReadCSV on its own
+ * thread. The chunks share one file channel, and are read with positional
+ * reads.
+ * 
+ * Chunks are split on line feed bytes, so the file must use an encoding that
+ * is ASCII compatible, such as UTF-8 or ISO-8859-1. Quoted fields can not
+ * span lines, which is also true of ReadCSV.
+ */
+public class SplitCSV {
+
+	/**
+	 * The largest chunk. Large files are split into more chunks than there
+	 * are threads, so that the threads stay busy.
+	 */
+	public static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * The size of the buffer used to scan the file.
+	 */
+	public static final int SCAN_BUFFER_SIZE = 65536;
+
+	/**
+	 * Reads a range of the file.
+	 */
+	private class ChunkInputStream extends InputStream {
+
+		/**
+		 * The next position to read.
+		 */
+		private long position;
+
+		/**
+		 * The position where the range ends.
+		 */
+		private final long end;
+
+		/**
+		 * Construct the stream.
+		 * 
+		 * @param theStart
+		 *            The position where the range starts.
+		 * @param theEnd
+		 *            The position where the range ends.
+		 */
+		public ChunkInputStream(final long theStart, final long theEnd) {
+			this.position = theStart;
+			this.end = theEnd;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : (b[0] & 0xff);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			if (this.position >= this.end) {
+				return -1;
+			}
+			final int count = (int) Math.min(len, this.end - this.position);
+			final int read = channel.read(ByteBuffer.wrap(b, off, count),
+					this.position);
+			if (read > 0) {
+				this.position += read;
+			}
+			return read;
+		}
+	}
+
+	/**
+	 * The file being split.
+	 */
+	private final RandomAccessFile file;
+
+	/**
+	 * The channel that the file is read from.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The chunk boundaries, chunk i covers bounds[i] to bounds[i+1].
+	 */
+	private long[] bounds;
+
+	/**
+	 * Split a file.
+	 * 
+	 * @param theFile
+	 *            The file to split.
+	 * @param headers
+	 *            True if the file has a header line. The header line is not
+	 *            part of any chunk.
+	 * @param threadCount
+	 *            The number of threads that will read the chunks, zero for
+	 *            automatic.
+	 */
+	public SplitCSV(final File theFile, final boolean headers,
+			final int threadCount) {
+		try {
+			this.file = new RandomAccessFile(theFile, "r");
+			this.channel = this.file.getChannel();
+			final long dataStart = headers ? findHeaderEnd() : 0;
+			split(dataStart, this.channel.size(), threadCount);
+		} catch (final IOException ex) {
+			throw new EncogError(ex);
+		}
+	}
+
+	/**
+	 * Find the end of the header line, the same way that ReadCSV reads it.
+	 * 
+	 * @return The position of the first data line.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private long findHeaderEnd() throws IOException {
+		final ByteBuffer buffer = ByteBuffer
+				.allocate(SplitCSV.SCAN_BUFFER_SIZE);
+		long position = 0;
+		boolean sawReturn = false;
+
+		for (;;) {
+			buffer.clear();
+			final int read = this.channel.read(buffer, position);
+			if (read <= 0) {
+				return position;
+			}
+			for (int i = 0; i < read; i++) {
+				final byte b = buffer.get(i);
+				if (sawReturn) {
+					return b == '\n' ? position + i + 1 : position + i;
+				}
+				if (b == '\n') {
+					return position + i + 1;
+				}
+				sawReturn = (b == '\r');
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Find the start of the first line at or after a position.
+	 * 
+	 * @param from
+	 *            The position to search from.
+	 * @param size
+	 *            The size of the file.
+	 * @return The start of the line.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private long findLineStart(final long from, final long size)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer
+				.allocate(SplitCSV.SCAN_BUFFER_SIZE);
+
+		// a line starts here if the byte before it ends a line
+		long position = from - 1;
+		while (position < size) {
+			buffer.clear();
+			final int read = this.channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Split the data part of the file into chunks.
+	 * 
+	 * @param dataStart
+	 *            The position of the first data line.
+	 * @param size
+	 *            The size of the file.
+	 * @param threadCount
+	 *            The number of threads, zero for automatic.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private void split(final long dataStart, final long size,
+			final int threadCount) throws IOException {
+		final long length = size - dataStart;
+
+		if (length <= 0) {
+			this.bounds = new long[] { dataStart, dataStart };
+			return;
+		}
+
+		final DetermineWorkload determine = new DetermineWorkload(
+				threadCount, (int) Math.min(Integer.MAX_VALUE, length));
+		final int chunks = (int) Math.max(determine.getThreadCount(),
+				(length + SplitCSV.MAX_CHUNK_SIZE - 1)
+						/ SplitCSV.MAX_CHUNK_SIZE);
+
+		this.bounds = new long[chunks + 1];
+		this.bounds[0] = dataStart;
+		for (int i = 1; i < chunks; i++) {
+			final long nominal = dataStart + ((length * i) / chunks);
+			this.bounds[i] = Math.max(this.bounds[i - 1],
+					findLineStart(nominal, size));
+		}
+		this.bounds[chunks] = size;
+	}
+
+	/**
+	 * @return The number of chunks.
+	 */
+	public int getChunkCount() {
+		return this.bounds.length - 1;
+	}
+
+	/**
+	 * Get the position where a chunk starts.
+	 * 
+	 * @param chunk
+	 *            The chunk.
+	 * @return The position of the first byte of the chunk.
+	 */
+	public long getChunkStart(final int chunk) {
+		return this.bounds[chunk];
+	}
+
+	/**
+	 * Get the position where a chunk ends.
+	 * 
+	 * @param chunk
+	 *            The chunk.
+	 * @return The position after the last byte of the chunk.
+	 */
+	public long getChunkEnd(final int chunk) {
+		return this.bounds[chunk + 1];
+	}
+
+	/**
+	 * Count the rows in a chunk. A row is any line that is not blank, which
+	 * is what ReadCSV reads.
+	 * 
+	 * @param chunk
+	 *            The chunk to count.
+	 * @return The number of rows.
+	 */
+	public long countRows(final int chunk) {
+		final ByteBuffer buffer = ByteBuffer
+				.allocate(SplitCSV.SCAN_BUFFER_SIZE);
+		final long end = this.bounds[chunk + 1];
+		long position = this.bounds[chunk];
+		long count = 0;
+		boolean blank = true;
+
+		try {
+			while (position < end) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), end
+						- position));
+				final int read = this.channel.read(buffer, position);
+				if (read <= 0) {
+					break;
+				}
+				for (int i = 0; i < read; i++) {
+					final int b = buffer.get(i) & 0xff;
+					if (b == '\n' || b == '\r') {
+						if (!blank) {
+							count++;
+						}
+						blank = true;
+					} else if (b > ' ') {
+						blank = false;
+					}
+				}
+				position += read;
+			}
+		} catch (final IOException ex) {
+			throw new EncogError(ex);
+		}
+
+		if (!blank) {
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Open a stream that reads one chunk.
+	 * 
+	 * @param chunk
+	 *            The chunk to read.
+	 * @return The stream.
+	 */
+	public InputStream openChunk(final int chunk) {
+		return new ChunkInputStream(this.bounds[chunk],
+				this.bounds[chunk + 1]);
+	}
+
+	/**
+	 * Open a CSV reader for one chunk. The chunk has no header line.
+	 * 
+	 * @param chunk
+	 *            The chunk to read.
+	 * @param format
+	 *            The format of the file.
+	 * @return The reader.
+	 */
+	public ReadCSV readChunk(final int chunk, final CSVFormat format) {
+		return new ReadCSV(openChunk(chunk), false, format);
+	}
+
+	/**
+	 * Close the file.
+	 */
+	public void close() {
+		try {
+			this.file.close();
+		} catch (final IOException ex) {
+			throw new EncogError(ex);
+		}
+	}
+}
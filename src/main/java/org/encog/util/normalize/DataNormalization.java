@@ -116,6 +116,9 @@ import org.encog.util.obj.ReflectionUtil;
  * output. The second pass actually performs the normalization and writes to the
  * target. Both passes are performed when the process method is called.
  * 
+ * Once the statistics are known, a NormalizationPlan can compile simple
+ * normalizations to run again in a single pass, on several threads.
+ * 
  */
 public class DataNormalization implements Serializable {
 
@@ -0,0 +1,735 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.util.normalize;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.encog.mathutil.IntRange;
+import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataPair;
+import org.encog.util.concurrency.DetermineWorkload;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.EngineTask;
+import org.encog.util.concurrency.MultiThreadable;
+import org.encog.util.concurrency.TaskGroup;
+import org.encog.util.csv.ReadCSV;
+import org.encog.util.csv.SplitCSV;
+import org.encog.util.normalize.input.InputField;
+import org.encog.util.normalize.input.InputFieldCSV;
+import org.encog.util.normalize.input.InputFieldMLDataSet;
+import org.encog.util.normalize.output.OutputField;
+import org.encog.util.normalize.output.OutputFieldDirect;
+import org.encog.util.normalize.output.OutputFieldRangeMapped;
+import org.encog.util.normalize.target.NormalizationStorage;
+
+/**
+ * A compiled form of a DataNormalization, that normalizes in one streaming
+ * pass using statistics that are already known. The statistics come from an
+ * earlier call to DataNormalization.process, from a saved DataNormalization,
+ * or from min and max values set on the input fields.
+ * 
+ * The output fields are compiled into flat arrays, one entry per output
+ * value, that give the input column and the range mapping to apply. The
+ * input is split into chunks that are normalized on separate threads, in
+ * batches of rows. The batches are written to the storage target in order,
+ * so the output is the same as DataNormalization would write. The writing
+ * thread normalizes any chunk that no pool thread has started by the time it
+ * is needed, so the plan also completes when the pool is shut down, or when
+ * it is run from a pool thread with no other thread free.
+ * 
+ * Only some configurations can be compiled. All input fields must read the
+ * same CSV file, or all must read the same data set. The output fields must
+ * be OutputFieldDirect or OutputFieldRangeMapped, and there can be no
+ * segregators. Other configurations are rejected with a NormalizationError,
+ * and should use DataNormalization.process.
+ */
+public class NormalizationPlan implements MultiThreadable {
+
+	/**
+	 * The number of rows in a batch.
+	 */
+	public static final int BATCH_SIZE = 1024;
+
+	/**
+	 * The number of batches that a chunk may have waiting to be written.
+	 */
+	public static final int MAX_PENDING_BATCHES = 4;
+
+	/**
+	 * Marks the end of a chunk's batches.
+	 */
+	private static final double[] END = new double[0];
+
+	/**
+	 * Normalizes one chunk of the input.
+	 */
+	private abstract class ChunkTask implements EngineTask {
+
+		/**
+		 * The batches waiting to be written, or null to write directly.
+		 */
+		private final BlockingQueue<double[]> pending;
+
+		/**
+		 * Set once a thread has started the chunk.
+		 */
+		private final AtomicBoolean started = new AtomicBoolean();
+
+		/**
+		 * True if the chunk is being run by the writing thread, and so
+		 * writes directly rather than through the queue.
+		 */
+		private boolean direct;
+
+		/**
+		 * The current batch.
+		 */
+		private double[] batch;
+
+		/**
+		 * The number of rows in the current batch.
+		 */
+		private int rows;
+
+		/**
+		 * The input values of the current row.
+		 */
+		protected final double[] values;
+
+		/**
+		 * Construct the task.
+		 * 
+		 * @param thePending
+		 *            The batches waiting to be written, or null to write
+		 *            directly.
+		 */
+		public ChunkTask(final BlockingQueue<double[]> thePending) {
+			this.pending = thePending;
+			this.values = new double[NormalizationPlan.this.columns.length];
+			this.batch = new double[NormalizationPlan.BATCH_SIZE
+					* NormalizationPlan.this.outputCount];
+		}
+
+		/**
+		 * Read the rows of the chunk. For each row, fill the values and call
+		 * addRow.
+		 */
+		protected abstract void readRows();
+
+		/**
+		 * Normalize the current values into the batch.
+		 */
+		protected void addRow() {
+			final int[] source = NormalizationPlan.this.source;
+			final double[] min = NormalizationPlan.this.min;
+			final double[] span = NormalizationPlan.this.span;
+			final double[] low = NormalizationPlan.this.low;
+			final double[] width = NormalizationPlan.this.width;
+
+			int index = this.rows * NormalizationPlan.this.outputCount;
+			for (int i = 0; i < source.length; i++) {
+				final double value = this.values[source[i]];
+				this.batch[index++] = ((value - min[i]) / span[i]) * width[i]
+						+ low[i];
+			}
+
+			this.rows++;
+			if (this.rows == NormalizationPlan.BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		/**
+		 * Hand the current batch on to be written.
+		 */
+		private void flush() {
+			if (this.rows == 0) {
+				return;
+			}
+			final int length = this.rows * NormalizationPlan.this.outputCount;
+			if (this.pending == null || this.direct) {
+				write(this.batch, length);
+			} else {
+				put(Arrays.copyOf(this.batch, length));
+			}
+			this.rows = 0;
+		}
+
+		/**
+		 * Queue a batch to be written.
+		 * 
+		 * @param b
+		 *            The batch.
+		 */
+		private void put(final double[] b) {
+			try {
+				this.pending.put(b);
+			} catch (final InterruptedException ex) {
+				throw new NormalizationError(ex);
+			}
+		}
+
+		/**
+		 * Claim the chunk, so that only one thread runs it.
+		 * 
+		 * @return True if the chunk had not been started.
+		 */
+		public boolean claim() {
+			return this.started.compareAndSet(false, true);
+		}
+
+		/**
+		 * Run the chunk on the writing thread, writing the batches directly.
+		 * Every earlier chunk must already have been written.
+		 */
+		public void runDirect() {
+			this.direct = true;
+			normalize();
+		}
+
+		/**
+		 * Normalize the rows of the chunk.
+		 */
+		private void normalize() {
+			try {
+				if (NormalizationPlan.this.error == null) {
+					readRows();
+					flush();
+				}
+			} catch (final Throwable t) {
+				fail(t);
+			}
+		}
+
+		/**
+		 * Run the chunk on a pool thread, queuing the batches. Does nothing
+		 * if the chunk was already claimed, or if the pool ran the task on
+		 * the writing thread itself, which will claim the chunk in turn.
+		 */
+		@Override
+		public void run() {
+			if (this.pending == null) {
+				normalize();
+				return;
+			}
+			if (Thread.currentThread() == NormalizationPlan.this.writer
+					|| !claim()) {
+				return;
+			}
+			try {
+				normalize();
+			} finally {
+				put(NormalizationPlan.END);
+			}
+		}
+	}
+
+	/**
+	 * Normalizes one chunk of a CSV file.
+	 */
+	private class CSVChunkTask extends ChunkTask {
+
+		/**
+		 * The split file.
+		 */
+		private final SplitCSV split;
+
+		/**
+		 * The chunk to read.
+		 */
+		private final int chunk;
+
+		/**
+		 * Construct the task.
+		 * 
+		 * @param thePending
+		 *            The batches waiting to be written, or null to write
+		 *            directly.
+		 * @param theSplit
+		 *            The split file.
+		 * @param theChunk
+		 *            The chunk to read.
+		 */
+		public CSVChunkTask(final BlockingQueue<double[]> thePending,
+				final SplitCSV theSplit, final int theChunk) {
+			super(thePending);
+			this.split = theSplit;
+			this.chunk = theChunk;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void readRows() {
+			final int[] columns = NormalizationPlan.this.columns;
+			final ReadCSV csv = this.split.readChunk(this.chunk,
+					NormalizationPlan.this.norm.getCSVFormat());
+			try {
+				while (csv.next() && NormalizationPlan.this.error == null) {
+					for (int i = 0; i < columns.length; i++) {
+						this.values[i] = csv.getDouble(columns[i]);
+					}
+					addRow();
+				}
+			} finally {
+				csv.close();
+			}
+		}
+	}
+
+	/**
+	 * Normalizes a range of the records of a data set.
+	 */
+	private class DataSetChunkTask extends ChunkTask {
+
+		/**
+		 * The first record.
+		 */
+		private final int low;
+
+		/**
+		 * The last record.
+		 */
+		private final int high;
+
+		/**
+		 * Construct the task.
+		 * 
+		 * @param thePending
+		 *            The batches waiting to be written, or null to write
+		 *            directly.
+		 * @param theLow
+		 *            The first record.
+		 * @param theHigh
+		 *            The last record.
+		 */
+		public DataSetChunkTask(final BlockingQueue<double[]> thePending,
+				final int theLow, final int theHigh) {
+			super(thePending);
+			this.low = theLow;
+			this.high = theHigh;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void readRows() {
+			final int[] columns = NormalizationPlan.this.columns;
+			final MLDataSet set = NormalizationPlan.this.dataSet
+					.openAdditional();
+			final MLDataPair pair = BasicMLDataPair.createPair(
+					set.getInputSize(), set.getIdealSize());
+			final int inputSize = set.getInputSize();
+
+			try {
+				for (int r = this.low; r <= this.high
+						&& NormalizationPlan.this.error == null; r++) {
+					set.getRecord(r, pair);
+					for (int i = 0; i < columns.length; i++) {
+						final int offset = columns[i];
+						if (offset < inputSize) {
+							this.values[i] = pair.getInputArray()[offset];
+						} else {
+							this.values[i] = pair.getIdealArray()[offset
+									- inputSize];
+						}
+					}
+					addRow();
+				}
+			} finally {
+				set.close();
+			}
+		}
+	}
+
+	/**
+	 * The normalization that was compiled.
+	 */
+	private final DataNormalization norm;
+
+	/**
+	 * The CSV file that is read, or null if a data set is read.
+	 */
+	private File file;
+
+	/**
+	 * The data set that is read, or null if a CSV file is read.
+	 */
+	private MLDataSet dataSet;
+
+	/**
+	 * The CSV column, or data set offset, of each input that is read.
+	 */
+	private final int[] columns;
+
+	/**
+	 * The input that each output value is calculated from.
+	 */
+	private final int[] source;
+
+	/**
+	 * The minimum of the input, for each output value.
+	 */
+	private final double[] min;
+
+	/**
+	 * The range of the input, max minus min, for each output value.
+	 */
+	private final double[] span;
+
+	/**
+	 * The low end of the output range, for each output value.
+	 */
+	private final double[] low;
+
+	/**
+	 * The width of the output range, high minus low, for each output value.
+	 */
+	private final double[] width;
+
+	/**
+	 * The number of output values in a row.
+	 */
+	private final int outputCount;
+
+	/**
+	 * The number of threads to use, zero for automatic.
+	 */
+	private int threadCount;
+
+	/**
+	 * The first error from a chunk, if any.
+	 */
+	private volatile Throwable error;
+
+	/**
+	 * The thread that writes the batches to the storage target.
+	 */
+	private volatile Thread writer;
+
+	/**
+	 * The row that is passed to the storage target.
+	 */
+	private double[] row;
+
+	/**
+	 * The number of rows written.
+	 */
+	private long written;
+
+	/**
+	 * Compile a normalization.
+	 * 
+	 * @param theNorm
+	 *            The normalization to compile.
+	 */
+	public NormalizationPlan(final DataNormalization theNorm) {
+		this.norm = theNorm;
+
+		if (!theNorm.getSegregators().isEmpty()) {
+			throw new NormalizationError(
+					"Segregators can not be used with a compiled "
+							+ "normalization plan.");
+		}
+
+		final List<OutputField> outputs = theNorm.getOutputFields();
+		this.outputCount = outputs.size();
+		if (this.outputCount == 0) {
+			throw new NormalizationError("There are no output fields.");
+		}
+		this.source = new int[this.outputCount];
+		this.min = new double[this.outputCount];
+		this.span = new double[this.outputCount];
+		this.low = new double[this.outputCount];
+		this.width = new double[this.outputCount];
+
+		final Map<InputField, Integer> inputs = new HashMap<InputField, Integer>();
+		final List<Integer> cols = new ArrayList<Integer>();
+
+		for (int i = 0; i < this.outputCount; i++) {
+			final OutputField output = outputs.get(i);
+			InputField field;
+
+			if (output instanceof OutputFieldRangeMapped) {
+				final OutputFieldRangeMapped mapped = 
+					(OutputFieldRangeMapped) output;
+				field = mapped.getField();
+				if (Double.isInfinite(field.getMin())
+						|| Double.isInfinite(field.getMax())) {
+					throw new NormalizationError(
+							"The min and max of each range mapped input "
+									+ "must be known to compile a plan.");
+				}
+				this.min[i] = field.getMin();
+				this.span[i] = field.getMax() - field.getMin();
+				this.low[i] = mapped.getLow();
+				this.width[i] = mapped.getHigh() - mapped.getLow();
+			} else if (output instanceof OutputFieldDirect) {
+				field = ((OutputFieldDirect) output).getSourceField();
+				this.span[i] = 1;
+				this.width[i] = 1;
+			} else {
+				throw new NormalizationError("Output field type "
+						+ output.getClass().getSimpleName()
+						+ " can not be compiled.");
+			}
+
+			Integer index = inputs.get(field);
+			if (index == null) {
+				index = cols.size();
+				inputs.put(field, index);
+				cols.add(addInput(field));
+			}
+			this.source[i] = index;
+		}
+
+		this.columns = new int[cols.size()];
+		for (int i = 0; i < this.columns.length; i++) {
+			this.columns[i] = cols.get(i);
+		}
+	}
+
+	/**
+	 * Check that an input field reads the same source as the others.
+	 * 
+	 * @param field
+	 *            The input field.
+	 * @return The CSV column, or data set offset, of the field.
+	 */
+	private int addInput(final InputField field) {
+		if (field instanceof InputFieldCSV) {
+			final InputFieldCSV csvField = (InputFieldCSV) field;
+			if (this.dataSet != null
+					|| (this.file != null && !this.file.equals(csvField
+							.getFile()))) {
+				throw new NormalizationError(
+						"All inputs of a compiled plan must read one source.");
+			}
+			this.file = csvField.getFile();
+			return csvField.getOffset();
+		} else if (field instanceof InputFieldMLDataSet) {
+			final InputFieldMLDataSet setField = (InputFieldMLDataSet) field;
+			if (this.file != null
+					|| (this.dataSet != null && this.dataSet != setField
+							.getNeuralDataSet())) {
+				throw new NormalizationError(
+						"All inputs of a compiled plan must read one source.");
+			}
+			this.dataSet = setField.getNeuralDataSet();
+			return setField.getOffset();
+		} else {
+			throw new NormalizationError("Input field type "
+					+ field.getClass().getSimpleName()
+					+ " can not be compiled.");
+		}
+	}
+
+	/**
+	 * Record the first error from a chunk.
+	 * 
+	 * @param t
+	 *            The error.
+	 */
+	private synchronized void fail(final Throwable t) {
+		if (this.error == null) {
+			this.error = t;
+		}
+	}
+
+	/**
+	 * Write a batch of rows to the storage target.
+	 * 
+	 * @param batch
+	 *            The batch.
+	 * @param length
+	 *            The number of values in the batch.
+	 */
+	private void write(final double[] batch, final int length) {
+		final NormalizationStorage storage = this.norm.getStorage();
+		for (int i = 0; i < length; i += this.outputCount) {
+			System.arraycopy(batch, i, this.row, 0, this.outputCount);
+			storage.write(this.row, 0);
+			this.written++;
+		}
+	}
+
+	/**
+	 * Normalize the input, and write it to the storage target of the
+	 * normalization.
+	 * 
+	 * @return The number of rows written.
+	 */
+	public long process() {
+		final NormalizationStorage storage = this.norm.getStorage();
+		if (storage == null) {
+			throw new NormalizationError("Must define storage target.");
+		}
+
+		this.error = null;
+		this.row = new double[this.outputCount];
+		this.written = 0;
+		SplitCSV split = null;
+		final List<ChunkTask> tasks = new ArrayList<ChunkTask>();
+		final List<BlockingQueue<double[]>> pending = 
+			new ArrayList<BlockingQueue<double[]>>();
+
+		storage.open(this.norm);
+		try {
+			if (this.file != null) {
+				split = new SplitCSV(this.file, false, this.threadCount);
+				final boolean threaded = split.getChunkCount() > 1;
+				for (int i = 0; i < split.getChunkCount(); i++) {
+					final BlockingQueue<double[]> queue = createQueue(threaded);
+					pending.add(queue);
+					tasks.add(new CSVChunkTask(queue, split, i));
+				}
+			} else if (this.dataSet != null) {
+				final int count = (int) this.dataSet.getRecordCount();
+				if (count > 0) {
+					final DetermineWorkload determine = new DetermineWorkload(
+							this.threadCount, count);
+					final boolean threaded = determine.getThreadCount() > 1;
+					for (final IntRange r : determine.calculateWorkers()) {
+						final BlockingQueue<double[]> queue = 
+							createQueue(threaded);
+						pending.add(queue);
+						tasks.add(new DataSetChunkTask(queue, r.getLow(), r
+								.getHigh()));
+					}
+				}
+			}
+
+			if (tasks.size() == 1 && pending.get(0) == null) {
+				tasks.get(0).run();
+			} else if (!tasks.isEmpty()) {
+				writePending(tasks, pending);
+			}
+		} finally {
+			storage.close();
+			if (split != null) {
+				split.close();
+			}
+		}
+
+		if (this.error != null) {
+			throw new NormalizationError(this.error);
+		}
+
+		return this.written;
+	}
+
+	/**
+	 * Create the queue for a chunk's batches.
+	 * 
+	 * @param threaded
+	 *            True if the chunks run on the thread pool.
+	 * @return The queue, or null if the chunk writes directly.
+	 */
+	private static BlockingQueue<double[]> createQueue(final boolean threaded) {
+		if (!threaded) {
+			return null;
+		}
+		return new ArrayBlockingQueue<double[]>(
+				NormalizationPlan.MAX_PENDING_BATCHES);
+	}
+
+	/**
+	 * Run the chunks on the thread pool, and write their batches in chunk
+	 * order. A chunk that no pool thread has started when its turn comes is
+	 * run here, writing directly. Once a chunk fails, the rest are drained
+	 * but not written.
+	 * 
+	 * @param tasks
+	 *            The chunk tasks.
+	 * @param pending
+	 *            The queue of each chunk.
+	 */
+	private void writePending(final List<ChunkTask> tasks,
+			final List<BlockingQueue<double[]>> pending) {
+		final TaskGroup group = EngineConcurrency.getInstance()
+				.createTaskGroup();
+		this.writer = Thread.currentThread();
+
+		try {
+			for (final ChunkTask task : tasks) {
+				EngineConcurrency.getInstance().processTask(task, group);
+			}
+
+			for (int i = 0; i < tasks.size(); i++) {
+				final ChunkTask task = tasks.get(i);
+				if (task.claim()) {
+					task.runDirect();
+					continue;
+				}
+
+				final BlockingQueue<double[]> queue = pending.get(i);
+				for (;;) {
+					final double[] batch = queue.take();
+					if (batch == NormalizationPlan.END) {
+						break;
+					}
+					if (this.error == null) {
+						try {
+							write(batch, batch.length);
+						} catch (final Throwable t) {
+							fail(t);
+						}
+					}
+				}
+			}
+		} catch (final InterruptedException ex) {
+			fail(ex);
+		} finally {
+			group.waitForComplete();
+			this.writer = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getThreadCount() {
+		return this.threadCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setThreadCount(final int numThreads) {
+		this.threadCount = numThreads;
+	}
+}
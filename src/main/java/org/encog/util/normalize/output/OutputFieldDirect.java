@@ -61,6 +61,13 @@ public class OutputFieldDirect extends BasicOutputField {
 		return this.sourceField.getCurrentValue();
 	}
 
+	/**
+	 * @return The source field.
+	 */
+	public InputField getSourceField() {
+		return this.sourceField;
+	}
+
 	/**
 	 * @return Always returns 1, as subfields are not used.
 	 */
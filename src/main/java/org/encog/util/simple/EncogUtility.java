@@ -41,12 +41,11 @@ import org.encog.ml.MLRegression;
 import org.encog.ml.data.MLData;
 import org.encog.ml.data.MLDataPair;
 import org.encog.ml.data.MLDataSet;
-import org.encog.ml.data.basic.BasicMLData;
 import org.encog.ml.data.buffer.BufferedMLDataSet;
+import org.encog.ml.data.buffer.CSVToEGBConverter;
 import org.encog.ml.data.buffer.MemoryDataLoader;
 import org.encog.ml.data.buffer.codec.CSVDataCODEC;
 import org.encog.ml.data.buffer.codec.DataSetCODEC;
-import org.encog.ml.data.specific.CSVNeuralDataSet;
 import org.encog.ml.svm.SVM;
 import org.encog.ml.svm.training.SVMTrain;
 import org.encog.ml.train.MLTrain;
@@ -59,7 +58,6 @@ import org.encog.neural.networks.training.propagation.resilient.ResilientPropaga
 import org.encog.neural.pattern.FeedForwardPattern;
 import org.encog.util.Format;
 import org.encog.util.csv.CSVFormat;
-import org.encog.util.csv.ReadCSV;
 import org.encog.util.logging.EncogLogging;
 
 /**
@@ -85,14 +83,9 @@ public final class EncogUtility {
 			final File binFile, final int inputCount, final int outputCount,
 			final boolean headers) {
 		binFile.delete();
-		final CSVNeuralDataSet csv = new CSVNeuralDataSet(csvFile.toString(),
-				inputCount, outputCount, false);
-		final BufferedMLDataSet buffer = new BufferedMLDataSet(binFile);
-		buffer.beginLoad(inputCount, outputCount);
-		for (final MLDataPair pair : csv) {
-			buffer.add(pair);
-		}
-		buffer.endLoad();
+		final CSVToEGBConverter converter = new CSVToEGBConverter(csvFile,
+				binFile, CSVFormat.ENGLISH, headers, inputCount, outputCount);
+		converter.process();
 	}
 		
     /**
@@ -330,16 +323,8 @@ public final class EncogUtility {
              boolean headers)
     {
 
-        (new File(binFile)).delete();
-        CSVNeuralDataSet csv = new CSVNeuralDataSet(csvFile.toString(),
-               inputCount, outputCount, headers);
-        BufferedMLDataSet buffer = new BufferedMLDataSet(new File(binFile));
-        buffer.beginLoad(inputCount, outputCount);
-        for(MLDataPair pair : csv)
-        {
-            buffer.add(pair);
-        }
-        buffer.endLoad();
+        convertCSV2Binary(new File(csvFile), new File(binFile), inputCount,
+                outputCount, headers);
     }
     
     public static void convertCSV2Binary(File csvFile, CSVFormat format,
@@ -348,30 +333,9 @@ public final class EncogUtility {
    {
 
        binFile.delete();
-       ReadCSV csv = new ReadCSV(csvFile.toString(), headers, format);
-       
-       BufferedMLDataSet buffer = new BufferedMLDataSet(binFile);
-       buffer.beginLoad(input.length, ideal.length);
-       while(csv.next())
-       {
-    	   BasicMLData inputData = new BasicMLData(input.length);
-    	   BasicMLData idealData = new BasicMLData(ideal.length);
-    	   
-    	   // handle input data
-    	   for(int i=0;i<input.length;i++) {
-    		   inputData.setData(i, csv.getDouble(input[i]));
-    	   }
-    	   
-    	   // handle input data
-    	   for(int i=0;i<ideal.length;i++) {
-    		   idealData.setData(i, csv.getDouble(ideal[i]));
-    	   }
-    	   
-    	   // add to dataset
-    	   
-           buffer.add(inputData,idealData);
-       }
-       buffer.endLoad();
+       CSVToEGBConverter converter = new CSVToEGBConverter(csvFile, binFile,
+               format, headers, input, ideal);
+       converter.process();
    }
 
 	public static double calculateRegressionError(MLRegression method,
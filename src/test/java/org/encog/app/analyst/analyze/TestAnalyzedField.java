@@ -0,0 +1,109 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.app.analyst.analyze;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.encog.app.analyst.script.AnalystClassItem;
+import org.encog.app.analyst.script.AnalystScript;
+import org.encog.app.analyst.script.prop.ScriptProperties;
+
+public class TestAnalyzedField extends TestCase {
+
+	private AnalyzedField analyze(AnalystScript script, String[] values,
+			int from, int to) {
+		AnalyzedField field = new AnalyzedField(script, "field");
+		for (int i = from; i < to; i++) {
+			field.analyze(values[i], 0, values[i].length());
+		}
+		return field;
+	}
+
+	private AnalyzedField analyzeSplit(AnalystScript script, String[] values) {
+		AnalyzedField field = new AnalyzedField(script, "field");
+		int third = values.length / 3;
+		field.merge(analyze(script, values, 0, third));
+		field.merge(analyze(script, values, third, third * 2));
+		field.merge(analyze(script, values, third * 2, values.length));
+		field.complete();
+		return field;
+	}
+
+	public void testNumeric() {
+		AnalystScript script = new AnalystScript();
+		String[] values = { "1", "2.5", " 3 ", "?", "-4", "10", "", "7", "8.25", "0" };
+
+		AnalyzedField field = analyzeSplit(script, values);
+		AnalyzedField single = analyze(script, values, 0, values.length);
+		single.complete();
+
+		double sum = 1 + 2.5 + 3 - 4 + 10 + 7 + 8.25 + 0;
+		double mean = sum / 8;
+		double dev = 0;
+		for (double d : new double[] { 1, 2.5, 3, -4, 10, 7, 8.25, 0 }) {
+			dev += (d - mean) * (d - mean);
+		}
+
+		assertEquals(mean, field.getMean(), 1e-12);
+		assertEquals(Math.sqrt(dev / 8), field.getStandardDeviation(), 1e-12);
+		assertEquals(single.getStandardDeviation(),
+				field.getStandardDeviation(), 1e-12);
+		assertEquals(-4.0, field.getMin(), 0);
+		assertEquals(10.0, field.getMax(), 0);
+		assertTrue(field.isReal());
+		assertFalse(field.isInteger());
+		assertFalse(field.isComplete());
+	}
+
+	public void testClasses() {
+		AnalystScript script = new AnalystScript();
+		String[] values = { "b", "a", "c", "a", "b", "a" };
+
+		AnalyzedField field = analyzeSplit(script, values);
+		assertTrue(field.isClass());
+		assertFalse(field.isReal());
+		assertEquals(0.0, field.getStandardDeviation(), 0);
+
+		List<AnalystClassItem> items = field.getAnalyzedClassMembers();
+		assertEquals(3, items.size());
+		assertEquals("a", items.get(0).getCode());
+		assertEquals(3, items.get(0).getCount());
+		assertEquals("b", items.get(1).getCode());
+		assertEquals(2, items.get(1).getCount());
+		assertEquals("c", items.get(2).getCode());
+	}
+
+	public void testClassLimit() {
+		AnalystScript script = new AnalystScript();
+		script.getProperties().setProperty(
+				ScriptProperties.SETUP_CONFIG_MAX_CLASS_COUNT, 3);
+		String[] values = { "a", "b", "c", "a", "b", "d" };
+
+		assertFalse(analyzeSplit(script, values).isClass());
+		assertFalse(analyze(script, values, 0, values.length).isClass());
+		assertTrue(analyze(script, values, 0, 5).isClass());
+	}
+}
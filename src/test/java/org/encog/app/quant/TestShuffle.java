@@ -29,8 +29,12 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
@@ -113,6 +117,61 @@ public class TestShuffle extends TestCase {
 
     }
 
+    private List<String> shuffleLarge(long seed, long budget) throws IOException
+    {
+        ShuffleCSV norm = new ShuffleCSV();
+        norm.analyze(INPUT_NAME, false, CSVFormat.ENGLISH);
+        norm.setProduceOutputHeaders(false);
+        norm.setSeed(seed);
+        norm.setMemoryBudget(budget);
+        norm.process(OUTPUT_NAME);
+
+        BufferedReader tr = new BufferedReader(new FileReader(OUTPUT_NAME));
+        List<String> result = new ArrayList<String>();
+        String line;
+        while ((line = tr.readLine()) != null)
+        {
+            result.add(line);
+        }
+        tr.close();
+        return result;
+    }
+
+    public void testShuffleExternal() throws IOException
+    {
+        PrintWriter tw = new PrintWriter(new FileWriter(INPUT_NAME));
+        for (int i = 0; i < 2000; i++)
+        {
+            tw.println("row" + i + "," + i);
+        }
+        tw.close();
+
+        // a small budget forces the rows through bucket files
+        List<String> first = shuffleLarge(42, 10000);
+        List<String> second = shuffleLarge(42, 10000);
+        List<String> other = shuffleLarge(7, 10000);
+        List<String> memory = shuffleLarge(42, Long.MAX_VALUE);
+
+        Assert.assertEquals(2000, first.size());
+        Assert.assertEquals(2000, new HashSet<String>(first).size());
+        Assert.assertEquals(first, second);
+        Assert.assertFalse(first.equals(other));
+        Assert.assertEquals(new HashSet<String>(first), new HashSet<String>(memory));
+
+        // rows from the end of the file must be able to reach the start
+        Set<String> head = new HashSet<String>(first.subList(0, 100));
+        int late = 0;
+        for (int i = 1000; i < 2000; i++)
+        {
+            if (head.contains("row" + i + "," + i))
+            {
+                late++;
+            }
+        }
+        Assert.assertTrue(late > 20);
+
+        INPUT_NAME.delete();
+        OUTPUT_NAME.delete();
+    }
 
-	
 }
@@ -117,4 +117,41 @@ public class TestSort extends TestCase {
 
 	
 	
+    public void testSortExternal() throws IOException
+    {
+        PrintWriter tw = new PrintWriter(new FileWriter(INPUT_NAME));
+        tw.println("name,key");
+        for (int i = 0; i < 200; i++)
+        {
+            tw.println("row" + i + "," + ((i * 37) % 50));
+        }
+        tw.close();
+
+        SortCSV norm = new SortCSV();
+        norm.getSortOrder().add(new SortedField(1,SortType.SortInteger,true));
+        norm.setMemoryBudget(1);
+        norm.process(INPUT_NAME,OUTPUT_NAME,true,CSVFormat.ENGLISH);
+
+        BufferedReader tr = new BufferedReader(new FileReader(OUTPUT_NAME));
+        Assert.assertEquals("\"name\",\"key\"", tr.readLine());
+
+        // equal keys must keep their input order
+        for (int key = 0; key < 50; key++)
+        {
+            for (int i = 0; i < 200; i++)
+            {
+                if (((i * 37) % 50) == key)
+                {
+                    Assert.assertEquals("\"row" + i + "\"," + key, tr.readLine());
+                }
+            }
+        }
+        Assert.assertNull(tr.readLine());
+
+        tr.close();
+
+        (new File("test.csv")).delete();
+        (new File("test2.csv")).delete();
+    }
+
 }
@@ -0,0 +1,80 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.mathutil.matrices.decomposition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.encog.mathutil.matrices.Matrix;
+import org.junit.Test;
+
+/**
+ * Simple tests for the PackedCholeskyDecomposition object. 
+ */
+public class PackedCholeskyDecompositionTest {
+
+	private double[][] spd = new double[][] {
+			{ 4.0, 1.0, 2.0 },
+			{ 1.0, 3.0, 0.5 },
+			{ 2.0, 0.5, 5.0 }
+	};
+
+	@Test
+	public void testSolveMatchesFullCholesky() {
+		double[] b = { 1.0, -2.0, 3.0 };
+
+		PackedCholeskyDecomposition packed = new PackedCholeskyDecomposition(3);
+		packed.load(spd, 0);
+		assertTrue(packed.decompose());
+		double[] x = new double[3];
+		packed.solve(b, x);
+
+		CholeskyDecomposition full = new CholeskyDecomposition(new Matrix(spd));
+		Matrix expected = full.solve(Matrix.createColumnMatrix(b));
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(expected.get(i, 0), x[i], 1e-10);
+		}
+	}
+
+	@Test
+	public void testDiagonalShiftAndReuse() {
+		double[][] singular = new double[][] {
+				{ 1.0, 1.0 },
+				{ 1.0, 1.0 }
+		};
+		PackedCholeskyDecomposition packed = new PackedCholeskyDecomposition(2);
+
+		packed.load(singular, 0);
+		assertFalse(packed.decompose());
+
+		packed.load(singular, 1.0);
+		assertTrue(packed.decompose());
+		double[] x = new double[] { 3.0, 3.0 };
+		packed.solve(x, x);
+		assertEquals(1.0, x[0], 1e-10);
+		assertEquals(1.0, x[1], 1e-10);
+	}
+}
@@ -101,4 +101,30 @@ public class TestHessian extends TestCase {
 		//dump(testCR, "CR");
 		Assert.assertTrue(testCR.getHessianMatrix().equals(testFD.getHessianMatrix(), 4));
 	}
+	
+	public void testThreadCountIndependent() {
+		
+		BasicNetwork network = new BasicNetwork();
+		network.addLayer(new BasicLayer(null,true,2));
+		network.addLayer(new BasicLayer(new ActivationSigmoid(),true,3));
+		network.addLayer(new BasicLayer(new ActivationSigmoid(),false,2));
+		network.getStructure().finalizeStructure();
+		
+		(new ConsistentRandomizer(-1,1)).randomize(network);
+		
+		MLDataSet trainingData = new BasicMLDataSet(XOR.XOR_INPUT,XOR.XOR_IDEAL2);		
+		
+		HessianCR single = new HessianCR();
+		single.setThreadCount(1);
+		single.init(network, trainingData);
+		single.compute();
+		
+		HessianCR multi = new HessianCR();
+		multi.setThreadCount(4);
+		multi.init(network, trainingData);
+		multi.compute();
+		
+		Assert.assertTrue(multi.getHessianMatrix().equals(single.getHessianMatrix(), 8));
+		Assert.assertEquals(single.getSSE(), multi.getSSE(), 1e-10);
+	}
 }
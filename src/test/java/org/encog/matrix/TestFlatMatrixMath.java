@@ -0,0 +1,109 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.matrix;
+
+import junit.framework.TestCase;
+
+import org.encog.mathutil.matrices.FlatMatrix;
+import org.encog.mathutil.matrices.FlatMatrixMath;
+import org.encog.mathutil.matrices.Matrix;
+import org.encog.mathutil.matrices.MatrixError;
+import org.encog.mathutil.matrices.decomposition.LUDecomposition;
+import org.encog.mathutil.randomize.ConsistentRandomizer;
+
+public class TestFlatMatrixMath extends TestCase {
+	
+	private Matrix createMatrix(int rows, int cols, int seed) {
+		Matrix result = new Matrix(rows,cols);
+		ConsistentRandomizer rand = new ConsistentRandomizer(-1,1,seed);
+		rand.randomize(result);
+		return result;
+	}
+	
+	private Matrix naiveMultiply(Matrix a, Matrix b) {
+		Matrix result = new Matrix(a.getRows(),b.getCols());
+		for(int i=0;i<a.getRows();i++) {
+			for(int j=0;j<b.getCols();j++) {
+				double sum = 0;
+				for(int k=0;k<a.getCols();k++) {
+					sum+=a.get(i,k)*b.get(k,j);
+				}
+				result.set(i,j,sum);
+			}
+		}
+		return result;
+	}
+	
+	public void testMultiplySmall() throws Throwable
+	{
+		double matrixData1[][] = {{1,2},{3,4}};
+		double matrixData2[][] = {{5,6},{7,8}};
+		double checkData[][] = {{19,22},{43,50}};
+		
+		FlatMatrix product = FlatMatrixMath.multiply(new FlatMatrix(matrixData1), new FlatMatrix(matrixData2));
+		TestCase.assertTrue(product.equals(new FlatMatrix(checkData),8));
+	}
+	
+	public void testMultiplyLargeThreaded() throws Throwable
+	{
+		Matrix a = createMatrix(150,130,1);
+		Matrix b = createMatrix(130,170,2);
+		Matrix check = naiveMultiply(a,b);
+		
+		FlatMatrix result = new FlatMatrix(150,170);
+		FlatMatrixMath.multiply(new FlatMatrix(a), new FlatMatrix(b), result, 4);
+		TestCase.assertTrue(result.toMatrix().equals(check,8));
+	}
+	
+	public void testMultiplyBadSize() throws Throwable
+	{
+		try {
+			FlatMatrixMath.multiply(new FlatMatrix(2,3), new FlatMatrix(2,3));
+			TestCase.assertTrue(false);
+		} catch(MatrixError e) {
+		}
+	}
+	
+	public void testTranspose() throws Throwable
+	{
+		Matrix a = createMatrix(70,90,3);
+		FlatMatrix t = FlatMatrixMath.transpose(new FlatMatrix(a));
+		TestCase.assertEquals(90, t.getRows());
+		TestCase.assertEquals(70, t.getCols());
+		for(int r=0;r<a.getRows();r++) {
+			for(int c=0;c<a.getCols();c++) {
+				TestCase.assertEquals(a.get(r,c), t.get(c,r));
+			}
+		}
+	}
+	
+	public void testLUFlat() throws Throwable
+	{
+		Matrix a = createMatrix(20,20,4);
+		Matrix b = createMatrix(20,3,5);
+		Matrix check = new LUDecomposition(a).solve(b);
+		FlatMatrix x = new LUDecomposition(new FlatMatrix(a)).solve(new FlatMatrix(b));
+		TestCase.assertTrue(x.toMatrix().equals(check,8));
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.ml.bayesian;
+
+import junit.framework.TestCase;
+
+import org.encog.ml.bayesian.query.BayesianQuery;
+import org.encog.ml.bayesian.query.elimination.EliminationQuery;
+import org.encog.ml.bayesian.query.enumerate.EnumerationQuery;
+
+public class TestEliminationQuery extends TestCase {
+
+	private BayesianNetwork createNetwork() {
+		// a diamond, a -> b, a -> c, (b,c) -> d, with a barren event e below d
+		BayesianNetwork network = new BayesianNetwork();
+		BayesianEvent a = network.createEvent("a");
+		BayesianEvent b = network.createEvent("b");
+		BayesianEvent c = network.createEvent("c");
+		BayesianEvent d = network.createEvent("d");
+		BayesianEvent e = network.createEvent("e");
+
+		network.createDependency(a, b, c);
+		network.createDependency(b, d);
+		network.createDependency(c, d);
+		network.createDependency(d, e);
+		network.finalizeStructure();
+
+		a.getTable().addLine(0.3, true);
+		b.getTable().addLine(0.7, true, true);
+		b.getTable().addLine(0.1, true, false);
+		c.getTable().addLine(0.4, true, true);
+		c.getTable().addLine(0.9, true, false);
+		d.getTable().addLine(0.95, true, true, true);
+		d.getTable().addLine(0.6, true, true, false);
+		d.getTable().addLine(0.3, true, false, true);
+		d.getTable().addLine(0.05, true, false, false);
+		e.getTable().addLine(0.8, true, true);
+		e.getTable().addLine(0.2, true, false);
+		network.validate();
+		return network;
+	}
+
+	private void compare(BayesianNetwork network, String evidence,
+			String outcome, boolean[] values) {
+		BayesianQuery[] queries = new BayesianQuery[] {
+				new EnumerationQuery(network), new EliminationQuery(network) };
+		double[] results = new double[queries.length];
+
+		for (int i = 0; i < queries.length; i++) {
+			BayesianQuery query = queries[i];
+			int index = 0;
+			for (String name : evidence.split(",")) {
+				BayesianEvent event = network.getEvent(name);
+				query.defineEventType(event, EventType.Evidence);
+				query.setEventValue(event, values[index++]);
+			}
+			for (String name : outcome.split(",")) {
+				BayesianEvent event = network.getEvent(name);
+				query.defineEventType(event, EventType.Outcome);
+				query.setEventValue(event, values[index++]);
+			}
+			query.execute();
+			results[i] = query.getProbability();
+		}
+
+		assertEquals(results[0], results[1], 1e-10);
+	}
+
+	public void testDiamond() {
+		BayesianNetwork network = createNetwork();
+		compare(network, "a", "d", new boolean[] { true, true });
+		compare(network, "d", "a", new boolean[] { true, true });
+		compare(network, "b,e", "c", new boolean[] { false, true, true });
+		compare(network, "e", "a,b", new boolean[] { false, true, false });
+	}
+
+	public void testNoEvidence() {
+		BayesianNetwork network = createNetwork();
+		BayesianEvent d = network.getEvent("d");
+		EliminationQuery query = new EliminationQuery(network);
+		query.defineEventType(d, EventType.Outcome);
+		query.setEventValue(d, true);
+		query.execute();
+
+		EnumerationQuery enumeration = new EnumerationQuery(network);
+		enumeration.defineEventType(d, EventType.Outcome);
+		enumeration.setEventValue(d, true);
+		enumeration.execute();
+
+		assertEquals(enumeration.getProbability(), query.getProbability(),
+				1e-10);
+	}
+
+	public void testCompiledCache() {
+		BayesianNetwork network = createNetwork();
+		CompiledBayesianNetwork compiled = network.getCompiled();
+		assertSame(compiled, network.getCompiled());
+		assertEquals(5, compiled.getEliminationOrder().length);
+		assertEquals(0.3, compiled.getProbability(0, new int[] { 0 }), 1e-10);
+	}
+}
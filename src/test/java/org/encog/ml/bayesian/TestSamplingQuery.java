@@ -26,6 +26,9 @@ package org.encog.ml.bayesian;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import org.encog.mathutil.randomize.factory.BasicRandomFactory;
+import org.encog.ml.bayesian.query.BasicQuery;
+import org.encog.ml.bayesian.query.enumerate.EnumerationQuery;
 import org.encog.ml.bayesian.query.sample.SamplingQuery;
 
 public class TestSamplingQuery extends TestCase {
@@ -116,6 +119,75 @@ public class TestSamplingQuery extends TestCase {
 		query.execute();
 		testPercent(query.getProbability(),50);
 	}
-	
-	
+
+	private BayesianNetwork createChain() {
+		BayesianNetwork network = new BayesianNetwork();
+		BayesianEvent a = network.createEvent("a");
+		BayesianEvent b = network.createEvent("b");
+		BayesianEvent c = network.createEvent("c");
+		network.createDependency(a, b);
+		network.createDependency(b, c);
+		network.finalizeStructure();
+		a.getTable().addLine(0.3, true);
+		b.getTable().addLine(0.8, true, true);
+		b.getTable().addLine(0.1, true, false);
+		c.getTable().addLine(0.05, true, true);
+		c.getTable().addLine(0.5, true, false);
+		network.validate();
+		return network;
+	}
+
+	private void defineQuery(BayesianNetwork network, BasicQuery query) {
+		query.defineEventType(network.getEvent("c"), EventType.Evidence);
+		query.defineEventType(network.getEvent("a"), EventType.Outcome);
+		query.setEventValue(network.getEvent("c"), true);
+		query.setEventValue(network.getEvent("a"), true);
+	}
+
+	public void testLikelihoodWeighting() {
+		BayesianNetwork network = createChain();
+		EnumerationQuery exact = new EnumerationQuery(network);
+		defineQuery(network, exact);
+		exact.execute();
+
+		SamplingQuery query = new SamplingQuery(network);
+		query.setRandomFactory(new BasicRandomFactory(42));
+		query.setThreadCount(4);
+		defineQuery(network, query);
+		query.execute();
+
+		assertEquals(exact.getProbability(), query.getProbability(), 0.02);
+		// evidence is weighted rather than rejected, so every sample is used
+		assertEquals(query.getSampleSize(), query.getUsableSamples());
+	}
+
+	public void testTargetError() {
+		BayesianNetwork network = createChain();
+		SamplingQuery query = new SamplingQuery(network);
+		query.setRandomFactory(new BasicRandomFactory(42));
+		query.setSampleSize(1000000);
+		query.setTargetError(0.01);
+		defineQuery(network, query);
+		query.execute();
+
+		assertTrue(query.getTotalSamples() < query.getSampleSize());
+		assertTrue(query.calculateErrorBound() <= 0.01);
+	}
+
+	public void testRepeatable() {
+		BayesianNetwork network = createChain();
+		SamplingQuery query1 = new SamplingQuery(network);
+		query1.setRandomFactory(new BasicRandomFactory(7));
+		query1.setThreadCount(3);
+		defineQuery(network, query1);
+		query1.execute();
+
+		SamplingQuery query2 = new SamplingQuery(network);
+		query2.setRandomFactory(new BasicRandomFactory(7));
+		query2.setThreadCount(3);
+		defineQuery(network, query2);
+		query2.execute();
+
+		assertEquals(query1.getProbability(), query2.getProbability(), 0);
+	}
 }
@@ -29,6 +29,7 @@ import junit.framework.TestCase;
 
 import org.encog.engine.network.activation.ActivationTANH;
 import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
 import org.encog.ml.data.temporal.TemporalDataDescription.Type;
 
 public class TestTemporal extends TestCase {
@@ -229,4 +230,51 @@ public class TestTemporal extends TestCase {
 
 	}
 	
+
+	public void testWindowTemporal()
+	{
+		TemporalMLDataSet temporal = new TemporalMLDataSet(5,2);
+		temporal.addDescription(new TemporalDataDescription(Type.DELTA_CHANGE, true, false));
+		temporal.addDescription(new TemporalDataDescription(new ActivationTANH(), Type.PERCENT_CHANGE, true, true));
+		temporal.addDescription(new TemporalDataDescription(Type.RAW, false, true));
+		for(int i=29;i>=0;i--)
+		{
+			TemporalPoint tp = temporal.createPoint(i);
+			tp.setData(0, 1.0+(i*3));
+			tp.setData(1, 2.0+(i*i));
+			tp.setData(2, 3.0-(i*3));
+		}
+		temporal.setLowSequence(3);
+		temporal.setHighSequence(25);
+
+		TemporalWindowMLDataSet windows = new TemporalWindowMLDataSet(temporal);
+		temporal.generate();
+
+		TestCase.assertEquals(temporal.getRecordCount(), windows.getRecordCount());
+		TestCase.assertEquals(temporal.getInputSize(), windows.getInputSize());
+		TestCase.assertEquals(temporal.getIdealSize(), windows.getIdealSize());
+		TestCase.assertTrue(windows.getRecordCount() > 0);
+
+		Iterator<MLDataPair> itr = windows.iterator();
+		for(MLDataPair expected : temporal)
+		{
+			MLDataPair pair = itr.next();
+			for(int i=0;i<expected.getInputArray().length;i++)
+			{
+				TestCase.assertEquals(expected.getInputArray()[i], pair.getInputArray()[i]);
+			}
+			for(int i=0;i<expected.getIdealArray().length;i++)
+			{
+				TestCase.assertEquals(expected.getIdealArray()[i], pair.getIdealArray()[i]);
+			}
+		}
+		TestCase.assertFalse(itr.hasNext());
+
+		MLDataSet additional = windows.openAdditional();
+		TestCase.assertEquals(windows.getRecordCount(), additional.getRecordCount());
+		for(int i=0;i<windows.size();i++)
+		{
+			TestCase.assertEquals(windows.get(i).getInputArray()[3], additional.get(i).getInputArray()[3]);
+		}
+	}
 }
@@ -23,15 +23,25 @@
  */
 package org.encog.ml.hmm;
 
+import java.util.Arrays;
+import java.util.EnumSet;
+
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import org.encog.ml.data.MLDataSet;
 import org.encog.ml.data.MLSequenceSet;
+import org.encog.ml.hmm.alog.BatchViterbiCalculator;
+import org.encog.ml.hmm.alog.ForwardBackwardCalculator;
+import org.encog.ml.hmm.alog.ForwardBackwardScaledCalculator;
 import org.encog.ml.hmm.alog.KullbackLeiblerDistanceCalculator;
 import org.encog.ml.hmm.alog.MarkovGenerator;
+import org.encog.ml.hmm.alog.ViterbiCalculator;
 import org.encog.ml.hmm.distributions.ContinousDistribution;
 import org.encog.ml.hmm.distributions.DiscreteDistribution;
+import org.encog.ml.hmm.train.bw.BaseBaumWelch;
 import org.encog.ml.hmm.train.bw.TrainBaumWelch;
+import org.encog.ml.hmm.train.bw.TrainBaumWelchScaled;
 import org.encog.ml.hmm.train.kmeans.TrainKMeans;
 
 public class TestHMM extends TestCase {
@@ -185,4 +195,74 @@ public class TestHMM extends TestCase {
 		Assert.assertTrue(e<0.05);
 	}
 
+	public void testParallelBWL() {
+		HiddenMarkovModel hmm = buildDiscHMM();
+		MarkovGenerator mg = new MarkovGenerator(hmm);
+		MLSequenceSet training = mg.generateSequences(200,100);
+
+		TrainBaumWelchScaled single = new TrainBaumWelchScaled(buildDiscInitHMM(),training);
+		single.setThreadCount(1);
+		single.iteration(3);
+
+		TrainBaumWelchScaled multi = new TrainBaumWelchScaled(buildDiscInitHMM(),training);
+		multi.setThreadCount(4);
+		multi.iteration(3);
+
+		HiddenMarkovModel a = (HiddenMarkovModel)single.getMethod();
+		HiddenMarkovModel b = (HiddenMarkovModel)multi.getMethod();
+		for(int i=0;i<2;i++) {
+			Assert.assertEquals(a.getPi(i), b.getPi(i), 1e-9);
+			for(int j=0;j<2;j++) {
+				Assert.assertEquals(a.getTransitionProbability(i, j), b.getTransitionProbability(i, j), 1e-9);
+			}
+		}
+	}
+	
+	public void testLegacySubclass() {
+		HiddenMarkovModel hmm = buildDiscHMM();
+		MarkovGenerator mg = new MarkovGenerator(hmm);
+		MLSequenceSet training = mg.generateSequences(50,40);
+
+		// a subclass written before the reusable calculator hooks existed
+		BaseBaumWelch legacy = new BaseBaumWelch(buildDiscInitHMM(),training) {
+			@Override
+			public ForwardBackwardCalculator generateForwardBackwardCalculator(
+					MLDataSet sequence, HiddenMarkovModel model) {
+				return new ForwardBackwardScaledCalculator(sequence, model,
+						EnumSet.allOf(ForwardBackwardCalculator.Computation.class));
+			}
+		};
+		legacy.iteration(3);
+
+		TrainBaumWelchScaled scaled = new TrainBaumWelchScaled(buildDiscInitHMM(),training);
+		scaled.iteration(3);
+
+		HiddenMarkovModel a = (HiddenMarkovModel)legacy.getMethod();
+		HiddenMarkovModel b = (HiddenMarkovModel)scaled.getMethod();
+		for(int i=0;i<2;i++) {
+			Assert.assertEquals(a.getPi(i), b.getPi(i), 1e-9);
+			for(int j=0;j<2;j++) {
+				Assert.assertEquals(a.getTransitionProbability(i, j), b.getTransitionProbability(i, j), 1e-9);
+			}
+		}
+	}
+	
+	public void testBatchViterbi() {
+		HiddenMarkovModel hmm = buildDiscHMM();
+		MarkovGenerator mg = new MarkovGenerator(hmm);
+		MLSequenceSet sequences = mg.generateSequences(50,40);
+		
+		BatchViterbiCalculator batch = new BatchViterbiCalculator(hmm);
+		batch.setThreadCount(3);
+		batch.compute(sequences.getSequences());
+		
+		int index = 0;
+		for(MLDataSet seq: sequences.getSequences()) {
+			ViterbiCalculator v = new ViterbiCalculator(seq, hmm);
+			Assert.assertTrue(Arrays.equals(v.stateSequence(), batch.getStateSequences()[index]));
+			Assert.assertEquals(v.lnProbability(), batch.getLnProbabilities()[index], 1e-12);
+			index++;
+		}
+	}
+
 }
@@ -0,0 +1,114 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.data.buffer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.buffer.BufferedMLDataSet;
+import org.encog.ml.data.buffer.CSVRowExtractor;
+import org.encog.ml.data.buffer.CSVToEGBConverter;
+import org.encog.util.csv.CSVFormat;
+import org.encog.util.csv.ReadCSV;
+
+public class TestCSVToEGBConverter extends TestCase {
+
+	public static final String CSV_NAME = "convert.csv";
+	public static final String EGB_NAME = "convert.egb";
+	public static final int ROWS = 1000;
+
+	private void writeCSV() throws IOException {
+		FileWriter out = new FileWriter(CSV_NAME);
+		out.write("a,b,c\r\n");
+		for (int i = 0; i < ROWS; i++) {
+			out.write(i + "," + (i * 0.5) + "," + (-i) + ((i % 2) == 0 ? "\r\n" : "\n"));
+			if ((i % 100) == 0) {
+				out.write("\n");
+			}
+		}
+		out.close();
+	}
+
+	private MLDataSet load() {
+		BufferedMLDataSet set = new BufferedMLDataSet(new File(EGB_NAME));
+		return set.loadToMemory();
+	}
+
+	public void testConvert() throws IOException {
+		writeCSV();
+		CSVToEGBConverter converter = new CSVToEGBConverter(new File(CSV_NAME),
+				new File(EGB_NAME), CSVFormat.EG_FORMAT, true, 2, 1);
+		converter.setThreadCount(4);
+		assertEquals(ROWS, converter.process());
+
+		MLDataSet set = load();
+		assertEquals(ROWS, set.getRecordCount());
+		assertEquals(2, set.getInputSize());
+		assertEquals(1, set.getIdealSize());
+		int i = 0;
+		for (MLDataPair pair : set) {
+			assertEquals(i, pair.getInputArray()[0], 0);
+			assertEquals(i * 0.5, pair.getInputArray()[1], 0);
+			assertEquals(-i, pair.getIdealArray()[0], 0);
+			i++;
+		}
+	}
+
+	public void testConvertSkipped() throws IOException {
+		writeCSV();
+		CSVRowExtractor extractor = new CSVRowExtractor() {
+			public boolean extract(ReadCSV csv, double[] input, double[] ideal) {
+				int row = (int) csv.getDouble(0);
+				if ((row % 3) == 0) {
+					return false;
+				}
+				input[0] = row;
+				ideal[0] = csv.getDouble(2);
+				return true;
+			}
+		};
+		CSVToEGBConverter converter = new CSVToEGBConverter(new File(CSV_NAME),
+				new File(EGB_NAME), CSVFormat.EG_FORMAT, true, 1, 1, extractor);
+		converter.setThreadCount(4);
+		long expected = ROWS - ((ROWS + 2) / 3);
+		assertEquals(expected, converter.process());
+
+		MLDataSet set = load();
+		assertEquals(expected, set.getRecordCount());
+		int row = 1;
+		for (MLDataPair pair : set) {
+			assertEquals(row, pair.getInputArray()[0], 0);
+			assertEquals(-row, pair.getIdealArray()[0], 0);
+			row++;
+			if ((row % 3) == 0) {
+				row++;
+			}
+		}
+	}
+}
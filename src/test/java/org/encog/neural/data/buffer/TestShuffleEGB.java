@@ -0,0 +1,105 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.data.buffer;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.encog.ml.data.buffer.EncogEGBFile;
+import org.encog.ml.data.buffer.ShuffleEGB;
+
+public class TestShuffleEGB extends TestCase {
+
+	public static final File INPUT_NAME = new File("shuffle.egb");
+	public static final File OUTPUT_NAME = new File("shuffle2.egb");
+	public static final int ROWS = 1000;
+
+	private void generate() {
+		EncogEGBFile egb = new EncogEGBFile(INPUT_NAME);
+		egb.create(2, 1);
+		for (int i = 0; i < ROWS; i++) {
+			egb.write(new double[] { i, i * 2, -i, 1.0 });
+		}
+		egb.close();
+	}
+
+	private double[] shuffle(long seed, long budget, File output) {
+		ShuffleEGB shuffle = new ShuffleEGB();
+		shuffle.setSeed(seed);
+		shuffle.setMemoryBudget(budget);
+		shuffle.process(INPUT_NAME, output);
+
+		EncogEGBFile egb = new EncogEGBFile(output);
+		egb.open();
+		assertEquals(2, egb.getInputCount());
+		assertEquals(1, egb.getIdealCount());
+		assertEquals(ROWS, egb.getNumberOfRecords());
+
+		double[] result = new double[ROWS];
+		double[] record = new double[4];
+		Set<Double> seen = new HashSet<Double>();
+		for (int i = 0; i < ROWS; i++) {
+			egb.read(i, record);
+			assertEquals(record[0] * 2, record[1], 0);
+			assertEquals(-record[0], record[2], 0);
+			assertEquals(1.0, record[3], 0);
+			seen.add(record[0]);
+			result[i] = record[0];
+		}
+		egb.close();
+		assertEquals(ROWS, seen.size());
+		return result;
+	}
+
+	public void testShuffle() {
+		generate();
+
+		// a small budget forces the records through bucket files
+		double[] first = shuffle(42, 4000, OUTPUT_NAME);
+		double[] second = shuffle(42, 4000, OUTPUT_NAME);
+		double[] memory = shuffle(42, Long.MAX_VALUE, OUTPUT_NAME);
+
+		boolean same = true;
+		boolean moved = false;
+		for (int i = 0; i < ROWS; i++) {
+			assertEquals(first[i], second[i], 0);
+			same &= first[i] == memory[i];
+			moved |= first[i] != i;
+		}
+		assertFalse(same);
+		assertTrue(moved);
+
+		INPUT_NAME.delete();
+		OUTPUT_NAME.delete();
+	}
+
+	public void testShuffleInPlace() {
+		generate();
+		shuffle(7, 4000, INPUT_NAME);
+		INPUT_NAME.delete();
+	}
+}
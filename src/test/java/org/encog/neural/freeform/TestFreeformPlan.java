@@ -0,0 +1,158 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.freeform;
+
+import junit.framework.TestCase;
+
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.ml.data.MLData;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLData;
+import org.encog.ml.data.basic.BasicMLDataSet;
+import org.encog.neural.freeform.training.FreeformBackPropagation;
+import org.encog.neural.freeform.training.FreeformResilientPropagation;
+import org.encog.neural.networks.BasicNetwork;
+import org.encog.neural.networks.NetworkUtil;
+import org.encog.neural.networks.XOR;
+import org.encog.util.simple.EncogUtility;
+import org.junit.Test;
+
+public class TestFreeformPlan extends TestCase {
+
+	@Test
+	public void testComputeMatchesBasic() {
+		BasicNetwork basic = EncogUtility.simpleFeedForward(3, 5, 4, 2, true);
+		basic.reset(1000);
+		FreeformNetwork network = new FreeformNetwork(basic);
+		assertNotNull(network.getPlan());
+
+		MLData input = new BasicMLData(new double[] { 0.1, -0.5, 0.9 });
+		MLData expected = basic.compute(input);
+		MLData actual = network.compute(input);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getData(i), actual.getData(i), 0.0001);
+		}
+	}
+
+	@Test
+	public void testElman() {
+		FreeformNetwork network = FreeformNetwork.createElman(2, 3, 1,
+				new ActivationSigmoid());
+		network.reset(1000);
+		FreeformPlan plan = network.getPlan();
+		assertNotNull(plan);
+		assertTrue(plan.hasContext());
+
+		// the same sequence must give the same output, once the context is
+		// cleared
+		MLData input = new BasicMLData(new double[] { 1, 0 });
+		double first = network.compute(input).getData(0);
+		double second = network.compute(input).getData(0);
+		assertTrue(first != second);
+		network.clearContext();
+		assertEquals(first, network.compute(input).getData(0), 0.0000001);
+	}
+
+	@Test
+	public void testInvalidate() {
+		FreeformNetwork network = NetworkUtil
+				.createXORFreeformNetworkUntrained();
+		FreeformPlan plan = network.getPlan();
+		assertSame(plan, network.getPlan());
+		network.invalidatePlan();
+		assertNotSame(plan, network.getPlan());
+	}
+
+	@Test
+	public void testWeightsReloaded() {
+		MLDataSet trainingData = new BasicMLDataSet(XOR.XOR_INPUT,
+				XOR.XOR_IDEAL);
+		FreeformNetwork network = NetworkUtil
+				.createXORFreeformNetworkUntrained();
+		MLData input = trainingData.get(3).getInput();
+		double before = network.compute(input).getData(0);
+
+		// training changes the weights through the connections
+		FreeformResilientPropagation train = new FreeformResilientPropagation(
+				network, trainingData);
+		train.iteration();
+		double trained = network.compute(input).getData(0);
+		assertTrue(before != trained);
+
+		// so does decoding, the plan must not keep the trained weights
+		double[] weights = new double[network.encodedArrayLength()];
+		network.encodeToArray(weights);
+		network.reset(1000);
+		assertTrue(trained != network.compute(input).getData(0));
+		network.decodeFromArray(weights);
+		assertEquals(trained, network.compute(input).getData(0), 0.0000001);
+
+		// and so does setting a weight on a connection directly
+		network.getPlan().getConnections()[0].addWeight(1);
+		assertTrue(trained != network.compute(input).getData(0));
+	}
+
+	@Test
+	public void testThreadsAgree() {
+		MLDataSet trainingData = new BasicMLDataSet(XOR.XOR_INPUT,
+				XOR.XOR_IDEAL);
+		FreeformNetwork network1 = NetworkUtil
+				.createXORFreeformNetworkUntrained();
+		FreeformNetwork network2 = NetworkUtil
+				.createXORFreeformNetworkUntrained();
+		double[] weights = new double[network1.encodedArrayLength()];
+		network1.encodeToArray(weights);
+		network2.decodeFromArray(weights);
+
+		FreeformResilientPropagation train1 = new FreeformResilientPropagation(
+				network1, trainingData);
+		FreeformResilientPropagation train2 = new FreeformResilientPropagation(
+				network2, trainingData);
+		train1.setThreadCount(1);
+		train2.setThreadCount(4);
+
+		for (int i = 0; i < 10; i++) {
+			train1.iteration();
+			train2.iteration();
+			assertEquals(train1.getError(), train2.getError(), 0.0000001);
+		}
+	}
+
+	@Test
+	public void testTrainElman() {
+		MLDataSet trainingData = new BasicMLDataSet(XOR.XOR_INPUT,
+				XOR.XOR_IDEAL);
+		FreeformNetwork network = FreeformNetwork.createElman(2, 3, 1,
+				new ActivationSigmoid());
+		network.reset(1000);
+		FreeformBackPropagation train = new FreeformBackPropagation(network,
+				trainingData, 0.7, 0.3);
+		train.iteration();
+		double first = train.getError();
+		for (int i = 0; i < 50; i++) {
+			train.iteration();
+		}
+		assertTrue(train.getError() < first);
+	}
+}
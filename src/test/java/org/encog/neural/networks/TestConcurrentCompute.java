@@ -0,0 +1,106 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.networks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.neural.flat.FlatNetworkContext;
+import org.encog.neural.flat.FlatNetworkContextPool;
+import org.encog.neural.networks.layers.BasicLayer;
+
+public class TestConcurrentCompute extends TestCase {
+	
+	private BasicNetwork createNetwork() {
+		BasicNetwork network = new BasicNetwork();
+		network.addLayer(new BasicLayer(null, true, 20));
+		network.addLayer(new BasicLayer(new ActivationSigmoid(), true, 30));
+		network.addLayer(new BasicLayer(new ActivationSigmoid(), false, 5));
+		network.getStructure().finalizeStructure();
+		network.reset(1000);
+		return network;
+	}
+	
+	private double[] createInput(int seed) {
+		double[] input = new double[20];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = Math.sin(seed * 31 + i);
+		}
+		return input;
+	}
+	
+	public void testContextMatchesCompute() {
+		BasicNetwork network = createNetwork();
+		FlatNetworkContext context = network.createContext();
+		
+		for (int i = 0; i < 10; i++) {
+			double[] input = createInput(i);
+			double[] expected = new double[5];
+			double[] actual = new double[5];
+			network.compute(input, expected);
+			network.compute(input, actual, context);
+			for (int j = 0; j < expected.length; j++) {
+				Assert.assertEquals(expected[j], actual[j], 0);
+			}
+		}
+	}
+	
+	public void testConcurrentPool() throws InterruptedException {
+		final BasicNetwork network = createNetwork();
+		final double[][] expected = new double[50][5];
+		for (int i = 0; i < expected.length; i++) {
+			network.compute(createInput(i), expected[i]);
+		}
+		
+		final FlatNetworkContextPool pool = new FlatNetworkContextPool(network.getStructure().getFlat());
+		final AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					double[] output = new double[5];
+					for (int pass = 0; pass < 200; pass++) {
+						for (int i = 0; i < expected.length; i++) {
+							pool.compute(createInput(i), output);
+							for (int j = 0; j < output.length; j++) {
+								if (output[j] != expected[i][j]) {
+									errors.incrementAndGet();
+								}
+							}
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		Assert.assertEquals(0, errors.get());
+	}
+}
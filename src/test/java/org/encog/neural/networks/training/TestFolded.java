@@ -28,12 +28,14 @@ import junit.framework.TestCase;
 import org.encog.ml.MLRegression;
 import org.encog.ml.data.MLDataSet;
 import org.encog.ml.data.folded.FoldedDataSet;
+import org.encog.ml.factory.MLTrainFactory;
 import org.encog.ml.train.MLTrain;
 import org.encog.neural.networks.BasicNetwork;
 import org.encog.neural.networks.NetworkUtil;
 import org.encog.neural.networks.XOR;
 import org.encog.neural.networks.training.cross.CrossValidationKFold;
 import org.encog.neural.networks.training.propagation.resilient.ResilientPropagation;
+import org.encog.util.concurrency.EngineConcurrency;
 import org.encog.util.simple.EncogUtility;
 import org.junit.Test;
 
@@ -54,4 +56,49 @@ public class TestFolded extends TestCase {
 		XOR.verifyXOR((MLRegression)trainFolded.getMethod(), 0.2);
 		
 	}
+	
+	@Test
+	public void testConcurrent() throws Throwable
+	{
+		MLDataSet trainingData = XOR.createNoisyXORDataSet(10);
+		
+		BasicNetwork network1 = NetworkUtil.createXORNetworkUntrained();
+		BasicNetwork network2 = (BasicNetwork)network1.clone();
+		
+		final CrossValidationKFold sequential = new CrossValidationKFold(network1, 
+				new FoldedDataSet(trainingData), 4, MLTrainFactory.TYPE_RPROP, "");
+		final CrossValidationKFold concurrent = new CrossValidationKFold(network2, 
+				new FoldedDataSet(trainingData), 4, MLTrainFactory.TYPE_RPROP, "");
+		sequential.setThreadCount(1);
+		concurrent.setThreadCount(4);
+		
+		for(int i=0;i<10;i++) {
+			sequential.iteration();
+			concurrent.iteration();
+			assertFalse(Double.isNaN(concurrent.getError()));
+			assertEquals(sequential.getError(), concurrent.getError(), 0);
+		}
+		
+		assertTrue(network1.equals(network2));
+	}
+	
+	@Test
+	public void testMoreThreadsThanPool() throws Throwable
+	{
+		MLDataSet trainingData = XOR.createNoisyXORDataSet(10);
+		BasicNetwork network = NetworkUtil.createXORNetworkUntrained();
+		
+		final CrossValidationKFold train = new CrossValidationKFold(network, 
+				new FoldedDataSet(trainingData), 10, MLTrainFactory.TYPE_RPROP, "");
+		train.setThreadCount(20);
+		try {
+			EngineConcurrency.getInstance().setThreadCount(2);
+			for(int i=0;i<5;i++) {
+				train.iteration();
+				assertFalse(Double.isNaN(train.getError()));
+			}
+		} finally {
+			EngineConcurrency.getInstance().setThreadCount(0);
+		}
+	}
 }
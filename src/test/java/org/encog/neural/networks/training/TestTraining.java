@@ -23,6 +23,8 @@
  */
 package org.encog.neural.networks.training;
 
+import java.util.Random;
+
 import junit.framework.TestCase;
 
 import org.encog.ml.CalculateScore;
@@ -36,12 +38,15 @@ import org.encog.neural.networks.BasicNetwork;
 import org.encog.neural.networks.NetworkUtil;
 import org.encog.neural.networks.XOR;
 import org.encog.neural.networks.training.anneal.NeuralSimulatedAnnealing;
+import org.encog.neural.networks.training.anneal.ParallelSimulatedAnnealing;
 import org.encog.neural.networks.training.lma.LevenbergMarquardtTraining;
+import org.encog.neural.networks.training.nm.NelderMeadTraining;
 import org.encog.neural.networks.training.pnn.TrainBasicPNN;
 import org.encog.neural.networks.training.propagation.back.Backpropagation;
 import org.encog.neural.networks.training.propagation.manhattan.ManhattanPropagation;
 import org.encog.neural.networks.training.propagation.resilient.ResilientPropagation;
 import org.encog.neural.networks.training.propagation.scg.ScaledConjugateGradient;
+import org.encog.neural.networks.training.pso.NeuralPSO;
 import org.encog.neural.pnn.BasicPNN;
 import org.encog.neural.pnn.PNNKernelType;
 import org.encog.neural.pnn.PNNOutputMode;
@@ -60,6 +65,40 @@ public class TestTraining extends TestCase   {
 		NetworkUtil.testTraining(rprop,0.03);
 	}
 	
+	@Test
+	public void testRPROPThreaded() throws Throwable
+	{
+		double[][] input = new double[400][];
+		double[][] ideal = new double[400][];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = XOR.XOR_INPUT[i % 4];
+			ideal[i] = XOR.XOR_IDEAL[i % 4];
+		}
+		MLDataSet trainingData = new BasicMLDataSet(input, ideal);
+
+		BasicNetwork single = NetworkUtil.createXORNetworkUntrained();
+		BasicNetwork first = NetworkUtil.createXORNetworkUntrained();
+		BasicNetwork second = NetworkUtil.createXORNetworkUntrained();
+		ResilientPropagation singleTrain = new ResilientPropagation(single, trainingData);
+		singleTrain.setThreadCount(1);
+		ResilientPropagation firstTrain = new ResilientPropagation(first, trainingData);
+		firstTrain.setThreadCount(4);
+		ResilientPropagation secondTrain = new ResilientPropagation(second, trainingData);
+		secondTrain.setThreadCount(4);
+
+		for (int i = 0; i < 20; i++) {
+			singleTrain.iteration();
+			firstTrain.iteration();
+			secondTrain.iteration();
+		}
+
+		// the blocks are summed in order, so threaded runs are repeatable
+		assertTrue(java.util.Arrays.equals(first.getFlat().getWeights(),
+				second.getFlat().getWeights()));
+		assertEquals(firstTrain.getError(), secondTrain.getError(), 0);
+		assertEquals(singleTrain.getError(), firstTrain.getError(), 1e-10);
+	}
+
 	@Test
 	public void testLMA() throws Throwable
 	{
@@ -111,6 +150,63 @@ public class TestTraining extends TestCase   {
 		NetworkUtil.testTraining(anneal,0.01);
 	}
 	
+	@Test
+	public void testParallelAnneal() throws Throwable
+	{
+		MLDataSet trainingData = new BasicMLDataSet(XOR.XOR_INPUT,XOR.XOR_IDEAL);		
+		BasicNetwork network = NetworkUtil.createXORNetworkUntrained();
+		CalculateScore score = new TrainingSetScore(trainingData);
+		ParallelSimulatedAnnealing anneal = new ParallelSimulatedAnnealing(network,score,10,2,100,4,new Random(1000));
+		NetworkUtil.testTraining(anneal,0.01);
+		assertEquals(anneal.getError(), network.calculateError(trainingData), 0.0001);
+	}
+	
+	@Test
+	public void testNelderMead() throws Throwable
+	{
+		MLDataSet trainingData = new BasicMLDataSet(XOR.XOR_INPUT,XOR.XOR_IDEAL);
+		BasicNetwork network1 = NetworkUtil.createXORNetworkUntrained();
+		BasicNetwork network2 = (BasicNetwork)network1.clone();
+		BasicNetwork network3 = (BasicNetwork)network1.clone();
+		double error = network1.calculateError(trainingData);
+		
+		NelderMeadTraining train1 = new NelderMeadTraining(network1, trainingData);
+		NelderMeadTraining train2 = new NelderMeadTraining(network2, trainingData);
+		NelderMeadTraining train3 = new NelderMeadTraining(network3, trainingData);
+		train1.setThreadCount(1);
+		train2.setThreadCount(4);
+		train3.setThreadCount(4);
+		train3.setSpeculative(true);
+		train1.iteration();
+		train2.iteration();
+		train3.iteration();
+		
+		// parallel evaluation must not change the search
+		assertTrue(train1.getError()<error);
+		assertEquals(train1.getError(), train2.getError(), 0);
+		assertEquals(train1.getError(), train3.getError(), 0);
+	}
+	
+	@Test
+	public void testPSO() throws Throwable
+	{
+		MLDataSet trainingData = new BasicMLDataSet(XOR.XOR_INPUT,XOR.XOR_IDEAL);
+		BasicNetwork network = NetworkUtil.createXORNetworkUntrained();
+		NeuralPSO pso = new NeuralPSO(network, trainingData);
+		pso.setThreadCount(4);
+		pso.iteration();
+		double error1 = pso.getError();
+		double last = error1;
+		for(int i=0;i<50;i++) {
+			pso.iteration();
+			// the swarm best never gets worse
+			assertTrue(pso.getError()<=last);
+			last = pso.getError();
+		}
+		assertTrue(last<error1);
+		assertEquals(last, network.calculateError(trainingData), 0.0001);
+	}
+	
 	@Test
 	public void testMLMethodGenetic() throws Throwable
 	{
@@ -0,0 +1,90 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.prune;
+
+import junit.framework.TestCase;
+
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataSet;
+import org.encog.neural.networks.BasicNetwork;
+import org.encog.neural.networks.XOR;
+import org.encog.neural.pattern.FeedForwardPattern;
+import org.junit.Test;
+
+public class TestPruneIncremental extends TestCase {
+
+	private PruneIncremental create(MLDataSet training) {
+		FeedForwardPattern pattern = new FeedForwardPattern();
+		pattern.setInputNeurons(2);
+		pattern.setOutputNeurons(1);
+		pattern.setActivationFunction(new ActivationSigmoid());
+		PruneIncremental prune = new PruneIncremental(training, pattern, 100,
+				2, 2, null);
+		prune.addHiddenLayer(1, 4);
+		prune.addHiddenLayer(0, 2);
+		return prune;
+	}
+
+	@Test
+	public void testHalving() {
+		MLDataSet training = new BasicMLDataSet(XOR.XOR_INPUT, XOR.XOR_IDEAL);
+		PruneIncremental prune = create(training);
+		prune.setHalvingRate(2);
+		prune.process();
+
+		BasicNetwork best = prune.getBestNetwork();
+		assertNotNull(best);
+		for (int i = 0; i < prune.getTopNetworks().length; i++) {
+			assertNotNull(prune.getTopNetworks()[i]);
+			assertEquals(prune.getTopErrors()[i], prune.getTopNetworks()[i]
+					.calculateError(training), 0.0000001);
+		}
+
+		// every configuration has a result, full or partial
+		int configurations = 0;
+		for (double[] row : prune.getResults()) {
+			for (double e : row) {
+				assertTrue(e > 0);
+				configurations++;
+			}
+		}
+
+		// only the survivors were trained for the full iterations
+		assertTrue(prune.getCurrentTry() > 0);
+		assertTrue(prune.getCurrentTry() < configurations);
+	}
+
+	@Test
+	public void testBadRate() {
+		PruneIncremental prune = create(new BasicMLDataSet(XOR.XOR_INPUT,
+				XOR.XOR_IDEAL));
+		try {
+			prune.setHalvingRate(1);
+			fail();
+		} catch (Exception ex) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.rbf;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.encog.mathutil.rbf.RBFEnum;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataSet;
+import org.encog.neural.rbf.training.RBFCenterKMeans;
+import org.encog.neural.rbf.training.SVDTraining;
+
+public class TestSVDTraining extends TestCase {
+
+	private MLDataSet createSine(int count) {
+		double[][] input = new double[count][1];
+		double[][] ideal = new double[count][1];
+		for (int i = 0; i < count; i++) {
+			input[i][0] = -1 + (2.0 * i) / (count - 1);
+			ideal[i][0] = Math.sin(3 * input[i][0]);
+		}
+		return new BasicMLDataSet(input, ideal);
+	}
+
+	private RBFNetwork createNetwork(MLDataSet training) {
+		RBFNetwork network = new RBFNetwork(1, 8, 1, RBFEnum.Gaussian);
+		network.setRBFCentersAndWidthsKMeans(training, RBFEnum.Gaussian);
+		return network;
+	}
+
+	public void testNormalEquations() {
+		MLDataSet training = createSine(200);
+
+		RBFNetwork normal = createNetwork(training);
+		SVDTraining normalTrain = new SVDTraining(normal, training);
+		normalTrain.iteration();
+		Assert.assertTrue(normalTrain.isNormalEquations());
+
+		RBFNetwork svd = createNetwork(training);
+		SVDTraining svdTrain = new SVDTraining(svd, training);
+		svdTrain.setUseNormalEquations(false);
+		svdTrain.iteration();
+		Assert.assertFalse(svdTrain.isNormalEquations());
+
+		Assert.assertTrue(normalTrain.getError() < 0.05);
+		Assert.assertEquals(svdTrain.getError(), normalTrain.getError(), 1e-6);
+		// the training error is the RMS, calculateError gives the MSE
+		Assert.assertEquals(normalTrain.getError() * normalTrain.getError(),
+				normal.calculateError(training), 1e-8);
+	}
+
+	public void testSingularFallsBackToSVD() {
+		MLDataSet training = createSine(200);
+
+		// two identical RBFs make A'A singular
+		RBFNetwork network = new RBFNetwork(1, 3, 1, RBFEnum.Gaussian);
+		network.setRBFCentersAndWidths(new double[][] { { -0.5 }, { 0.5 },
+				{ 0.5 } }, new double[] { 0.5, 0.5, 0.5 }, RBFEnum.Gaussian);
+		SVDTraining train = new SVDTraining(network, training);
+		train.iteration();
+
+		Assert.assertFalse(train.isNormalEquations());
+		Assert.assertFalse(Double.isNaN(train.getError()));
+		Assert.assertTrue(train.getError() < 0.5);
+	}
+
+	public void testThreaded() {
+		MLDataSet training = createSine(1000);
+
+		RBFNetwork single = createNetwork(training);
+		SVDTraining singleTrain = new SVDTraining(single, training);
+		singleTrain.setThreadCount(1);
+		singleTrain.iteration();
+
+		RBFNetwork multi = createNetwork(training);
+		SVDTraining multiTrain = new SVDTraining(multi, training);
+		multiTrain.setThreadCount(4);
+		multiTrain.iteration();
+
+		Assert.assertEquals(singleTrain.getError(), multiTrain.getError(), 1e-10);
+		double[] a = single.getFlat().getWeights();
+		double[] b = multi.getFlat().getWeights();
+		for (int i = 0; i < a.length; i++) {
+			Assert.assertEquals(a[i], b[i], 1e-8);
+		}
+	}
+
+	public void testKMeans() {
+		double[][] input = new double[200][];
+		for (int i = 0; i < input.length; i++) {
+			double offset = (i % 5) * 0.01;
+			input[i] = i < 100 ? new double[] { offset, offset }
+					: new double[] { 1 + offset, 1 - offset };
+		}
+		MLDataSet training = new BasicMLDataSet(input, null);
+
+		RBFCenterKMeans kmeans = new RBFCenterKMeans(2, training);
+		kmeans.setThreadCount(4);
+		kmeans.process();
+
+		double[][] centers = kmeans.getCenters();
+		Assert.assertEquals(0.02, centers[0][0], 1e-8);
+		Assert.assertEquals(0.02, centers[0][1], 1e-8);
+		Assert.assertEquals(1.02, centers[1][0], 1e-8);
+		Assert.assertEquals(0.98, centers[1][1], 1e-8);
+		Assert.assertTrue(kmeans.getWidths()[0] > 0);
+		Assert.assertTrue(kmeans.getIterations() <= 3);
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.neural.thermal;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLData;
+import org.encog.ml.data.basic.BasicMLDataSet;
+import org.encog.neural.thermal.training.ContrastiveDivergence;
+
+public class TestRestrictedBoltzmann extends TestCase {
+
+	public static final double[][] PATTERNS = {
+		{ 1, 1, 1, 0, 0, 0 },
+		{ 0, 0, 0, 1, 1, 1 } };
+
+	private MLDataSet createTraining() {
+		double[][] input = new double[200][];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = PATTERNS[i % PATTERNS.length];
+		}
+		return new BasicMLDataSet(input, null);
+	}
+
+	private RestrictedBoltzmannMachine train(int threads) {
+		RestrictedBoltzmannMachine rbm = new RestrictedBoltzmannMachine(6, 3);
+		ContrastiveDivergence train = new ContrastiveDivergence(rbm,
+				createTraining());
+		train.setThreadCount(threads);
+		train.setBatchSize(20);
+		train.setLearningRate(0.5);
+		for (int i = 0; i < 50; i++) {
+			train.iteration();
+		}
+		Assert.assertTrue(train.getError() < 0.05);
+		return rbm;
+	}
+
+	public void testTrain() {
+		RestrictedBoltzmannMachine rbm = train(1);
+
+		// the trained patterns are reconstructed
+		for (double[] pattern : PATTERNS) {
+			double[] output = rbm.compute(new BasicMLData(pattern)).getData();
+			for (int i = 0; i < pattern.length; i++) {
+				Assert.assertEquals(pattern[i], output[i], 0.3);
+			}
+		}
+
+		// and have a lower free energy than an unseen pattern
+		double anomaly = rbm.calculateFreeEnergy(new double[] { 1, 0, 1, 0, 1, 0 });
+		for (double[] pattern : PATTERNS) {
+			Assert.assertTrue(rbm.calculateFreeEnergy(pattern) < anomaly);
+		}
+
+		// the weights are kept the same in both directions
+		for (int v = 0; v < 6; v++) {
+			for (int h = 0; h < 3; h++) {
+				Assert.assertEquals(rbm.getWeight(v, 6 + h), rbm.getWeight(6 + h, v), 0);
+			}
+		}
+	}
+
+	public void testThreaded() {
+		RestrictedBoltzmannMachine first = train(4);
+		RestrictedBoltzmannMachine second = train(4);
+		Assert.assertTrue(Arrays.equals(first.getWeights(), second.getWeights()));
+	}
+
+	public void testGibbs() {
+		RestrictedBoltzmannMachine rbm = train(1);
+		rbm.setCurrentState(new double[] { 1, 1, 1, -1, -1, -1, -1, -1, -1 });
+		rbm.gibbs(10, new Random(1));
+		int on = 0;
+		for (int i = 0; i < 6; i++) {
+			if (rbm.getCurrentState().getBoolean(i)) {
+				on++;
+			}
+		}
+		Assert.assertEquals(3, on);
+	}
+}
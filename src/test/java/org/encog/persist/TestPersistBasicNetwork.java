@@ -23,16 +23,22 @@
  */
 package org.encog.persist;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import org.encog.EncogError;
 import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.neural.flat.MappedFlatNetwork;
 import org.encog.neural.networks.BasicNetwork;
 import org.encog.neural.networks.XOR;
 import org.encog.neural.networks.layers.BasicLayer;
+import org.encog.neural.networks.training.propagation.resilient.ResilientPropagation;
 import org.encog.util.EngineArray;
 import org.encog.util.TempDir;
 import org.encog.util.obj.SerializeObject;
@@ -42,6 +48,7 @@ public class TestPersistBasicNetwork extends TestCase {
 	public final TempDir TEMP_DIR = new TempDir();
 	public final File EG_FILENAME = TEMP_DIR.createFile("encogtest.eg");
 	public final File SERIAL_FILENAME = TEMP_DIR.createFile("encogtest.ser");
+	public final File BINARY_FILENAME = TEMP_DIR.createFile("encogtest.egm");
 		
 	public BasicNetwork create()
 	{
@@ -107,6 +114,97 @@ public class TestPersistBasicNetwork extends TestCase {
 		Assert.assertTrue(d<0.01);
 	}
 	
+	public void testPersistBinary()
+	{
+		BasicNetwork network = create();
+
+		EncogDirectoryPersistence.saveObject(BINARY_FILENAME, network, PersistFormat.BINARY);
+		BasicNetwork network2 = (BasicNetwork)EncogDirectoryPersistence.loadObject(BINARY_FILENAME);
+
+		validate(network2);
+		Assert.assertEquals("test2", network2.getPropertyString("test"));
+		Assert.assertTrue(Arrays.equals(network.getStructure().getFlat().getWeights(), 
+				network2.getStructure().getFlat().getWeights()));
+		Assert.assertEquals("BasicNetwork", 
+				new EncogDirectoryPersistence(BINARY_FILENAME.getParentFile()).getEncogType(BINARY_FILENAME.getName()));
+	}
+	
+	public void testPersistBinaryStream()
+	{
+		BasicNetwork network = create();
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		EncogDirectoryPersistence.saveObject(os, network, PersistFormat.BINARY);
+		BasicNetwork network2 = (BasicNetwork)EncogDirectoryPersistence.loadObject(
+				new ByteArrayInputStream(os.toByteArray()));
+
+		validate(network2);
+	}
+	
+	public void testPersistReadOnly()
+	{
+		BasicNetwork network = create();
+
+		EncogDirectoryPersistence.saveObject(BINARY_FILENAME, network, PersistFormat.BINARY);
+		BasicNetwork network2 = (BasicNetwork)EncogDirectoryPersistence.loadObjectReadOnly(BINARY_FILENAME);
+
+		Assert.assertTrue(network2.getStructure().getFlat() instanceof MappedFlatNetwork);
+		validate(network2);
+		Assert.assertTrue(Arrays.equals(network.getStructure().getFlat().getWeights(), 
+				network2.getStructure().getFlat().getWeights()));
+		
+		// a clone has its own layer outputs, but shares the mapped weights
+		MappedFlatNetwork flat = (MappedFlatNetwork)network2.getStructure().getFlat();
+		MappedFlatNetwork flat2 = flat.clone();
+		Assert.assertSame(flat.getMappedWeights(), flat2.getMappedWeights());
+		Assert.assertNotSame(flat.getLayerOutput(), flat2.getLayerOutput());
+		
+		try {
+			flat.randomize();
+			Assert.fail("Mapped weights should be read-only");
+		} catch(EncogError e) {
+			// expected
+		}
+		
+		// single weights are read from the mapped buffer, and can not be set
+		Assert.assertEquals(network.getWeight(1, 2, 0), network2.getWeight(1, 2, 0), 0);
+		try {
+			network2.setWeight(1, 2, 0, 0.5);
+			Assert.fail("Mapped weights should be read-only");
+		} catch(EncogError e) {
+			// expected
+		}
+		
+		try {
+			new ResilientPropagation(network2, XOR.createXORDataSet());
+			Assert.fail("A mapped network should not be trainable");
+		} catch(EncogError e) {
+			// expected
+		}
+	}
+	
+	public void testBinaryMatchesText()
+	{
+		BasicNetwork network = create();
+
+		// text -> binary -> text should give the same text file
+		ByteArrayOutputStream text1 = new ByteArrayOutputStream();
+		EncogDirectoryPersistence.saveObject(text1, network);
+		BasicNetwork fromText = (BasicNetwork)EncogDirectoryPersistence.loadObject(
+				new ByteArrayInputStream(text1.toByteArray()));
+		
+		EncogDirectoryPersistence.saveObject(BINARY_FILENAME, fromText, PersistFormat.BINARY);
+		BasicNetwork fromBinary = (BasicNetwork)EncogDirectoryPersistence.loadObject(BINARY_FILENAME);
+		
+		ByteArrayOutputStream text2 = new ByteArrayOutputStream();
+		EncogDirectoryPersistence.saveObject(text2, fromBinary);
+		
+		// skip the header line, it holds the save time
+		String s1 = new String(text1.toByteArray());
+		String s2 = new String(text2.toByteArray());
+		Assert.assertEquals(s1.substring(s1.indexOf('\n')), s2.substring(s2.indexOf('\n')));
+	}
+	
 	public void testPersistSerial() throws IOException, ClassNotFoundException
 	{
 		BasicNetwork network = create();
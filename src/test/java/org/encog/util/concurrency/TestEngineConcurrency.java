@@ -0,0 +1,149 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.util.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.encog.EncogError;
+
+public class TestEngineConcurrency extends TestCase {
+
+	private static class CountTask implements EngineTask {
+		private final AtomicInteger count;
+		private final AtomicInteger running;
+		private final AtomicInteger peak;
+
+		public CountTask(AtomicInteger count, AtomicInteger running,
+				AtomicInteger peak) {
+			this.count = count;
+			this.running = running;
+			this.peak = peak;
+		}
+
+		public void run() {
+			int now = this.running.incrementAndGet();
+			synchronized (this.peak) {
+				if (now > this.peak.get()) {
+					this.peak.set(now);
+				}
+			}
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				throw new EncogError(e);
+			}
+			this.running.decrementAndGet();
+			this.count.incrementAndGet();
+		}
+	}
+
+	private static class NestedTask implements EngineTask {
+		private final AtomicInteger count;
+
+		public NestedTask(AtomicInteger count) {
+			this.count = count;
+		}
+
+		public void run() {
+			EngineConcurrency engine = EngineConcurrency.getInstance();
+			TaskGroup group = engine.createTaskGroup();
+			for (int i = 0; i < 4; i++) {
+				engine.processTask(new CountTask(this.count,
+						new AtomicInteger(), new AtomicInteger()), group);
+			}
+			group.waitForComplete();
+		}
+	}
+
+	public void tearDown() {
+		EngineConcurrency.getInstance().setThreadCount(0);
+	}
+
+	public void testNested() {
+		EngineConcurrency engine = EngineConcurrency.getInstance();
+		engine.setThreadCount(2);
+		AtomicInteger count = new AtomicInteger();
+		TaskGroup group = engine.createTaskGroup();
+		for (int i = 0; i < 4; i++) {
+			engine.processTask(new NestedTask(count), group);
+		}
+		group.waitForComplete();
+		Assert.assertEquals(16, count.get());
+		Assert.assertTrue(group.getNoTasks());
+	}
+
+	public void testParallelism() {
+		EngineConcurrency engine = EngineConcurrency.getInstance();
+		engine.setThreadCount(4);
+		AtomicInteger count = new AtomicInteger();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		TaskGroup group = engine.createTaskGroup(1);
+		for (int i = 0; i < 10; i++) {
+			engine.processTask(new CountTask(count, running, peak), group);
+		}
+		group.waitForComplete();
+		Assert.assertEquals(10, count.get());
+		// one runner on the pool, plus the waiting thread
+		Assert.assertTrue(peak.get() <= 2);
+	}
+
+	public void testBlockWorkload() {
+		BlockWorkload blocks = new BlockWorkload(10, 4);
+		Assert.assertEquals(4, blocks.getBlockCount());
+		for (int pass = 0; pass < 2; pass++) {
+			blocks.reset();
+			int expected = 0;
+			int index;
+			while ((index = blocks.claim()) != -1) {
+				Assert.assertEquals(expected, blocks.getBlock(index).getLow());
+				expected = blocks.getBlock(index).getHigh() + 1;
+			}
+			Assert.assertEquals(10, expected);
+		}
+		Assert.assertEquals(3, new BlockWorkload(3, 8).getBlockCount());
+	}
+
+	public void testError() {
+		EngineConcurrency engine = EngineConcurrency.getInstance();
+		engine.setThreadCount(2);
+		TaskGroup group = engine.createTaskGroup();
+		engine.processTask(new EngineTask() {
+			public void run() {
+				throw new IllegalStateException("fail");
+			}
+		}, group);
+		try {
+			group.waitForComplete();
+			Assert.fail("The error should have been thrown");
+		} catch (EncogError e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		Assert.assertTrue(group.isCancelled());
+		Assert.assertTrue(group.getNoTasks());
+	}
+}
@@ -79,4 +79,67 @@ public class TestReadCSV extends TestCase {
 		Assert.assertFalse(csv.next());
 		csv.close();
 	}
+	
+	public void testCSVQuotesAndShortLines() throws IOException
+	{
+		PrintWriter out = new PrintWriter(new FileWriter(INPUT_NAME));
+		out.print("a,\"b, \"\"c\"\"\",3.5\r\n");
+		out.print("\r\n");
+		out.print(" d ,e\r");
+		out.print("f,\"\",?\n");
+		out.close();
+		
+		ReadCSV csv = new ReadCSV(INPUT_NAME,false,CSVFormat.EG_FORMAT);
+		Assert.assertTrue(csv.next());
+		Assert.assertEquals(3, csv.getColumnCount());
+		Assert.assertEquals("a", csv.get(0));
+		Assert.assertEquals("b, \"c\"", csv.get(1));
+		Assert.assertEquals(3.5, csv.getDouble(2), 0);
+		Assert.assertFalse(csv.hasMissing());
+		Assert.assertTrue(csv.next());
+		Assert.assertEquals("d", csv.get(0));
+		Assert.assertEquals("e", csv.get(1));
+		// a short line keeps the last value of the missing column
+		Assert.assertEquals(3.5, csv.getDouble(2), 0);
+		Assert.assertTrue(csv.next());
+		Assert.assertEquals("f", csv.get(0));
+		Assert.assertEquals("", csv.get(1));
+		Assert.assertTrue(csv.isMissing(1));
+		Assert.assertTrue(Double.isNaN(csv.getDouble(2)));
+		Assert.assertFalse(csv.next());
+		csv.close();
+	}
+	
+	public void testParseNumber()
+	{
+		String[] str = { "0", "-0", "1", "-1.5", "0.1", ".25", "5.", "1E5",
+				"1.25E-3", "123456789.123456789", "0.30000000000000004",
+				"12345678901234567890", "1e5", "1,234.5", " 7 " };
+		for (String s : str) {
+			double expected = parseWithFormatter(CSVFormat.DECIMAL_POINT, s);
+			Assert.assertEquals(s, expected,
+					CSVFormat.DECIMAL_POINT.parse(s), 0);
+		}
+		
+		Assert.assertEquals(-0.25, CSVFormat.DECIMAL_COMMA.parse("-0,25"), 0);
+		Assert.assertEquals(1.0, CSVFormat.DECIMAL_COMMA.parse("1.5"), 0);
+		Assert.assertTrue(Double.isNaN(CSVFormat.DECIMAL_POINT.parse("?")));
+		Assert.assertTrue(Double.isNaN(CSVFormat.DECIMAL_POINT.parse("nan")));
+		
+		try {
+			CSVFormat.DECIMAL_POINT.parse("x");
+			Assert.fail("Should not parse");
+		} catch (CSVError e) {
+			// expected
+		}
+	}
+	
+	private double parseWithFormatter(CSVFormat format, String s)
+	{
+		try {
+			return format.getNumberFormatter().parse(s.trim()).doubleValue();
+		} catch (java.text.ParseException e) {
+			throw new CSVError(e);
+		}
+	}
 }
@@ -0,0 +1,201 @@
+/*
+ * Encog(tm) Core v3.2 - Java Version
+ * http://www.heatonresearch.com/encog/
+ * http://code.google.com/p/encog-java/
+ 
+ * Copyright 2008-2012 Heaton Research, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *   
+ * For more information on Heaton Research copyrights, licenses 
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package org.encog.util.normalize;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import org.encog.NullStatusReportable;
+import org.encog.neural.data.basic.BasicNeuralDataSet;
+import org.encog.util.TempDir;
+import org.encog.util.concurrency.EngineConcurrency;
+import org.encog.util.concurrency.EngineTask;
+import org.encog.util.normalize.input.InputField;
+import org.encog.util.normalize.input.InputFieldCSV;
+import org.encog.util.normalize.input.InputFieldMLDataSet;
+import org.encog.util.normalize.output.OutputFieldDirect;
+import org.encog.util.normalize.output.OutputFieldRangeMapped;
+import org.encog.util.normalize.segregate.RangeSegregator;
+import org.encog.util.normalize.target.NormalizationStorageArray2D;
+
+public class TestNormalizationPlan extends TestCase {
+
+	public final static TempDir TEMP_DIR = new TempDir();
+	public final static File FILENAME = TEMP_DIR.createFile("plan.csv");
+	public final static int ROWS = 20000;
+
+	private DataNormalization createCSV(double[][] output) {
+		DataNormalization norm = new DataNormalization();
+		norm.setReport(new NullStatusReportable());
+		InputField a, b, c;
+		norm.addInputField(a = new InputFieldCSV(false, FILENAME, 0));
+		norm.addInputField(b = new InputFieldCSV(false, FILENAME, 1));
+		norm.addInputField(c = new InputFieldCSV(false, FILENAME, 2));
+		norm.addOutputField(new OutputFieldRangeMapped(a, 0.1, 0.9));
+		norm.addOutputField(new OutputFieldDirect(b));
+		norm.addOutputField(new OutputFieldRangeMapped(c, -1, 1), true);
+		norm.addOutputField(new OutputFieldRangeMapped(a, -1, 1), true);
+		norm.setTarget(new NormalizationStorageArray2D(output));
+		return norm;
+	}
+
+	public void testCSV() throws IOException {
+		FileWriter out = new FileWriter(FILENAME);
+		for (int i = 0; i < ROWS; i++) {
+			out.write(i + "," + (i % 7) + "," + Math.sin(i) + "\n");
+		}
+		out.close();
+
+		double[][] expected = new double[ROWS][4];
+		DataNormalization norm = createCSV(expected);
+		norm.process();
+
+		double[][] actual = new double[ROWS][4];
+		norm.setTarget(new NormalizationStorageArray2D(actual));
+		NormalizationPlan plan = new NormalizationPlan(norm);
+		plan.setThreadCount(4);
+		assertEquals(ROWS, plan.process());
+
+		for (int i = 0; i < ROWS; i++) {
+			for (int j = 0; j < 4; j++) {
+				assertEquals(expected[i][j], actual[i][j], 0);
+			}
+		}
+
+		FILENAME.delete();
+	}
+
+	private DataNormalization createDataSet() {
+		double[][] input = new double[ROWS][2];
+		for (int i = 0; i < ROWS; i++) {
+			input[i][0] = i;
+			input[i][1] = Math.cos(i);
+		}
+		BasicNeuralDataSet set = new BasicNeuralDataSet(input, null);
+
+		DataNormalization norm = new DataNormalization();
+		norm.setReport(new NullStatusReportable());
+		InputField a, b;
+		norm.addInputField(a = new InputFieldMLDataSet(false, set, 0));
+		norm.addInputField(b = new InputFieldMLDataSet(false, set, 1));
+		norm.addOutputField(new OutputFieldRangeMapped(a, 0, 1));
+		norm.addOutputField(new OutputFieldRangeMapped(b, 0, 1));
+		return norm;
+	}
+
+	private void checkPlan(DataNormalization norm, double[][] expected,
+			int threads) {
+		double[][] actual = new double[ROWS][2];
+		norm.setTarget(new NormalizationStorageArray2D(actual));
+		NormalizationPlan plan = new NormalizationPlan(norm);
+		plan.setThreadCount(threads);
+		assertEquals(ROWS, plan.process());
+		for (int i = 0; i < ROWS; i++) {
+			assertEquals(expected[i][0], actual[i][0], 0);
+			assertEquals(expected[i][1], actual[i][1], 0);
+		}
+	}
+
+	public void testDataSet() {
+		DataNormalization norm = createDataSet();
+		double[][] expected = new double[ROWS][2];
+		norm.setTarget(new NormalizationStorageArray2D(expected));
+		norm.process();
+
+		for (int threads = 1; threads <= 4; threads += 3) {
+			checkPlan(norm, expected, threads);
+		}
+	}
+
+	public void testWithoutPool() throws Throwable {
+		final DataNormalization norm = createDataSet();
+		final double[][] expected = new double[ROWS][2];
+		norm.setTarget(new NormalizationStorageArray2D(expected));
+		norm.process();
+
+		// 2 chunks of 10000 rows, far more batches than may be pending
+		try {
+			EngineConcurrency.getInstance().shutdown(10);
+			checkPlan(norm, expected, 2);
+		} finally {
+			EngineConcurrency.getInstance().setThreadCount(0);
+		}
+
+		// from a pool task, with no other pool thread free; no group is used,
+		// so the test thread can not run the task itself
+		final Thread testThread = Thread.currentThread();
+		final Throwable[] failure = new Throwable[1];
+		final CountDownLatch done = new CountDownLatch(1);
+		try {
+			EngineConcurrency.getInstance().setThreadCount(1);
+			EngineConcurrency.getInstance().processTask(new EngineTask() {
+				public void run() {
+					try {
+						assertNotSame(testThread, Thread.currentThread());
+						checkPlan(norm, expected, 4);
+					} catch (Throwable t) {
+						failure[0] = t;
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+			done.await();
+		} finally {
+			EngineConcurrency.getInstance().setThreadCount(0);
+		}
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+
+	public void testUnsupported() {
+		DataNormalization norm = createCSV(new double[1][4]);
+		try {
+			new NormalizationPlan(norm);
+			fail("Statistics are not known yet.");
+		} catch (NormalizationError e) {
+			// expected
+		}
+
+		for (InputField field : norm.getInputFields()) {
+			field.setMin(0);
+			field.setMax(1);
+		}
+		new NormalizationPlan(norm);
+
+		norm.addSegregator(new RangeSegregator(norm.getInputFields().get(0),
+				true));
+		try {
+			new NormalizationPlan(norm);
+			fail("Segregators can not be compiled.");
+		} catch (NormalizationError e) {
+			// expected
+		}
+	}
+}